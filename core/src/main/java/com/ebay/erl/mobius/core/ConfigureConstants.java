@@ -118,4 +118,202 @@ public class ConfigureConstants
 	
 	
 	public static final String DATASET_ID_TO_NAME_MAPPING	= "mobius.dataset.id.to.name.mapping";
+	
+	
+	/**
+	 * To locate the schemas registered for the compact
+	 * serialization form of tuples in the shuffle, see
+	 * {@link com.ebay.erl.mobius.core.model.TupleSchemaRegistry}.
+	 */
+	public static final String TUPLE_SCHEMAS				= "mobius.tuple.schemas";
+	
+	
+	/**
+	 * Set to false to disable the compact serialization form
+	 * of the map output, default is true.
+	 */
+	public static final String COMPACT_TUPLE_SERIALIZATION	= "mobius.tuple.compact.serialization";
+	
+	
+	/**
+	 * Set to false to deserialize the values in reducers and
+	 * combiners eagerly, instead of as {@link com.ebay.erl.mobius.core.model.LazyTuple},
+	 * default is true.
+	 */
+	public static final String LAZY_TUPLE_DESERIALIZATION	= "mobius.tuple.lazy.deserialization";
+	
+	
+	/**
+	 * To locate the IDs of the {@link com.ebay.erl.mobius.core.builder.Dataset}s
+	 * to be broadcast to the mappers in a map-side join job, see
+	 * {@link com.ebay.erl.mobius.core.JoinOnConfigure#broadcast(com.ebay.erl.mobius.core.builder.Dataset...)}.
+	 */
+	public static final String BROADCAST_DATASET_IDS		= "mobius.broadcast.dataset.ids";
+	
+	
+	/**
+	 * The maximum total size (in bytes) of the inputs of a dataset 
+	 * to be broadcast automatically in a join job, when all but
+	 * one of the joining datasets are not bigger than it, the join
+	 * is performed in the mappers.  Default is 0, which disables
+	 * the automatic broadcast join.
+	 */
+	public static final String BROADCAST_JOIN_THRESHOLD		= "mobius.broadcast.join.threshold";
+	
+	
+	/**
+	 * The prefix of the properties which store the inputs of the
+	 * broadcast datasets, as the inputs of a map-side join job
+	 * are only from the dataset not being broadcast.
+	 */
+	public static final String BROADCAST_INPUTS_PREFIX		= "mobius.broadcast.";
+	
+	
+	/**
+	 * To enable/disable the map-side sort-merge join of the datasets 
+	 * bucketed and sorted by their join keys, see 
+	 * {@link com.ebay.erl.mobius.core.builder.Dataset#setBucketing(int, String...)},
+	 * default is true.
+	 */
+	public static final String SORT_MERGE_JOIN				= "mobius.sort.merge.join";
+	
+	
+	/**
+	 * To locate the IDs of the {@link com.ebay.erl.mobius.core.builder.Dataset}s
+	 * to be merged by the mappers of the first dataset in a 
+	 * sort-merge join job.
+	 */
+	public static final String SORT_MERGE_DATASET_IDS		= "mobius.sort.merge.dataset.ids";
+	
+	
+	/**
+	 * The number of buckets of the datasets in a sort-merge join job.
+	 */
+	public static final String SORT_MERGE_BUCKET_NUMBER		= "mobius.sort.merge.bucket.number";
+	
+	
+	/**
+	 * The prefix of the properties which store the inputs of the
+	 * datasets merged by the mappers of the first dataset in a
+	 * sort-merge join job.
+	 */
+	public static final String SORT_MERGE_INPUTS_PREFIX		= "mobius.sort.merge.";
+	
+	
+	/**
+	 * To enable/disable spreading the hot keys of an inner join 
+	 * over multiple reducers, the hot keys are found by sampling
+	 * the inputs before the job is submitted, see
+	 * {@link com.ebay.erl.mobius.core.mapred.SkewJoin}.  Default
+	 * is false.
+	 */
+	public static final String SKEW_JOIN					= "mobius.skew.join";
+	
+	
+	/**
+	 * To locate the hot keys found by sampling and their
+	 * number of salts in a skew join job.
+	 */
+	public static final String SKEW_JOIN_HOT_KEYS			= "mobius.skew.join.hot.keys";
+	
+	
+	/**
+	 * The paths read by the mappers besides the job inputs, ex: the
+	 * inputs of the broadcast datasets, so the job is not submitted 
+	 * until the jobs writing them are completed.
+	 */
+	public static final String SIDE_INPUTS					= "mobius.side.inputs";
+	
+	
+	/**
+	 * To locate the ID of the {@link com.ebay.erl.mobius.core.builder.Dataset}
+	 * whose join keys are used to build a bloom filter in an inner join, see 
+	 * {@link com.ebay.erl.mobius.core.JoinOnConfigure#bloomFilter(com.ebay.erl.mobius.core.builder.Dataset)}.
+	 */
+	public static final String BLOOM_FILTER_DATASET_ID		= "mobius.bloom.filter.dataset.id";
+	
+	
+	/**
+	 * The expected number of distinct join keys in the dataset the bloom 
+	 * filter is built from, used to size the bloom filter, default is 
+	 * 1,000,000.
+	 */
+	public static final String BLOOM_FILTER_EXPECTED_KEYS	= "mobius.bloom.filter.expected.keys";
+	
+	
+	/**
+	 * The expected false positive rate of the bloom filter when the 
+	 * number of keys is {@link #BLOOM_FILTER_EXPECTED_KEYS}, default
+	 * is 0.01.
+	 */
+	public static final String BLOOM_FILTER_FALSE_POSITIVE	= "mobius.bloom.filter.false.positive";
+	
+	
+	/**
+	 * The output folder of the job building the bloom filter.
+	 */
+	public static final String BLOOM_FILTER_PATH			= "mobius.bloom.filter.path";
+	
+	
+	/**
+	 * Set to true in the job building the bloom filter, the mappers 
+	 * add the join keys into the bloom filter instead of emitting 
+	 * them.
+	 */
+	public static final String BLOOM_FILTER_BUILD			= "mobius.bloom.filter.build";
+	
+	
+	/**
+	 * To enable/disable combining the values of the same key in
+	 * the mappers before they are emitted, when the job uses 
+	 * {@link com.ebay.erl.mobius.core.mapred.DefaultMobiusCombiner},
+	 * see {@link com.ebay.erl.mobius.core.mapred.InMapperCombiner}.
+	 * Default is true.
+	 */
+	public static final String IN_MAPPER_COMBINE			= "mobius.in.mapper.combine";
+	
+	
+	/**
+	 * The maximum number of keys combined in a mapper before the
+	 * partial results are emitted, default is 100,000.
+	 */
+	public static final String IN_MAPPER_COMBINE_MAX_KEYS	= "mobius.in.mapper.combine.max.keys";
+	
+	
+	/**
+	 * The maximum estimated bytes of the keys and partial results
+	 * combined in a mapper before they are emitted, default is 64MB.
+	 */
+	public static final String IN_MAPPER_COMBINE_MAX_BYTES	= "mobius.in.mapper.combine.max.bytes";
+	
+	
+	/**
+	 * To enable/disable combining the combinable group functions 
+	 * when some of the projections are not combinable, the values
+	 * are passed through the combiner for the others, see 
+	 * {@link com.ebay.erl.mobius.core.mapred.DefaultMobiusCombiner}.
+	 * Default is true.
+	 */
+	public static final String PARTIAL_COMBINE				= "mobius.partial.combine";
+	
+	
+	/**
+	 * The maximum number of the numerical values of a group
+	 * {@link com.ebay.erl.mobius.core.function.Medium} selects from
+	 * in memory, the values of a larger group are spilled to a 
+	 * local file and the medium is narrowed down from there.
+	 * Default is 1,000,000.
+	 */
+	public static final String MEDIUM_MAX_BUFFERED_VALUES	= "mobius.medium.max.buffered.values";
+	
+	
+	/**
+	 * The maximum bytes the distinct values of a group take in
+	 * memory in {@link com.ebay.erl.mobius.core.function.Unique} and
+	 * {@link com.ebay.erl.mobius.core.function.UniqueCounts}, the
+	 * values are partitioned into disk when exceeded, see
+	 * {@link com.ebay.erl.mobius.core.collection.BigTupleSet}.
+	 * Default is 64MB.
+	 */
+	public static final String UNIQUE_MAX_BYTES				= "mobius.unique.max.bytes";
 }
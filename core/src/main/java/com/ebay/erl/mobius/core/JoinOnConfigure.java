@@ -90,6 +90,74 @@ public class JoinOnConfigure
 	}
 	
 	
+	/**
+	 * Broadcast the given <code>smallDatasets</code> to the mappers
+	 * of the remaining dataset and perform the join in the mappers,
+	 * no shuffle and reduce phase is needed.
+	 * <p>
+	 * 
+	 * The <code>smallDatasets</code> are loaded into memory once 
+	 * per task JVM, so they must be small enough to fit into the 
+	 * heap of a mapper.  All but one of the joining datasets must 
+	 * be broadcast, the projections cannot contain any 
+	 * {@link com.ebay.erl.mobius.core.function.base.GroupFunction},
+	 * and in an outer join, the dataset not being broadcast cannot 
+	 * be the optional one.
+	 * <p>
+	 * 
+	 * The join can also be broadcast automatically based on the
+	 * size of the datasets, see {@link ConfigureConstants#BROADCAST_JOIN_THRESHOLD}.
+	 */
+	public JoinOnConfigure broadcast(Dataset... smallDatasets)
+	{
+		if( smallDatasets==null || smallDatasets.length==0 )
+		{
+			throw new IllegalArgumentException("Please specify at least one dataset to be broadcast.");
+		}
+		
+		StringBuffer ids = new StringBuffer();
+		for( Dataset aSmallDataset:smallDatasets )
+		{
+			int assignedDatasetID = Arrays.asList(this.datasets).indexOf(aSmallDataset);
+			if( assignedDatasetID<0 )
+			{
+				throw new IllegalArgumentException(aSmallDataset+" doesn't in the selected join dataset.");
+			}
+			
+			if( ids.length()>0 )
+				ids.append(",");
+			ids.append(assignedDatasetID);
+		}
+		this.jobConf.set(ConfigureConstants.BROADCAST_DATASET_IDS, ids.toString());
+		return this;
+	}
+	
+	
+	/**
+	 * Build a bloom filter of the join keys of the given 
+	 * <code>dataset</code> in a job before the join job, and 
+	 * drop the records of the other datasets which keys are 
+	 * not in the bloom filter in the mappers of the join job, 
+	 * so less records are shuffled to the reducers.
+	 * <p>
+	 * 
+	 * It only applies to inner join, the <code>dataset</code> is 
+	 * usually the one with the least distinct keys.  The size of 
+	 * the bloom filter can be tuned by {@link ConfigureConstants#BLOOM_FILTER_EXPECTED_KEYS}
+	 * and {@link ConfigureConstants#BLOOM_FILTER_FALSE_POSITIVE}.
+	 */
+	public JoinOnConfigure bloomFilter(Dataset dataset)
+	{
+		int assignedDatasetID = Arrays.asList(this.datasets).indexOf(dataset);
+		if( assignedDatasetID<0 )
+		{
+			throw new IllegalArgumentException(dataset+" doesn't in the selected join dataset.");
+		}
+		this.jobConf.set(ConfigureConstants.BLOOM_FILTER_DATASET_ID, String.valueOf(assignedDatasetID));
+		return this;
+	}
+	
+	
 	/**
 	 * Specify the joining columns from the dataset.
 	 * <p>
@@ -34,6 +34,7 @@ import com.ebay.erl.mobius.core.mapred.ConfigurableJob;
 import com.ebay.erl.mobius.core.model.Column;
 import com.ebay.erl.mobius.core.model.Tuple;
 import com.ebay.erl.mobius.core.sort.Sorter;
+import com.ebay.erl.mobius.util.Util;
 
 /**
  * Main class of the Mobius API. Extends this class 
@@ -690,6 +691,13 @@ public abstract class MobiusJob extends Configured implements Tool, Serializable
 			inputFolders = getPathOnly(inputFolders);
 		}
 		
+		// the inputs read by the mappers outside of the input splits,
+		// ex: the datasets to be broadcast, this job depends on them too.
+		for( String aSideInput:aNewJobConf.getStrings(ConfigureConstants.SIDE_INPUTS, Util.ZERO_SIZE_STRING_ARRAY) )
+		{
+			inputFolders = inputFolders + "," + getPathOnly(aSideInput);
+		}
+		
 		
 		
 		////////////////////////////////////////////////////////////
@@ -2,21 +2,28 @@ package com.ebay.erl.mobius.core;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.SequenceFileOutputFormat;
 import org.apache.hadoop.mapred.TextOutputFormat;
+import org.apache.hadoop.mapred.lib.MobiusDelegatingInputFormat;
+import org.apache.hadoop.util.bloom.BloomFilter;
 
 import com.ebay.erl.mobius.core.builder.AbstractDatasetBuilder;
 import com.ebay.erl.mobius.core.builder.Dataset;
@@ -27,9 +34,11 @@ import com.ebay.erl.mobius.core.datajoin.DataJoinKeyPartitioner;
 import com.ebay.erl.mobius.core.datajoin.DataJoinValue;
 import com.ebay.erl.mobius.core.function.base.GroupFunction;
 import com.ebay.erl.mobius.core.function.base.Projectable;
+import com.ebay.erl.mobius.core.mapred.BloomFilterReducer;
 import com.ebay.erl.mobius.core.mapred.DefaultMobiusCombiner;
 import com.ebay.erl.mobius.core.mapred.DefaultMobiusReducer;
 import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.TupleSchemaRegistry;
 import com.ebay.erl.mobius.util.SerializableUtil;
 import com.ebay.erl.mobius.util.Util;
 
@@ -298,7 +307,14 @@ public class Persistable
 		if ( criteria!=null )
 		{
 			TupleCriterion.validate(columnNames, criteria);
-			this.jobConf.set(ConfigureConstants.PERSISTANT_CRITERIA, SerializableUtil.serializeToBase64(criteria));
+			
+			// the conjuncts can be evaluated before the join are pushed 
+			// down to the mappers, only the rest is evaluated at the end.
+			TupleCriterion residual = this.pushDownCriteria(criteria, projections);
+			if( residual!=null )
+			{
+				this.jobConf.set(ConfigureConstants.PERSISTANT_CRITERIA, SerializableUtil.serializeToBase64(residual));
+			}
 		}
 		
 		
@@ -367,18 +383,78 @@ public class Persistable
 		
 		JobSetup.setupOutputs(this.jobConf, output, outputFormat);
 		
+		// the inputs of the datasets to be broadcast or merged are setup 
+		// separately, they are read by the mappers of the other dataset.
+		Set<Byte> broadcastIDs	= this.getBroadcastDatasetIDs(projections);
+		Set<Byte> mergedIDs		= broadcastIDs.isEmpty()?this.getSortMergeDatasetIDs():new TreeSet<Byte>();
+		JobConf asideInputs		= new JobConf(this.jobConf);
+		
+		// the bloom filter of the join keys is built by another job 
+		// reading the inputs of the filter dataset only.
+		Byte bloomFilterID		= this.getBloomFilterDatasetID();
+		if( bloomFilterID!=null && !(broadcastIDs.isEmpty() && mergedIDs.isEmpty()) )
+		{
+			LOGGER.info("The join is performed in the mappers, bloom filter is not needed.");
+			bloomFilterID = null;
+		}
+		JobConf bloomFilterInputs	= new JobConf(this.jobConf);
+		
 		// setup input paths, projection columns for each datasets.
 		for( byte assignedDatasetID=0;assignedDatasetID<this.datasets.length;assignedDatasetID++)
 		{
 			Dataset aDataset = this.datasets[assignedDatasetID];
 			
 			// setup input for each dataset
-			JobSetup.setupInputs(jobConf, aDataset, assignedDatasetID);
+			boolean isAside = broadcastIDs.contains(assignedDatasetID) || mergedIDs.contains(assignedDatasetID);
+			JobSetup.setupInputs(isAside?asideInputs:jobConf, aDataset, assignedDatasetID);
+			if( isAside )
+			{
+				this.addSideInputs(aDataset.getInputs());
+			}
+			if( bloomFilterID!=null && bloomFilterID==assignedDatasetID )
+			{
+				JobSetup.setupInputs(bloomFilterInputs, aDataset, assignedDatasetID);
+			}
 			
 			// setup projection for each dataset
 			JobSetup.setupProjections(jobConf, aDataset, assignedDatasetID, datasetToColumns.get(aDataset).toArray(new Column[0]));
 		}
 		
+		this.jobConf.set(ConfigureConstants.BROADCAST_DATASET_IDS, toString(broadcastIDs));
+		this.jobConf.set(ConfigureConstants.SORT_MERGE_DATASET_IDS, toString(mergedIDs));
+		if( broadcastIDs.size()>0 )
+		{
+			MobiusDelegatingInputFormat.setInputsAside(this.jobConf, asideInputs, ConfigureConstants.BROADCAST_INPUTS_PREFIX);
+			this.jobConf.setNumReduceTasks(0);
+			LOGGER.info("Broadcast datasets "+broadcastIDs+", the join is performed in the mappers.");
+		}
+		else if( mergedIDs.size()>0 )
+		{
+			MobiusDelegatingInputFormat.setInputsAside(this.jobConf, asideInputs, ConfigureConstants.SORT_MERGE_INPUTS_PREFIX);
+			this.jobConf.setInt(ConfigureConstants.SORT_MERGE_BUCKET_NUMBER, this.datasets[0].getBucketNumber());
+			// one mapper per part file of the first dataset, the part
+			// files of the same bucket from the others are merged in it.
+			this.jobConf.setLong("mapred.min.split.size", Long.MAX_VALUE);
+			this.jobConf.setNumReduceTasks(0);
+			LOGGER.info("Merge datasets "+mergedIDs+" with the first dataset by buckets, the join is performed in the mappers.");
+		}
+		
+		// register the schemas of the map outputs, so they can be
+		// serialized in the compact form during the shuffle.
+		if( this.jobConf.getBoolean(ConfigureConstants.COMPACT_TUPLE_SERIALIZATION, true) )
+		{
+			TupleSchemaRegistry.register(this.jobConf, DataJoinKey.ACUTAL_KEY, DataJoinKey.DATASET_ID);
+			TupleSchemaRegistry.register(this.jobConf, DataJoinValue.DATASET_ID, DataJoinValue.ACTUAL_VALUE);
+			for( byte assignedDatasetID=0;assignedDatasetID<this.datasets.length;assignedDatasetID++)
+			{
+				String[] valueColumns = this.jobConf.getStrings(assignedDatasetID+".value.columns", Util.ZERO_SIZE_STRING_ARRAY);
+				if( valueColumns.length>0 )
+				{
+					TupleSchemaRegistry.register(this.jobConf, valueColumns);
+				}
+			}
+		}
+		
 		// setup all dataset IDs
 		for( int i=0;i<this.datasets.length;i++)
 		{
@@ -395,26 +471,74 @@ public class Persistable
 		
 		
 		boolean isCombinable = true;
+		
+		// the combinable group functions can still be combined when
+		// some of the others are not, if they all use one dataset.
+		boolean isPartiallyCombinable	= this.jobConf.getBoolean(ConfigureConstants.PARTIAL_COMBINE, true);
+		boolean hasCombinableGroupFunc	= false;
 		for( Projectable aFunc:projections )
 		{
 			aFunc.setConf(jobConf);
 			
+			if( aFunc.requireDataFromMultiDatasets() )
+			{
+				isPartiallyCombinable = false;
+			}
+			
 			if( !aFunc.isCombinable() )
 			{
 				isCombinable = false;
 				LOGGER.info(aFunc.toString()+" is not combinable, #isCombinable() return false.");
-				break;
 			}
-			if( aFunc instanceof GroupFunction && aFunc.useGroupKeyOnly() )
+			else if( aFunc instanceof GroupFunction && aFunc.useGroupKeyOnly() )
 			{
 				LOGGER.info(aFunc.toString()+" is a group function and use group key as its input only, disable combiner.");
 				isCombinable = false;
-				break;
+			}
+			else if( aFunc instanceof GroupFunction )
+			{
+				hasCombinableGroupFunc = true;
 			}
 		}
+		isPartiallyCombinable &= !isCombinable && hasCombinableGroupFunc;
 		
-		LOGGER.info("Using Combiner? "+isCombinable);
-		if( isCombinable )
+		// the hot keys can be spread over multiple reducers only if the
+		// rows of a key don't need to be processed in the same reducer.
+		if( this.jobConf.getBoolean(ConfigureConstants.SKEW_JOIN, false) )
+		{
+			String reason = null;
+			if( this.datasets.length<2 || this.jobConf.getNumReduceTasks()==0 )
+				reason = "it's not a join performed in the reducers";
+			else if( this.jobConf.getBoolean(ConfigureConstants.IS_OUTER_JOIN, false) )
+				reason = "it's an outer join";
+			else
+			{
+				for( Projectable aFunc:projections )
+				{
+					if( aFunc instanceof GroupFunction )
+						reason = aFunc.toString()+" is a group function";
+				}
+			}
+			
+			if( reason!=null )
+			{
+				LOGGER.info("Disable skew join as "+reason+".");
+				this.jobConf.setBoolean(ConfigureConstants.SKEW_JOIN, false);
+			}
+			else
+			{
+				isCombinable			= false;
+				isPartiallyCombinable	= false;
+			}
+		}
+		
+		if( bloomFilterID!=null )
+		{
+			this.setupBloomFilter(job, bloomFilterInputs, bloomFilterID);
+		}
+		
+		LOGGER.info("Using Combiner? "+isCombinable+", partially? "+isPartiallyCombinable);
+		if( (isCombinable || isPartiallyCombinable) && this.jobConf.getNumReduceTasks()>0 )
 		{	
 			jobConf.setCombinerClass(DefaultMobiusCombiner.class);
 		}
@@ -437,6 +561,422 @@ public class Persistable
 		
 		
 		
-		return builder.buildFromPreviousJob(jobConf, outputFormat, outputColumns.toArray(new String[0]));
+		Dataset result = builder.buildFromPreviousJob(jobConf, outputFormat, outputColumns.toArray(new String[0]));
+		this.setupBucketing(result, outputFormat, projections);
+		return result;
+	}
+	
+	
+	/**
+	 * Record the bucketing of the <code>result</code> dataset if the
+	 * output of this job can be merged by the join keys in a later 
+	 * join job, see {@link Dataset#setBucketing(int, String...)}.
+	 * <p>
+	 * 
+	 * The part files written by the reducers are partitioned by the 
+	 * hash of the join/group keys, and sorted by them.  They can be 
+	 * merged if the keys are selected as they are, and saved in 
+	 * {@link SequenceFileOutputFormat} which preserves their types. 
+	 * The keys are not hashed when the even partitioner is chosen,
+	 * see {@link com.ebay.erl.mobius.core.mapred.ConfigurableJob},
+	 * nor when the hot keys are spread over multiple reducers by 
+	 * {@link ConfigureConstants#SKEW_JOIN}.
+	 */
+	private void setupBucketing(Dataset result, Class<? extends FileOutputFormat> outputFormat, Projectable[] projections)
+	{
+		int bucketNumber = this.jobConf.getNumReduceTasks();
+		if( bucketNumber<=0 || !SequenceFileOutputFormat.class.isAssignableFrom(outputFormat) || 
+				!DataJoinKeyPartitioner.class.equals(this.jobConf.getPartitionerClass()) || 
+				this.jobConf.get("mobius.partitioner", "default").equals("even") || 
+				this.jobConf.getBoolean(ConfigureConstants.SKEW_JOIN, false) )
+		{
+			return;
+		}
+		
+		// only the last dataset is optional in an outer join, the keys of
+		// the rest are always the same as the join keys.
+		int requiredDatasetNbr = this.datasets.length;
+		if( this.datasets.length>1 && this.jobConf.getBoolean(ConfigureConstants.IS_OUTER_JOIN, false) )
+		{
+			requiredDatasetNbr--;
+		}
+		
+		String[] sortedColumns = null;
+		for( byte assignedDatasetID=0;assignedDatasetID<requiredDatasetNbr && sortedColumns==null;assignedDatasetID++ )
+		{
+			String[] keyColumns	= this.jobConf.getStrings(assignedDatasetID+".key.columns", Util.ZERO_SIZE_STRING_ARRAY);
+			sortedColumns		= keyColumns.length>0?new String[keyColumns.length]:null;
+			for( int i=0;i<keyColumns.length && sortedColumns!=null;i++ )
+			{
+				for( Projectable aFunc:projections )
+				{
+					if( aFunc instanceof Column && ((Column)aFunc).getDataset().equals(this.datasets[assignedDatasetID]) 
+							&& ((Column)aFunc).getInputColumnName().equalsIgnoreCase(keyColumns[i]) )
+					{
+						sortedColumns[i] = ((Column)aFunc).getOutputName();
+						break;
+					}
+				}
+				
+				if( sortedColumns[i]==null )
+				{
+					// the key is not selected
+					sortedColumns = null;
+				}
+			}
+		}
+		
+		if( sortedColumns!=null )
+		{
+			LOGGER.info(result.getName()+" is bucketed into "+bucketNumber+" part files, sorted by "+Arrays.toString(sortedColumns));
+			result.setBucketing(bucketNumber, sortedColumns);
+		}
+	}
+	
+	
+	/**
+	 * Get the IDs of the datasets to be merged with the first dataset 
+	 * in the mappers, return an empty set if the datasets are not all 
+	 * bucketed into the same number of part files and sorted by their
+	 * join keys.
+	 */
+	private Set<Byte> getSortMergeDatasetIDs()
+	{
+		Set<Byte> result = new TreeSet<Byte>();
+		if( this.datasets.length<2 || !this.jobConf.getBoolean(ConfigureConstants.SORT_MERGE_JOIN, true) )
+			return result;
+		
+		int bucketNumber = this.datasets[0].getBucketNumber();
+		if( bucketNumber<=0 )
+			return result;
+		
+		for( byte assignedDatasetID=0;assignedDatasetID<this.datasets.length;assignedDatasetID++ )
+		{
+			Dataset aDataset		= this.datasets[assignedDatasetID];
+			String[] keyColumns		= this.jobConf.getStrings(assignedDatasetID+".key.columns", Util.ZERO_SIZE_STRING_ARRAY);
+			String[] sortedColumns	= aDataset.getSortedColumns();
+			
+			if( aDataset.getBucketNumber()!=bucketNumber || aDataset.getInputs().size()!=1 || 
+					sortedColumns==null || sortedColumns.length!=keyColumns.length )
+			{
+				return new TreeSet<Byte>();
+			}
+			
+			for( int i=0;i<keyColumns.length;i++ )
+			{
+				if( !keyColumns[i].equalsIgnoreCase(sortedColumns[i]) )
+					return new TreeSet<Byte>();
+			}
+			
+			if( assignedDatasetID>0 )
+				result.add(assignedDatasetID);
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Push the conjuncts of the <code>criteria</code> that only 
+	 * evaluate the columns selected as they are from one dataset 
+	 * down to the mappers of the dataset, so the rows that can 
+	 * never be persisted are not shuffled.  Return the rest of 
+	 * the conjuncts to be evaluated in the reducers, or null if
+	 * all of them are pushed down.
+	 */
+	private TupleCriterion pushDownCriteria(TupleCriterion criteria, Projectable[] projections)
+		throws IOException
+	{
+		// output column name to the selected column
+		Map<String, Column> selectedColumns	= new TreeMap<String, Column>(String.CASE_INSENSITIVE_ORDER);
+		boolean hasGroupFunction			= false;
+		for( Projectable aFunc:projections )
+		{
+			if( aFunc instanceof Column )
+				selectedColumns.put(((Column)aFunc).getOutputName(), (Column)aFunc);
+			else if( aFunc instanceof GroupFunction )
+				hasGroupFunction = true;
+		}
+		
+		// only the last dataset is optional in an outer join, filtering
+		// its rows changes the rows of the others being joined with null.
+		int optionalDatasetID = -1;
+		if( this.datasets.length>1 && this.jobConf.getBoolean(ConfigureConstants.IS_OUTER_JOIN, false) )
+		{
+			optionalDatasetID = this.datasets.length-1;
+		}
+		
+		TupleCriterion residual		= null;
+		TupleCriterion[] pushed		= new TupleCriterion[this.datasets.length];
+		for( TupleCriterion aConjunct:criteria.getConjuncts() )
+		{
+			int datasetID = this.getPushDownDatasetID(aConjunct, selectedColumns, hasGroupFunction);
+			if( datasetID<0 || datasetID==optionalDatasetID )
+			{
+				residual = residual==null?aConjunct:residual.and(aConjunct);
+			}
+			else
+			{
+				pushed[datasetID] = pushed[datasetID]==null?aConjunct:pushed[datasetID].and(aConjunct);
+			}
+		}
+		
+		for( byte assignedDatasetID=0;assignedDatasetID<this.datasets.length;assignedDatasetID++ )
+		{
+			if( pushed[assignedDatasetID]!=null )
+			{
+				LOGGER.info("Push criteria on "+Arrays.toString(pushed[assignedDatasetID].getInvolvedColumns())+
+						" down to the mappers of "+this.datasets[assignedDatasetID].getName()+".");
+				this.jobConf.set(assignedDatasetID+".pushed.criteria", SerializableUtil.serializeToBase64(pushed[assignedDatasetID]));
+			}
+		}
+		return residual;
+	}
+	
+	
+	/**
+	 * Return the ID of the dataset the <code>conjunct</code> can be
+	 * evaluated in its mappers, or -1 if it cannot be pushed down.
+	 */
+	private int getPushDownDatasetID(TupleCriterion conjunct, Map<String, Column> selectedColumns, boolean hasGroupFunction)
+	{
+		int result = -1;
+		for( String aColumn:conjunct.getInvolvedColumns() )
+		{
+			// the column must be selected as it is, so it has
+			// the same name and value in the mappers.
+			Column selected = selectedColumns.get(aColumn);
+			if( selected==null || !selected.getInputColumnName().equalsIgnoreCase(selected.getOutputName()) )
+				return -1;
+			
+			int datasetID = Arrays.asList(this.datasets).indexOf(selected.getDataset());
+			if( datasetID<0 || (result>=0 && datasetID!=result) )
+				return -1;
+			
+			// the rows of a group are aggregated together, they can 
+			// only be filtered by the key so the whole group is filtered.
+			if( hasGroupFunction )
+			{
+				String[] keyColumns = this.jobConf.getStrings(datasetID+".key.columns", Util.ZERO_SIZE_STRING_ARRAY);
+				boolean isKeyColumn = false;
+				for( String aKeyColumn:keyColumns )
+				{
+					isKeyColumn |= aKeyColumn.equalsIgnoreCase(selected.getInputColumnName());
+				}
+				if( !isKeyColumn )
+					return -1;
+			}
+			result = datasetID;
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Add a job building the bloom filter of the join keys of the
+	 * dataset with the given <code>bloomFilterID</code>, from the
+	 * <code>inputs</code> of the dataset, into the execution queue 
+	 * before this job, and let the mappers of the other datasets 
+	 * in this job test their keys with it, see {@link JoinOnConfigure#bloomFilter(Dataset)}.
+	 */
+	private void setupBloomFilter(MobiusJob job, JobConf inputs, Byte bloomFilterID)
+		throws IOException
+	{
+		Path bloomFilterPath	= job.newTempPath();
+		JobConf bloomConf		= new JobConf(this.jobConf);
+		MobiusDelegatingInputFormat.setInputsAside(bloomConf, inputs, "");
+		
+		JobSetup.setupOutputs(bloomConf, bloomFilterPath, SequenceFileOutputFormat.class);
+		bloomConf.setOutputValueClass(BloomFilter.class);
+		bloomConf.setReducerClass(BloomFilterReducer.class);
+		bloomConf.setNumReduceTasks(1);
+		bloomConf.set(ConfigureConstants.ALL_DATASET_IDS, bloomFilterID.toString());
+		bloomConf.setBoolean(ConfigureConstants.BLOOM_FILTER_BUILD, true);
+		bloomConf.setBoolean(ConfigureConstants.SKEW_JOIN, false);
+		bloomConf.set("mobius.partitioner", "default");
+		bloomConf.set("mapred.job.name", "Bloom filter of "+this.jobConf.get("mapred.job.name"));
+		job.addToExecQueue(bloomConf);
+		
+		// the bloom filter is shipped to the mappers by the distributed
+		// cache, or read from the output folder if it's not available.
+		FileSystem fs	= FileSystem.get(this.jobConf);
+		bloomFilterPath	= fs.makeQualified(bloomFilterPath);
+		this.jobConf.set(ConfigureConstants.BLOOM_FILTER_PATH, bloomFilterPath.toString());
+		DistributedCache.addCacheFile(new Path(bloomFilterPath, "part-00000").toUri(), this.jobConf);
+		this.addSideInputs(Arrays.asList(bloomFilterPath));
+		
+		LOGGER.info("Build bloom filter of dataset "+bloomFilterID+" into "+bloomFilterPath+".");
+	}
+	
+	
+	/**
+	 * Get the ID of the dataset to build the bloom filter from, 
+	 * specified by {@link JoinOnConfigure#bloomFilter(Dataset)}, 
+	 * or null if not specified.
+	 */
+	private Byte getBloomFilterDatasetID()
+	{
+		String specified = this.jobConf.get(ConfigureConstants.BLOOM_FILTER_DATASET_ID, "");
+		if( specified.isEmpty() )
+			return null;
+		
+		if( this.datasets.length<2 || this.jobConf.getBoolean(ConfigureConstants.IS_OUTER_JOIN, false) )
+		{
+			throw new IllegalArgumentException("Bloom filter can only be applied to inner join.");
+		}
+		return Byte.valueOf(specified);
+	}
+	
+	
+	/**
+	 * Add the <code>paths</code> into {@link ConfigureConstants#SIDE_INPUTS}
+	 * of this job.
+	 */
+	private void addSideInputs(List<Path> paths)
+		throws IOException
+	{
+		FileSystem fs = FileSystem.get(this.jobConf);
+		for( Path aPath:paths )
+		{
+			String sideInputs	= this.jobConf.get(ConfigureConstants.SIDE_INPUTS, "");
+			String aSideInput	= fs.makeQualified(aPath).toString();
+			this.jobConf.set(ConfigureConstants.SIDE_INPUTS, sideInputs.isEmpty()?aSideInput:sideInputs+","+aSideInput);
+		}
+	}
+	
+	
+	private static String toString(Set<Byte> datasetIDs)
+	{
+		StringBuffer result = new StringBuffer();
+		for( Byte anID:datasetIDs )
+		{
+			if( result.length()>0 )
+				result.append(",");
+			result.append(anID);
+		}
+		return result.toString();
+	}
+	
+	
+	/**
+	 * Get the IDs of the datasets to be broadcast to the mappers,
+	 * either specified by {@link JoinOnConfigure#broadcast(Dataset...)},
+	 * or all but the biggest dataset when they are not bigger than
+	 * {@link ConfigureConstants#BROADCAST_JOIN_THRESHOLD}.  Return
+	 * an empty set if the join is to be performed in the reducers.
+	 */
+	private Set<Byte> getBroadcastDatasetIDs(Projectable[] projections)
+		throws IOException
+	{
+		Set<Byte> result = new TreeSet<Byte>();
+		if( this.datasets.length<2 )
+			return result;
+		
+		String specified = this.jobConf.get(ConfigureConstants.BROADCAST_DATASET_IDS, "");
+		if( !specified.isEmpty() )
+		{
+			for( String anID:specified.split(",") )
+			{
+				result.add(Byte.valueOf(anID.trim()));
+			}
+			
+			String reason = this.cannotBroadcast(result, projections);
+			if( reason!=null )
+			{
+				throw new IllegalArgumentException("Cannot broadcast datasets "+result+", "+reason);
+			}
+			return result;
+		}
+		
+		long threshold = this.jobConf.getLong(ConfigureConstants.BROADCAST_JOIN_THRESHOLD, 0L);
+		if( threshold<=0 )
+			return result;
+		
+		byte biggestID		= 0;
+		long biggestSize	= -1L;
+		int smallDatasetNbr	= 0;
+		for( byte assignedDatasetID=0;assignedDatasetID<this.datasets.length;assignedDatasetID++ )
+		{
+			long size = this.getInputSize(this.datasets[assignedDatasetID]);
+			LOGGER.info("Input size of "+this.datasets[assignedDatasetID].getName()+": "+size+" bytes.");
+			if( size<=threshold )
+				smallDatasetNbr++;
+			
+			if( size>biggestSize )
+			{
+				biggestID	= assignedDatasetID;
+				biggestSize	= size;
+			}
+		}
+		
+		if( smallDatasetNbr>=this.datasets.length-1 )
+		{
+			for( byte assignedDatasetID=0;assignedDatasetID<this.datasets.length;assignedDatasetID++ )
+			{
+				if( assignedDatasetID!=biggestID )
+					result.add(assignedDatasetID);
+			}
+			
+			String reason = this.cannotBroadcast(result, projections);
+			if( reason!=null )
+			{
+				LOGGER.info("Datasets "+result+" are small enough to be broadcast, but "+reason);
+				result.clear();
+			}
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Return the reason why the datasets of the given <code>broadcastIDs</code>
+	 * cannot be broadcast, or null if they can.
+	 */
+	private String cannotBroadcast(Set<Byte> broadcastIDs, Projectable[] projections)
+	{
+		if( broadcastIDs.size()!=this.datasets.length-1 )
+		{
+			return "all but one of the joining datasets must be broadcast.";
+		}
+		
+		for( Projectable aFunc:projections )
+		{
+			if( aFunc instanceof GroupFunction )
+			{
+				return aFunc.toString()+" is a group function, which cannot be computed in the mappers.";
+			}
+		}
+		
+		// only the last dataset is optional in an outer join, see DefaultMobiusReducer 
+		byte lastDatasetID = (byte)(this.datasets.length-1);
+		if( this.jobConf.getBoolean(ConfigureConstants.IS_OUTER_JOIN, false) && !broadcastIDs.contains(lastDatasetID) )
+		{
+			return "the optional dataset in an outer join must be broadcast.";
+		}
+		return null;
+	}
+	
+	
+	/**
+	 * Get the total size of the inputs of <code>aDataset</code>, return
+	 * {@link Long#MAX_VALUE} if one of the inputs doesn't exist yet, ex:
+	 * it's the output of a previous job which hasn't been run.
+	 */
+	private long getInputSize(Dataset aDataset)
+		throws IOException
+	{
+		FileSystem fs	= FileSystem.get(this.jobConf);
+		long size		= 0L;
+		for( Path anInput:aDataset.getInputs() )
+		{
+			FileStatus[] matched = fs.globStatus(anInput);
+			if( matched==null || matched.length==0 )
+				return Long.MAX_VALUE;
+			
+			for( FileStatus aStatus:matched )
+			{
+				size += fs.getContentSummary(aStatus.getPath()).getLength();
+			}
+		}
+		return size;
 	}
 }
@@ -105,6 +105,7 @@ public class SortPersistable
 		this.jobConf.setMapOutputValueClass(DataJoinValue.class);
 		this.jobConf.setPartitionerClass (TotalOrderPartitioner.class);
 		this.jobConf.setOutputKeyComparatorClass (DataJoinKey.class);
+		this.jobConf.setOutputValueGroupingComparator (DataJoinKey.Comparator.class);
 		this.jobConf.setReducerClass(TotalSortReducer.class);		
 		
 		JobSetup.setupOutputs(this.jobConf, output, outputFormat);
@@ -133,6 +133,20 @@ public class Dataset implements Serializable
 	protected Byte id;
 	
 	
+	/**
+	 * The number of the part files this dataset is partitioned 
+	 * into by the hash of {@link #sortedColumns}, 0 if unknown.
+	 */
+	protected int bucketNumber = 0;
+	
+	
+	/**
+	 * The columns the records in each part file of this dataset
+	 * are sorted by (in ascending order), null if unknown.
+	 */
+	protected String[] sortedColumns;
+	
+	
 	protected Dataset(MobiusJob job, String name)
 	{
 		this.initialize();
@@ -343,6 +357,72 @@ public class Dataset implements Serializable
 		return Collections.unmodifiableList(this.inputs);
 	}
 	
+	/**
+	 * Specify that this dataset is stored in <code>bucketNumber</code>
+	 * part files (named part-00000, part-00001...) in its only input 
+	 * folder, the records are assigned to the part files by the hash 
+	 * of the <code>sortedColumns</code>, the same way as 
+	 * {@link com.ebay.erl.mobius.core.datajoin.DataJoinKeyPartitioner},
+	 * and sorted by the <code>sortedColumns</code> in ascending order
+	 * within each part file.
+	 * <p>
+	 * 
+	 * This is set automatically on the datasets saved in 
+	 * {@link org.apache.hadoop.mapred.SequenceFileOutputFormat} by 
+	 * a join or group-by job, when the join/group keys are selected
+	 * as they are.  When two or more datasets bucketed into the same
+	 * number of part files are joined by their sorted columns, the 
+	 * join is performed in the mappers by merging the part files of 
+	 * the same bucket, see {@link com.ebay.erl.mobius.core.ConfigureConstants#SORT_MERGE_JOIN}.
+	 * The values of the sorted columns must be of the same types
+	 * in all the datasets, otherwise they are hashed into different
+	 * buckets and the job fails.
+	 */
+	public Dataset setBucketing(int bucketNumber, String... sortedColumns)
+	{
+		if( bucketNumber<=0 || sortedColumns==null || sortedColumns.length==0 )
+		{
+			throw new IllegalArgumentException("Please specify a positive bucket number and the sorted columns.");
+		}
+		
+		for( String aColumn:sortedColumns )
+		{
+			if( !this.withinSchema(aColumn) )
+			{
+				throw new IllegalArgumentException(aColumn+" doesn't in the schema of "+this.getName()+":"+this.getSchema());
+			}
+		}
+		
+		this.bucketNumber	= bucketNumber;
+		this.sortedColumns	= sortedColumns;
+		return this;
+	}
+	
+	
+	/**
+	 * Get the number of the part files this dataset is
+	 * bucketed into, 0 if unknown.
+	 * 
+	 * @see #setBucketing(int, String...)
+	 */
+	public int getBucketNumber()
+	{
+		return this.bucketNumber;
+	}
+	
+	
+	/**
+	 * Get the columns the part files of this dataset 
+	 * are sorted by, null if unknown.
+	 * 
+	 * @see #setBucketing(int, String...)
+	 */
+	public String[] getSortedColumns()
+	{
+		return this.sortedColumns;
+	}
+	
+	
 	/**
 	 * Get the {@link AbstractMobiusMapper} of this dataset.
 	 */
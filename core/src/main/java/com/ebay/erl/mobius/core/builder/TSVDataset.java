@@ -1,6 +1,7 @@
 package com.ebay.erl.mobius.core.builder;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 
 import org.apache.hadoop.mapred.InputFormat;
 import org.apache.hadoop.mapred.JobConf;
@@ -9,6 +10,7 @@ import org.apache.hadoop.mapred.TextInputFormat;
 import com.ebay.erl.mobius.core.MobiusJob;
 import com.ebay.erl.mobius.core.mapred.AbstractMobiusMapper;
 import com.ebay.erl.mobius.core.mapred.TSVMapper;
+import com.ebay.erl.mobius.core.model.ColumnParser;
 import com.ebay.erl.mobius.util.SerializableUtil;
 
 /**
@@ -35,6 +37,12 @@ public class TSVDataset extends Dataset
 	private static final long serialVersionUID = -4596104689783253807L;
 	private String delimiter = "\t";
 	
+	/**
+	 * the parsers of the typed columns, the columns
+	 * not in here are strings.
+	 */
+	private LinkedHashMap<String, ColumnParser> columnParsers = new LinkedHashMap<String, ColumnParser>();
+	
 	/**
 	 * Create an instance of dataset with {@link TextInputFormat}
 	 * and {@link TSVMapper} as default.
@@ -60,6 +68,12 @@ public class TSVDataset extends Dataset
 		return this;
 	}
 	
+	TSVDataset setColumnParser(String column, ColumnParser parser)
+	{
+		this.columnParsers.put(column.toLowerCase(), parser);
+		return this;
+	}
+	
 	
 	
 	/**
@@ -100,6 +114,10 @@ public class TSVDataset extends Dataset
 		{
 			conf.set(this.getID()+".delimiter", SerializableUtil.serializeToBase64(delimiter));
 		}
+		if( this.columnParsers.size()>0 )
+		{
+			conf.set(this.getID()+".column.parsers", SerializableUtil.serializeToBase64(this.columnParsers));
+		}
 		return conf;
 	}
 }
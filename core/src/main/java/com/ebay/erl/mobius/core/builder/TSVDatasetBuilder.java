@@ -9,6 +9,8 @@ import org.apache.hadoop.mapred.TextOutputFormat;
 import com.ebay.erl.mobius.core.ConfigureConstants;
 import com.ebay.erl.mobius.core.MobiusJob;
 import com.ebay.erl.mobius.core.mapred.TSVMapper;
+import com.ebay.erl.mobius.core.model.ColumnParser;
+import com.ebay.erl.mobius.core.model.Tuple;
 
 /**
  * Represents text-based and line-oriented files on HDFS.
@@ -27,6 +29,13 @@ import com.ebay.erl.mobius.core.mapred.TSVMapper;
  * of the schema, those values are put into the tuple
  * with the name IDX_$i, where $i starts from the length of
  * the given schema.
+ * <p>
+ * 
+ * All the values are strings unless the type of the column
+ * is specified by {@link #setColumnType(String, byte)}, then
+ * they are parsed once in the mapper, and the records with
+ * malformed values are counted as <code>INVALIDATE_RECORDS</code>
+ * and skipped.
  * 
  * 
  * 
@@ -93,6 +102,51 @@ public class TSVDatasetBuilder extends AbstractDatasetBuilder<TSVDatasetBuilder>
 		((TSVDataset)this.getDataset()).setDelimiter(delimiter);
 		return this;
 	}
+	
+	
+	/**
+	 * Specify the type of the <code>column</code>, the values
+	 * of the column are parsed into the type when read, so they
+	 * are compared and aggregated as native values, ex: 
+	 * <code>setColumnType("price", Tuple.DOUBLE_TYPE)</code>.
+	 * <p>
+	 * 
+	 * See {@link ColumnParser} for the supported types, the date
+	 * and time types are parsed in the JDBC escape format, use 
+	 * {@link #setColumnType(String, byte, String)} to specify a
+	 * different format.
+	 * 
+	 * @param column a column in the schema.
+	 * @param type the type of the column, ex: {@link Tuple#LONG_TYPE}.
+	 * @return the {@linkplain TSVDatasetBuilder} itself.
+	 */
+	public TSVDatasetBuilder setColumnType(String column, byte type)
+	{
+		return this.setColumnType(column, type, null);
+	}
+	
+	
+	/**
+	 * Specify the type of the <code>column</code>, and the 
+	 * {@link java.text.SimpleDateFormat} pattern of the values 
+	 * if the type is {@link Tuple#DATE_TYPE}, {@link Tuple#TIMESTAMP_TYPE}
+	 * or {@link Tuple#TIME_TYPE}, ex: <code>setColumnType("dt", Tuple.DATE_TYPE, "yyyyMMdd")</code>.
+	 * 
+	 * @param column a column in the schema.
+	 * @param type the type of the column, ex: {@link Tuple#DATE_TYPE}.
+	 * @param format the format of the values, null to use the default one.
+	 * @return the {@linkplain TSVDatasetBuilder} itself.
+	 */
+	public TSVDatasetBuilder setColumnType(String column, byte type, String format)
+	{
+		if( this.getDataset().getSchema()!=null && !this.getDataset().getSchema().contains(column.toLowerCase()) )
+		{
+			throw new IllegalArgumentException(column+" is not in the schema of "+this.getDataset().getName()+":"+this.getDataset().getSchema());
+		}
+		
+		((TSVDataset)this.getDataset()).setColumnParser(column, new ColumnParser(type, format));
+		return this;
+	}
 
 	@Override
 	protected Dataset newDataset(String datasetName) 
@@ -17,7 +17,10 @@ import java.util.zip.GZIPInputStream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.model.LazyTuple;
 import com.ebay.erl.mobius.core.model.Tuple;
 
 /**
@@ -126,10 +129,15 @@ class BigTupleListIterator implements CloseableIterator<Tuple>
 		// add on disk tuples first as they were inserted firstly.
 		if( bigList.buffer_on_disk!=null )
 		{
+			// the tuples read in reducers carry the job configuration,
+			// lazy unless it's turned off, the same as DataJoinValue.
+			Configuration conf	= bigList.getFirst()==null?null:bigList.getFirst().getConf();
+			boolean lazy		= conf==null || conf.getBoolean(ConfigureConstants.LAZY_TUPLE_DESERIALIZATION, true);
+			
 			// add on disk tuples buffer
 			for(File aFile:bigList.buffer_on_disk)
 			{
-				this.tupleSources.add(new DiskSource(sizePerBlock, queueIdx++, aFile));
+				this.tupleSources.add(new DiskSource(sizePerBlock, queueIdx++, aFile, lazy));
 			}
 		}
 		// add in memory tuples buffer
@@ -368,11 +376,18 @@ class BigTupleListIterator implements CloseableIterator<Tuple>
 		 */
 		private DataInputStream reader;
 		
+		/**
+		 * deserialize the tuples as {@link LazyTuple} or not,
+		 * see {@link ConfigureConstants#LAZY_TUPLE_DESERIALIZATION}.
+		 */
+		private final boolean lazy;
+		
 		
 		
-		public DiskSource(int bufferSize, int assignedQueueIndex, File on_disk)
+		public DiskSource(int bufferSize, int assignedQueueIndex, File on_disk, boolean lazy)
 		{
 			super(bufferSize, assignedQueueIndex);
+			this.lazy = lazy;
 			
 			try 
 			{
@@ -400,7 +415,9 @@ class BigTupleListIterator implements CloseableIterator<Tuple>
 		{
 			while ( this.buffer.size()<this.bufferSize && this.currentReadTuples<totalTuples )
 			{					
-				Tuple t = new Tuple();
+				// when lazy, only the columns accessed by 
+				// the caller are to be deserialized.
+				Tuple t = this.lazy?new LazyTuple():new Tuple();
 				try 
 				{
 					t.readFields(this.reader);
@@ -0,0 +1,773 @@
+package com.ebay.erl.mobius.core.collection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapred.Reporter;
+
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * Stores the distinct {@link Tuple}s added into it.
+ * <p>
+ *
+ * The tuples are serialized and kept in an open addressing
+ * hash set in memory, two tuples are the same if their
+ * serialized forms are the same, so the tuples shall have
+ * the same schema, and the values of a column shall be of
+ * the same type.
+ * <p>
+ *
+ * When the set takes more memory than the given budget,
+ * the tuples in memory are written into {@value #PARTITIONS}
+ * files on disk by their hash values, and the set is emptied
+ * for the new tuples.  The same tuples are always written into
+ * the same partition, so when iterating, each partition is
+ * loaded into memory and deduplicated separately; a partition
+ * still too large for the budget is partitioned again by the
+ * other bits of the hash values.  The files are created under
+ * <code>java.io.tmpdir</code>, which is the task's temporary
+ * directory (<code>mapred.child.tmp</code>) in a Hadoop task,
+ * and are deleted when the set is cleared or the JVM exits.
+ * <p>
+ *
+ * The distinct tuples are iterated in no particular order.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class BigTupleSet
+{
+	private static final Log LOGGER = LogFactory.getLog(BigTupleSet.class);
+
+	/**
+	 * the number of the partitions the tuples are written
+	 * into when the memory budget is exceeded.
+	 */
+	public static final int PARTITIONS = 16;
+
+	/**
+	 * the bits of the hash value to choose a partition, the
+	 * lower 32 bits are used by the in memory set.
+	 */
+	private static final int PARTITION_BITS = 4;
+
+	private static final int MAX_DEPTH = 32/PARTITION_BITS;
+
+
+	private final String[] schema;
+
+	private final long maxBytes;
+
+	private final Reporter reporter;
+
+	private final File workOutput = new File(System.getProperty("java.io.tmpdir"));
+
+	private final ByteSet memory = new ByteSet();
+
+	private final DataOutputBuffer serialized = new DataOutputBuffer();
+
+	/**
+	 * the partitions on disk, null if the tuples are all in
+	 * memory.
+	 */
+	private Partition[] partitions;
+
+	/**
+	 * removes the partitions when the JVM exits, registered
+	 * only while there are partitions on disk.
+	 */
+	private Thread shutdownHook;
+
+
+
+	/**
+	 * Create an instance of {@link BigTupleSet} to keep
+	 * the tuples of the given <code>schema</code>, within
+	 * <code>maxBytes</code> in memory.
+	 */
+	public BigTupleSet(String[] schema, long maxBytes, Reporter reporter)
+	{
+		this.schema		= schema.clone();
+		this.maxBytes	= maxBytes;
+		this.reporter	= reporter;
+	}
+
+
+
+	/**
+	 * Add the <code>tuple</code> into this set, if it's not
+	 * in the set already.
+	 */
+	public void add(Tuple tuple)
+	{
+		try
+		{
+			this.serialized.reset();
+			tuple.write(this.serialized);
+		}
+		catch(IOException e)
+		{
+			throw new RuntimeException("Cannot serialize tuple:"+tuple, e);
+		}
+
+		byte[] bytes	= this.serialized.getData();
+		int length		= this.serialized.getLength();
+
+		this.memory.add(bytes, 0, length, hash(bytes, 0, length));
+
+		if( this.memory.getSizeInBytes()>this.maxBytes )
+		{
+			this.spill();
+		}
+	}
+
+
+
+	/**
+	 * Return true if there is no tuple in this set.
+	 */
+	public boolean isEmpty()
+	{
+		return this.memory.size()==0 && this.partitions==null;
+	}
+
+
+
+	/**
+	 * Return the number of the distinct tuples in this set,
+	 * the tuples on disk, if any, are read and deduplicated
+	 * again.
+	 */
+	public long size()
+	{
+		if( this.partitions==null )
+			return this.memory.size();
+
+		long size = 0L;
+		Chunks chunks = new Chunks();
+		try
+		{
+			ByteSet aChunk;
+			while( (aChunk=chunks.next())!=null )
+			{
+				size += aChunk.size();
+			}
+		}
+		finally
+		{
+			chunks.close();
+		}
+		return size;
+	}
+
+
+
+	/**
+	 * Return the distinct tuples in this set, the schema of the
+	 * tuples is set already.
+	 */
+	public CloseableIterator<Tuple> iterator()
+	{
+		final Chunks chunks = new Chunks();
+
+		return new CloseableIterator<Tuple>(){
+
+			DataInputBuffer in = new DataInputBuffer();
+
+			ByteSet current;
+
+			int offset;
+
+			@Override
+			public boolean hasNext()
+			{
+				while( this.current==null || this.offset>=this.current.used )
+				{
+					this.current = chunks.next();
+					this.offset = 0;
+					if( this.current==null )
+						return false;
+				}
+				return true;
+			}
+
+			@Override
+			public Tuple next()
+			{
+				if( !this.hasNext() )
+					throw new NoSuchElementException();
+
+				int length = this.current.lengthAt(this.offset);
+				this.in.reset(this.current.arena, this.offset+4, length);
+				this.offset += 4+length;
+
+				Tuple result = new Tuple();
+				try
+				{
+					result.readFields(this.in);
+				}
+				catch(IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+				result.setSchema(schema.clone());
+				return result;
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void close()
+			{
+				chunks.close();
+			}
+		};
+	}
+
+
+
+	/**
+	 * Remove all the tuples in this set, include the ones
+	 * on disk, if any.
+	 */
+	public void clear()
+	{
+		this.memory.clear();
+
+		if( this.partitions!=null )
+		{
+			for( Partition aPartition:this.partitions )
+			{
+				aPartition.delete();
+			}
+			this.partitions = null;
+		}
+
+		if( this.shutdownHook!=null )
+		{
+			try
+			{
+				Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+			}
+			catch(IllegalStateException e)
+			{
+				// cleared by the hook when the JVM exits
+			}
+			this.shutdownHook = null;
+		}
+	}
+
+
+
+	/**
+	 * write the tuples in memory into the partitions on disk.
+	 */
+	private void spill()
+	{
+		if( this.partitions==null )
+		{
+			this.partitions = newPartitions(this.workOutput, 0);
+
+			this.shutdownHook = new Thread(){
+				@Override
+				public void run()
+				{
+					clear();
+				}
+			};
+			Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+		}
+
+		String message = "Writing "+this.memory.size()+" distinct tuples ("+this.memory.getSizeInBytes()+" bytes) into disk.";
+		LOGGER.info(message);
+		if( this.reporter!=null )
+		{
+			this.reporter.setStatus(message);
+			this.reporter.progress();
+		}
+
+		try
+		{
+			this.memory.writeTo(this.partitions, 0);
+		}
+		catch(IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+		this.memory.clear();
+	}
+
+
+
+	/**
+	 * Iterates the tuples of this set in chunks, each chunk is
+	 * the distinct tuples of a partition loaded into memory, or
+	 * the tuples in memory if there is no partition.
+	 */
+	private class Chunks
+	{
+		/**
+		 * the partitions to be loaded, including the ones
+		 * partitioned again when loading.
+		 */
+		private final LinkedList<Partition> pending = new LinkedList<Partition>();
+
+		private ByteSet loaded;
+
+		private boolean started = false;
+
+
+		Chunks()
+		{
+			if( partitions!=null )
+			{
+				// the tuples in memory are deduplicated
+				// with the ones on disk.
+				if( memory.size()>0 )
+					spill();
+				for( Partition aPartition:partitions )
+				{
+					aPartition.closeOutput();
+					this.pending.add(aPartition);
+				}
+			}
+		}
+
+
+		ByteSet next()
+		{
+			if( partitions==null )
+			{
+				if( this.started )
+					return null;
+				this.started = true;
+				return memory;
+			}
+
+			if( this.loaded==null )
+				this.loaded = new ByteSet();
+
+			while( !this.pending.isEmpty() )
+			{
+				Partition aPartition = this.pending.removeFirst();
+				this.loaded.clear();
+				try
+				{
+					if( this.load(aPartition) )
+						return this.loaded;
+				}
+				catch(IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+			return null;
+		}
+
+
+		/**
+		 * load the <code>partition</code> into {@link #loaded}, return
+		 * false if it's partitioned again as it's still too large.
+		 */
+		private boolean load(Partition partition)
+			throws IOException
+		{
+			if( partition.file==null )
+				return false;
+
+			Partition[] children = null;
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partition.file)));
+			try
+			{
+				byte[] bytes = new byte[64];
+				while( true )
+				{
+					long hash;
+					try
+					{
+						hash = in.readLong();
+					}
+					catch(EOFException e)
+					{
+						break;
+					}
+					int length = in.readInt();
+					if( bytes.length<length )
+						bytes = new byte[Math.max(length, bytes.length*2)];
+					in.readFully(bytes, 0, length);
+
+					this.loaded.add(bytes, 0, length, hash);
+
+					if( this.loaded.getSizeInBytes()>maxBytes && partition.depth+1<MAX_DEPTH )
+					{
+						if( children==null )
+						{
+							LOGGER.info("Partitioning "+partition.file.getAbsolutePath()+" again as it doesn't fit in memory.");
+							children = newPartitions(workOutput, partition.depth+1);
+						}
+						this.loaded.writeTo(children, partition.depth+1);
+						this.loaded.clear();
+						if( reporter!=null )
+							reporter.progress();
+					}
+				}
+			}
+			finally
+			{
+				in.close();
+				if( partition.depth>0 )
+					partition.delete();
+			}
+
+			if( children==null )
+				return true;
+
+			this.loaded.writeTo(children, partition.depth+1);
+			this.loaded.clear();
+			for( int i=children.length-1;i>=0;i-- )
+			{
+				children[i].closeOutput();
+				this.pending.addFirst(children[i]);
+			}
+			return false;
+		}
+
+
+		void close()
+		{
+			// the partitions partitioned again are
+			// not needed anymore.
+			for( Partition aPartition:this.pending )
+			{
+				if( aPartition.depth>0 )
+					aPartition.delete();
+			}
+			this.pending.clear();
+			this.loaded = null;
+		}
+	}
+
+
+
+	private static Partition[] newPartitions(File workOutput, int depth)
+	{
+		Partition[] result = new Partition[PARTITIONS];
+		for( int i=0;i<PARTITIONS;i++ )
+		{
+			result[i] = new Partition(workOutput, depth);
+		}
+		return result;
+	}
+
+
+
+	/**
+	 * 64 bits FNV-1a hash of the bytes, with the finalizer of
+	 * MurmurHash3 to mix the bits.
+	 */
+	static long hash(byte[] bytes, int offset, int length)
+	{
+		long h = 0xcbf29ce484222325L;
+		for( int i=offset;i<offset+length;i++ )
+		{
+			h ^= bytes[i] & 0xFF;
+			h *= 0x100000001b3L;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+
+
+	/**
+	 * A file on disk storing the serialized tuples of the same
+	 * partition, each tuple is stored as its hash value, the
+	 * length and the bytes.
+	 */
+	private static class Partition
+	{
+		private final File workOutput;
+
+		final int depth;
+
+		File file;
+
+		private DataOutputStream out;
+
+
+		Partition(File workOutput, int depth)
+		{
+			this.workOutput	= workOutput;
+			this.depth		= depth;
+		}
+
+
+		void write(long hash, byte[] bytes, int offset, int length)
+			throws IOException
+		{
+			if( this.out==null )
+			{
+				if( this.file==null )
+				{
+					if( !this.workOutput.exists() && !this.workOutput.mkdirs() && !this.workOutput.exists() )
+						throw new IOException("Cannot create directory:"+this.workOutput.getAbsolutePath());
+					this.file = File.createTempFile("unique", ".tuples", this.workOutput);
+				}
+				this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, true)));
+			}
+
+			this.out.writeLong(hash);
+			this.out.writeInt(length);
+			this.out.write(bytes, offset, length);
+		}
+
+
+		void closeOutput()
+		{
+			if( this.out!=null )
+			{
+				try
+				{
+					this.out.close();
+				}
+				catch(IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+				this.out = null;
+			}
+		}
+
+
+		void delete()
+		{
+			try
+			{
+				this.closeOutput();
+			}
+			catch(RuntimeException e)
+			{
+				LOGGER.warn("Error when closing temp file:"+this.file, e);
+			}
+
+			if( this.file!=null && !this.file.delete() )
+			{
+				LOGGER.warn("Cannot delete temp file:"+this.file.getAbsolutePath());
+			}
+			this.file = null;
+		}
+	}
+
+
+
+	/**
+	 * An open addressing (linear probing) hash set of byte arrays,
+	 * the arrays are appended into an arena, prefixed with their
+	 * lengths, and the slots of the table store the offsets of
+	 * the arrays in the arena.
+	 */
+	private static class ByteSet
+	{
+		private static final int INITIAL_SLOTS = 1024;
+
+		byte[] arena = new byte[4096];
+
+		/**
+		 * the number of the bytes used in the arena.
+		 */
+		int used = 0;
+
+		/**
+		 * the offsets plus one of the arrays, zero for
+		 * empty slot.
+		 */
+		private int[] slots = new int[INITIAL_SLOTS];
+
+		/**
+		 * the lower 32 bits of the hash values of the arrays
+		 * in the slots, compared before the arrays.
+		 */
+		private int[] hashes = new int[INITIAL_SLOTS];
+
+		/**
+		 * the full hash values of the arrays, in the order
+		 * of the arrays in the arena.
+		 */
+		private long[] fullHashes = new long[INITIAL_SLOTS];
+
+		private int size = 0;
+
+
+		int size()
+		{
+			return this.size;
+		}
+
+
+		/**
+		 * the estimated bytes of the arrays in this set, each
+		 * takes about two slots in the table and a hash value,
+		 * the capacities not used are not counted so a cleared
+		 * set can be reused.
+		 */
+		long getSizeInBytes()
+		{
+			return this.used+this.size*24L;
+		}
+
+
+		int lengthAt(int offset)
+		{
+			byte[] a = this.arena;
+			return ((a[offset] & 0xFF) << 24) | ((a[offset+1] & 0xFF) << 16) | ((a[offset+2] & 0xFF) << 8) | (a[offset+3] & 0xFF);
+		}
+
+
+		void add(byte[] bytes, int offset, int length, long hash)
+		{
+			int h		= (int)hash;
+			int mask	= this.slots.length-1;
+			int idx		= h & mask;
+
+			while( this.slots[idx]!=0 )
+			{
+				if( this.hashes[idx]==h && this.equals(this.slots[idx]-1, bytes, offset, length) )
+					return;
+				idx = (idx+1) & mask;
+			}
+
+			if( this.used+4+length>this.arena.length )
+			{
+				long newLength = Math.max(this.arena.length*2L, this.used+4L+length);
+				if( newLength>Integer.MAX_VALUE-8 )
+					throw new IllegalStateException("Too many bytes in a set, "+newLength+".");
+				this.arena = Arrays.copyOf(this.arena, (int)newLength);
+			}
+
+			byte[] a = this.arena;
+			a[this.used]	= (byte)(length >>> 24);
+			a[this.used+1]	= (byte)(length >>> 16);
+			a[this.used+2]	= (byte)(length >>> 8);
+			a[this.used+3]	= (byte)length;
+			System.arraycopy(bytes, offset, a, this.used+4, length);
+
+			this.slots[idx]		= this.used+1;
+			this.hashes[idx]	= h;
+			if( this.size==this.fullHashes.length )
+				this.fullHashes = Arrays.copyOf(this.fullHashes, this.size*2);
+			this.fullHashes[this.size] = hash;
+
+			this.used += 4+length;
+			this.size++;
+
+			// keep the load factor under 0.7
+			if( this.size*10L>=this.slots.length*7L )
+				this.rehash();
+		}
+
+
+		private boolean equals(int arenaOffset, byte[] bytes, int offset, int length)
+		{
+			if( this.lengthAt(arenaOffset)!=length )
+				return false;
+
+			byte[] a = this.arena;
+			int start = arenaOffset+4;
+			for( int i=0;i<length;i++ )
+			{
+				if( a[start+i]!=bytes[offset+i] )
+					return false;
+			}
+			return true;
+		}
+
+
+		private void rehash()
+		{
+			int[] newSlots	= new int[this.slots.length*2];
+			int[] newHashes	= new int[newSlots.length];
+			int mask		= newSlots.length-1;
+
+			for( int i=0;i<this.slots.length;i++ )
+			{
+				if( this.slots[i]==0 )
+					continue;
+
+				int idx = this.hashes[i] & mask;
+				while( newSlots[idx]!=0 )
+				{
+					idx = (idx+1) & mask;
+				}
+				newSlots[idx]	= this.slots[i];
+				newHashes[idx]	= this.hashes[i];
+			}
+			this.slots	= newSlots;
+			this.hashes	= newHashes;
+		}
+
+
+		/**
+		 * write the arrays in this set into the <code>partitions</code>,
+		 * by the bits of their hash values for the <code>depth</code>.
+		 */
+		void writeTo(Partition[] partitions, int depth)
+			throws IOException
+		{
+			int shift	= 64-PARTITION_BITS*(depth+1);
+			int offset	= 0;
+			for( int i=0;i<this.size;i++ )
+			{
+				long hash	= this.fullHashes[i];
+				int length	= this.lengthAt(offset);
+				int idx		= (int)((hash >>> shift) & (PARTITIONS-1));
+				partitions[idx].write(hash, this.arena, offset+4, length);
+				offset += 4+length;
+			}
+		}
+
+
+		void clear()
+		{
+			if( this.size>0 )
+			{
+				Arrays.fill(this.slots, 0);
+			}
+			this.used = 0;
+			this.size = 0;
+		}
+	}
+}
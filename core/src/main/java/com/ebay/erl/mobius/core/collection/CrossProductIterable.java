@@ -0,0 +1,241 @@
+package com.ebay.erl.mobius.core.collection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.hadoop.mapred.Reporter;
+
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * The cross product of a list of datasets, the merged
+ * tuples are computed on demand while iterating, no
+ * intermediate result is materialized.
+ * <p>
+ *
+ * The tuples are returned in the same order as nested
+ * loops over the datasets, the first dataset is the
+ * outermost loop, and the last dataset is the innermost
+ * one.  The first dataset is iterated only once for each
+ * call to {@link #iterator()}, the others are iterated once
+ * per combination of the tuples before them, so a dataset
+ * other than the first one is copied into a {@link BigTupleList}
+ * if it's not a {@link BigTupleList}, a {@link Collection}
+ * or a {@link CrossProductIterable}, which can be iterated
+ * multiple times.
+ * <p>
+ *
+ * This iterable can be iterated multiple times, as long as
+ * the first dataset can be.  The datasets shall not be
+ * changed while iterating.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class CrossProductIterable implements Iterable<Tuple>
+{
+	private final List<Iterable<Tuple>> datasets;
+
+
+
+	/**
+	 * Create the cross product of the <code>datasets</code>,
+	 * null datasets are ignored.
+	 *
+	 * @param reporter used by the {@link BigTupleList}s to
+	 * buffer the datasets that cannot be iterated multiple times,
+	 * can be null.
+	 */
+	@SafeVarargs
+	public CrossProductIterable(Reporter reporter, Iterable<Tuple>... datasets)
+	{
+		this.datasets = new ArrayList<Iterable<Tuple>>(datasets.length);
+		for( Iterable<Tuple> aDataset:datasets )
+		{
+			if( aDataset==null )
+				continue;
+
+			if( this.datasets.size()>0 && !isRestartable(aDataset) )
+			{
+				BigTupleList buffer = new BigTupleList(reporter);
+				buffer.addAll(aDataset);
+				aDataset = buffer;
+			}
+			this.datasets.add(aDataset);
+		}
+	}
+
+
+
+	@Override
+	public CloseableIterator<Tuple> iterator()
+	{
+		return new CrossProductIterator();
+	}
+
+
+
+	private static boolean isRestartable(Iterable<Tuple> dataset)
+	{
+		return dataset instanceof BigTupleList || dataset instanceof Collection || dataset instanceof CrossProductIterable;
+	}
+
+
+
+	private static void close(Iterator<Tuple> it)
+	{
+		if( it instanceof CloseableIterator )
+		{
+			((CloseableIterator<Tuple>)it).close();
+		}
+	}
+
+
+
+	/**
+	 * Keeps one iterator per dataset, and the merged
+	 * results of the current tuples of the datasets
+	 * up to each level, so only the levels after the
+	 * advanced one are merged again.
+	 */
+	private class CrossProductIterator implements CloseableIterator<Tuple>
+	{
+		private final int levels = datasets.size();
+
+		private final List<Iterator<Tuple>> iterators = new ArrayList<Iterator<Tuple>>(levels);
+
+		/**
+		 * merged[i] is the merged result of the current tuples
+		 * from dataset 0 to dataset i.
+		 */
+		private final Tuple[] merged = new Tuple[levels];
+
+		private Tuple next;
+
+		private boolean started = false;
+
+		private boolean finished = false;
+
+
+
+		@Override
+		public boolean hasNext()
+		{
+			if( this.next==null && !this.finished )
+			{
+				this.next = this.advance();
+				if( this.next==null )
+				{
+					this.close();
+				}
+			}
+			return this.next!=null;
+		}
+
+
+
+		@Override
+		public Tuple next()
+		{
+			if( !this.hasNext() )
+				throw new NoSuchElementException();
+
+			Tuple result	= this.next;
+			this.next		= null;
+			return result;
+		}
+
+
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+
+
+		@Override
+		public void close()
+		{
+			this.finished = true;
+			for( Iterator<Tuple> it:this.iterators )
+			{
+				CrossProductIterable.close(it);
+			}
+			this.iterators.clear();
+		}
+
+
+
+		private Tuple advance()
+		{
+			if( this.levels==0 )
+				return null;
+
+			int level;
+			if( !this.started )
+			{
+				this.started = true;
+				level = 0;
+			}
+			else
+			{
+				// find the innermost dataset that still has tuples
+				level = this.levels-1;
+				while( level>=0 && !this.iterators.get(level).hasNext() )
+				{
+					level--;
+				}
+
+				if( level<0 )
+					return null;
+
+				this.move(level);
+				level++;
+			}
+
+			// restart the datasets after the advanced one
+			for( int i=level;i<this.levels;i++ )
+			{
+				if( i<this.iterators.size() )
+				{
+					CrossProductIterable.close(this.iterators.get(i));
+					this.iterators.set(i, datasets.get(i).iterator());
+				}
+				else
+				{
+					this.iterators.add(datasets.get(i).iterator());
+				}
+
+				if( !this.iterators.get(i).hasNext() )
+				{
+					// one of the datasets is empty
+					return null;
+				}
+				this.move(i);
+			}
+			return this.merged[this.levels-1];
+		}
+
+
+
+		private void move(int level)
+		{
+			Tuple current = this.iterators.get(level).next();
+			this.merged[level] = level==0?current:Tuple.merge(this.merged[level-1], current);
+		}
+	}
+}
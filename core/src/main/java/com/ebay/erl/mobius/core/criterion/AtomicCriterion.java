@@ -3,6 +3,7 @@ package com.ebay.erl.mobius.core.criterion;
 import org.apache.hadoop.conf.Configuration;
 
 import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.model.Tuple.TupleColumnName;
 
 
 /**
@@ -28,6 +29,11 @@ abstract class AtomicCriterion extends TupleCriterion
 	protected Object value;
 	protected RelationalOperator op;
 	
+	/**
+	 * {@link #columnName} resolved, see {@link #getColumn()}.
+	 */
+	private transient TupleColumnName column;
+	
 	public AtomicCriterion(String columnName, Object value, RelationalOperator op)
 	{
 		this.columnName = columnName;
@@ -51,7 +57,7 @@ abstract class AtomicCriterion extends TupleCriterion
 	public boolean accept(Tuple tuple, Configuration configuration)
 	{		
 		// means the column is null, always return false
-		if( (tuple.get (columnName))==null )
+		if( (tuple.get (this.getColumn()))==null )
 			return false;
 		else
 			return super.accept (tuple, configuration);		
@@ -122,7 +128,23 @@ abstract class AtomicCriterion extends TupleCriterion
 	
 	protected boolean not_null(Tuple tuple)
 	{
-		Object value = tuple.get(this.columnName);
+		Object value = tuple.get(this.getColumn());
 		return value!=null;
 	}
+	
+	/**
+	 * Get the {@link #columnName} resolved into a
+	 * {@link TupleColumnName}, it is resolved only
+	 * once for all the tuples being evaluated.
+	 */
+	protected TupleColumnName getColumn()
+	{
+		TupleColumnName result = this.column;
+		if( result==null )
+		{
+			result = TupleColumnName.valueOf(this.columnName);
+			this.column = result;
+		}
+		return result;
+	}
 }
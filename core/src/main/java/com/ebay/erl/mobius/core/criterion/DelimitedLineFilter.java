@@ -0,0 +1,298 @@
+package com.ebay.erl.mobius.core.criterion;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+
+import com.ebay.erl.mobius.core.model.Tuple.TupleColumnName;
+import com.ebay.erl.mobius.util.Util;
+
+
+/**
+ * Evaluates the simple criteria on the string columns of a
+ * delimited text dataset directly on the bytes of the lines,
+ * so the lines not meeting them can be dropped before being
+ * decoded and split into {@link com.ebay.erl.mobius.core.model.Tuple}.
+ * <p>
+ *
+ * The following criteria on a column of the schema are compiled,
+ * {@link TupleRestrictions#eq(String, String)}, {@link TupleRestrictions#ne(String, String)},
+ * {@link TupleRestrictions#withinString(String, ArrayList)} and
+ * {@link TupleRestrictions#notNull(String)}.  A line is split the
+ * same way as {@link com.ebay.erl.mobius.util.Util#nonRegexSplit(String, String)},
+ * and the fields are compared in UTF-8 bytes, which are equal if
+ * and only if the strings are equal.
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class DelimitedLineFilter
+{
+	private static final Comparator<byte[]> BYTES_COMPARATOR = new Comparator<byte[]>(){
+		@Override
+		public int compare(byte[] b1, byte[] b2)
+		{
+			return WritableComparator.compareBytes(b1, 0, b1.length, b2, 0, b2.length);
+		}
+	};
+
+	private final byte[] delimiter;
+
+	/**
+	 * sorted by the index of the field they evaluate.
+	 */
+	private final FieldMatcher[] matchers;
+
+	private final TupleCriterion residual;
+
+
+	private DelimitedLineFilter(byte[] delimiter, FieldMatcher[] matchers, TupleCriterion residual)
+	{
+		this.delimiter	= delimiter;
+		this.matchers	= matchers;
+		this.residual	= residual;
+	}
+
+
+	/**
+	 * Compile the conjuncts of the <code>criteria</code> that can be
+	 * evaluated on the lines delimited by <code>delimiter</code> with
+	 * the given <code>schema</code>, return null if none of them can
+	 * be compiled.
+	 */
+	public static DelimitedLineFilter compile(TupleCriterion criteria, String[] schema, String delimiter)
+	{
+		if( criteria==null || delimiter==null || delimiter.isEmpty() )
+			return null;
+
+		List<FieldMatcher> matchers	= new ArrayList<FieldMatcher>();
+		TupleCriterion residual		= null;
+		for( TupleCriterion aConjunct:criteria.getConjuncts() )
+		{
+			FieldMatcher aMatcher = compile(aConjunct, schema);
+			if( aMatcher!=null )
+			{
+				matchers.add(aMatcher);
+			}
+			else
+			{
+				residual = residual==null?aConjunct:residual.and(aConjunct);
+			}
+		}
+
+		if( matchers.isEmpty() )
+			return null;
+
+		FieldMatcher[] sorted = matchers.toArray(new FieldMatcher[0]);
+		Arrays.sort(sorted, new Comparator<FieldMatcher>(){
+			@Override
+			public int compare(FieldMatcher m1, FieldMatcher m2)
+			{
+				return m1.field<m2.field?-1:(m1.field==m2.field?0:1);
+			}
+		});
+		return new DelimitedLineFilter(toBytes(delimiter), sorted, residual);
+	}
+
+
+	/**
+	 * Return the conjuncts not compiled into this filter, they
+	 * need to be evaluated on the parsed tuples, or null if all
+	 * of them are compiled.
+	 */
+	public TupleCriterion getResidual()
+	{
+		return this.residual;
+	}
+
+
+	/**
+	 * Return true if the <code>line</code> meets all the compiled
+	 * criteria.
+	 */
+	public boolean accept(Text line)
+	{
+		byte[] bytes	= line.getBytes();
+		int length		= line.getLength();
+
+		// an empty line has no field, all the columns are null.
+		if( length==0 )
+			return false;
+
+		int next	= 0;
+		int field	= 0;
+		int start	= 0;
+		while( next<this.matchers.length )
+		{
+			int end = Util.indexOf(bytes, start, length, this.delimiter);
+			if( end<0 )
+				end = length;
+
+			while( next<this.matchers.length && this.matchers[next].field==field )
+			{
+				if( !this.matchers[next].accept(bytes, start, end-start) )
+					return false;
+				next++;
+			}
+
+			if( end==length )
+				break;
+
+			start = end+this.delimiter.length;
+			field++;
+		}
+
+		// the rest of the matchers evaluate the fields beyond
+		// the end of the line, which are null.
+		return next==this.matchers.length;
+	}
+
+
+	@SuppressWarnings("unchecked")
+	private static FieldMatcher compile(TupleCriterion criterion, String[] schema)
+	{
+		String column = null;
+		if( criterion.getClass()==StringCriterion.class )
+			column = ((StringCriterion)criterion).columnName;
+		else if( criterion.getClass()==NotNullCriterion.class )
+			column = ((NotNullCriterion)criterion).column;
+		else
+			return null;
+
+		// the column must be a top level column in the schema,
+		// the last one wins if there are duplicated names.
+		TupleColumnName name = TupleColumnName.valueOf(column);
+		if( name.getMapKey()!=null )
+			return null;
+
+		int field = -1;
+		for( int i=0;i<schema.length;i++ )
+		{
+			if( schema[i].equalsIgnoreCase(name.getID()) )
+				field = i;
+		}
+		if( field<0 )
+			return null;
+
+		if( criterion instanceof NotNullCriterion )
+		{
+			return new FieldMatcher(field, RelationalOperator.NOT_NULL, null);
+		}
+
+		StringCriterion aStringCriterion = (StringCriterion)criterion;
+		switch( aStringCriterion.op )
+		{
+			case EQ:
+			case NE:
+				if( aStringCriterion.value==null )
+					return null;
+				return new FieldMatcher(field, aStringCriterion.op, new byte[][]{toBytes((String)aStringCriterion.value)});
+			case WITHIN:
+			case NOT_WITHIN:
+				List<String> values = (List<String>)aStringCriterion.value;
+				byte[][] encoded = new byte[values.size()][];
+				for( int i=0;i<encoded.length;i++ )
+				{
+					if( values.get(i)==null )
+						return null;
+					encoded[i] = toBytes(values.get(i));
+				}
+				Arrays.sort(encoded, BYTES_COMPARATOR);
+				return new FieldMatcher(field, aStringCriterion.op, encoded);
+			default:
+				return null;
+		}
+	}
+
+
+	private static byte[] toBytes(String value)
+	{
+		try
+		{
+			return value.getBytes("UTF-8");
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+
+
+	/**
+	 * Evaluates a field of a line.
+	 */
+	private static class FieldMatcher
+	{
+		final int field;
+
+		final RelationalOperator op;
+
+		/**
+		 * the values to compare with, sorted in bytes order.
+		 */
+		final byte[][] values;
+
+		FieldMatcher(int field, RelationalOperator op, byte[][] values)
+		{
+			this.field	= field;
+			this.op		= op;
+			this.values	= values;
+		}
+
+		boolean accept(byte[] bytes, int start, int length)
+		{
+			switch( this.op )
+			{
+				case EQ:
+				case WITHIN:
+					return this.indexOf(bytes, start, length)>=0;
+				case NE:
+				case NOT_WITHIN:
+					return this.indexOf(bytes, start, length)<0;
+				case NOT_NULL:
+					// not empty after trimmed, String#trim() removes the
+					// characters up to space, which are single bytes in UTF-8.
+					for( int i=start;i<start+length;i++ )
+					{
+						if( (bytes[i]&0xFF)>' ' )
+							return true;
+					}
+					return false;
+				default:
+					throw new IllegalStateException(this.op+" is not supported.");
+			}
+		}
+
+		private int indexOf(byte[] bytes, int start, int length)
+		{
+			int low		= 0;
+			int high	= this.values.length-1;
+			while( low<=high )
+			{
+				int mid		= (low+high)>>>1;
+				int diff	= WritableComparator.compareBytes(this.values[mid], 0, this.values[mid].length, bytes, start, length);
+				if( diff<0 )
+					low = mid+1;
+				else if( diff>0 )
+					high = mid-1;
+				else
+					return mid;
+			}
+			return -1;
+		}
+	}
+}
@@ -74,6 +74,22 @@ public class LogicalExpression extends TupleCriterion
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<TupleCriterion> getConjuncts()
+	{
+		if( this.operator==Operator.AND )
+		{
+			List<TupleCriterion> result = new LinkedList<TupleCriterion>();
+			result.addAll(this.leftCriterion.getConjuncts());
+			result.addAll(this.rightCriterion.getConjuncts());
+			return result;
+		}
+		return super.getConjuncts();
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,45 @@
+package com.ebay.erl.mobius.core.criterion;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.ebay.erl.mobius.core.model.Tuple;
+
+
+/**
+ * Accepts the tuples with the value of the given column 
+ * is not null nor empty string, see {@link TupleRestrictions#notNull(String)}.
+ * 
+ * 
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0, 
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ * 
+ * This product contains portions derived from Apache hadoop which is 
+ * licensed under the Apache License, Version 2.0, available at 
+ * http://hadoop.apache.org.
+ * 
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+class NotNullCriterion extends TupleCriterion 
+{
+	private static final long serialVersionUID = 1573625916312469904L;
+	
+	protected String column;
+	
+	NotNullCriterion(String column)
+	{
+		this.column = column;
+	}
+	
+	@Override
+	protected boolean evaluate(Tuple tuple, Configuration configuration)
+	{				
+		return tuple.get (this.column)!=null && tuple.getString (this.column).trim ().length ()>0;
+	}
+
+	@Override
+	public String[] getInvolvedColumns()
+	{
+		return new String[]{this.column};
+	}
+}
@@ -1,6 +1,8 @@
 package com.ebay.erl.mobius.core.criterion;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -135,6 +137,23 @@ public abstract class TupleCriterion implements Configurable, Serializable
 	public abstract String[] getInvolvedColumns();
 	
 	
+	/**
+	 * Split this criterion into the criteria concatenated 
+	 * by AND, a tuple meets this criterion if and only if 
+	 * it meets all of the returned criteria.
+	 * <p>
+	 * 
+	 * Return a list contains only this criterion if it is
+	 * not an AND expression.
+	 */
+	public List<TupleCriterion> getConjuncts()
+	{
+		List<TupleCriterion> result = new ArrayList<TupleCriterion>();
+		result.add(this);
+		return result;
+	}
+	
+	
 	@Override
 	public void setConf(Configuration conf)
 	{
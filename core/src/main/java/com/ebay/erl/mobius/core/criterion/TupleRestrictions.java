@@ -377,22 +377,7 @@ public class TupleRestrictions
 	 */
 	public static TupleCriterion notNull(final String column)
 	{
-		
-		return new TupleCriterion(){
-
-			private static final long serialVersionUID = 1573625916312469904L;
-
-			@Override
-			protected boolean evaluate(Tuple tuple, Configuration configuration)
-			{				
-				return tuple.get (column)!=null && tuple.getString (column).trim ().length ()>0;
-			}
-
-			@Override
-			public String[] getInvolvedColumns()
-			{
-				return new String[]{column};
-			}};
+		return new NotNullCriterion(column);
 	}
 	
 	
@@ -1,21 +1,23 @@
 package com.ebay.erl.mobius.core.datajoin;
 
 import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.Arrays;
 
-import org.apache.hadoop.io.DataInputBuffer;
-import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.io.WritableComparator;
-import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.io.WritableUtils;
 
 import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.model.NormalizedKey;
 import com.ebay.erl.mobius.core.model.Tuple;
 import com.ebay.erl.mobius.core.model.TupleColumnComparator;
+import com.ebay.erl.mobius.core.model.TupleRawComparator;
+import com.ebay.erl.mobius.core.model.TupleSchemaRegistry;
 import com.ebay.erl.mobius.core.sort.Sorter;
 import com.ebay.erl.mobius.util.SerializableUtil;
-import com.ebay.erl.mobius.util.Util;
 /**
  * <p>
  * This product is licensed under the Apache License,  Version 2.0, 
@@ -40,6 +42,13 @@ public class DataJoinKey extends Tuple {
 	//public static String SORT_KEYWORD_FIELDNAME		= "02_MOBIUS_SORT_KEYWORD";
 	//public static String SORT_COMPARATOR_FIELDNAME	= "03_MOBIUS_SORT_COMPARATOR";
 	
+	// resolved once, the key and the dataset ID are accessed for every comparison
+	private static final TupleColumnName _KEY_COLUMN		= TupleColumnName.valueOf(ACUTAL_KEY);
+	private static final TupleColumnName _DATASET_ID_COLUMN	= TupleColumnName.valueOf(DATASET_ID);
+	
+	// sorted already, shared by all the keys so their compact schema is resolved once
+	private static final String[] _SCHEMA = new String[]{ACUTAL_KEY, DATASET_ID};
+	
 	// to be called by Hadoop on org.apache.hadoop.mapred.JobConf.getOutputKeyComparator
 	public DataJoinKey(){}
 
@@ -55,6 +64,10 @@ public class DataJoinKey extends Tuple {
 	
 	public void set(Byte datasetID, WritableComparable<?> key, WritableComparable<?> sortKeyword, Class<?> sortComparator)
 	{
+		if( this.namesToIdxMapping.isEmpty() )
+		{
+			this.setSchema(_SCHEMA);
+		}
 		this.put(ACUTAL_KEY, key);
 		this.put(DATASET_ID, datasetID.byteValue());		
 		//this.put(SORT_KEYWORD_FIELDNAME, sortKeyword==null?NullWritable.get():sortKeyword);
@@ -68,18 +81,31 @@ public class DataJoinKey extends Tuple {
 		super.readFields(in);
 		
 		// ordering matters
-		this.setSchema(new String[]{ACUTAL_KEY, DATASET_ID/*, SORT_KEYWORD_FIELDNAME, SORT_COMPARATOR_FIELDNAME*/});
+		this.setSchema(_SCHEMA);
+	}
+	
+	
+	/**
+	 * Serialize in the compact form if the schemas are
+	 * registered in the job configuration, see 
+	 * {@link TupleSchemaRegistry}.
+	 */
+	@Override
+	public void write(DataOutput out)
+		throws IOException 
+	{
+		this.write(out, TupleSchemaRegistry.getInstance(this.conf));
 	}
 	
 	
 	public WritableComparable getKey() 
 	{
-		return (WritableComparable<?>)this.get(ACUTAL_KEY);
+		return (WritableComparable<?>)this.get(_KEY_COLUMN);
 	}
 
 	public Byte getDatasetID() 
 	{
-		return this.getByte(DATASET_ID);
+		return (Byte)this.get(_DATASET_ID_COLUMN);
 	}
 	
 	public WritableComparable getSortKeyword() 
@@ -96,7 +122,11 @@ public class DataJoinKey extends Tuple {
 	
 	private static Sorter[] _SORTERS;
 	
-	private Sorter[] getSorter()
+	/**
+	 * Get the sorters of a total sort job from the configuration
+	 * of this key, empty if the job has no sorter.
+	 */
+	public Sorter[] getSorter()
 	{
 		if( _SORTERS==null )
 		{
@@ -119,14 +149,35 @@ public class DataJoinKey extends Tuple {
 		return _SORTERS;
 	}
 
+	/**
+	 * Get the order preserving binary form of the key of this
+	 * {@link DataJoinKey}, encoded according to the sorters of
+	 * the job, or null if the key cannot be normalized, see
+	 * {@link NormalizedKey}.
+	 * <p>
+	 * 
+	 * The returned instance is reused by the next call.
+	 */
+	public NormalizedKey getNormalizedKey()
+	{
+		Object key = this.get(_KEY_COLUMN);
+		if( !(key instanceof Tuple) )
+			return null;
+		
+		if( _NORMALIZED_KEY==null )
+			_NORMALIZED_KEY = new NormalizedKey();
+		
+		return _NORMALIZED_KEY.set((Tuple)key, this.getSorter())?_NORMALIZED_KEY:null;
+	}
+
 	@Override
 	public int compareTo(Tuple other) 
 	{
-		WritableComparable<?> key = (WritableComparable<?>)other.get(ACUTAL_KEY);
+		WritableComparable<?> key = (WritableComparable<?>)other.get(_KEY_COLUMN);
 		int cmp = _COLUMN_COMPARATOR.compareKey(this.getKey(), key, this.getSorter(), this.conf);
 		if(cmp!=0) return cmp;
 		
-		cmp = getDatasetID().compareTo(other.getByte(DATASET_ID));
+		cmp = getDatasetID().compareTo((Byte)other.get(_DATASET_ID_COLUMN));
 		if(cmp!=0) return cmp;
 		
 		return 0;
@@ -150,138 +201,162 @@ public class DataJoinKey extends Tuple {
 
 
 
-	public static class Comparator extends WritableComparator
+	/**
+	 * Grouping comparator, compares only the keys, without the 
+	 * dataset IDs, so the values of the same key from all the 
+	 * datasets go to the same reduce iteration.  The keys are
+	 * compared in place without being deserialized.
+	 */
+	public static class Comparator extends WritableComparator implements Configurable
 	{
+		private Configuration conf;
+		
+		/**
+		 * to get the sorters from the <code>conf</code>.
+		 */
+		private final DataJoinKey key1 = new DataJoinKey();
+		
+		private final TupleRawComparator rawComparator = new TupleRawComparator();
+		
 		public Comparator() 
 		{
 			super(DataJoinKey.class);
 		}
+		
+		@Override
+		public Configuration getConf()
+		{
+			return this.conf;
+		}
+		
+		@Override
+		public void setConf(Configuration conf)
+		{
+			this.conf = conf;
+			this.key1.setConf(conf);
+			this.rawComparator.setConf(conf);
+		}
+		
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
+		{
+			return compareKeys(b1, getKeyPosition(b1, s1), s1+l1, b2, getKeyPosition(b2, s2), s2+l2, this.rawComparator, this.key1.getSorter());
+		}
 
 		@Override
 		public int compare(WritableComparable a, WritableComparable b) {
 			if (a instanceof DataJoinKey && b instanceof DataJoinKey){
-				return ((DataJoinKey)a).getKey().compareTo(((DataJoinKey)b).getKey());
+				DataJoinKey k1 = (DataJoinKey)a;
+				DataJoinKey k2 = (DataJoinKey)b;
+				return k1._COLUMN_COMPARATOR.compareKey(k1.getKey(), k2.getKey(), this.key1.getSorter(), this.conf);
 			}
 			return super.compare(a, b);
 		}
 	}
 	
-	private WritableComparable getKey(byte type, DataInputBuffer input)
-		throws IOException
+	private final TupleColumnComparator _COLUMN_COMPARATOR = new TupleColumnComparator();
+	
+	/**
+	 * created on demand, only the instances used as comparator need it.
+	 */
+	private TupleRawComparator _RAW_COMPARATOR;
+	
+	/**
+	 * created on demand, only used by {@link EvenlyPartitioner}.
+	 */
+	private NormalizedKey _NORMALIZED_KEY;
+	
+	/**
+	 * Get the position of the type of the key column in
+	 * a serialized {@link DataJoinKey} starting at <code>s</code>, 
+	 * it's after the number of columns, or the schema ID and 
+	 * the null bitmap in compact form.  The columns of a 
+	 * {@link DataJoinKey} are never null, so the type and 
+	 * value of the columns follow the header in both forms.
+	 */
+	private static int getKeyPosition(byte[] b, int s)
 	{
-		if( type==Tuple.NULL_WRITABLE_TYPE )
-			return NullWritable.get();
-		else if (type==Tuple.TUPLE_TYPE)
+		if( b[s]==COMPACT_FORM )
 		{
-			Tuple newTuple = new Tuple();
-			newTuple.readFields(input);
-			return newTuple;
+			return s+1+WritableUtils.decodeVIntSize(b[s+1])+1;
 		}
 		else
 		{
-			WritableComparable w = (WritableComparable)ReflectionUtils.newInstance( Util.getClass(input.readUTF()), conf);
-			w.readFields(input);
-			return w;
+			return s+4;
+		}
+	}
+	
+	/**
+	 * compare the key columns of two serialized {@link DataJoinKey}s
+	 * in place, the key columns start at <code>k1</code> and 
+	 * <code>k2</code> (the position of their types).  If they are
+	 * equal, the position right after the key columns can be
+	 * retrieved from the <code>comparator</code>.
+	 */
+	private static int compareKeys(byte[] b1, int k1, int e1, byte[] b2, int k2, int e2, TupleRawComparator comparator, Sorter[] sorters)
+	{
+		byte type1 = b1[k1];
+		byte type2 = b2[k2];
+		
+		if( type1==Tuple.TUPLE_TYPE && type2==Tuple.TUPLE_TYPE )
+		{
+			return comparator.compare(b1, k1+1, e1-k1-1, b2, k2+1, e2-k2-1, sorters);
+		}
+		else if( type1==Tuple.NULL_WRITABLE_TYPE && type2==Tuple.NULL_WRITABLE_TYPE )
+		{
+			// consider equal
+			return 0;
+		}
+		else
+		{
+			// DataJoinKey only support NullWritable and Tuple for the DataJoinKey#KEY_FIELDNAME
+			throw new IllegalArgumentException("Cannot compare "+Tuple.getTypeString(type1)+" and "+Tuple.getTypeString(type2));
 		}
 	}
-
-
-	private final TupleColumnComparator _COLUMN_COMPARATOR = new TupleColumnComparator();
 	
 	@Override
 	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) 
 	{
-		DataInputBuffer d1 = new DataInputBuffer();
-		d1.reset(b1, s1, l1);
+		// the comparing ordering: 
+		// 1. DataJoinKey#KEY_FIELDNAME
+		// 2. DataJoinKey#DATASET_ID_FIELDNAME
+		// 3. DataJoinKey#SORT_KEYWORD_FIELDNAME - removed
+		// 4. DataJoinKey#SORT_COMPARATOR_FIELDNAME - removed
+		
+		int k1 = getKeyPosition(b1, s1);
+		int k2 = getKeyPosition(b2, s2);
+		
+		//////////////////////////////////////////////////////////
+		// compare KEY, values from DataJoinKey#KEY_FIELDNAME
+		// KEY represents the actual key user specified, it's 
+		// compared in place without being deserialized.
+		///////////////////////////////////////////////////////////
+		if( _RAW_COMPARATOR==null )
+			_RAW_COMPARATOR = new TupleRawComparator();
+		_RAW_COMPARATOR.setConf(this.conf);
+		int _compare_result = compareKeys(b1, k1, s1+l1, b2, k2, s2+l2, _RAW_COMPARATOR, this.getSorter());
+		
+		// if they are not the same, these two records should go to
+		// different reducer, or different reduce iteration.
+		if(_compare_result != 0) return _compare_result; 
 		
-		DataInputBuffer d2 = new DataInputBuffer();
-		d2.reset(b2, s2, l2);
 		
-		int _compare_result = Integer.MAX_VALUE;
 		
-		try
+		//////////////////////////////////////////////////////////////////////////
+		// compare DATASET_ID, values from DataJoinKey#DATASET_ID_FIELDNAME,
+		// at this point, the keys are the same, they should go to the same
+		// reducer, we need to make sure the values from DATASET1 always come
+		// before DATASET2, so we need to compare the DATASET_ID here.
+		//////////////////////////////////////////////////////////////////////////
+		int d1 = b1[k1]==Tuple.TUPLE_TYPE?_RAW_COMPARATOR.getEnd1():k1+1;
+		int d2 = b2[k2]==Tuple.TUPLE_TYPE?_RAW_COMPARATOR.getEnd2():k2+1;
+		
+		if( b1[d1]!=Tuple.BYTE_TYPE || b2[d2]!=Tuple.BYTE_TYPE )
 		{
-			// the comparing ordering: 
-			// 1. DataJoinKey#KEY_FIELDNAME
-			// 2. DataJoinKey#DATASET_ID_FIELDNAME
-			// 3. DataJoinKey#SORT_KEYWORD_FIELDNAME - removed
-			// 4. DataJoinKey#SORT_COMPARATOR_FIELDNAME - removed
-			
-			// read number of columns from the two tuple,
-			// but there is no need to compare the length
-			// of columns, we just read the values.
-			d1.readInt();
-			d2.readInt();
-			
-			
-			
-			//////////////////////////////////////////////////////////
-			// compare KEY, values from DataJoinKey#KEY_FIELDNAME
-			// KEY represents the actual key user specified
-			///////////////////////////////////////////////////////////
-			byte type1 = d1.readByte();
-			byte type2 = d2.readByte();
-			_COLUMN_COMPARATOR.setType(type1, type2);
-			
-			
-			// writable, check if they are Tuple or NullWritable
-			if( type1==Tuple.NULL_WRITABLE_TYPE && type2==Tuple.NULL_WRITABLE_TYPE )
-			{
-				// consider equal, do nothing
-				_compare_result = 0;
-			}
-			else if ( type1==Tuple.TUPLE_TYPE && type2==Tuple.TUPLE_TYPE )
-			{
-				// both are Tuple
-				Tuple k1 = (Tuple)getKey(type1, d1);
-				Tuple k2 = (Tuple)getKey(type2, d2);
-				_compare_result = _COLUMN_COMPARATOR.compareKey(k1, k2, this.getSorter(), conf);
-			}
-			else
-			{
-				// DataJoinKey only support NullWritable and Tuple for the DataJoinKey#KEY_FIELDNAME
-				throw new IllegalArgumentException("Cannot compare "+Tuple.getTypeString(type1)+" and "+Tuple.getTypeString(type2));
-			}
-			
-			
-			// if they are not the same, these two records should go to
-			// different reducer, or different reduce iteration.
-			if(_compare_result != 0) return _compare_result; 
-			
-			
-			
-			//////////////////////////////////////////////////////////////////////////
-			// compare DATASET_ID, values from DataJoinKey#DATASET_ID_FIELDNAME,
-			// at this point, the keys are the same, they should go to the same
-			// reducer, we need to make sure the values from DATASET1 always come
-			// before DATASET2, so we need to compare the DATASET_ID here.
-			//////////////////////////////////////////////////////////////////////////
-			try
-			{
-				_COLUMN_COMPARATOR.setType(d1.readByte(), d2.readByte());
-				_compare_result = _COLUMN_COMPARATOR.compare(d1, d2, this.conf);
-				if(_compare_result != 0) return _compare_result;
-			}catch(IOException e)
-			{
-				byte[] b = new byte[l1];
-				for( int i=0;i<l1;i++ )
-				{
-					b[i] = b1[s1+i];
-				}
-				System.err.println(Arrays.toString(b));
-				System.err.println("type1:"+type1+", type2:"+type2);
-				throw e;
-			}
-			
-			return 0;
-			
+			throw new IllegalArgumentException("Dataset ID is not in "+Tuple.getTypeString(Tuple.BYTE_TYPE)+
+					", type1:"+Tuple.getTypeString(b1[d1])+", type2:"+Tuple.getTypeString(b2[d2]));
 		}
-		catch(IOException e)
-		{
-			throw new RuntimeException(e);
-		} 
+		return b1[d1+1]-b2[d2+1];
 	}
 
 }
-
- 
@@ -1,11 +1,16 @@
 package com.ebay.erl.mobius.core.datajoin;
 
 import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.WritableComparable;
 
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.model.LazyTuple;
 import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.model.TupleSchemaRegistry;
 
 
 /**
@@ -24,6 +29,35 @@ public class DataJoinValue extends Tuple{
 	
 	public static String DATASET_ID		= "00_MOBIUS_DATASETID";
 	public static String ACTUAL_VALUE	= "01_MOBIUS_VALUE";
+	public static String ROW_TYPE		= "02_MOBIUS_ROW_TYPE";
+	
+	/**
+	 * a row emitted by a mapper, to be consumed by all the
+	 * functions.
+	 */
+	public static final byte RAW_ROW			= 0;
+	
+	/**
+	 * a row of the partial results computed by a combiner, 
+	 * to be consumed only by the functions run in the combiner.
+	 */
+	public static final byte PARTIAL_ROW		= 1;
+	
+	/**
+	 * a row emitted by a mapper and consumed by the functions 
+	 * run in a combiner already, to be consumed only by the
+	 * other functions.
+	 */
+	public static final byte PASS_THROUGH_ROW	= 2;
+	
+	// resolved once, the values are accessed for every record in reducers
+	private static final TupleColumnName _DATASET_ID_COLUMN	= TupleColumnName.valueOf(DATASET_ID);
+	private static final TupleColumnName _VALUE_COLUMN		= TupleColumnName.valueOf(ACTUAL_VALUE);
+	private static final TupleColumnName _ROW_TYPE_COLUMN	= TupleColumnName.valueOf(ROW_TYPE);
+	
+	// sorted already, shared by all the values so their compact schema is resolved once
+	private static final String[] _SCHEMA				= new String[]{DATASET_ID, ACTUAL_VALUE};
+	private static final String[] _SCHEMA_WITH_ROW_TYPE	= new String[]{DATASET_ID, ACTUAL_VALUE, ROW_TYPE};
 
 	// to be called by 
 	// org.apache.hadoop.io.serializer.WritableSerialization$WritableDeserializer.deserialize	
@@ -34,20 +68,55 @@ public class DataJoinValue extends Tuple{
 		set(datasetID, value);
 	}
 	
+	/**
+	 * Create a value of the given <code>rowType</code>, {@link #RAW_ROW},
+	 * {@link #PARTIAL_ROW} or {@link #PASS_THROUGH_ROW}.
+	 */
+	public DataJoinValue(Byte datasetID, WritableComparable<?> value, byte rowType) 
+	{
+		// the raw rows are serialized without the row type
+		if( rowType!=RAW_ROW )
+		{
+			this.setSchema(_SCHEMA_WITH_ROW_TYPE);
+		}
+		
+		set(datasetID, value);
+		
+		if( rowType!=RAW_ROW )
+		{
+			this.put(ROW_TYPE, rowType);
+		}
+	}
+	
 	public void set(Byte datasetID, WritableComparable<?> value)
 	{
+		if( this.namesToIdxMapping.isEmpty() )
+		{
+			this.setSchema(_SCHEMA);
+		}
 		this.put(DATASET_ID, datasetID.byteValue());
 		this.put(ACTUAL_VALUE, value);
 	}
 	
+	/**
+	 * Get the type of this row, {@link #RAW_ROW}, {@link #PARTIAL_ROW}
+	 * or {@link #PASS_THROUGH_ROW}.
+	 */
+	public byte getRowType()
+	{
+		if( this.values.size()<3 )
+			return RAW_ROW;
+		return (Byte)this.get(_ROW_TYPE_COLUMN);
+	}
+	
 	public Byte getDatasetID() 
 	{
-		return this.getByte(DATASET_ID);
+		return (Byte)this.get(_DATASET_ID_COLUMN);
 	}
 
 	public WritableComparable<?> getValue() 
 	{
-		return (WritableComparable<?>)this.get(ACTUAL_VALUE);
+		return (WritableComparable<?>)this.get(_VALUE_COLUMN);
 	}
 	
 	@Override
@@ -57,7 +126,48 @@ public class DataJoinValue extends Tuple{
 		super.readFields(in);
 		
 		// ordering matters
-		this.setSchema(new String[]{DATASET_ID, ACTUAL_VALUE});
+		if( this.values.size()<3 )
+			this.setSchema(_SCHEMA);
+		else
+			this.setSchema(_SCHEMA_WITH_ROW_TYPE);
+	}
+	
+	
+	/**
+	 * Serialize in the compact form if the schemas are
+	 * registered in the job configuration, the actual value
+	 * is also serialized in the compact form if its schema is
+	 * registered, see {@link TupleSchemaRegistry}.
+	 */
+	@Override
+	public void write(DataOutput out)
+		throws IOException 
+	{
+		this.write(out, TupleSchemaRegistry.getInstance(this.conf));
+	}
+	
+	
+	/**
+	 * the configuration {@link #lazy} was resolved from.
+	 */
+	private Configuration lazyResolvedFrom;
+	
+	private boolean lazy = true;
+	
+	/**
+	 * The actual value is deserialized as a {@link LazyTuple}
+	 * unless {@link ConfigureConstants#LAZY_TUPLE_DESERIALIZATION}
+	 * is set to false.
+	 */
+	@Override
+	protected boolean deserializeLazily()
+	{
+		if( this.conf!=null && this.conf!=this.lazyResolvedFrom )
+		{
+			this.lazy				= this.conf.getBoolean(ConfigureConstants.LAZY_TUPLE_DESERIALIZATION, true);
+			this.lazyResolvedFrom	= this.conf;
+		}
+		return this.lazy;
 	}
 
 
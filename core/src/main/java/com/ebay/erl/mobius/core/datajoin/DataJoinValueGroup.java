@@ -45,6 +45,18 @@ public class DataJoinValueGroup<IV extends WritableComparable> implements Iterat
 		return this.nextDatasetID;
 	}
 	
+	/**
+	 * Get the row type of the value returned last by the
+	 * <code>values</code> iterator, {@link DataJoinValue#RAW_ROW}
+	 * if it's not returned by {@link #next()}.
+	 */
+	public static byte getRowType(Iterator<?> values)
+	{
+		if( values instanceof DataJoinValueGroup.InternalIterator )
+			return ((DataJoinValueGroup<?>.InternalIterator)values).getRowType();
+		return DataJoinValue.RAW_ROW;
+	}
+	
 	@Override
 	public boolean hasNext() 
 	{
@@ -77,10 +89,20 @@ public class DataJoinValueGroup<IV extends WritableComparable> implements Iterat
 
 		private Byte datasetID;
 		
+		private byte rowType = DataJoinValue.RAW_ROW;
+		
 		public InternalIterator(Byte datasetID){
 			this.datasetID = datasetID;
 		}
 		
+		/**
+		 * Get the row type of the value returned by the last
+		 * {@link #next()}, see {@link DataJoinValue#getRowType()}.
+		 */
+		public byte getRowType(){
+			return this.rowType;
+		}
+		
 		@Override
 		public boolean hasNext() {
 			if( DataJoinValueGroup.this.nextValue != null && datasetID.equals(DataJoinValueGroup.this.nextDatasetID)){
@@ -96,6 +118,7 @@ public class DataJoinValueGroup<IV extends WritableComparable> implements Iterat
 				throw new NoSuchElementException();
 			}
 			IV ret = (IV)DataJoinValueGroup.this.nextValue.getValue();
+			this.rowType = DataJoinValueGroup.this.nextValue.getRowType();
 			if(DataJoinValueGroup.this.values.hasNext()){
 				DataJoinValueGroup.this.nextValue = DataJoinValueGroup.this.values.next();
 				DataJoinValueGroup.this.nextDatasetID = DataJoinValueGroup.this.nextValue.getDatasetID();
@@ -4,23 +4,32 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.BinaryComparable;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.SequenceFile;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Partitioner;
 import org.apache.hadoop.util.ReflectionUtils;
 
+import com.ebay.erl.mobius.core.model.NormalizedKey;
 import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.model.TupleColumnComparator;
+import com.ebay.erl.mobius.core.sort.Sorter;
 
 /**
  * Majority of the codes are copied from 
  * org.apache.hadoop.mapred.lib.TotalOrderPartitioner.
+ * <p>
+ * 
+ * The keys are located with the trie of the normalized keys,
+ * see {@link NormalizedKey}, when all the partition keys can
+ * be normalized, otherwise the keys are located using a binary
+ * search with {@link TupleColumnComparator#compareKey}.
  * 
  * <p>
  * This product is licensed under the Apache License,  Version 2.0, 
@@ -37,23 +46,34 @@ public class EvenlyPartitioner<K extends WritableComparable,V>
 		implements Partitioner<K,V> {
 
 	  private Node partitions;
+	  
+	  /**
+	   * binary search on the partition keys, for the keys cannot
+	   * be located by the trie, null if the trie is not built.
+	   */
+	  private Node keySearch;
+	  
+	  /**
+	   * the tag of the non-null values of each column in the 
+	   * normalized partition keys, 0 if all the values are null.
+	   */
+	  private byte[] columnTags;
 	  public static final String DEFAULT_PATH = "_partition.lst";
 
 	  public EvenlyPartitioner() { }
 
 	  /**
 	   * Read in the partition file and build indexing data structures.
-	   * If the keytype is {@link org.apache.hadoop.io.BinaryComparable} and
+	   * If all the partition keys can be normalized (see {@link NormalizedKey}) and
 	   * <tt>total.order.partitioner.natural.order</tt> is not false, a trie
 	   * of the first <tt>total.order.partitioner.max.trie.depth</tt>(2) + 1 bytes
-	   * will be built. Otherwise, keys will be located using a binary search of
-	   * the partition keyset using the {@link org.apache.hadoop.io.RawComparator}
-	   * defined for this job. The input file must be sorted with the same
-	   * comparator and contain {@link
+	   * of the normalized keys will be built. Otherwise, keys will be located using 
+	   * a binary search of the partition keyset using the sorters defined for this 
+	   * job. The input file must be sorted with the same sorters and contain {@link
 	     org.apache.hadoop.mapred.JobConf#getNumReduceTasks} - 1 keys.
 	   */
 	  @SuppressWarnings("unchecked") // keytype from conf not static
-	  public void configure(JobConf job) {
+	  public void configure(final JobConf job) {
 	    try {
 	      String parts = getPartitionFile(job);
 	      final Path partFile = new Path(parts);
@@ -66,8 +86,17 @@ public class EvenlyPartitioner<K extends WritableComparable,V>
 	      if (splitPoints.length != job.getNumReduceTasks() - 1) {
 	        throw new IOException("Wrong number of partitions in keyset");
 	      }
-	      RawComparator<K> comparator =
-	        (RawComparator<K>) job.getOutputKeyComparator();
+	      // same ordering as the sort comparator of the job, see
+	      // DataJoinKey#compareTo
+	      DataJoinKey keyWithConf = new DataJoinKey();
+	      keyWithConf.setConf(job);
+	      final Sorter[] sorters = keyWithConf.getSorter();
+	      final TupleColumnComparator columnComparator = new TupleColumnComparator();
+	      Comparator<K> comparator = new Comparator<K>() {
+	        public int compare(K k1, K k2) {
+	          return columnComparator.compareKey(k1, k2, sorters, job);
+	        }
+	      };
 	      for (int i = 0; i < splitPoints.length - 1; ++i) {
 	        if (comparator.compare(splitPoints[i], splitPoints[i+1]) >= 0) {
 	          throw new IOException("Split points are out of order");
@@ -75,10 +104,12 @@ public class EvenlyPartitioner<K extends WritableComparable,V>
 	      }
 	      boolean natOrder =
 	        job.getBoolean("total.order.partitioner.natural.order", true);
-	      if (natOrder && BinaryComparable.class.isAssignableFrom(Tuple.class)) {
-	        partitions = buildTrie((BinaryComparable[])splitPoints, 0,
-	            splitPoints.length, new byte[0],
+	      NormalizedKey[] normalizedSplitPoints = natOrder ? normalize(splitPoints, job) : null;
+	      if (normalizedSplitPoints != null) {
+	        partitions = buildTrie(normalizedSplitPoints, 0,
+	            normalizedSplitPoints.length, new byte[0],
 	            job.getInt("total.order.partitioner.max.trie.depth", 2));
+	        keySearch = new BinarySearchNode(splitPoints, comparator);
 	      } else {
 	        partitions = new BinarySearchNode(splitPoints, comparator);
 	      }
@@ -91,8 +122,70 @@ public class EvenlyPartitioner<K extends WritableComparable,V>
 	  @SuppressWarnings("unchecked") // is memcmp-able and uses the trie
 	  public int getPartition(K key, V value, int numPartitions) {
 		  DataJoinKey k = (DataJoinKey)key;
+		  if (keySearch != null) {
+		    NormalizedKey normalized = k.getNormalizedKey();
+		    if (normalized != null && isComparable(normalized)) {
+		      return partitions.findPartition(normalized);
+		    }
+		    return keySearch.findPartition(k.getKey());
+		  }
 	    return partitions.findPartition(k.getKey());
 	  }
+	  
+	  /**
+	   * Normalize the partition keys with the sorters of the job, return
+	   * null if one of them cannot be normalized, or the non-null values
+	   * of a column are not of the same tag, or the normalized keys are
+	   * not strictly increasing.
+	   */
+	  private NormalizedKey[] normalize(K[] splitPoints, JobConf job) {
+	    NormalizedKey[] result = new NormalizedKey[splitPoints.length];
+	    byte[] tags = new byte[0];
+	    for (int i = 0; i < splitPoints.length; i++) {
+	      DataJoinKey k = new DataJoinKey((byte)0, splitPoints[i]);
+	      k.setConf(job);
+	      NormalizedKey normalized = k.getNormalizedKey();
+	      if (normalized == null) {
+	        return null;
+	      }
+	      result[i] = normalized.copy();
+	      if (i > 0 && result[i-1].compareTo(result[i]) >= 0) {
+	        return null;
+	      }
+	      
+	      if (tags.length < normalized.getColumnNumber()) {
+	        tags = Arrays.copyOf(tags, normalized.getColumnNumber());
+	      }
+	      for (int c = 0; c < normalized.getColumnNumber(); c++) {
+	        byte tag = normalized.getColumnTag(c);
+	        if (tag == NormalizedKey.NULL_TAG) {
+	          continue;
+	        }
+	        if (tags[c] == 0) {
+	          tags[c] = tag;
+	        } else if (tags[c] != tag) {
+	          return null;
+	        }
+	      }
+	    }
+	    columnTags = tags;
+	    return result;
+	  }
+	  
+	  /**
+	   * a key is comparable with the normalized partition keys if 
+	   * its non-null values have the same tags as the partition keys.
+	   */
+	  private boolean isComparable(NormalizedKey key) {
+	    int columns = Math.min(key.getColumnNumber(), columnTags.length);
+	    for (int c = 0; c < columns; c++) {
+	      byte tag = key.getColumnTag(c);
+	      if (tag != NormalizedKey.NULL_TAG && columnTags[c] != 0 && columnTags[c] != tag) {
+	        return false;
+	      }
+	    }
+	    return true;
+	  }
 
 	  /**
 	   * Set the path to the SequenceFile storing the sorted partition keyset.
@@ -144,8 +237,8 @@ public class EvenlyPartitioner<K extends WritableComparable,V>
 	   */
 	  class BinarySearchNode implements Node<K> {
 	    private final K[] splitPoints;
-	    private final RawComparator<K> comparator;
-	    BinarySearchNode(K[] splitPoints, RawComparator<K> comparator) {
+	    private final Comparator<K> comparator;
+	    BinarySearchNode(K[] splitPoints, Comparator<K> comparator) {
 	      this.splitPoints = splitPoints;
 	      this.comparator = comparator;
 	    }
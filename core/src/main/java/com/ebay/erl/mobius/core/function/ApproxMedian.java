@@ -0,0 +1,28 @@
+package com.ebay.erl.mobius.core.function;
+
+import com.ebay.erl.mobius.core.model.Column;
+
+/**
+ * Estimates the median value of the given <code>inputColumn</code>
+ * in a group, the bounded memory and combinable alternative of
+ * {@link Medium}, see {@link ApproxQuantile}.
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class ApproxMedian extends ApproxQuantile
+{
+	private static final long serialVersionUID = -1853196512746201470L;
+
+	public ApproxMedian(Column inputColumn)
+	{
+		super(inputColumn, 0.5D);
+	}
+}
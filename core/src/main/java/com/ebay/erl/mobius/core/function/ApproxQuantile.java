@@ -0,0 +1,195 @@
+package com.ebay.erl.mobius.core.function;
+
+import java.math.BigDecimal;
+
+import com.ebay.erl.mobius.core.function.base.SingleInputAggregateFunction;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.ResultWrapper;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.util.QuantileSketch;
+
+/**
+ * Estimates the quantiles (ex: p50, p95 and p99) of the given
+ * <code>inputColumn</code> in a group with a {@link QuantileSketch}.
+ * <p>
+ *
+ * Unlike {@link Medium}, the values are not kept nor sorted, a
+ * group keeps about <code>3k</code> values no matter how many
+ * values it has, and the rank error of the results is about
+ * <code>1.7/k</code>, where <code>k</code> is 200 by default,
+ * see {@link #setAccuracy(int)}.  {@link ApproxQuantile} is
+ * combinable, the combiner emits the serialized sketch of a
+ * group in a {@link ResultWrapper}, which is merged by the reducer.
+ * <p>
+ *
+ * The values need to be numbers or strings that can be parsed
+ * into double, null values are ignored.  The result has one
+ * double column per quantile, in the order of the quantiles,
+ * named <code>ApproxQuantile_[column]_p[percentile]</code> if
+ * there are more than one quantiles.  The columns are null if
+ * the group has no value.
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class ApproxQuantile extends SingleInputAggregateFunction
+{
+	private static final long serialVersionUID = 2950870151328612047L;
+
+	/**
+	 * the default <code>k</code> of the sketch.
+	 */
+	public static final int DEFAULT_ACCURACY = 200;
+
+	private final double[] quantiles;
+
+	private int k = DEFAULT_ACCURACY;
+
+	private transient QuantileSketch sketch;
+
+
+	/**
+	 * Create an instance of {@link ApproxQuantile} to estimate
+	 * the given <code>quantiles</code> of the <code>inputColumn</code>
+	 * within a group, each quantile is between 0 and 1, ex: 0.95
+	 * for p95.
+	 */
+	public ApproxQuantile(Column inputColumn, double... quantiles)
+	{
+		super(inputColumn);
+
+		if( quantiles==null || quantiles.length==0 )
+			throw new IllegalArgumentException("Quantiles cannot be null nor empty.");
+
+		for( double aQuantile:quantiles )
+		{
+			if( aQuantile<0D || aQuantile>1D )
+				throw new IllegalArgumentException("Quantile must be between 0 and 1, but was "+aQuantile+".");
+		}
+		this.quantiles = quantiles.clone();
+
+		if( quantiles.length>1 )
+		{
+			String[] schema = new String[quantiles.length];
+			for( int i=0;i<quantiles.length;i++ )
+			{
+				String percentile	= BigDecimal.valueOf(quantiles[i]*100D).stripTrailingZeros().toPlainString().replace('.', '_');
+				schema[i]			= this.getOutputSchema()[0]+"_p"+percentile;
+			}
+			this.setOutputSchema(schema);
+		}
+	}
+
+
+	/**
+	 * Set the <code>k</code> of the sketch, the larger it is, the
+	 * more accurate the results are, and the more memory a group
+	 * takes.
+	 */
+	public ApproxQuantile setAccuracy(int k)
+	{
+		// validate k
+		new QuantileSketch(k);
+		this.k = k;
+		return this;
+	}
+
+
+	/**
+	 * Return the estimated number of bytes a group takes
+	 * in memory.
+	 */
+	public int getSketchSize()
+	{
+		return this.k*3*8;
+	}
+
+
+	private QuantileSketch getSketch()
+	{
+		if( this.sketch==null )
+			this.sketch = new QuantileSketch(this.k);
+		return this.sketch;
+	}
+
+
+	@Override
+	public void consume(Tuple tuple)
+	{
+		Object value = tuple.get(this.inputColumnName);
+		if( value==null )
+			return;
+
+		if( value instanceof ResultWrapper )
+		{
+			// partial result computed by combiner
+			this.getSketch().merge((byte[])((ResultWrapper<?>)value).getCombinedResult());
+		}
+		else if( value instanceof Number )
+		{
+			this.getSketch().add(((Number)value).doubleValue());
+		}
+		else if( value instanceof String )
+		{
+			try
+			{
+				this.getSketch().add(Double.parseDouble((String)value));
+			}
+			catch(NumberFormatException e)
+			{
+				throw new NumberFormatException(value+" cannot be converted into double.");
+			}
+		}
+		else
+		{
+			throw new IllegalArgumentException(Tuple.getTypeString(Tuple.getType(value))+" is not numerical type for column:"+
+					this.inputColumnName+" with value:"+value);
+		}
+	}
+
+
+	@Override
+	protected Tuple getComputedResult()
+	{
+		if( this.calledByCombiner() )
+		{
+			this.aggregateResult = new ResultWrapper<byte[]>(this.getSketch().toBytes());
+			return super.getComputedResult();
+		}
+
+		Tuple record		= new Tuple();
+		String[] schema		= this.getOutputSchema();
+		double[] results	= this.getSketch().getQuantiles(this.quantiles);
+		for( int i=0;i<results.length;i++ )
+		{
+			if( this.getSketch().getCount()==0L )
+				record.putNull(schema[i]);
+			else
+				record.put(schema[i], results[i]);
+		}
+		return record;
+	}
+
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		if( this.sketch!=null )
+			this.sketch.clear();
+	}
+
+
+	@Override
+	public final boolean isCombinable()
+	{
+		return true;
+	}
+}
@@ -0,0 +1,174 @@
+package com.ebay.erl.mobius.core.function;
+
+import com.ebay.erl.mobius.core.function.base.SingleInputAggregateFunction;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.ResultWrapper;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.util.HyperLogLog;
+
+/**
+ * Estimates the number of unique values of the given
+ * <code>inputColumn</code> in a group with a {@link HyperLogLog}
+ * sketch.
+ * <p>
+ *
+ * Unlike {@link UniqueCounts}, the values are not kept nor
+ * sorted, a group takes <code>2^precision</code> bytes no matter
+ * how many values it has, and the standard error of the result
+ * is about <code>1.04/sqrt(2^precision)</code>.  {@link ApproxUniqueCounts}
+ * is combinable, the combiner emits the serialized sketch of a
+ * group in a {@link ResultWrapper}, which is merged by the reducer.
+ * <p>
+ *
+ * Null values are not counted.  The numbers of the same value
+ * are the same value regardless of their types (ex: 5 and 5.0D),
+ * dates are hashed by their milliseconds and the values of other
+ * types by their string representations.
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class ApproxUniqueCounts extends SingleInputAggregateFunction
+{
+	private static final long serialVersionUID = -6526312097823466027L;
+
+	/**
+	 * the default precision, the standard error is
+	 * about 0.81% with 16KB per group.
+	 */
+	public static final int DEFAULT_PRECISION = 14;
+
+	private final int precision;
+
+	private transient HyperLogLog sketch;
+
+
+	/**
+	 * Create an instance of {@link ApproxUniqueCounts} with
+	 * the {@link #DEFAULT_PRECISION}.
+	 */
+	public ApproxUniqueCounts(Column inputColumn)
+	{
+		this(inputColumn, DEFAULT_PRECISION);
+	}
+
+
+	/**
+	 * Create an instance of {@link ApproxUniqueCounts} with
+	 * the given <code>precision</code>.
+	 *
+	 * @param precision the number of bits to index the registers
+	 * of the sketch, between {@link HyperLogLog#MIN_PRECISION} and
+	 * {@link HyperLogLog#MAX_PRECISION}.
+	 */
+	public ApproxUniqueCounts(Column inputColumn, int precision)
+	{
+		super(inputColumn);
+
+		// validate the precision
+		new HyperLogLog(precision);
+		this.precision = precision;
+	}
+
+
+	/**
+	 * Return the number of bytes a group takes in memory.
+	 */
+	public int getSketchSize()
+	{
+		return 1<<this.precision;
+	}
+
+
+	private HyperLogLog getSketch()
+	{
+		if( this.sketch==null )
+			this.sketch = new HyperLogLog(this.precision);
+		return this.sketch;
+	}
+
+
+	@Override
+	public void consume(Tuple tuple)
+	{
+		Object value = tuple.get(this.inputColumnName);
+		if( value==null )
+			return;
+
+		if( value instanceof ResultWrapper )
+		{
+			// partial result computed by combiner
+			this.getSketch().merge((byte[])((ResultWrapper<?>)value).getCombinedResult());
+		}
+		else
+		{
+			this.getSketch().add(hash(value));
+		}
+	}
+
+
+	private static long hash(Object value)
+	{
+		if( value instanceof Float || value instanceof Double )
+		{
+			double d = ((Number)value).doubleValue();
+			if( d==(long)d )
+				return HyperLogLog.hash((long)d);
+			return HyperLogLog.hash(Double.doubleToLongBits(d));
+		}
+		else if( value instanceof Number )
+		{
+			return HyperLogLog.hash(((Number)value).longValue());
+		}
+		else if( value instanceof java.util.Date )
+		{
+			return HyperLogLog.hash(((java.util.Date)value).getTime());
+		}
+		else if( value instanceof String )
+		{
+			return HyperLogLog.hash((String)value);
+		}
+		else
+		{
+			return HyperLogLog.hash(value.toString());
+		}
+	}
+
+
+	@Override
+	protected Tuple getComputedResult()
+	{
+		if( this.calledByCombiner() )
+		{
+			this.aggregateResult = new ResultWrapper<byte[]>(this.getSketch().toBytes());
+		}
+		else
+		{
+			this.aggregateResult = Long.valueOf(this.getSketch().cardinality());
+		}
+		return super.getComputedResult();
+	}
+
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		if( this.sketch!=null )
+			this.sketch.clear();
+	}
+
+
+	@Override
+	public final boolean isCombinable()
+	{
+		return true;
+	}
+}
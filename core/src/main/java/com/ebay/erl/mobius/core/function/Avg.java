@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 
 import com.ebay.erl.mobius.core.function.base.SingleInputAggregateFunction;
 import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.ResultWrapper;
 import com.ebay.erl.mobius.core.model.Tuple;
 
 /**
@@ -20,6 +21,14 @@ import com.ebay.erl.mobius.core.model.Tuple;
  * try to parse the number into double from its string 
  * representation. If it cannot be converted into such a number, an 
  * exception is thrown. 
+ * <p>
+ * 
+ * The integral values and dates are summed in a long and the 
+ * floating point values in a double, the sum is moved into a 
+ * {@link BigDecimal} only when the long overflows or the double 
+ * becomes infinite.  {@link Avg} is combinable, the combiner 
+ * emits the partial sums and the count of a group in a 
+ * {@link ResultWrapper}, which are merged by the reducer.
  * 
  * <p>
  * This product is licensed under the Apache License,  Version 2.0, 
@@ -36,6 +45,16 @@ public class Avg extends SingleInputAggregateFunction
 	private static final long serialVersionUID = 4064217644716020759L;
 	
 	protected static final byte _UNSET = -1;
+	
+	/**
+	 * the columns of the partial result emitted by the combiner,
+	 * the names are not serialized with the nested tuple.
+	 * <p>
+	 * 
+	 * Keep it sorted, {@link Tuple#setSchema(String[])} sorts the
+	 * array it is given in place and this one is shared.
+	 */
+	private static final String[] PARTIAL_SCHEMA = new String[]{"count", "decimal_sum", "double_sum", "long_sum", "type"};
 
 	/**
 	 * the type of the value of the input column
@@ -45,11 +64,26 @@ public class Avg extends SingleInputAggregateFunction
 	
 	/**
 	 * sum of the value of the selected column
-	 * within a group.
+	 * within a group, not including <code>longSum</code>
+	 * and <code>doubleSum</code>.
 	 */
 	protected BigDecimal sum;
 	
 	
+	/**
+	 * sum of the integral and date values not yet
+	 * added into <code>sum</code>.
+	 */
+	protected long longSum = 0L;
+	
+	
+	/**
+	 * sum of the floating point values not yet
+	 * added into <code>sum</code>.
+	 */
+	protected double doubleSum = 0D;
+	
+	
 	/**
 	 * number of records in a group.
 	 */
@@ -96,35 +130,69 @@ public class Avg extends SingleInputAggregateFunction
 	@Override
 	public void consume(Tuple tuple) 
 	{
-		Object newValue = tuple.get(this.inputColumnName);
+		int idx = this.getInputColumnIndex(tuple);
+		if( idx>=0 )
+		{
+			// numerical values are accumulated without being boxed
+			byte type = tuple.getColumnType(idx);
+			if( Tuple.isNumericalType(type) )
+			{
+				total++;
+				if( this.valueType==_UNSET )
+					this.valueType = type;
+				
+				if( Tuple.isIntegralType(type) )
+					this.addLong(tuple.getLongValue(idx));
+				else
+					this.addDouble(tuple.getDoubleValue(idx));
+				return;
+			}
+		}
+		
+		Object newValue = idx>=0?tuple.get(idx):tuple.get(this.inputColumnName);
 		
 		if( newValue==null )
 			return;
 		
+		if( newValue instanceof ResultWrapper )
+		{
+			// partial result computed by combiner
+			this.merge((Tuple)((ResultWrapper<?>)newValue).getCombinedResult());
+			return;
+		}
+		
 		total++;
 		
 		if( valueType!=_UNSET )
 		{
-			this.accumulateSum(tuple);
+			this.accumulateSum(tuple, newValue);
 		}	
 		else
 		{	
 			this.valueType			= Tuple.getType(newValue);			
-			this.accumulateSum(tuple);
+			this.accumulateSum(tuple, newValue);
 		}
 	}
 	
 	
-	private void accumulateSum(Tuple tuple)
+	private void accumulateSum(Tuple tuple, Object newValue)
 	{
-		if( Tuple.isNumericalType(this.valueType) )
+		if( newValue instanceof Float || newValue instanceof Double )
+		{
+			this.addDouble(((Number)newValue).doubleValue());
+		}
+		else if( Tuple.isNumericalType(this.valueType) && newValue instanceof Number )
+		{
+			this.addLong(((Number)newValue).longValue());
+		}
+		else if( Tuple.isNumericalType(this.valueType) )
 		{
-			this.sum = sum.add( BigDecimal.valueOf(tuple.getDouble(this.inputColumnName)) );
+			this.addDouble(tuple.getDouble(this.inputColumnName));
 		}
 		else if( Tuple.isDateType(this.valueType) )
 		{
-			java.util.Date date = (java.util.Date)tuple.get(this.inputColumnName);
-			this.sum = sum.add( BigDecimal.valueOf(date.getTime()) );
+			java.util.Date date = (java.util.Date)newValue;
+			this.addLong(date.getTime());
 		}
 		else if( this.valueType==Tuple.STRING_TYPE )
 		{
@@ -162,9 +230,91 @@ public class Avg extends SingleInputAggregateFunction
 		}
 	}
 	
+	private void addLong(long value)
+	{
+		long result = this.longSum+value;
+		if( ((this.longSum^result)&(value^result))<0 )
+		{
+			// overflow
+			this.sum		= this.sum.add(BigDecimal.valueOf(this.longSum));
+			this.longSum	= value;
+		}
+		else
+		{
+			this.longSum = result;
+		}
+	}
+	
+	
+	private void addDouble(double value)
+	{
+		if( Double.isInfinite(this.doubleSum+value) )
+		{
+			// overflow
+			this.sum		= this.sum.add(BigDecimal.valueOf(this.doubleSum));
+			this.doubleSum	= value;
+		}
+		else
+		{
+			this.doubleSum += value;
+		}
+	}
+	
+	
+	/**
+	 * merge the partial result emitted by the combiner, 
+	 * see {@link #getPartialResult()}.
+	 */
+	private void merge(Tuple partial)
+	{
+		if( partial.getSchema().length==0 )
+			partial.setSchema(PARTIAL_SCHEMA);
+		
+		if( this.valueType==_UNSET )
+			this.valueType = partial.getByte("type");
+		
+		this.total += partial.getLongValue("count", 0L);
+		this.addLong(partial.getLongValue("long_sum", 0L));
+		this.addDouble(partial.getDoubleValue("double_sum", 0D));
+		
+		String decimalSum = partial.getString("decimal_sum");
+		if( decimalSum!=null )
+			this.sum = this.sum.add(new BigDecimal(decimalSum));
+	}
+	
+	
+	/**
+	 * the partial sums and the count of the current group
+	 * to be emitted by the combiner.
+	 */
+	private Tuple getPartialResult()
+	{
+		Tuple partial = new Tuple();
+		partial.insert("type", this.valueType);
+		partial.insert("count", this.total);
+		partial.insert("long_sum", this.longSum);
+		partial.insert("double_sum", this.doubleSum);
+		if( this.sum.signum()!=0 )
+			partial.insert("decimal_sum", this.sum.toString());
+		else
+			partial.putNull("decimal_sum");
+		return partial;
+	}
+	
+	
 	@Override
 	protected Tuple getComputedResult()
 	{
+		if( this.calledByCombiner() )
+		{
+			this.aggregateResult = new ResultWrapper<Tuple>(this.getPartialResult());
+			return super.getComputedResult();
+		}
+		
+		this.sum = this.sum.add(BigDecimal.valueOf(this.longSum)).add(BigDecimal.valueOf(this.doubleSum));
+		this.longSum	= 0L;
+		this.doubleSum	= 0D;
+		
 		if( Tuple.isDateType(this.valueType) )
 		{
 			BigDecimal result = this.sum.divide(BigDecimal.valueOf(this.total));
@@ -200,8 +350,16 @@ public class Avg extends SingleInputAggregateFunction
 	public void reset() 
 	{
 		super.reset();
-		this.total	= 0L;
-		this.sum	= new BigDecimal(0D);
+		this.total		= 0L;
+		this.longSum	= 0L;
+		this.doubleSum	= 0D;
+		this.sum		= new BigDecimal(0D);
 		this.sum.setScale(this.scale, this.roundingMode);
 	}
+	
+	@Override
+	public final boolean isCombinable()
+	{
+		return true;
+	}
 }
\ No newline at end of file
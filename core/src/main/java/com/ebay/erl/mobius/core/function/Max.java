@@ -67,6 +67,14 @@ public class Max extends SingleInputAggregateFunction
 	protected transient Comparator<Object> _user_specified_comparator;
 	
 	
+	/**
+	 * the current maximum when the values are numbers
+	 * and no comparator is specified, so they are compared
+	 * without being boxed.
+	 */
+	private final NumericalExtremum primitiveMax = new NumericalExtremum();
+	
+	
 	/**
 	 * Create an instance of {@link Max} operation to
 	 * get the maximum value of the given 
@@ -99,7 +107,26 @@ public class Max extends SingleInputAggregateFunction
 	@Override
 	public void consume(Tuple tuple) 
 	{
-		Object newValue = tuple.get(this.inputColumnName);
+		int idx = this.getInputColumnIndex(tuple);
+		
+		if( this._user_specified_comparator_clazz==null && this.aggregateResult==null && idx>=0 )
+		{
+			byte type = tuple.getColumnType(idx);
+			if( type==Tuple.NULL_TYPE )
+				return;
+			
+			if( Tuple.isNumericalType(type) )
+			{
+				if( !this.primitiveMax.isSet() || this.primitiveMax.compareTo(tuple, idx, type)>0 )
+					this.primitiveMax.set(tuple, idx, type);
+				return;
+			}
+			
+			// not a number, compared with the boxed current maximum
+			this.box();
+		}
+		
+		Object newValue = idx>=0?tuple.get(idx):tuple.get(this.inputColumnName);
 		
 		if( newValue==null )
 			return;
@@ -143,6 +170,37 @@ public class Max extends SingleInputAggregateFunction
 		}
 	}
 	
+	/**
+	 * move the current maximum kept in primitive, if any, into
+	 * the <code>aggregateResult</code>.
+	 */
+	private void box()
+	{
+		if( !this.primitiveMax.isSet() )
+			return;
+		
+		this.aggregateResult	= this.primitiveMax.toObject();
+		this.valueType			= Tuple.getType(this.aggregateResult);
+		this.primitiveMax.clear();
+		
+		if( _comparator==null )
+			_comparator = new TupleColumnComparator();
+	}
+	
+	@Override
+	protected Tuple getComputedResult()
+	{
+		this.box();
+		return super.getComputedResult();
+	}
+	
+	@Override
+	public void reset()
+	{
+		super.reset();
+		this.primitiveMax.clear();
+	}
+	
 	@Override
 	public final boolean isCombinable()
 	{
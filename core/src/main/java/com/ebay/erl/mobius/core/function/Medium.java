@@ -1,7 +1,17 @@
 package com.ebay.erl.mobius.core.function;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Comparator;
 
+import com.ebay.erl.mobius.core.ConfigureConstants;
 import com.ebay.erl.mobius.core.collection.BigTupleList;
 import com.ebay.erl.mobius.core.collection.CloseableIterator;
 import com.ebay.erl.mobius.core.function.base.SingleInputAggregateFunction;
@@ -13,6 +23,18 @@ import com.ebay.erl.mobius.util.Util;
  * Gets the medium value of the <code>inputColumn</code> in
  * a group.  The ordering is natural ordering by default, user
  * can override the ordering by providing a comparator.
+ * <p>
+ * 
+ * When the natural ordering is used and the values of a group
+ * are numbers of the same type (or nulls), they are kept in a
+ * primitive array and the medium value is selected in linear 
+ * time, without sorting them.  When there are more values than
+ * {@link ConfigureConstants#MEDIUM_MAX_BUFFERED_VALUES}, they
+ * are spilled to a local file, and the medium value is located
+ * by narrowing down its range with the counts of the values
+ * in buckets, reading the file a few times.  The values are 
+ * moved into a {@link BigTupleList} and sorted only when the
+ * group has a value of other types.
  * 
  * <p>
  * This product is licensed under the Apache License,  Version 2.0, 
@@ -36,6 +58,47 @@ public class Medium extends SingleInputAggregateFunction
 	private transient BigTupleList temp;
 	
 	
+	/**
+	 * the numerical values of the current group, before 
+	 * they are moved into <code>temp</code>. Integral values
+	 * are kept as they are, floating values are kept as
+	 * their sortable keys, see {@link #toKey(double)}.
+	 */
+	private transient long[] keys;
+	
+	private transient int buffered = 0;
+	
+	private transient long nulls = 0L;
+	
+	/**
+	 * the class of the buffered values, null if no
+	 * value has been buffered.
+	 */
+	private transient Class<?> bufferedType;
+	
+	/**
+	 * true if the values of the current group are 
+	 * in <code>temp</code>.
+	 */
+	private transient boolean sorting = false;
+	
+	private transient int maxBuffered = -1;
+	
+	/**
+	 * the local file the buffered keys are spilled into
+	 * when there are more than <code>maxBuffered</code>
+	 * of them.
+	 */
+	private transient File spill;
+	
+	private transient DataOutputStream spillOutput;
+	
+	/**
+	 * number of the keys in <code>spill</code>.
+	 */
+	private transient long spilled = 0L;
+	
+	
 	/**
 	 * Create an instance of {@link Medium} operation to
 	 * get the medium value of the given 
@@ -103,7 +166,16 @@ public class Medium extends SingleInputAggregateFunction
 		// perform the sorting, and extract the
 		// medium value in the getComputedResult()
 		// method.
-		Object newValue = tuple.get(this.inputColumnName);		
+		Object newValue = tuple.get(this.inputColumnName);
+		
+		if( !this.sorting && this.comparatorClassName==null )
+		{
+			if( this.buffer(newValue) )
+				return;
+			
+			this.moveBufferedValues();
+		}
+		
 		Tuple t = new Tuple();
 		t.insert(this.inputColumnName, newValue);
 		if( this.temp==null)
@@ -112,9 +184,368 @@ public class Medium extends SingleInputAggregateFunction
 		this.temp.add(t);
 	}
 	
+	/**
+	 * keep the <code>value</code> in the primitive array, return
+	 * false if it's not a number of the buffered type.
+	 */
+	private boolean buffer(Object value)
+	{
+		if( value==null )
+		{
+			this.nulls++;
+			return true;
+		}
+		
+		Class<?> type = value.getClass();
+		if( this.bufferedType==null )
+		{
+			if( type!=Byte.class && type!=Short.class && type!=Integer.class && type!=Long.class 
+					&& type!=Float.class && type!=Double.class )
+				return false;
+			this.bufferedType = type;
+		}
+		else if( type!=this.bufferedType )
+		{
+			return false;
+		}
+		
+		if( this.maxBuffered<0 )
+		{
+			this.maxBuffered = Math.max(1, this.conf==null?1000000:this.conf.getInt(ConfigureConstants.MEDIUM_MAX_BUFFERED_VALUES, 1000000));
+		}
+		if( this.buffered>=this.maxBuffered )
+		{
+			this.spillBufferedKeys();
+		}
+		
+		if( this.keys==null || this.buffered==this.keys.length )
+		{
+			int capacity	= this.keys==null?1024:(int)Math.min(this.keys.length*2L, Integer.MAX_VALUE-8);
+			this.keys		= this.keys==null?new long[Math.min(capacity, this.maxBuffered)]:Arrays.copyOf(this.keys, Math.min(capacity, this.maxBuffered));
+		}
+		
+		if( type==Float.class || type==Double.class )
+			this.keys[this.buffered++] = toKey(((Number)value).doubleValue());
+		else
+			this.keys[this.buffered++] = ((Number)value).longValue();
+		return true;
+	}
+	
+	
+	/**
+	 * Convert a double into a long, which signed ordering is the 
+	 * same as {@link Double#compare(double, double)} of the doubles:
+	 * -0.0 is smaller than 0.0, and NaN is the largest, the same
+	 * as the doubles are sorted in {@link BigTupleList}. 
+	 * <p>
+	 * 
+	 * The conversion is its own inverse, see {@link #fromKey(long)}.
+	 */
+	private static long toKey(double value)
+	{
+		long bits = Double.doubleToLongBits(value);
+		return bits ^ ((bits>>63) & Long.MAX_VALUE);
+	}
+	
+	
+	private static double fromKey(long key)
+	{
+		return Double.longBitsToDouble(key ^ ((key>>63) & Long.MAX_VALUE));
+	}
+	
+	
+	/**
+	 * append the buffered keys to <code>spill</code>.
+	 */
+	private void spillBufferedKeys()
+	{
+		try
+		{
+			if( this.spillOutput==null )
+			{
+				File workOutput = new File("tmp");
+				if( !workOutput.exists() && !workOutput.mkdirs() && !workOutput.exists() )
+					throw new IOException("Cannot create directory:"+workOutput.getAbsolutePath());
+				this.spill = File.createTempFile("medium", ".keys", workOutput);
+				this.spill.deleteOnExit();
+				this.spillOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.spill)));
+			}
+			
+			for( int i=0;i<this.buffered;i++ )
+			{
+				this.spillOutput.writeLong(this.keys[i]);
+			}
+		}
+		catch(IOException e)
+		{
+			throw new RuntimeException("Cannot spill the values of column "+this.inputColumnName+" to local disk.", e);
+		}
+		
+		this.spilled	+= this.buffered;
+		this.buffered	= 0;
+	}
+	
+	
+	/**
+	 * open the spilled keys to read, they are read only 
+	 * after all the keys have been spilled.
+	 */
+	private DataInputStream openSpill()
+		throws IOException
+	{
+		if( this.spillOutput!=null )
+		{
+			this.spillOutput.close();
+			this.spillOutput = null;
+		}
+		return new DataInputStream(new BufferedInputStream(new FileInputStream(this.spill)));
+	}
+	
+	
+	private void deleteSpill()
+	{
+		if( this.spillOutput!=null )
+		{
+			try { this.spillOutput.close(); } catch(IOException e){}
+			this.spillOutput = null;
+		}
+		if( this.spill!=null )
+		{
+			this.spill.delete();
+			this.spill = null;
+		}
+		this.spilled = 0L;
+	}
+	
+	
+	/**
+	 * move the buffered and spilled values into <code>temp</code>, 
+	 * to be sorted with the rest of the values of the group.
+	 */
+	private void moveBufferedValues()
+	{
+		if( this.temp==null)
+			this.temp = this.newBigTupleList();
+		
+		for( long i=0;i<this.nulls;i++ )
+		{
+			Tuple t = new Tuple();
+			t.putNull(this.inputColumnName);
+			this.temp.add(t);
+		}
+		
+		if( this.spilled>0 )
+		{
+			try
+			{
+				DataInputStream in = this.openSpill();
+				for( long i=0;i<this.spilled;i++ )
+				{
+					Tuple t = new Tuple();
+					t.insert(this.inputColumnName, this.toValue(in.readLong()));
+					this.temp.add(t);
+				}
+				in.close();
+			}
+			catch(IOException e)
+			{
+				throw new RuntimeException("Cannot read the spilled values of column "+this.inputColumnName+".", e);
+			}
+			this.deleteSpill();
+		}
+		
+		for( int i=0;i<this.buffered;i++ )
+		{
+			Tuple t = new Tuple();
+			t.insert(this.inputColumnName, this.toValue(this.keys[i]));
+			this.temp.add(t);
+		}
+		
+		this.sorting	= true;
+		this.nulls		= 0L;
+		this.buffered	= 0;
+	}
+	
+	
+	/**
+	 * convert a buffered key back to a value of the buffered type.
+	 */
+	private Object toValue(long key)
+	{
+		if( this.bufferedType==Double.class )
+			return fromKey(key);
+		else if( this.bufferedType==Float.class )
+			return (float)fromKey(key);
+		else if( this.bufferedType==Long.class )
+			return key;
+		else if( this.bufferedType==Integer.class )
+			return (int)key;
+		else if( this.bufferedType==Short.class )
+			return (short)key;
+		else
+			return (byte)key;
+	}
+	
+	
+	/**
+	 * Get the key of rank <code>k</code> (0 based) of the spilled 
+	 * and the buffered keys, without sorting them.
+	 * <p>
+	 * 
+	 * The range of the keys is narrowed down in passes, in each
+	 * pass, the keys within the range are counted in buckets of
+	 * the same width, and the range becomes the bucket which
+	 * contains the rank <code>k</code>.  Once the bucket has no
+	 * more than <code>maxBuffered</code> keys, they are read
+	 * into memory to select from.  A range of 64 bits is narrowed
+	 * by 16 bits per pass, so the keys are read at most 5 times.
+	 */
+	private long selectSpilled(long k)
+		throws IOException
+	{
+		long low	= Long.MIN_VALUE;
+		long high	= Long.MAX_VALUE;
+		while( true )
+		{
+			if( low==high )
+				return low;
+			
+			// the width of the range is unsigned, up to 65536 buckets
+			long width		= high-low;
+			int shift		= Math.max(0, 48-Long.numberOfLeadingZeros(width));
+			long[] counts	= new long[(int)(width>>>shift)+1];
+			long below		= 0L;
+			
+			DataInputStream in = this.openSpill();
+			for( long i=0;i<this.spilled+this.buffered;i++ )
+			{
+				long key = i<this.spilled?in.readLong():this.keys[(int)(i-this.spilled)];
+				if( key<low )
+					below++;
+				else if( key<=high )
+					counts[(int)((key-low)>>>shift)]++;
+			}
+			in.close();
+			
+			long rank	= k-below;
+			int bucket	= 0;
+			while( rank>=counts[bucket] )
+			{
+				rank -= counts[bucket];
+				bucket++;
+			}
+			
+			long first	= (long)bucket<<shift;
+			long last	= first+((1L<<shift)-1);
+			if( (last^Long.MIN_VALUE)<(width^Long.MIN_VALUE) )
+			{
+				// not the last bucket, which might be narrower
+				high = low+last;
+			}
+			low = low+first;
+			
+			if( counts[bucket]<=this.maxBuffered )
+			{
+				long[] candidates	= new long[(int)counts[bucket]];
+				int idx				= 0;
+				in = this.openSpill();
+				for( long i=0;i<this.spilled+this.buffered;i++ )
+				{
+					long key = i<this.spilled?in.readLong():this.keys[(int)(i-this.spilled)];
+					if( key>=low && key<=high )
+						candidates[idx++] = key;
+				}
+				in.close();
+				
+				select(candidates, candidates.length, (int)rank);
+				return candidates[(int)rank];
+			}
+		}
+	}
+	
+	
+	/**
+	 * rearrange the first <code>size</code> elements of <code>values</code>
+	 * so the element at <code>k</code> is the one in the sorted order, by
+	 * quickselect.
+	 */
+	private static void select(long[] values, int size, int k)
+	{
+		int left	= 0;
+		int right	= size-1;
+		while( left<right )
+		{
+			// median of three as the pivot
+			int mid = (left+right)>>>1;
+			if( values[mid]<values[left] )		swap(values, left, mid);
+			if( values[right]<values[left] )	swap(values, left, right);
+			if( values[right]<values[mid] )		swap(values, mid, right);
+			long pivot = values[mid];
+			
+			int i = left;
+			int j = right;
+			while( i<=j )
+			{
+				while( values[i]<pivot ) i++;
+				while( values[j]>pivot ) j--;
+				if( i<=j )
+				{
+					swap(values, i, j);
+					i++;
+					j--;
+				}
+			}
+			
+			if( k<=j )
+				right = j;
+			else if( k>=i )
+				left = i;
+			else
+				return;
+		}
+	}
+	
+	
+	private static void swap(long[] values, int i, int j)
+	{
+		long t		= values[i];
+		values[i]	= values[j];
+		values[j]	= t;
+	}
+	
+	
 	@Override
 	public Tuple getComputedResult()
 	{
+		if( !this.sorting && this.comparatorClassName==null )
+		{
+			// nulls are the smallest in the natural ordering
+			long values		= this.spilled+this.buffered;
+			long mediumIdx	= (this.nulls+values)/2;
+			if( mediumIdx<this.nulls || values==0 )
+			{
+				this.aggregateResult = null;
+			}
+			else if( this.spilled==0 )
+			{
+				int k = (int)(mediumIdx-this.nulls);
+				select(this.keys, this.buffered, k);
+				this.aggregateResult = this.toValue(this.keys[k]);
+			}
+			else
+			{
+				try
+				{
+					this.aggregateResult = this.toValue(this.selectSpilled(mediumIdx-this.nulls));
+				}
+				catch(IOException e)
+				{
+					throw new RuntimeException("Cannot read the spilled values of column "+this.inputColumnName+".", e);
+				}
+			}
+			return super.getComputedResult();
+		}
+		
 		CloseableIterator<Tuple> it = this.temp.iterator();		
 		long mediumIdx	= this.temp.size()/2;
 		long counts		= 0L;
@@ -144,6 +575,12 @@ public class Medium extends SingleInputAggregateFunction
 		super.reset();
 		if( this.temp==null)
 			this.temp = this.newBigTupleList();
-		this.temp.clear();		
+		this.temp.clear();
+		this.deleteSpill();
+		
+		this.buffered		= 0;
+		this.nulls			= 0L;
+		this.bufferedType	= null;
+		this.sorting		= false;
 	}
 }
@@ -65,6 +65,14 @@ public class Min extends SingleInputAggregateFunction
 	protected transient Comparator<Object> _user_specified_comparator;
 	
 	
+	/**
+	 * the current minimum when the values are numbers
+	 * and no comparator is specified, so they are compared
+	 * without being boxed.
+	 */
+	private final NumericalExtremum primitiveMin = new NumericalExtremum();
+	
+	
 	/**
 	 * Create an instance of {@link Min} operation to
 	 * get the minimum value of the given 
@@ -96,7 +104,26 @@ public class Min extends SingleInputAggregateFunction
 	@Override
 	public void consume(Tuple tuple) 
 	{
-		Object newValue = tuple.get(this.inputColumnName);
+		int idx = this.getInputColumnIndex(tuple);
+		
+		if( this._user_specified_comparator_clazz==null && this.aggregateResult==null && idx>=0 )
+		{
+			byte type = tuple.getColumnType(idx);
+			if( type==Tuple.NULL_TYPE )
+				return;
+			
+			if( Tuple.isNumericalType(type) )
+			{
+				if( !this.primitiveMin.isSet() || this.primitiveMin.compareTo(tuple, idx, type)<0 )
+					this.primitiveMin.set(tuple, idx, type);
+				return;
+			}
+			
+			// not a number, compared with the boxed current minimum
+			this.box();
+		}
+		
+		Object newValue = idx>=0?tuple.get(idx):tuple.get(this.inputColumnName);
 		
 		if( newValue==null )
 			return;
@@ -140,6 +167,37 @@ public class Min extends SingleInputAggregateFunction
 		}
 	}
 	
+	/**
+	 * move the current minimum kept in primitive, if any, into
+	 * the <code>aggregateResult</code>.
+	 */
+	private void box()
+	{
+		if( !this.primitiveMin.isSet() )
+			return;
+		
+		this.aggregateResult	= this.primitiveMin.toObject();
+		this.valueType			= Tuple.getType(this.aggregateResult);
+		this.primitiveMin.clear();
+		
+		if( _comparator==null )
+			_comparator = new TupleColumnComparator();
+	}
+	
+	@Override
+	protected Tuple getComputedResult()
+	{
+		this.box();
+		return super.getComputedResult();
+	}
+	
+	@Override
+	public void reset()
+	{
+		super.reset();
+		this.primitiveMin.clear();
+	}
+	
 	@Override
 	public final boolean isCombinable()
 	{
@@ -0,0 +1,103 @@
+package com.ebay.erl.mobius.core.function;
+
+import java.io.Serializable;
+
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * The minimum or the maximum numerical value of a group kept
+ * in primitive fields, for {@link Min} and {@link Max} to compare
+ * the numerical values without boxing them.
+ * <p>
+ *
+ * Two integral values are compared as long, otherwise they are
+ * compared as double, the same as {@link com.ebay.erl.mobius.core.model.TupleColumnComparator}
+ * compares the numbers of different types.
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+final class NumericalExtremum implements Serializable
+{
+	private static final long serialVersionUID = -3920127784530186281L;
+
+	/**
+	 * the type of the current value, {@link Tuple#NULL_TYPE}
+	 * if there is no current value.
+	 */
+	private byte type = Tuple.NULL_TYPE;
+
+	private long longValue;
+
+	private double doubleValue;
+
+
+	boolean isSet()
+	{
+		return this.type!=Tuple.NULL_TYPE;
+	}
+
+
+	/**
+	 * compare the numerical value at <code>index</code> of the
+	 * <code>tuple</code>, of the given <code>type</code>, with the
+	 * current value.
+	 */
+	int compareTo(Tuple tuple, int index, byte type)
+	{
+		if( Tuple.isIntegralType(type) && Tuple.isIntegralType(this.type) )
+			return Long.compare(tuple.getLongValue(index), this.longValue);
+		else
+			return Double.compare(tuple.getDoubleValue(index), this.doubleValue);
+	}
+
+
+	/**
+	 * replace the current value with the numerical value at
+	 * <code>index</code> of the <code>tuple</code>.
+	 */
+	void set(Tuple tuple, int index, byte type)
+	{
+		this.type			= type;
+		this.longValue		= tuple.getLongValue(index);
+		this.doubleValue	= tuple.getDoubleValue(index);
+	}
+
+
+	/**
+	 * Return the current value boxed in its original type.
+	 */
+	Object toObject()
+	{
+		switch(this.type)
+		{
+			case Tuple.BYTE_TYPE:
+				return Byte.valueOf((byte)this.longValue);
+			case Tuple.SHORT_TYPE:
+				return Short.valueOf((short)this.longValue);
+			case Tuple.INTEGER_TYPE:
+				return Integer.valueOf((int)this.longValue);
+			case Tuple.LONG_TYPE:
+				return Long.valueOf(this.longValue);
+			case Tuple.FLOAT_TYPE:
+				return Float.valueOf((float)this.doubleValue);
+			case Tuple.DOUBLE_TYPE:
+				return Double.valueOf(this.doubleValue);
+			default:
+				return null;
+		}
+	}
+
+
+	void clear()
+	{
+		this.type = Tuple.NULL_TYPE;
+	}
+}
@@ -19,6 +19,11 @@ import com.ebay.erl.mobius.core.model.Tuple;
  * </ul> 
  * 
  * {@link IllegalArgumentException} is thrown for all other type.
+ * <p>
+ * 
+ * The values are summed up in a double without being boxed,
+ * the double is added into the {@link BigDecimal} result only
+ * when it overflows.
  * 
  * 
  * <p>
@@ -37,6 +42,10 @@ public class Sum extends SingleInputAggregateFunction
 		
 	private static final long serialVersionUID = 8043394371071057906L;
 	
+	/**
+	 * sum of the values not yet added into the
+	 * <code>aggregateResult</code>.
+	 */
 	private double tempSum = 0D;
 	
 	
@@ -57,13 +66,21 @@ public class Sum extends SingleInputAggregateFunction
 	@Override
 	public void consume(Tuple tuple) 
 	{
-		Object newValue = tuple.get(this.inputColumnName);
+		int idx = this.getInputColumnIndex(tuple);
+		if( idx>=0 && Tuple.isNumericalType(tuple.getColumnType(idx)) )
+		{
+			this.add(tuple.getDoubleValue(idx));
+			return;
+		}
+		
+		Object newValue = idx>=0?tuple.get(idx):tuple.get(this.inputColumnName);
 		
 		byte type = Tuple.getType(newValue);
 		
-		if( Tuple.isNumericalType(type) )
+		if( newValue instanceof BigDecimal )
 		{
-			this.add(((Number)newValue).doubleValue());
+			// partial sum computed by combiner
+			this.addDecimal((BigDecimal)newValue);
 		}
 		else if( type==Tuple.STRING_TYPE )
 		{
@@ -86,25 +103,17 @@ public class Sum extends SingleInputAggregateFunction
 	@Override
 	public Tuple getComputedResult()
 	{
-		if( this.aggregateResult==null )
-		{
-			this.aggregateResult = new BigDecimal(0D);
-		}
-		this.aggregateResult = ((BigDecimal)this.aggregateResult).add(BigDecimal.valueOf(this.tempSum));
+		this.addDecimal(BigDecimal.valueOf(this.tempSum));
+		this.tempSum = 0D;
 		return super.getComputedResult();
 	}
 	
 	private void add(double value)
 	{
-		if( this.aggregateResult==null )
-		{
-			this.aggregateResult = new BigDecimal(0D);
-		}
-		
-		if( Double.isInfinite(this.tempSum+value) || (this.tempSum+value<0 && value>=0 && this.tempSum>=0) )
+		if( Double.isInfinite(this.tempSum+value) )
 		{
 			// overflow
-			this.aggregateResult = ((BigDecimal)this.aggregateResult).add(BigDecimal.valueOf(this.tempSum));
+			this.addDecimal(BigDecimal.valueOf(this.tempSum));
 			this.tempSum = value;
 		}
 		else
@@ -113,11 +122,19 @@ public class Sum extends SingleInputAggregateFunction
 		}		
 	}
 	
+	private void addDecimal(BigDecimal value)
+	{
+		if( this.aggregateResult==null )
+		{
+			this.aggregateResult = new BigDecimal(0D);
+		}
+		this.aggregateResult = ((BigDecimal)this.aggregateResult).add(value);
+	}
+	
 	@Override
 	public void reset()
 	{
 		super.reset();
-		this.aggregateResult = new BigDecimal(0D);
 		this.tempSum = 0D;
 	}
 	
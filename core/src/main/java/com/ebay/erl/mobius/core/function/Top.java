@@ -7,7 +7,9 @@ import java.util.PriorityQueue;
 import com.ebay.erl.mobius.core.builder.Dataset;
 import com.ebay.erl.mobius.core.collection.BigTupleList;
 import com.ebay.erl.mobius.core.function.base.GroupFunction;
+import com.ebay.erl.mobius.core.model.Array;
 import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.ResultWrapper;
 import com.ebay.erl.mobius.core.model.Tuple;
 import com.ebay.erl.mobius.core.model.TupleColumnComparator;
 import com.ebay.erl.mobius.core.sort.Sorter;
@@ -36,6 +38,12 @@ import com.ebay.erl.mobius.util.Util;
  * {4, 7, 10}.
  * <p>
  * 
+ * {@link Top} is combinable, the combiner keeps up to <code>topX</code>
+ * tuples of a group and emits them in a {@link ResultWrapper}, the
+ * reducer merges them into its own heap, so at most <code>topX</code>
+ * tuples per group are shuffled from a map task.
+ * <p>
+ * 
  * This product is licensed under the Apache License,  Version 2.0, 
  * available at http://www.apache.org/licenses/LICENSE-2.0.
  * 
@@ -89,7 +97,8 @@ public class Top extends GroupFunction
 	public Top(Dataset ds, String[] inputColumns, int topX, Class<? extends Comparator<Tuple>> comparator)
 	{
 		super(getColumns(ds, inputColumns));
-		this.comparatorClassName = comparator.getCanonicalName();
+		if( comparator!=null )
+			this.comparatorClassName = comparator.getCanonicalName();
 		this.topX = topX;
 	}
 	
@@ -142,16 +151,55 @@ public class Top extends GroupFunction
 	 * size is greater than the specified {@link #topX},
 	 * the smallest element (head of the heap) is poll 
 	 * out from the heap.
+	 * <p>
+	 * 
+	 * Only the input columns of the <code>tuple</code> are
+	 * kept, if the <code>tuple</code> carries the partial
+	 * result from a combiner, each of the tuples in it is 
+	 * put into the heap.
 	 */
 	@Override
 	public void consume(Tuple tuple) 
 	{	
 		if( this.maxHeap==null )
 		{
-			this.maxHeap = new PriorityQueue<Tuple>(this.topX, this.getComparator());
+			this.maxHeap = new PriorityQueue<Tuple>(this.topX+1, this.getComparator());
 		}
 		
-		this.maxHeap.add(tuple);
+		Object value = tuple.get(this.inputs[0].getInputColumnName());
+		if( value instanceof ResultWrapper )
+		{
+			// partial result computed by combiner
+			for( Object aPartial:(Array)((ResultWrapper<?>)value).getCombinedResult() )
+			{
+				Tuple aTuple = (Tuple)aPartial;
+				if( aTuple.getSchema().length==0 )
+				{
+					// the names are not serialized
+					aTuple.setSchema(this.getInputColumnNames());
+				}
+				this.add(aTuple);
+			}
+		}
+		else
+		{
+			this.add(tuple);
+		}
+	}
+	
+	
+	private void add(Tuple tuple)
+	{
+		// keep the input columns only, in the order of the
+		// input columns for the natural ordering.
+		Tuple projected = new Tuple();
+		for( Column anInput:this.inputs )
+		{
+			String name = anInput.getInputColumnName();
+			projected.insert(name, tuple.get(name));
+		}
+		
+		this.maxHeap.add(projected);
 		
 		while ( this.maxHeap.size()>topX )
 		{
@@ -160,11 +208,44 @@ public class Top extends GroupFunction
 	}
 	
 	
+	private String[] getInputColumnNames()
+	{
+		String[] names = new String[this.inputs.length];
+		for( int i=0;i<names.length;i++ )
+		{
+			names[i] = this.inputs[i].getInputColumnName();
+		}
+		return names;
+	}
+	
+	
 	@Override
 	public BigTupleList getResult()
 	{
 		BigTupleList result = new BigTupleList(this.reporter);
 		
+		if( this.calledByCombiner() )
+		{
+			// emit the heap as one row, the tuples are merged
+			// by the reducer.
+			Array partial = new Array();
+			if( this.maxHeap!=null )
+			{
+				for( Tuple aTuple:this.maxHeap )
+				{
+					partial.add(aTuple);
+				}
+			}
+			
+			Tuple t = new Tuple();
+			t.put(this.inputs[0].getInputColumnName(), new ResultWrapper<Array>(partial));
+			result.add(t);
+			return result;
+		}
+		
+		if( this.maxHeap==null )
+			return result;
+		
 		Tuple[] tuples = this.maxHeap.toArray(new Tuple[this.maxHeap.size()]);
 		Arrays.sort(tuples, this.getComparator());
 		
@@ -193,6 +274,13 @@ public class Top extends GroupFunction
 	}
 	
 	
+	@Override
+	public final boolean isCombinable()
+	{
+		return true;
+	}
+	
+	
 	
 	
 	
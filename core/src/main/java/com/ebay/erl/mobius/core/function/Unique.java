@@ -1,6 +1,8 @@
 package com.ebay.erl.mobius.core.function;
 
+import com.ebay.erl.mobius.core.ConfigureConstants;
 import com.ebay.erl.mobius.core.collection.BigTupleList;
+import com.ebay.erl.mobius.core.collection.BigTupleSet;
 import com.ebay.erl.mobius.core.collection.CloseableIterator;
 import com.ebay.erl.mobius.core.function.base.GroupFunction;
 import com.ebay.erl.mobius.core.model.Column;
@@ -13,6 +15,13 @@ import com.ebay.erl.mobius.core.model.Tuple;
  * Uniqueness is measured within the values from
  * the specified <code>columns</code> (in {@link #Unique(Column...)})
  * in a group.
+ * <p>
+ * 
+ * The distinct values are kept in a {@link BigTupleSet}, so they
+ * are not sorted, and the unique rows are emitted in no particular
+ * order.  The values take up to {@link ConfigureConstants#UNIQUE_MAX_BYTES}
+ * in memory, a group with more distinct values is partitioned into
+ * disk.
  * 
  * <p>
  * This product is licensed under the Apache License,  Version 2.0, 
@@ -29,9 +38,9 @@ public class Unique extends GroupFunction
 	private static final long serialVersionUID = -709140700573771345L;
 	
 	/**
-	 * temporal list to store values in a group.
+	 * temporal set to store the distinct values in a group.
 	 */
-	protected BigTupleList temp;
+	protected transient BigTupleSet temp;
 	
 	/**
 	 * Create an instance of {@link Unique} to emit
@@ -58,35 +67,49 @@ public class Unique extends GroupFunction
 			t.insert(outName, tuple.get(inName));
 		}
 		
+		this.getTemp().add(t);
+	}
+	
+	
+	protected BigTupleSet getTemp()
+	{
 		if( this.temp==null )
-			this.temp = new BigTupleList(new Tuple(), this.reporter);
-		
-		this.temp.add(t);
+		{
+			long maxBytes = this.conf==null?64L*1024L*1024L:this.conf.getLong(ConfigureConstants.UNIQUE_MAX_BYTES, 64L*1024L*1024L);
+			this.temp = new BigTupleSet(this.outputSchema, maxBytes, this.reporter);
+		}
+		return this.temp;
 	}
 	
+	
 	@Override
 	public BigTupleList getResult()
 	{
-		// the <code>temp</code> is sorted, so
-		// we just iterate it over and check if 
-		// the previous tuple is different than
-		// the current tuple or not.
-		
-		Tuple previous = null;
-		
-		CloseableIterator<Tuple> it = this.temp.iterator();
-		while( it.hasNext() )
+		// the <code>temp</code> has the distinct
+		// values only, put the columns back in
+		// the order of the output schema.
+		CloseableIterator<Tuple> it = this.getTemp().iterator();
+		try
 		{
-			Tuple current = it.next();
+			while( it.hasNext() )
+			{
+				Tuple current	= it.next();
+				Tuple t			= new Tuple();
+				for( String aColumn:this.outputSchema )
+				{
+					t.insert(aColumn, current.get(aColumn));
+				}
+				this.output(t);
+			}
+		}
+		finally
+		{
+			it.close();
 			
-			if( previous==null || previous.compareTo(current)!=0 )
-			{	
-				// a different tuple comes, add the result
-				this.output(current);
-			}			
-			previous = current;
+			// the distinct values are in the result already,
+			// remove the ones on disk.
+			this.temp.clear();
 		}
-		it.close();
 		
 		return super.getResult();
 	}
@@ -95,9 +118,8 @@ public class Unique extends GroupFunction
 	public void reset()
 	{
 		super.reset();
-		if( this.temp==null )
-			this.temp = new BigTupleList(this.reporter);
-		this.temp.clear();
+		if( this.temp!=null )
+			this.temp.clear();
 	}
 
 }
@@ -1,7 +1,6 @@
 package com.ebay.erl.mobius.core.function;
 
 import com.ebay.erl.mobius.core.collection.BigTupleList;
-import com.ebay.erl.mobius.core.collection.CloseableIterator;
 import com.ebay.erl.mobius.core.model.Column;
 import com.ebay.erl.mobius.core.model.Tuple;
 
@@ -53,23 +52,8 @@ public class UniqueCounts extends Unique
 	@Override
 	public BigTupleList getResult()
 	{
-		long uniqueCounts = 0L;
-		
-		Tuple previous = null;
-		
-		CloseableIterator<Tuple> it = this.temp.iterator();
-		while( it.hasNext() )
-		{
-			Tuple current = it.next();
-			
-			if( previous==null || previous.compareTo(current)!=0 )
-			{	
-				// a different tuple comes, add the result
-				uniqueCounts++;
-			}			
-			previous = current;
-		}
-		it.close();
+		// the values are counted without being deserialized
+		long uniqueCounts = this.getTemp().size();
 		
 		Tuple result = new Tuple();
 		result.put(this.getOutputSchema()[0], uniqueCounts);
@@ -2,6 +2,7 @@ package com.ebay.erl.mobius.core.function.base;
 
 import com.ebay.erl.mobius.core.model.Column;
 import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.model.Tuple.TupleColumnName;
 
 /**
  * 
@@ -38,6 +39,11 @@ public abstract class SingleInputAggregateFunction extends AggregateFunction
 	 */
 	protected String inputColumnName;
 	
+	/**
+	 * {@link #inputColumnName} resolved, see {@link #getInputColumnIndex(Tuple)}.
+	 */
+	private transient TupleColumnName inputColumn;
+	
 	
 	
 	public SingleInputAggregateFunction(Column inputColumn)
@@ -48,6 +54,29 @@ public abstract class SingleInputAggregateFunction extends AggregateFunction
 	}
 	
 	
+	/**
+	 * Return the index of the input column in the <code>tuple</code>,
+	 * or -1 if it's not in the <code>tuple</code> or it references a
+	 * key of a map column, see {@link Tuple#indexOf(TupleColumnName)}.
+	 * <p>
+	 * 
+	 * The name of the input column is resolved only once for all
+	 * the tuples consumed, so the numerical values can be accumulated
+	 * through {@link Tuple#getLongValue(int)} and {@link Tuple#getDoubleValue(int)} 
+	 * without being boxed.
+	 */
+	protected int getInputColumnIndex(Tuple tuple)
+	{
+		TupleColumnName result = this.inputColumn;
+		if( result==null )
+		{
+			result = TupleColumnName.valueOf(this.inputColumnName);
+			this.inputColumn = result;
+		}
+		return tuple.indexOf(result);
+	}
+	
+	
 	/**
 	 * Return the computed result in a {@link Tuple}.
 	 * <p>
@@ -3,10 +3,13 @@ package com.ebay.erl.mobius.core.mapred;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IllegalFormatException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -18,12 +21,13 @@ import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
 
 import com.ebay.erl.mobius.core.ConfigureConstants;
-import com.ebay.erl.mobius.core.collection.BigTupleList;
 import com.ebay.erl.mobius.core.criterion.TupleCriterion;
 import com.ebay.erl.mobius.core.datajoin.DataJoinMapper;
 import com.ebay.erl.mobius.core.model.ComputedColumns;
+import com.ebay.erl.mobius.core.model.InvalidColumnValueException;
 import com.ebay.erl.mobius.core.model.KeyTuple;
 import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.model.Tuple.TupleColumnName;
 import com.ebay.erl.mobius.util.SerializableUtil;
 import com.ebay.erl.mobius.util.Util;
 
@@ -70,6 +74,22 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 	 */
 	protected TupleCriterion tuple_criteria;
 	
+	/**
+	 * the conjuncts of {@link #tuple_criteria} that only evaluate
+	 * the parsed columns, applied right after a record is parsed.
+	 * <p>
+	 * 
+	 * Subclasses can evaluate some of them on the raw records in
+	 * {@link #acceptRaw(Object, Object)}, and remove them from here.
+	 */
+	protected TupleCriterion parsed_criteria;
+	
+	/**
+	 * the conjuncts of {@link #tuple_criteria} that evaluate the
+	 * {@link #computedColumns}, applied to the computed rows.
+	 */
+	private TupleCriterion computed_criteria;
+	
 	/**
 	 * columns to be emitted as key of this {@link Mapper}
 	 */
@@ -144,6 +164,48 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 	
 	protected boolean reporterSet = false;
 	
+	/**
+	 * not null if the join is performed in the mappers, by
+	 * joining with the broadcast datasets.
+	 */
+	protected BroadcastHashJoin broadcastJoin = null;
+	
+	/**
+	 * not null if the join is performed in the mappers, by
+	 * merging the part files of the same bucket.
+	 */
+	protected SortMergeJoin sortMergeJoin = null;
+	
+	/**
+	 * not null if the hot keys are spread over multiple
+	 * reducers.
+	 */
+	protected SkewJoin skewJoin = null;
+	
+	/**
+	 * not null if the join keys are added into or tested 
+	 * with the bloom filter of a join.
+	 */
+	protected BloomFilterJoin bloomFilter = null;
+	
+	/**
+	 * where the bloom filter is emitted when it's built
+	 * in this mapper.
+	 */
+	private OutputCollector<WritableComparable<?>, WritableComparable<?>> bloomFilterOutput = null;
+	
+	/**
+	 * not null if the values of the same key are combined
+	 * in this mapper before being emitted.
+	 */
+	protected InMapperCombiner inMapperCombiner = null;
+	
+	/**
+	 * where the combined values are emitted when this
+	 * mapper is closed.
+	 */
+	private OutputCollector<WritableComparable<?>, WritableComparable<?>> inMapperCombinerOutput = null;
+	
 	private static final Log LOGGER = LogFactory.getLog(AbstractMobiusMapper.class);
 	
 	
@@ -167,12 +229,26 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 		
 		this.conf = conf;
 		
-		this._IS_MAP_ONLY_JOB = this.conf.getInt("mapred.reduce.tasks", 1)==0;
+		// the join is performed in the mappers when there are
+		// broadcast or merged datasets, the values are still 
+		// emitted in the same way as in a job with reducers.
+		boolean isBroadcastJoin = !this.conf.get(ConfigureConstants.BROADCAST_DATASET_IDS, "").isEmpty();
+		boolean isSortMergeJoin = !this.conf.get(ConfigureConstants.SORT_MERGE_DATASET_IDS, "").isEmpty();
+		this._IS_MAP_ONLY_JOB = this.conf.getInt("mapred.reduce.tasks", 1)==0 && !isBroadcastJoin && !isSortMergeJoin;
 		
 		// catch the current dataset ID, the {@link Configuration#get(String)}
 		// is costly as it compose Pattern every time. 
 		this.currentDatasetID = Byte.valueOf(this.conf.get (ConfigureConstants.CURRENT_DATASET_ID));
 		
+		if( isBroadcastJoin )
+		{
+			this.broadcastJoin = new BroadcastHashJoin(conf, this.currentDatasetID);
+		}
+		else if( isSortMergeJoin )
+		{
+			this.sortMergeJoin = new SortMergeJoin(conf, this.currentDatasetID);
+		}
+		
 		String[] datasetIDstoNames = this.conf.getStrings(ConfigureConstants.DATASET_ID_TO_NAME_MAPPING);
 		Map<Byte, String> mapping = new HashMap<Byte, String>();
 		for( String aMapping:datasetIDstoNames )
@@ -206,12 +282,36 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 			this.key_columns	= (String[])this.conf.getStrings(this.getDatasetID()+".key.columns", Util.ZERO_SIZE_STRING_ARRAY);			
 			this.value_columns	= (String[])this.conf.getStrings(this.getDatasetID()+".value.columns", Util.ZERO_SIZE_STRING_ARRAY);
 			this.tuple_criteria = (TupleCriterion)this.get("tuple.criteria");
+			
+			// the criteria of the job output pushed down to this dataset,
+			// the rows not meeting them are never persisted.
+			TupleCriterion pushed = (TupleCriterion)this.get("pushed.criteria");
+			if( pushed!=null )
+			{
+				this.tuple_criteria = this.tuple_criteria==null?pushed:this.tuple_criteria.and(pushed);
+			}
 			this.computedColumns= (List<ComputedColumns>)this.get("computed.columns");
+			this.splitCriteria();
 			
 			if( this._IS_MAP_ONLY_JOB )
 			{
 				this.projection_order = (String[])this.conf.getStrings(this.getDatasetID()+".columns.in.original.order", Util.ZERO_SIZE_STRING_ARRAY);
 			}
+			else if( this.broadcastJoin==null && this.sortMergeJoin==null && SkewJoin.hasHotKeys(conf) )
+			{
+				this.skewJoin = new SkewJoin(conf, this.currentDatasetID);
+			}
+			
+			if( !this._IS_MAP_ONLY_JOB && BloomFilterJoin.isEnabled(conf, this.currentDatasetID) )
+			{
+				this.bloomFilter = new BloomFilterJoin(conf);
+			}
+			
+			if( !this._IS_MAP_ONLY_JOB && this.broadcastJoin==null && this.sortMergeJoin==null && this.skewJoin==null && 
+					(this.bloomFilter==null || !this.bloomFilter.isBuilding()) )
+			{
+				this.inMapperCombiner = InMapperCombiner.newInstance(conf, this.currentDatasetID);
+			}
 		}catch(IOException e)
 		{
 			e.printStackTrace();
@@ -240,9 +340,33 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 					c.setReporter(reporter);
 				}
 			}
+			if( this.broadcastJoin!=null ){
+				this.broadcastJoin.setReporter(reporter);
+			}
+			if( this.sortMergeJoin!=null ){
+				this.sortMergeJoin.setReporter(reporter);
+			}
+			if( this.inMapperCombiner!=null ){
+				this.inMapperCombiner.setReporter(reporter);
+			}
 			reporterSet = true;
 		}
 		
+		if( this.bloomFilter!=null && this.bloomFilter.isBuilding() )
+		{
+			this.bloomFilterOutput = output;
+		}
+		
+		// the raw records can be rejected before being parsed.
+		if( !this.acceptRaw(key, value) )
+		{
+			this._COUNTER_INPUT_RECORD++;
+			this.updateCounter(this.dataset_display_id, "INPUT_RECORDS", this._COUNTER_INPUT_RECORD);
+			this._COUNTER_FILTERED_RECORD++;
+			this.updateCounter(this.dataset_display_id, "FILTERED_RECORDS", this._COUNTER_FILTERED_RECORD);
+			return;
+		}
+		
 		Tuple record = null;
 		try
 		{
@@ -254,10 +378,26 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 			this.updateCounter(this.dataset_display_id, "INVALIDATE_RECORDS", this._COUNTER_INVALIDATE_FORMAT_RECORD);
 			return;
 		}
+		catch(InvalidColumnValueException e)
+		{
+			this._COUNTER_INVALIDATE_FORMAT_RECORD++;
+			this.updateCounter(this.dataset_display_id, "INVALIDATE_RECORDS", this._COUNTER_INVALIDATE_FORMAT_RECORD);
+			return;
+		}
 		
 		this._COUNTER_INPUT_RECORD++;
 		this.updateCounter(this.dataset_display_id, "INPUT_RECORDS", this._COUNTER_INPUT_RECORD);
 		
+		// the computed columns and the projections are skipped
+		// for the records not meeting the criteria on the parsed
+		// columns.
+		if( this.parsed_criteria!=null && !this.parsed_criteria.accept(record, this.conf) )
+		{
+			this._COUNTER_FILTERED_RECORD++;
+			this.updateCounter(this.dataset_display_id, "FILTERED_RECORDS", this._COUNTER_FILTERED_RECORD);
+			return;
+		}
+		
 		
 		Iterable<Tuple> rows_to_be_output = new ArrayList<Tuple>();
 		((List<Tuple>)rows_to_be_output).add(record);
@@ -272,26 +412,14 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 				
 				if ( aComputedColumn.getResult()!=null && aComputedColumn.getResult().size()>0 )
 				{
-					BigTupleList computedResult = aComputedColumn.getResult();
-					if( computedResult.size()<5000 )
-					{
-						// use in memory cross product
-						Iterable<Tuple>[] allValues = new Iterable[2];
-						allValues[0] = rows_to_be_output;
-						allValues[1] = aComputedColumn.getResult();
-						
-						rows_to_be_output = Util.inMemoryCrossProduct(allValues);
-					}
-					else
-					{
-						// computed result is too big, don't use in memory cross
-						// product.
-						Iterable<Tuple>[] allValues = new Iterable[2];
-						allValues[0] = rows_to_be_output;
-						allValues[1] = aComputedColumn.getResult();
-						
-						rows_to_be_output = Util.crossProduct(this.conf, reporter,  allValues);
-					}
+					// the cross product is computed lazily when the rows
+					// are iterated below, nothing is materialized no matter
+					// how big the computed result is.
+					Iterable<Tuple>[] allValues = new Iterable[2];
+					allValues[0] = rows_to_be_output;
+					allValues[1] = aComputedColumn.getResult();
+					
+					rows_to_be_output = Util.crossProduct(this.conf, reporter,  allValues);
 				}
 			}			
 		}
@@ -300,48 +428,42 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 		// apply the criteria if any and prepare output
 		for( Tuple aRow:rows_to_be_output)
 		{
-			Tuple out_key	= this.getKeyTuple(this.key_columns, aRow, null);
-			Tuple out_value = null;
-			if( !this._IS_MAP_ONLY_JOB )
-			{
-				// tuple will go to reducer phase, we use the sorted column
-				// so the reducer can set the schema back correctly.
-				out_value = this.getTuple(this.value_columns, aRow, Tuple.NULL);
-			}
-			else
+			// use the aRow as the criteria might use column(s)
+			// not within the projection columns (<code>value_columns</code>).
+			boolean accepted = this.computed_criteria==null || this.computed_criteria.accept(aRow, this.conf);
+			
+			Tuple out_key = accepted?this.getKeyTuple(this.key_columns, aRow, null):null;
+			
+			// the rows which keys are not in the bloom filter
+			// cannot be joined, drop them here.
+			if( accepted && this.bloomFilter!=null && !this.bloomFilter.isBuilding() )
 			{
-				out_value = this.getTuple(this.projection_order, aRow, Tuple.NULL);
+				accepted = this.bloomFilter.mightJoin(out_key);
 			}
 			
-				
-			/**
-			 * TODO some tuple criteria can be applied earlier, if the 
-			 * columns it is evaluating are not derived.  This can 
-			 * save the time to compute the derived columns, as it might
-			 * be costly. 
-			 */
-			if( this.tuple_criteria!=null )
+			if( accepted )
 			{
-				// use the aRow as the criteria might use column(s)
-				// not within the projection columns (<code>value_columns</code>).
-				if ( this.tuple_criteria.accept(aRow, this.conf) ) 
+				Tuple out_value = null;
+				if( !this._IS_MAP_ONLY_JOB )
 				{
-					outputRecords(out_key, out_value, output);
-					this._COUNTER_OUTPUT_RECORD++;
-					this.updateCounter(this.dataset_display_id, "OUTPUT_RECORDS", this._COUNTER_OUTPUT_RECORD);
+					// tuple will go to reducer phase, we use the sorted column
+					// so the reducer can set the schema back correctly.
+					out_value = this.getTuple(this.value_columns, aRow, Tuple.NULL);
 				}
 				else
 				{
-					this._COUNTER_FILTERED_RECORD++;
-					this.updateCounter(this.dataset_display_id, "FILTERED_RECORDS", this._COUNTER_FILTERED_RECORD);
+					out_value = this.getTuple(this.projection_order, aRow, Tuple.NULL);
 				}
-			}
-			else
-			{
+				
 				outputRecords(out_key, out_value, output);
 				this._COUNTER_OUTPUT_RECORD++;
 				this.updateCounter(this.dataset_display_id, "OUTPUT_RECORDS", this._COUNTER_OUTPUT_RECORD);
 			}
+			else
+			{
+				this._COUNTER_FILTERED_RECORD++;
+				this.updateCounter(this.dataset_display_id, "FILTERED_RECORDS", this._COUNTER_FILTERED_RECORD);
+			}
 		}
 		
 		if( rows_to_be_output instanceof Closeable )
@@ -358,6 +480,24 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 			// map only job, key is not needed as no join is required.
 			output.collect(NullWritable.get(), value);
 		}
+		else if( this.broadcastJoin!=null )
+		{
+			// join with the broadcast datasets, the joined
+			// results are written to the output directly.
+			this.broadcastJoin.join(key, value, output);
+		}
+		else if( this.sortMergeJoin!=null )
+		{
+			// merge with the other datasets, the joined results
+			// are written when the key changes.
+			this.sortMergeJoin.join(key, value, output);
+		}
+		else if( this.bloomFilter!=null && this.bloomFilter.isBuilding() )
+		{
+			// building the bloom filter of the join keys, it's
+			// emitted when this mapper is closed.
+			this.bloomFilter.add(key);
+		}
 		else
 		{
 			if( key==null )
@@ -367,7 +507,22 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 				throw new IllegalArgumentException("key for dataset: "+this.getDatasetID()+
 						" cannot be empty when performing join/group by.");
 			}			
-			output.collect(key, value);
+			
+			if( this.skewJoin!=null )
+			{
+				this.skewJoin.output(key, value, output);
+			}
+			else if( this.inMapperCombiner!=null )
+			{
+				// the combined values are emitted when the limits
+				// are reached or this mapper is closed.
+				this.inMapperCombinerOutput = output;
+				this.inMapperCombiner.add(key, value, output);
+			}
+			else
+			{
+				output.collect(key, value);
+			}
 		}
 	}
 	
@@ -378,7 +533,66 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 	public void close()
 		throws IOException
 	{		
-		this.counterThread.stop();
+		if( this.sortMergeJoin!=null )
+			this.sortMergeJoin.close();
+		
+		if( this.bloomFilterOutput!=null )
+			this.bloomFilter.close(this.bloomFilterOutput);
+		
+		if( this.inMapperCombinerOutput!=null )
+			this.inMapperCombiner.flush(this.inMapperCombinerOutput);
+		
+		if( this.counterThread!=null )
+			this.counterThread.stop();
+	}
+	
+	/**
+	 * Split the conjuncts of {@link #tuple_criteria} by whether 
+	 * they evaluate any of the {@link #computedColumns}.
+	 */
+	private void splitCriteria()
+	{
+		this.parsed_criteria	= null;
+		this.computed_criteria	= null;
+		if( this.tuple_criteria==null )
+			return;
+		
+		Set<String> computed = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		if( this.computedColumns!=null )
+		{
+			for( ComputedColumns aComputedColumn:this.computedColumns )
+			{
+				computed.addAll(Arrays.asList(aComputedColumn.getOutputSchema()));
+			}
+		}
+		
+		for( TupleCriterion aConjunct:this.tuple_criteria.getConjuncts() )
+		{
+			boolean useComputedColumns = false;
+			for( String aColumn:aConjunct.getInvolvedColumns() )
+			{
+				useComputedColumns |= computed.contains(TupleColumnName.valueOf(aColumn).getID());
+			}
+			
+			if( useComputedColumns )
+				this.computed_criteria = this.computed_criteria==null?aConjunct:this.computed_criteria.and(aConjunct);
+			else
+				this.parsed_criteria = this.parsed_criteria==null?aConjunct:this.parsed_criteria.and(aConjunct);
+		}
+	}
+	
+	/**
+	 * Return false if the raw record (<code>inkey</code> and <code>invalue</code>)
+	 * doesn't meet the {@link #parsed_criteria}, so it is filtered 
+	 * without being parsed.
+	 * <p>
+	 * 
+	 * Always return true by default, override this method if some 
+	 * of the criteria can be evaluated on the raw records cheaper.
+	 */
+	protected boolean acceptRaw(IK inkey, IV invalue)
+	{
+		return true;
 	}
 	
 	/**
@@ -442,6 +656,11 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 	 * retrieve columns from the record tuple, and return
 	 * a new tuple instance which contains only the specified
 	 * columns.
+	 * <p>
+	 * 
+	 * The <code>columns</code> of the values going to the reducers
+	 * are sorted, they are set as the schema of the tuple so the
+	 * tuples share the same schema array, see {@link Tuple#setSchema(String[])}.
 	 */
 	private final Tuple getTuple(String[] columns, Tuple record, Tuple defaultValue)
 	{
@@ -450,6 +669,10 @@ public abstract class AbstractMobiusMapper<IK, IV> extends DataJoinMapper<IK, IV
 		else
 		{
 			Tuple t = new Tuple();
+			if( columns==this.value_columns )
+			{
+				t.setSchema(columns);
+			}
 			for( String aColumn:columns )
 			{
 				t.insert(aColumn, record.get(aColumn));
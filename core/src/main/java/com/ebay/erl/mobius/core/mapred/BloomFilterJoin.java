@@ -0,0 +1,326 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.model.KeyTuple;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * Reduces the rows shuffled in an inner join by a bloom filter
+ * of the join keys of one of the datasets, see
+ * {@link com.ebay.erl.mobius.core.JoinOnConfigure#bloomFilter(com.ebay.erl.mobius.core.builder.Dataset)}.
+ * <p>
+ *
+ * The bloom filter is built by a job before the join job, each
+ * mapper of the dataset adds its join keys into its own bloom
+ * filter and emits it when closed, then {@link BloomFilterReducer}
+ * merges them into one.  In the join job, the mappers of the other
+ * datasets drop the rows whose keys are not in the bloom filter,
+ * as they cannot be joined.
+ * <p>
+ *
+ * The values of different types can be equal when being compared
+ * as join keys (ex: "5" and 5L), so the keys are normalized before
+ * being added or tested: numbers and numerical strings are
+ * converted to double, dates to milliseconds, and the columns of
+ * other types are not tested.  The keys might be merged by the
+ * normalization, which only adds to the false positives.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+@SuppressWarnings("deprecation")
+public class BloomFilterJoin
+{
+	private static final Log LOGGER = LogFactory.getLog(BloomFilterJoin.class);
+
+	/**
+	 * the column storing the serialized bloom filter emitted
+	 * by the mappers building the bloom filter.
+	 */
+	public static final String FILTER_COLUMN = "_mobius_bloom_filter";
+
+	private final JobConf conf;
+
+	private final boolean isBuilding;
+
+	private BloomFilter filter;
+
+	private final DataOutputBuffer buffer = new DataOutputBuffer();
+
+
+
+	public BloomFilterJoin(JobConf conf)
+	{
+		this.conf		= conf;
+		this.isBuilding	= conf.getBoolean(ConfigureConstants.BLOOM_FILTER_BUILD, false);
+		if( this.isBuilding )
+		{
+			this.filter = newFilter(conf);
+		}
+	}
+
+
+
+	/**
+	 * Return true if the mappers of the dataset with the given
+	 * <code>datasetID</code> shall build or test the bloom filter.
+	 */
+	public static boolean isEnabled(JobConf conf, Byte datasetID)
+	{
+		if( conf.getBoolean(ConfigureConstants.BLOOM_FILTER_BUILD, false) )
+			return true;
+
+		String filterDatasetID = conf.get(ConfigureConstants.BLOOM_FILTER_DATASET_ID, "");
+		return !conf.get(ConfigureConstants.BLOOM_FILTER_PATH, "").isEmpty() && !filterDatasetID.equals(datasetID.toString());
+	}
+
+
+
+	/**
+	 * Return true if the bloom filter is being built.
+	 */
+	public boolean isBuilding()
+	{
+		return this.isBuilding;
+	}
+
+
+
+	/**
+	 * Add the join <code>key</code> into the bloom filter being built.
+	 */
+	public void add(Tuple key)
+		throws IOException
+	{
+		this.filter.add(this.toBloomKey(key));
+	}
+
+
+
+	/**
+	 * Return false if the join <code>key</code> is definitely not
+	 * in the dataset the bloom filter is built from.
+	 */
+	public boolean mightJoin(Tuple key)
+		throws IOException
+	{
+		if( this.filter==null )
+		{
+			this.filter = this.load();
+		}
+		return this.filter.membershipTest(this.toBloomKey(key));
+	}
+
+
+
+	/**
+	 * Emit the bloom filter being built into <code>output</code>.
+	 */
+	public void close(OutputCollector<WritableComparable<?>, WritableComparable<?>> output)
+		throws IOException
+	{
+		DataOutputBuffer out = new DataOutputBuffer();
+		this.filter.write(out);
+
+		Tuple key = new KeyTuple();
+		key.insert(FILTER_COLUMN, Boolean.TRUE);
+
+		Tuple value = new Tuple();
+		value.insert(FILTER_COLUMN, Arrays.copyOf(out.getData(), out.getLength()));
+
+		output.collect(key, value);
+	}
+
+
+
+	/**
+	 * Create an empty bloom filter sized by {@link ConfigureConstants#BLOOM_FILTER_EXPECTED_KEYS}
+	 * and {@link ConfigureConstants#BLOOM_FILTER_FALSE_POSITIVE}.
+	 */
+	public static BloomFilter newFilter(JobConf conf)
+	{
+		long expectedKeys	= Math.max(1L, conf.getLong(ConfigureConstants.BLOOM_FILTER_EXPECTED_KEYS, 1000000L));
+		double fpRate		= conf.getFloat(ConfigureConstants.BLOOM_FILTER_FALSE_POSITIVE, 0.01F);
+
+		// optimal number of bits and hash functions for the expected
+		// number of keys and false positive rate.
+		int vectorSize	= (int)Math.min(Integer.MAX_VALUE-1, Math.ceil(-expectedKeys*Math.log(fpRate)/(Math.log(2)*Math.log(2))));
+		int nbHash		= Math.max(1, (int)Math.round((double)vectorSize/expectedKeys*Math.log(2)));
+
+		return new BloomFilter(vectorSize, nbHash, Hash.MURMUR_HASH);
+	}
+
+
+
+	/**
+	 * Read the bloom filter from the output of the job building
+	 * it, from the distributed cache if it's there.
+	 */
+	private BloomFilter load()
+		throws IOException
+	{
+		Path folder		= new Path(this.conf.get(ConfigureConstants.BLOOM_FILTER_PATH));
+		String suffix	= folder.toUri().getPath()+"/";
+
+		FileSystem fs		= FileSystem.getLocal(this.conf);
+		List<Path> files	= new ArrayList<Path>();
+
+		Path[] cachedFiles = DistributedCache.getLocalCacheFiles(this.conf);
+		if( cachedFiles!=null )
+		{
+			for( Path aFile:cachedFiles )
+			{
+				if( aFile.getParent()!=null && (aFile.getParent().toUri().getPath()+"/").endsWith(suffix) )
+					files.add(aFile);
+			}
+		}
+
+		if( files.size()==0 )
+		{
+			fs = folder.getFileSystem(this.conf);
+			FileStatus[] parts = fs.globStatus(new Path(folder, "part-*"));
+			if( parts!=null )
+			{
+				for( FileStatus aPart:parts )
+				{
+					files.add(aPart.getPath());
+				}
+			}
+		}
+
+		BloomFilter result = newFilter(this.conf);
+		for( Path aFile:files )
+		{
+			SequenceFile.Reader reader = new SequenceFile.Reader(fs, aFile, this.conf);
+			try
+			{
+				BloomFilter aFilter = new BloomFilter();
+				while( reader.next(NullWritable.get(), aFilter) )
+				{
+					result.or(aFilter);
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+			LOGGER.info("Bloom filter loaded from "+aFile);
+		}
+		return result;
+	}
+
+
+
+	/**
+	 * Merge the serialized bloom filter in <code>value</code> (emitted
+	 * by {@link #close(OutputCollector)}) into <code>filter</code>.
+	 */
+	static void merge(BloomFilter filter, Tuple value)
+		throws IOException
+	{
+		byte[] bytes = (byte[])value.get(0);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(bytes, bytes.length);
+
+		BloomFilter aFilter = new BloomFilter();
+		aFilter.readFields(in);
+		filter.or(aFilter);
+	}
+
+
+
+	/**
+	 * normalize the <code>key</code> so the keys considered equal
+	 * in a join are the same.
+	 */
+	private Key toBloomKey(Tuple key)
+		throws IOException
+	{
+		this.buffer.reset();
+		int columns = key.getSchema().length;
+		for( int i=0;i<columns;i++ )
+		{
+			Object value = key.get(i);
+			if( value==null )
+			{
+				this.buffer.writeByte(0);
+			}
+			else if( value instanceof Number )
+			{
+				this.writeDouble(((Number)value).doubleValue());
+			}
+			else if( value instanceof String )
+			{
+				try
+				{
+					// same as comparing a string with a number
+					this.writeDouble(Double.parseDouble((String)value));
+				}
+				catch(NumberFormatException e)
+				{
+					this.buffer.writeByte(2);
+					Text.writeString(this.buffer, (String)value);
+				}
+			}
+			else if( value instanceof java.util.Date )
+			{
+				this.buffer.writeByte(3);
+				this.buffer.writeLong(((java.util.Date)value).getTime());
+			}
+			else if( value instanceof Boolean )
+			{
+				this.buffer.writeByte(4);
+				this.buffer.writeBoolean((Boolean)value);
+			}
+			else
+			{
+				// not tested, all the values match
+				this.buffer.writeByte(5);
+			}
+		}
+		return new Key(Arrays.copyOf(this.buffer.getData(), this.buffer.getLength()));
+	}
+
+
+
+	private void writeDouble(double v)
+		throws IOException
+	{
+		this.buffer.writeByte(1);
+		// 0.0 and -0.0 are the same
+		this.buffer.writeDouble(v==0.0?0.0:v);
+	}
+}
@@ -0,0 +1,63 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.bloom.BloomFilter;
+
+import com.ebay.erl.mobius.core.datajoin.DataJoinReducer;
+import com.ebay.erl.mobius.core.datajoin.DataJoinValueGroup;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * Reducer for the job building the bloom filter of a join,
+ * merges the bloom filters emitted by the mappers into one,
+ * see {@link BloomFilterJoin}.
+ * 
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0, 
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ * 
+ * This product contains portions derived from Apache hadoop which is 
+ * licensed under the Apache License, Version 2.0, available at 
+ * http://hadoop.apache.org.
+ * 
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+@SuppressWarnings("deprecation")
+public class BloomFilterReducer extends DataJoinReducer<Tuple, Tuple, NullWritable, BloomFilter>
+{
+	private JobConf conf;
+	
+	@Override
+	public void configure(JobConf conf)
+	{
+		this.conf = conf;
+	}
+	
+	/**
+	 * Output key is {@link org.apache.hadoop.io.NullWritable} and output 
+	 * value is the merged {@link org.apache.hadoop.util.bloom.BloomFilter}.
+	 */
+	@Override
+	public void joinreduce(Tuple key, DataJoinValueGroup<Tuple> values, OutputCollector<NullWritable, BloomFilter> output, Reporter reporter)
+		throws IOException
+	{
+		BloomFilter result = BloomFilterJoin.newFilter(this.conf);
+		while( values.hasNext() )
+		{
+			values.nextDatasetID();
+			Iterator<Tuple> filters = values.next();
+			while( filters.hasNext() )
+			{
+				BloomFilterJoin.merge(result, filters.next());
+				reporter.progress();
+			}
+		}
+		output.collect(NullWritable.get(), result);
+	}
+}
@@ -0,0 +1,366 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.MobiusDelegatingInputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.datajoin.DataJoinValue;
+import com.ebay.erl.mobius.core.datajoin.DataJoinValueGroup;
+import com.ebay.erl.mobius.core.model.NormalizedKey;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.sort.Sorter;
+import com.ebay.erl.mobius.util.Util;
+
+/**
+ * Performs a join in the mappers of the only dataset not
+ * being broadcast, see {@link com.ebay.erl.mobius.core.JoinOnConfigure#broadcast}.
+ * <p>
+ *
+ * The broadcast datasets are read with their own input formats
+ * and mappers (so their criteria and computed columns are applied),
+ * and the emitted values are kept in memory, indexed by the join
+ * keys.  They are loaded once per task JVM and reused by the
+ * following tasks of the same job when the JVM is reused.
+ * <p>
+ *
+ * For every key and value emitted by the current mapper, the
+ * matched values from the broadcast datasets are put together
+ * with the value in the order of the dataset IDs, then passed
+ * to {@link DefaultMobiusReducer}, so the projections are
+ * computed the same way as in the reducers.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+@SuppressWarnings("deprecation")
+public class BroadcastHashJoin
+{
+	private static final Log LOGGER = LogFactory.getLog(BroadcastHashJoin.class);
+
+	private static final Sorter[] NO_SORTER = new Sorter[0];
+
+	/**
+	 * the ID of the job which the loaded tables belong to.
+	 */
+	private static String _LOADED_JOB_ID;
+
+	private static Map<Byte, JoinTable> _TABLES;
+
+
+
+	private final JobConf conf;
+
+	private final Byte currentDatasetID;
+
+	private final Byte[] allDatasetIDs;
+
+	private final boolean isOuterJoin;
+
+	private final DefaultMobiusReducer reducer;
+
+	private Map<Byte, JoinTable> tables;
+
+	private Reporter reporter = Reporter.NULL;
+
+
+
+	public BroadcastHashJoin(JobConf conf, Byte currentDatasetID)
+	{
+		this.conf				= conf;
+		this.currentDatasetID	= currentDatasetID;
+		this.isOuterJoin		= conf.getBoolean(ConfigureConstants.IS_OUTER_JOIN, false);
+
+		String[] allDSIDs = conf.getStrings(ConfigureConstants.ALL_DATASET_IDS, Util.ZERO_SIZE_STRING_ARRAY);
+		this.allDatasetIDs = new Byte[allDSIDs.length];
+		for( int i=0;i<allDSIDs.length;i++ )
+		{
+			this.allDatasetIDs[i] = Byte.valueOf(allDSIDs[i]);
+		}
+
+		this.reducer = new DefaultMobiusReducer();
+		this.reducer.configure(conf);
+	}
+
+
+
+	public void setReporter(Reporter reporter)
+	{
+		this.reporter = reporter;
+	}
+
+
+
+	/**
+	 * Join the <code>key</code> and <code>value</code> emitted by
+	 * the current mapper with the broadcast datasets, and write the
+	 * final projections into <code>output</code>.
+	 */
+	public void join(Tuple key, Tuple value, OutputCollector<WritableComparable<?>, WritableComparable<?>> output)
+		throws IOException
+	{
+		if( this.tables==null )
+		{
+			this.tables = getTables(this.conf, this.reporter);
+		}
+
+		List<DataJoinValue> values = new ArrayList<DataJoinValue>();
+		for( Byte aDatasetID:this.allDatasetIDs )
+		{
+			if( aDatasetID.equals(this.currentDatasetID) )
+			{
+				values.add(new DataJoinValue(aDatasetID, value));
+			}
+			else
+			{
+				List<DataJoinValue> matched = this.tables.get(aDatasetID).get(key);
+				if( matched!=null )
+				{
+					values.addAll(matched);
+				}
+				else if( !this.isOuterJoin )
+				{
+					// inner join, nothing to output
+					return;
+				}
+			}
+		}
+
+		// the reducer only emits NullWritable as the key
+		@SuppressWarnings("unchecked")
+		OutputCollector<NullWritable, WritableComparable<?>> reducerOutput = (OutputCollector<NullWritable, WritableComparable<?>>)(OutputCollector<?, ?>)output;
+		this.reducer.joinreduce(key, new DataJoinValueGroup<Tuple>(values.iterator()), reducerOutput, this.reporter);
+	}
+
+
+
+	private static synchronized Map<Byte, JoinTable> getTables(JobConf conf, Reporter reporter)
+		throws IOException
+	{
+		// the job ID is not set in local mode, don't
+		// reuse the tables as the next job might have
+		// the same ID.
+		String jobID = conf.get("mapred.job.id", "");
+		if( _TABLES!=null && !jobID.isEmpty() && jobID.equals(_LOADED_JOB_ID) )
+		{
+			return _TABLES;
+		}
+
+		// release the tables of the previous job first
+		_TABLES = null;
+
+		Map<Byte, JoinTable> tables = load(conf, reporter);
+
+		_TABLES			= tables;
+		_LOADED_JOB_ID	= jobID;
+		return tables;
+	}
+
+
+
+	private static Map<Byte, JoinTable> load(JobConf conf, Reporter reporter)
+		throws IOException
+	{
+		JobConf loadConf = MobiusDelegatingInputFormat.getInputsAside(conf, ConfigureConstants.BROADCAST_INPUTS_PREFIX);
+		// the mappers of the broadcast datasets emit the join keys
+		// and values, the same as in a join job with reducers.
+		loadConf.setNumReduceTasks(1);
+		loadConf.set(ConfigureConstants.BROADCAST_DATASET_IDS, "");
+
+		Map<Byte, JoinTable> tables = new HashMap<Byte, JoinTable>();
+		for( String anID:conf.getStrings(ConfigureConstants.BROADCAST_DATASET_IDS) )
+		{
+			tables.put(Byte.valueOf(anID), new JoinTable());
+		}
+
+		MobiusDelegatingInputFormat<Object, Object> inf = new MobiusDelegatingInputFormat<Object, Object>();
+		for( InputSplit aSplit:inf.getSplits(loadConf, 1) )
+		{
+			RecordReader<Object, Object> reader = inf.getRecordReader(aSplit, loadConf, reporter);
+			
+			// the mappers of the datasets accept any key and value
+			@SuppressWarnings("unchecked")
+			final AbstractMobiusMapper<Object, Object> mapper = ReflectionUtils.newInstance(inf.getMapper(aSplit, loadConf), loadConf);
+			final JoinTable table = tables.get(mapper.getDatasetID());
+
+			LOGGER.info("Loading broadcast dataset "+mapper.getDatasetID()+" from "+aSplit);
+
+			OutputCollector<WritableComparable<?>, WritableComparable<?>> collector = new OutputCollector<WritableComparable<?>, WritableComparable<?>>(){
+				@Override
+				public void collect(WritableComparable<?> key, WritableComparable<?> value)
+					throws IOException
+				{
+					table.add((Tuple)key, new DataJoinValue(mapper.getDatasetID(), value));
+				}
+			};
+
+			try
+			{
+				// the parsed tuples might refer to the key and value,
+				// create new ones for every record.
+				Object key		= reader.createKey();
+				Object value	= reader.createValue();
+				while( reader.next(key, value) )
+				{
+					mapper.joinmap(key, value, collector, reporter);
+					key		= reader.createKey();
+					value	= reader.createValue();
+				}
+			}
+			finally
+			{
+				reader.close();
+				mapper.close();
+			}
+		}
+
+		for( Map.Entry<Byte, JoinTable> anEntry:tables.entrySet() )
+		{
+			anEntry.getValue().buildIndex();
+			LOGGER.info("Broadcast dataset "+anEntry.getKey()+" loaded, "+anEntry.getValue().size()+" distinct keys.");
+		}
+		return tables;
+	}
+
+
+
+	/**
+	 * The values of a broadcast dataset, grouped by their keys.
+	 * <p>
+	 *
+	 * The keys are compared positionally the same way as in the
+	 * shuffle of a join job.  If the key columns are of the same
+	 * type in all the keys, they are also indexed by their
+	 * {@link NormalizedKey}, which are equal if and only if the
+	 * keys are equal, so the keys of the same types can be looked
+	 * up by hashing.
+	 */
+	private static class JoinTable
+	{
+		private final TreeMap<Tuple, List<DataJoinValue>> sorted = new TreeMap<Tuple, List<DataJoinValue>>(new Tuple());
+
+		private Map<NormalizedKey, List<DataJoinValue>> hashed;
+
+		/**
+		 * the types of the key columns, null type if all
+		 * the values of the column are null.
+		 */
+		private byte[] types;
+
+		private final NormalizedKey probe = new NormalizedKey();
+
+
+		void add(Tuple key, DataJoinValue value)
+		{
+			List<DataJoinValue> values = this.sorted.get(key);
+			if( values==null )
+			{
+				values = new ArrayList<DataJoinValue>(1);
+				this.sorted.put(key, values);
+			}
+			values.add(value);
+		}
+
+
+		int size()
+		{
+			return this.sorted.size();
+		}
+
+
+		void buildIndex()
+		{
+			for( Tuple aKey:this.sorted.keySet() )
+			{
+				if( !this.matchTypes(aKey, true) )
+				{
+					// different types in the same column, cannot
+					// be compared by the normalized keys.
+					this.types = null;
+					return;
+				}
+			}
+
+			this.hashed = new HashMap<NormalizedKey, List<DataJoinValue>>();
+			for( Map.Entry<Tuple, List<DataJoinValue>> anEntry:this.sorted.entrySet() )
+			{
+				if( !this.probe.set(anEntry.getKey(), NO_SORTER) )
+				{
+					this.hashed = null;
+					return;
+				}
+				this.hashed.put(this.probe.copy(), anEntry.getValue());
+			}
+		}
+
+
+		List<DataJoinValue> get(Tuple key)
+		{
+			if( this.hashed!=null && this.matchTypes(key, false) && this.probe.set(key, NO_SORTER) )
+			{
+				return this.hashed.get(this.probe);
+			}
+			return this.sorted.get(key);
+		}
+
+
+		/**
+		 * check if the types of the columns of <code>key</code> are
+		 * the same as the other keys, null values match any type.
+		 *
+		 * @param update true to record the types of the key.
+		 */
+		private boolean matchTypes(Tuple key, boolean update)
+		{
+			int columns = key.getSchema().length;
+			if( this.types==null )
+			{
+				if( !update )
+					return false;
+
+				this.types = new byte[columns];
+				java.util.Arrays.fill(this.types, Tuple.NULL_TYPE);
+			}
+
+			if( this.types.length!=columns )
+				return false;
+
+			for( int i=0;i<columns;i++ )
+			{
+				byte type = Tuple.getType(key.get(i));
+				if( type==Tuple.NULL_TYPE )
+					continue;
+
+				if( this.types[i]==Tuple.NULL_TYPE && update )
+					this.types[i] = type;
+				else if( this.types[i]!=type )
+					return false;
+			}
+			return true;
+		}
+	}
+}
@@ -29,6 +29,7 @@ import org.apache.hadoop.mapred.lib.InputSampler;
 import org.apache.hadoop.mapred.lib.TotalOrderPartitioner;
 import org.apache.hadoop.mapred.lib.InputSampler.Sampler;
 
+import com.ebay.erl.mobius.core.ConfigureConstants;
 import com.ebay.erl.mobius.core.datajoin.DataJoinKey;
 import com.ebay.erl.mobius.core.datajoin.EvenlyPartitioner;
 import com.ebay.erl.mobius.core.model.Tuple;
@@ -84,17 +85,7 @@ public class ConfigurableJob extends Job
 			// this job needs reducer, perform sampling on the keys to 
 			// make load on reducers are almost evenly distributed.
 			
-			double freq		= jobConf.getFloat ("mobius.sampler.freq", 0.1F);
-			int numSamples	= jobConf.getInt ("mobius.sampler.num.samples", 50000);
-			int maxSplits	= jobConf.getInt ("mobius.sampler.max.slipts.sampled", 5);
-			
-			// log sampling parameters so that user knows.
-			LOGGER.info("Sampling parameters { " +
-					"mobius.sampler.freq:"+format.format(freq)+", " +
-							"mobius.sampler.num.samples:"+numSamples+", " +
-									"mobius.sampler.max.slipts.sampled:"+maxSplits+"}");
-			
-			InputSampler.Sampler<?, ?> sampler = new MobiusInputSampler(freq, numSamples, maxSplits);
+			InputSampler.Sampler<?, ?> sampler = createSampler(jobConf);
 		
 			writePartitionFile(jobConf, sampler);
 			
@@ -134,12 +125,46 @@ public class ConfigurableJob extends Job
 						
 			this.setJobConf(jobConf);
 		}
+		else if( jobConf.getNumReduceTasks()!=0 && jobConf.getBoolean(ConfigureConstants.SKEW_JOIN, false) )
+		{
+			// sample the keys to find the hot keys of the join, they 
+			// are spread over multiple reducers.  Not needed for the
+			// even partitioner, which assigns a reducer to each hot key.
+			try
+			{
+				Object[] samples = createSampler(jobConf).getSample(jobConf.getInputFormat(), jobConf);
+				SkewJoin.writeHotKeys(jobConf, samples);
+			}
+			catch(IOException e)
+			{
+				LOGGER.error(e.getMessage(), e);
+				throw new RuntimeException(e);
+			}
+			this.setJobConf(jobConf);
+		}
 		LOGGER.info("Submiting job:"+jobConf.getJobName());
 		super.submit();
 	}
 	
 	
 	
+	private static InputSampler.Sampler<?, ?> createSampler(JobConf jobConf)
+	{
+		double freq		= jobConf.getFloat ("mobius.sampler.freq", 0.1F);
+		int numSamples	= jobConf.getInt ("mobius.sampler.num.samples", 50000);
+		int maxSplits	= jobConf.getInt ("mobius.sampler.max.slipts.sampled", 5);
+		
+		// log sampling parameters so that user knows.
+		LOGGER.info("Sampling parameters { " +
+				"mobius.sampler.freq:"+format.format(freq)+", " +
+						"mobius.sampler.num.samples:"+numSamples+", " +
+								"mobius.sampler.max.slipts.sampled:"+maxSplits+"}");
+		
+		return new MobiusInputSampler(freq, numSamples, maxSplits);
+	}
+	
+	
+	
 	
 	
 	private static void writePartitionFile(JobConf job, Sampler sampler)
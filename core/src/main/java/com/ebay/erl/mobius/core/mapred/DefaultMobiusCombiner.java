@@ -3,9 +3,11 @@ package com.ebay.erl.mobius.core.mapred;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.OutputCollector;
@@ -29,6 +31,15 @@ import com.ebay.erl.mobius.util.Util;
  * Default combiner for join or group-by job if
  * all the projectable columns are combinable,
  * determined by {@link Projectable#isCombinable()}.
+ * <p>
+ * 
+ * When only some of the group functions are combinable, 
+ * the values are partially combined, see {@link ConfigureConstants#PARTIAL_COMBINE}.
+ * The combinable functions emit their partial results in a
+ * {@link DataJoinValue#PARTIAL_ROW}, and the values are passed
+ * through as {@link DataJoinValue#PASS_THROUGH_ROW} for the 
+ * other functions, the reducers route the rows to the functions
+ * by their types.
  * 
  * 
  * <p>
@@ -58,6 +69,23 @@ public class DefaultMobiusCombiner extends DataJoinReducer<Tuple, Tuple, DataJoi
 	
 	private Map<Byte, List<Projectable> > dsToFuncsMapping = new HashMap<Byte, List<Projectable>>();
 	
+	/**
+	 * the datasets whose values are combined.
+	 */
+	private Set<Byte> combinedDatasets = new HashSet<Byte>();
+	
+	/**
+	 * the datasets having functions not run in this combiner,
+	 * the values are passed through for them.
+	 */
+	private Set<Byte> passThroughDatasets = new HashSet<Byte>();
+	
+	/**
+	 * true if some of the functions are not run in this 
+	 * combiner.
+	 */
+	private boolean isPartial = false;
+	
 	private boolean reporterSet = false;
 	
 	@Override
@@ -80,13 +108,26 @@ public class DefaultMobiusCombiner extends DataJoinReducer<Tuple, Tuple, DataJoi
 			this._projections = (Projectable[]) SerializableUtil.deserializeFromBase64(this.conf.get(ConfigureConstants.PROJECTION_COLUMNS), this.conf);
 			for( Projectable p:this._projections )
 			{
-				if( !p.isCombinable() )
+				if( !isRunInCombiner(p) )
+					this.isPartial = true;
+			}
+			
+			for( Projectable p:this._projections )
+			{
+				if( p.requireDataFromMultiDatasets() )
 				{
-					throw new IllegalArgumentException(p.toString()+" is not a combinable function.");
+					throw new IllegalArgumentException(p.toString()+" requires columns from multiple datasets, it is not a combinable function.");
 				}
 				
 				Byte datasetID = p.getParticipatedDataset().toArray(new Dataset[0])[0].getID();
 				
+				if( !isRunInCombiner(p, this.isPartial) )
+				{
+					// its input columns are passed through
+					this.passThroughDatasets.add(datasetID);
+					continue;
+				}
+				
 				List<Projectable> funcs = null;
 				if( (funcs=dsToFuncsMapping.get(datasetID))==null )
 				{
@@ -102,6 +143,21 @@ public class DefaultMobiusCombiner extends DataJoinReducer<Tuple, Tuple, DataJoi
 					groupFunctionResults.put((GroupFunction)p, new BigTupleList(null));
 				}
 			}
+			
+			// when combined partially, only the datasets having combinable
+			// group functions are combined, there is nothing to be saved
+			// for the others.
+			for( Byte aDatasetID:this.dsToFuncsMapping.keySet() )
+			{
+				boolean hasGroupFunction = false;
+				for( Projectable p:this.dsToFuncsMapping.get(aDatasetID) )
+				{
+					hasGroupFunction |= p instanceof GroupFunction;
+				}
+				
+				if( !this.isPartial || hasGroupFunction )
+					this.combinedDatasets.add(aDatasetID);
+			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -146,18 +202,45 @@ public class DefaultMobiusCombiner extends DataJoinReducer<Tuple, Tuple, DataJoi
 			
 			Iterator<Tuple> tuples = values.next ();
 			
+			DataJoinKey outKey		= new DataJoinKey(datasetID, key);
+			boolean combined		= this.combinedDatasets.contains(datasetID);
+			boolean passThrough		= this.passThroughDatasets.contains(datasetID);
+			
+			// the columns not computed here (the columns passed through
+			// in the partial row, and the input columns other than the
+			// first one of a function) are null, its schema is the same
+			// as the values.
 			Tuple combinedValue = new Tuple();
+			combinedValue.setSchema(this.getValueSchemaByDatasetID(datasetID));
+			for( String aColumn:this.getValueSchemaByDatasetID(datasetID) )
+			{
+				combinedValue.putNull(aColumn);
+			}
 			
 			long progress = 0L;
 			while( tuples.hasNext() )
 			{
 				Tuple aTuple = tuples.next();
+				byte rowType = DataJoinValueGroup.getRowType(tuples);
 				if( ++progress % 3000 ==0 )
 				{
 					reporter.progress();
 				}				
 				aTuple.setSchema(this.getValueSchemaByDatasetID(datasetID));
 				
+				if( !combined || rowType==DataJoinValue.PASS_THROUGH_ROW )
+				{
+					// not for the functions in here
+					output.collect(outKey, new DataJoinValue(datasetID, aTuple, rowType));
+					continue;
+				}
+				
+				if( rowType==DataJoinValue.RAW_ROW && passThrough )
+				{
+					// the other functions still need it
+					output.collect(outKey, new DataJoinValue(datasetID, aTuple, DataJoinValue.PASS_THROUGH_ROW));
+				}
+				
 				for( Projectable p:this.dsToFuncsMapping.get(datasetID) )
 				{
 					if( p instanceof GroupFunction )
@@ -175,6 +258,9 @@ public class DefaultMobiusCombiner extends DataJoinReducer<Tuple, Tuple, DataJoi
 				}
 			}
 			
+			if( !combined )
+				return;
+			
 			for( Projectable p:this.dsToFuncsMapping.get(datasetID) )
 			{
 				if( p instanceof GroupFunction )
@@ -192,13 +278,48 @@ public class DefaultMobiusCombiner extends DataJoinReducer<Tuple, Tuple, DataJoi
 				}
 			}
 			
-			DataJoinKey outKey		= new DataJoinKey(datasetID, key);
-			DataJoinValue outValue	= new DataJoinValue(datasetID, combinedValue);
+			DataJoinValue outValue	= new DataJoinValue(datasetID, combinedValue, this.isPartial?DataJoinValue.PARTIAL_ROW:DataJoinValue.RAW_ROW);
 			output.collect(outKey, outValue);
 		}
 	}
 	
 	
+	/**
+	 * Return true if the function <code>p</code> is run in this 
+	 * combiner, its input columns are replaced with its partial 
+	 * result, false if the input columns are passed through.
+	 */
+	public static boolean isRunInCombiner(Projectable p)
+	{
+		if( !p.isCombinable() || p.requireDataFromMultiDatasets() )
+			return false;
+		
+		// the group key only function is combinable but
+		// it's not run in the combiner.
+		return !(p instanceof GroupFunction && p.useGroupKeyOnly());
+	}
+	
+	
+	/**
+	 * Return true if the function <code>p</code> is run in this
+	 * combiner when the values are combined <code>partial</code>ly
+	 * or not.
+	 * <p>
+	 * 
+	 * A partial row holds only the group keys for the extend
+	 * functions, so when combined partially, the extend functions
+	 * using the other columns are not run in here, their input
+	 * rows are passed through to the reducers.
+	 */
+	public static boolean isRunInCombiner(Projectable p, boolean partial)
+	{
+		if( !isRunInCombiner(p) )
+			return false;
+		
+		return !(partial && p instanceof ExtendFunction && !p.useGroupKeyOnly());
+	}
+	
+	
 	protected String[] getValueSchemaByDatasetID(Byte datasetID)
 	{
 		String[] schema = null;
@@ -4,11 +4,14 @@ import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.logging.Log;
@@ -24,6 +27,7 @@ import com.ebay.erl.mobius.core.builder.Dataset;
 import com.ebay.erl.mobius.core.collection.BigTupleList;
 import com.ebay.erl.mobius.core.criterion.TupleCriterion;
 import com.ebay.erl.mobius.core.datajoin.DataJoinReducer;
+import com.ebay.erl.mobius.core.datajoin.DataJoinValue;
 import com.ebay.erl.mobius.core.datajoin.DataJoinValueGroup;
 import com.ebay.erl.mobius.core.function.base.ExtendFunction;
 import com.ebay.erl.mobius.core.function.base.GroupFunction;
@@ -204,6 +208,13 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 	 */
 	private Map<Byte, Boolean> onlyHasGroupKeyExtendFunctions = new HashMap<Byte, Boolean>();
 	
+	/**
+	 * the group functions run in {@link DefaultMobiusCombiner}, they
+	 * consume the {@link DataJoinValue#PARTIAL_ROW}s but not the
+	 * {@link DataJoinValue#PASS_THROUGH_ROW}s.
+	 */
+	private Set<GroupFunction> combinedGroupFunctions = Collections.newSetFromMap(new IdentityHashMap<GroupFunction, Boolean>());
+	
 	@Override
 	public void configure(JobConf conf)
 	{
@@ -316,6 +327,9 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 				Byte datasetID = func.getParticipatedDataset().toArray(new Dataset[0])[0].getID();
 				if( func instanceof GroupFunction )
 				{
+					if( DefaultMobiusCombiner.isRunInCombiner(func) )
+						this.combinedGroupFunctions.add((GroupFunction)func);
+					
 					List<GroupFunction> funcs = null;
 					if( (funcs=this.singleDatasetGroupFunction.get(datasetID))==null ){
 						funcs = new LinkedList<GroupFunction>();
@@ -341,7 +355,9 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 							ExtendFunction.class.getCanonicalName());
 				}
 				
-				this.onlyHasGroupKeyExtendFunctions.put(datasetID, onlyUseGroupKey);
+				// a dataset has only group key extend functions if all of its functions do
+				Boolean previous = this.onlyHasGroupKeyExtendFunctions.get(datasetID);
+				this.onlyHasGroupKeyExtendFunctions.put(datasetID, onlyUseGroupKey && (previous==null || previous));
 			}
 		}
 		
@@ -549,12 +565,10 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 					nullResult.add(fun.getNoMatchResult(nullReplacement));
 			}
 			
-			for( Tuple t1:Util.crossProduct(conf, reporter, nullResult) )
+			Iterable<Tuple>[] array = new Iterable[]{Util.crossProduct(conf, reporter, nullResult), others};
+			for( Tuple merged:Util.crossProduct(conf, reporter, array) )
 			{
-				for( Tuple t2:others )
-				{
-					this.output(Tuple.merge(t1, t2), output, reporter);
-				}
+				this.output(merged, output, reporter);
 			}
 		}
 		else
@@ -591,26 +605,19 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 				}
 				else
 				{
-					this.processExtendFunctions(_lastDatasetID, aRow, reporter);
-					this.computeGroupFunctions(_lastDatasetID, aRow);
+					byte rowType = DataJoinValueGroup.getRowType(valuesFromLastDataset);
+					this.processExtendFunctions(_lastDatasetID, aRow, rowType, reporter);
+					this.computeGroupFunctions(_lastDatasetID, aRow, rowType);
 				}
 			}
 			
 			if(!hasNoGroupFunctionForLastDS)
 			{
-				for( Tuple t1: this.crossProduct(reporter, false, _lastDatasetID) )
+				// null <code>others</code> is ignored in the cross product
+				Iterable<Tuple>[] array = new Iterable[]{this.crossProduct(reporter, false, _lastDatasetID), others};
+				for( Tuple merged:Util.crossProduct(conf, reporter, array) )
 				{
-					if( others!=null )
-					{
-						for(Tuple t2:others)
-						{
-							this.output(Tuple.merge(t1, t2), output, reporter);
-						}
-					}
-					else
-					{
-						this.output(t1, output, reporter);
-					}
+					this.output(merged, output, reporter);
 				}
 			}
 		}
@@ -624,6 +631,7 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 		while( tuples.hasNext() )
 		{
 			Tuple aTuple = tuples.next();
+			byte rowType = DataJoinValueGroup.getRowType(tuples);
 			aTuple.setSchema(this.getSchemaByDatasetID(datasetID));
 			
 			if( this.requirePreCrossProduct )
@@ -633,8 +641,8 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 				// corss product
 				rememberTuple(datasetID, aTuple, reporter);
 			}
-			this.processExtendFunctions(datasetID, aTuple, reporter);
-			this.computeGroupFunctions(datasetID, aTuple);
+			this.processExtendFunctions(datasetID, aTuple, rowType, reporter);
+			this.computeGroupFunctions(datasetID, aTuple, rowType);
 		}
 	}
 	
@@ -678,14 +686,24 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 	 * compute the extend functions for the given datasetID, using the 
 	 * <code>aRow</code> as the input and save the result for final
 	 * cross-product.
+	 * <p>
+	 * 
+	 * The partial rows from the combiner only hold the group keys
+	 * for the extend functions, they are skipped unless all the 
+	 * extend functions use the group keys only.  The combiner 
+	 * passes the rows through for the other extend functions,
+	 * see {@link DefaultMobiusCombiner#isRunInCombiner(Projectable, boolean)}.
 	 */
-	private void processExtendFunctions(Byte datasetID, Tuple aRow, Reporter reporter)
+	private void processExtendFunctions(Byte datasetID, Tuple aRow, byte rowType, Reporter reporter)
 	{
 		// process extend function for this current dataset and save the result
 		List<ExtendFunction> extendFunctions	= this.singleDatasetExtendFunction.get(datasetID);
 		if( extendFunctions==null )
 			return;
 		
+		if( rowType==DataJoinValue.PARTIAL_ROW && !onlyHasGroupKeyExtendFunctions.get(datasetID) )
+			return;
+		
 		BigTupleList computedResult				= null;
 		if( (computedResult=this.singleDatasetExtendFunResult.get(datasetID))==null )
 		{
@@ -728,11 +746,28 @@ public class DefaultMobiusReducer extends DataJoinReducer<Tuple, Tuple, NullWrit
 	 * For each group function from of the given datasetID,
 	 * call their consume method with the <code>aRow</code>
 	 * as the input.
+	 * <p>
+	 * 
+	 * The partial rows from the combiner are consumed only by
+	 * the functions run in the combiner, and the rows passed
+	 * through the combiner only by the others.
 	 */
-	private void computeGroupFunctions(Byte datasetID, Tuple aRow)
+	private void computeGroupFunctions(Byte datasetID, Tuple aRow, byte rowType)
 	{
 		List<GroupFunction> groupFunctions = this.singleDatasetGroupFunction.get(datasetID);
-		this.computeGroupFunctions(aRow, groupFunctions);
+		if( rowType==DataJoinValue.RAW_ROW )
+		{
+			this.computeGroupFunctions(aRow, groupFunctions);
+		}
+		else if( groupFunctions!=null )
+		{
+			boolean isPartialRow = rowType==DataJoinValue.PARTIAL_ROW;
+			for( GroupFunction aFunction:groupFunctions )
+			{
+				if( this.combinedGroupFunctions.contains(aFunction)==isPartialRow )
+					aFunction.consume(aRow);
+			}
+		}
 	}
 	private void computeGroupFunctions(Tuple aRow, List<GroupFunction> functions)
 	{
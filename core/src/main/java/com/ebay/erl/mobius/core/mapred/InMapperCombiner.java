@@ -0,0 +1,317 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.collection.BigTupleList;
+import com.ebay.erl.mobius.core.function.ApproxQuantile;
+import com.ebay.erl.mobius.core.function.ApproxUniqueCounts;
+import com.ebay.erl.mobius.core.function.Avg;
+import com.ebay.erl.mobius.core.function.Counts;
+import com.ebay.erl.mobius.core.function.Max;
+import com.ebay.erl.mobius.core.function.Min;
+import com.ebay.erl.mobius.core.function.Sum;
+import com.ebay.erl.mobius.core.function.base.ExtendFunction;
+import com.ebay.erl.mobius.core.function.base.GroupFunction;
+import com.ebay.erl.mobius.core.function.base.Projectable;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.util.SerializableUtil;
+import com.ebay.erl.mobius.util.Util;
+
+/**
+ * Combines the values of the same key in the mappers before
+ * they are emitted, when the job uses {@link DefaultMobiusCombiner},
+ * see {@link ConfigureConstants#IN_MAPPER_COMBINE}.
+ * <p>
+ *
+ * Each key in memory has its own instances of the group functions
+ * of the current dataset, the values of the key are consumed by
+ * them as in {@link DefaultMobiusCombiner}.  The partial results
+ * are emitted in the same form as the combiner emits, when the
+ * number of keys or the estimated memory reaches the limits, see
+ * {@link ConfigureConstants#IN_MAPPER_COMBINE_MAX_KEYS} and
+ * {@link ConfigureConstants#IN_MAPPER_COMBINE_MAX_BYTES}, and
+ * when the mapper is closed.  The combiner and the reducers
+ * merge the partial results of the same key from different
+ * flushes and mappers.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+@SuppressWarnings("deprecation")
+public class InMapperCombiner
+{
+	private static final Log LOGGER = LogFactory.getLog(InMapperCombiner.class);
+
+	/**
+	 * estimated bytes of a function instance in memory.
+	 */
+	private static final long FUNCTION_SIZE = 128L;
+
+	private final JobConf conf;
+
+	/**
+	 * the serialized group functions of the current dataset,
+	 * deserialized into new instances for the new keys.
+	 */
+	private final String groupFunctions;
+
+	private final List<ExtendFunction> extendFunctions = new ArrayList<ExtendFunction>();
+	
+	/**
+	 * the value columns of the current dataset, the combined
+	 * values have the same schema.
+	 */
+	private final String[] valueSchema;
+
+	/**
+	 * true if the group functions keep the consumed values,
+	 * so their sizes are counted.
+	 */
+	private final boolean retainsValues;
+	
+	/**
+	 * estimated bytes of the group functions of a key.
+	 */
+	private final long functionsSize;
+
+	private final int maxKeys;
+
+	private final long maxBytes;
+
+	private final Map<Tuple, Partial> partials = new HashMap<Tuple, Partial>();
+
+	/**
+	 * the group functions of the flushed keys, reused for
+	 * the new keys.
+	 */
+	private final LinkedList<GroupFunction[]> pool = new LinkedList<GroupFunction[]>();
+
+	private long estimatedBytes = 0L;
+
+	private Reporter reporter = Reporter.NULL;
+
+
+
+	private InMapperCombiner(JobConf conf, Byte datasetID, List<Projectable> functions)
+		throws IOException
+	{
+		this.conf		= conf;
+		this.valueSchema	= conf.getStrings(datasetID+".value.columns", Util.ZERO_SIZE_STRING_ARRAY);
+		this.maxKeys	= Math.max(1, conf.getInt(ConfigureConstants.IN_MAPPER_COMBINE_MAX_KEYS, 100000));
+		this.maxBytes	= conf.getLong(ConfigureConstants.IN_MAPPER_COMBINE_MAX_BYTES, 64L*1024L*1024L);
+
+		List<GroupFunction> groupFunctions	= new ArrayList<GroupFunction>();
+		boolean retainsValues				= false;
+		long functionsSize					= 0L;
+		for( Projectable p:functions )
+		{
+			if( p instanceof GroupFunction )
+			{
+				groupFunctions.add((GroupFunction)p);
+				retainsValues |= !(p instanceof Sum || p instanceof Avg || p instanceof Counts || p instanceof Min || p instanceof Max || p instanceof ApproxUniqueCounts || p instanceof ApproxQuantile);
+				functionsSize += FUNCTION_SIZE;
+				if( p instanceof ApproxUniqueCounts )
+					functionsSize += ((ApproxUniqueCounts)p).getSketchSize();
+				else if( p instanceof ApproxQuantile )
+					functionsSize += ((ApproxQuantile)p).getSketchSize();
+			}
+			else
+			{
+				this.extendFunctions.add((ExtendFunction)p);
+			}
+		}
+		this.groupFunctions	= SerializableUtil.serializeToBase64(groupFunctions.toArray(new GroupFunction[0]));
+		this.retainsValues	= retainsValues;
+		this.functionsSize	= functionsSize;
+	}
+
+
+
+	/**
+	 * Create an {@link InMapperCombiner} for the dataset with the
+	 * given <code>datasetID</code>, return null if the values are
+	 * not combined in the job or the dataset has no function to
+	 * be combined.
+	 */
+	public static InMapperCombiner newInstance(JobConf conf, Byte datasetID)
+		throws IOException
+	{
+		if( !conf.getBoolean(ConfigureConstants.IN_MAPPER_COMBINE, true) || conf.getCombinerClass()!=DefaultMobiusCombiner.class )
+			return null;
+
+		List<Projectable> functions = new ArrayList<Projectable>();
+		for( Projectable p:(Projectable[])SerializableUtil.deserializeFromBase64(conf.get(ConfigureConstants.PROJECTION_COLUMNS), conf) )
+		{
+			// the values are partially combined, they are emitted
+			// for the functions not run in the combiner.
+			if( !DefaultMobiusCombiner.isRunInCombiner(p) )
+				return null;
+			
+			if( p.getParticipatedDataset().toArray(new Dataset[0])[0].getID().equals(datasetID) )
+			{
+				p.setCalledByCombiner(true);
+				functions.add(p);
+			}
+		}
+
+		if( functions.size()==0 )
+			return null;
+
+		return new InMapperCombiner(conf, datasetID, functions);
+	}
+
+
+
+	public void setReporter(Reporter reporter)
+	{
+		this.reporter = reporter;
+	}
+
+
+
+	/**
+	 * Consume the <code>value</code> of the <code>key</code>, the
+	 * partial results are flushed into <code>output</code> if the
+	 * limits are reached.
+	 */
+	public void add(Tuple key, Tuple value, OutputCollector<WritableComparable<?>, WritableComparable<?>> output)
+		throws IOException
+	{
+		Partial aPartial = this.partials.get(key);
+		if( aPartial==null )
+		{
+			if( this.partials.size()>=this.maxKeys || this.estimatedBytes>=this.maxBytes )
+			{
+				LOGGER.info("Flushing "+this.partials.size()+" keys ("+this.estimatedBytes+" bytes estimated) combined in the mapper.");
+				this.flush(output);
+			}
+
+			aPartial = new Partial(this.newGroupFunctions(), this.valueSchema);
+			this.partials.put(key, aPartial);
+			this.estimatedBytes += key.getEstimatedSizeInMemory()+this.functionsSize+value.getEstimatedSizeInMemory();
+		}
+		else if( this.retainsValues )
+		{
+			this.estimatedBytes += value.getEstimatedSizeInMemory();
+		}
+
+		for( GroupFunction func:aPartial.functions )
+		{
+			func.consume(value);
+		}
+
+		for( ExtendFunction func:this.extendFunctions )
+		{
+			String name = func.getInputColumns()[0].getInputColumnName();
+			aPartial.combinedValue.insert(name, func.getResult(value).get(0));
+		}
+	}
+
+
+
+	/**
+	 * Emit the partial results of all the keys in memory into
+	 * <code>output</code>.
+	 */
+	public void flush(OutputCollector<WritableComparable<?>, WritableComparable<?>> output)
+		throws IOException
+	{
+		for( Map.Entry<Tuple, Partial> anEntry:this.partials.entrySet() )
+		{
+			Partial aPartial = anEntry.getValue();
+			for( GroupFunction func:aPartial.functions )
+			{
+				BigTupleList aggregatedResult = func.getResult();
+				if( aggregatedResult.size()==1 )
+				{
+					String name = func.getInputColumns()[0].getInputColumnName();
+					aPartial.combinedValue.insert(name, aggregatedResult.getFirst().get(0));
+				}
+				else if( aggregatedResult.size()>1 )
+				{
+					throw new IllegalArgumentException(func.toString()+" is a group function that generates " +
+							"more than one rows ("+aggregatedResult.size()+") per key, so it is not combinable.");
+				}
+				func.reset();
+			}
+
+			output.collect(anEntry.getKey(), aPartial.combinedValue);
+			this.pool.add(aPartial.functions);
+		}
+
+		this.partials.clear();
+		this.estimatedBytes = 0L;
+	}
+
+
+
+	private GroupFunction[] newGroupFunctions()
+		throws IOException
+	{
+		GroupFunction[] result = this.pool.poll();
+		if( result==null )
+		{
+			result = (GroupFunction[])SerializableUtil.deserializeFromBase64(this.groupFunctions, this.conf);
+			for( GroupFunction func:result )
+			{
+				func.setCalledByCombiner(true);
+			}
+		}
+
+		for( GroupFunction func:result )
+		{
+			func.setReporter(this.reporter);
+		}
+		return result;
+	}
+
+
+
+	/**
+	 * the partial results of a key.
+	 */
+	private static class Partial
+	{
+		final GroupFunction[] functions;
+
+		/**
+		 * the results of the extend functions, the results of the
+		 * group functions are added when flushed, the columns not
+		 * computed are null.
+		 */
+		final Tuple combinedValue = new Tuple();
+
+		Partial(GroupFunction[] functions, String[] valueSchema)
+		{
+			this.functions = functions;
+			this.combinedValue.setSchema(valueSchema);
+			for( String aColumn:valueSchema )
+			{
+				this.combinedValue.putNull(aColumn);
+			}
+		}
+	}
+}
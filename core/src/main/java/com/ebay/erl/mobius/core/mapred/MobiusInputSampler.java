@@ -22,6 +22,7 @@ import org.apache.hadoop.util.ReflectionUtils;
 import com.ebay.erl.mobius.core.ConfigureConstants;
 import com.ebay.erl.mobius.core.datajoin.DataJoinKey;
 import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.KeyTuple;
 import com.ebay.erl.mobius.core.model.Tuple;
 import com.ebay.erl.mobius.core.sort.Sorter;
 import com.ebay.erl.mobius.core.sort.Sorter.Ordering;
@@ -81,6 +82,12 @@ public class MobiusInputSampler implements Sampler {
 		// but require some modifications.
 		
 		InputSplit[] splits = inf.getSplits(job, job.getNumMapTasks());
+		
+		// the sampled mappers are never closed, the keys must be
+		// emitted to the sampling collector instead of being 
+		// buffered by an in-mapper combiner.
+		job = new JobConf(job);
+		job.setBoolean(ConfigureConstants.IN_MAPPER_COMBINE, false);
 		ArrayList<DataJoinKey> samples = new ArrayList<DataJoinKey>(this.numSamples);
 		int splitsToSample = Math.min(this.maxSplitsSampled, splits.length);
 
@@ -213,7 +220,9 @@ public class MobiusInputSampler implements Sampler {
 	
 	private DataJoinKey getKey(Tuple tuple, Sorter[] sorter, Byte datasetID, AbstractMobiusMapper mapper, Configuration conf)
 	{
-		Tuple columnsUsedToSort = new Tuple();
+		// same as the keys emitted by AbstractMobiusMapper, the
+		// columns are in the order of the sorters.
+		Tuple columnsUsedToSort = new KeyTuple();
 		for(Sorter aSorter:sorter )
 		{
 			String name		= aSorter.getColumn();
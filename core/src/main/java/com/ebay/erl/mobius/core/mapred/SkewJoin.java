@@ -0,0 +1,236 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.datajoin.DataJoinKey;
+import com.ebay.erl.mobius.core.model.KeyTuple;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.util.SerializableUtil;
+import com.ebay.erl.mobius.util.Util;
+
+/**
+ * Spreads the hot keys of a join job over multiple reducers,
+ * see {@link ConfigureConstants#SKEW_JOIN}.
+ * <p>
+ *
+ * The hot keys are the keys taking more than twice of the
+ * average reducer share in the samples of the last dataset,
+ * which is streamed in the reducers instead of being buffered.
+ * Each hot key is assigned a number of salts, the rows of the
+ * last dataset with a hot key are assigned to one of the salts
+ * in turns, and the rows of the other datasets with a hot key
+ * are replicated to all the salts.  The salt is appended to the
+ * key as an extra column, so the rows of each salt are grouped
+ * and joined separately, and are hashed into the consecutive
+ * reducers by {@link com.ebay.erl.mobius.core.datajoin.DataJoinKeyPartitioner}.
+ * The union of the joined results of all the salts is the same
+ * as joining the rows of the hot key in one reducer.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+@SuppressWarnings({"deprecation", "unchecked"})
+public class SkewJoin
+{
+	private static final Log LOGGER = LogFactory.getLog(SkewJoin.class);
+
+	/**
+	 * name of the column appended to the hot keys.
+	 */
+	public static final String SALT_COLUMN = "_mobius_skew_salt";
+
+	/**
+	 * hot key to its number of salts.
+	 */
+	private final TreeMap<Tuple, Integer> hotKeys;
+
+	/**
+	 * true if the current dataset is the last dataset,
+	 * which is streamed in the reducers.
+	 */
+	private final boolean isStreamed;
+
+	private int nextSalt = 0;
+
+
+
+	public SkewJoin(JobConf conf, Byte currentDatasetID)
+		throws IOException
+	{
+		String[] allDSIDs	= conf.getStrings(ConfigureConstants.ALL_DATASET_IDS, Util.ZERO_SIZE_STRING_ARRAY);
+		this.isStreamed		= allDSIDs.length>0 && currentDatasetID.equals(Byte.valueOf(allDSIDs[allDSIDs.length-1]));
+		this.hotKeys		= readHotKeys(conf);
+	}
+
+
+
+	/**
+	 * Return true if there are hot keys to be spread in the
+	 * job of the given <code>conf</code>.
+	 */
+	public static boolean hasHotKeys(JobConf conf)
+	{
+		return !conf.get(ConfigureConstants.SKEW_JOIN_HOT_KEYS, "").isEmpty();
+	}
+
+
+
+	/**
+	 * Emit the <code>key</code> and <code>value</code>, salted if
+	 * the key is a hot key.
+	 */
+	public void output(Tuple key, Tuple value, OutputCollector<WritableComparable<?>, WritableComparable<?>> output)
+		throws IOException
+	{
+		Integer salts = this.hotKeys.get(key);
+		if( salts==null )
+		{
+			output.collect(key, value);
+		}
+		else if( this.isStreamed )
+		{
+			this.nextSalt = (this.nextSalt+1) % salts;
+			output.collect(salt(key, this.nextSalt), value);
+		}
+		else
+		{
+			for( int i=0;i<salts;i++ )
+			{
+				output.collect(salt(key, i), value);
+			}
+		}
+	}
+
+
+
+	/**
+	 * Find the hot keys of the last dataset from the <code>samples</code>
+	 * ({@link DataJoinKey}s) of the <code>job</code>, and store them in
+	 * {@link ConfigureConstants#SKEW_JOIN_HOT_KEYS}.
+	 */
+	public static void writeHotKeys(JobConf job, Object[] samples)
+		throws IOException
+	{
+		String[] allDSIDs	= job.getStrings(ConfigureConstants.ALL_DATASET_IDS, Util.ZERO_SIZE_STRING_ARRAY);
+		int reducersNbr		= job.getNumReduceTasks();
+		if( allDSIDs.length<2 || reducersNbr<2 )
+			return;
+
+		Byte streamedDatasetID = Byte.valueOf(allDSIDs[allDSIDs.length-1]);
+
+		TreeMap<Tuple, Integer> counts = new TreeMap<Tuple, Integer>(new Tuple());
+		int total = 0;
+		for( Object aSample:samples )
+		{
+			DataJoinKey aKey = (DataJoinKey)aSample;
+			if( !streamedDatasetID.equals(aKey.getDatasetID()) )
+				continue;
+
+			Tuple key		= (Tuple)aKey.getKey();
+			Integer count	= counts.get(key);
+			counts.put(key, count==null?1:count+1);
+			total++;
+		}
+
+		double avgReduceSize = (double)total/reducersNbr;
+
+		int hotKeysNbr			= 0;
+		DataOutputBuffer buffer	= new DataOutputBuffer();
+		for( Map.Entry<Tuple, Integer> anEntry:counts.entrySet() )
+		{
+			if( anEntry.getValue()>avgReduceSize*2 )
+			{
+				int salts = (int)Math.min(reducersNbr, Math.ceil(anEntry.getValue()/avgReduceSize));
+				LOGGER.info("Hot key "+anEntry.getKey()+" appears "+anEntry.getValue()+" times in "+total+
+						" samples, spread it over "+salts+" reducers.");
+
+				toKeyTuple(anEntry.getKey()).write(buffer);
+				buffer.writeInt(salts);
+				hotKeysNbr++;
+			}
+		}
+
+		if( hotKeysNbr>0 )
+		{
+			DataOutputBuffer result = new DataOutputBuffer();
+			result.writeInt(hotKeysNbr);
+			result.write(buffer.getData(), 0, buffer.getLength());
+			job.set(ConfigureConstants.SKEW_JOIN_HOT_KEYS, SerializableUtil.serializeToBase64(Arrays.copyOf(result.getData(), result.getLength())));
+		}
+		else
+		{
+			LOGGER.info("No hot key found in "+total+" samples.");
+		}
+	}
+
+
+
+	private static TreeMap<Tuple, Integer> readHotKeys(JobConf conf)
+		throws IOException
+	{
+		TreeMap<Tuple, Integer> result = new TreeMap<Tuple, Integer>(new Tuple());
+
+		String value = conf.get(ConfigureConstants.SKEW_JOIN_HOT_KEYS, "");
+		if( value.isEmpty() )
+			return result;
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.decodeBase64(value.getBytes("UTF-8"))));
+		int hotKeysNbr = in.readInt();
+		for( int i=0;i<hotKeysNbr;i++ )
+		{
+			Tuple aKey = new KeyTuple();
+			aKey.readFields(in);
+			result.put(aKey, in.readInt());
+		}
+		return result;
+	}
+
+
+
+	/**
+	 * copy the columns of <code>key</code> into a {@link KeyTuple},
+	 * which is serialized in the column order.
+	 */
+	private static Tuple toKeyTuple(Tuple key)
+	{
+		Tuple result = new KeyTuple();
+		String[] schema = key.getSchema();
+		for( int i=0;i<schema.length;i++ )
+		{
+			result.insert(schema[i], key.get(i));
+		}
+		return result;
+	}
+
+
+
+	private static Tuple salt(Tuple key, int salt)
+	{
+		Tuple result = toKeyTuple(key);
+		result.insert(SALT_COLUMN, salt);
+		return result;
+	}
+}
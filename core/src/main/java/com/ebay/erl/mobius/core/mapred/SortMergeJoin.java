@@ -0,0 +1,379 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.MobiusDelegatingInputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.datajoin.DataJoinValue;
+import com.ebay.erl.mobius.core.datajoin.DataJoinValueGroup;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.util.Util;
+
+/**
+ * Performs a join in the mappers of the first dataset by
+ * merging the part files of the same bucket from all the
+ * datasets, see {@link com.ebay.erl.mobius.core.builder.Dataset#setBucketing(int, String...)}.
+ * <p>
+ *
+ * Each mapper reads one part file of the first dataset, and
+ * opens the part files with the same name from the other
+ * datasets with their own input formats and mappers.  As the
+ * keys emitted from all the part files are in ascending order,
+ * the values of the same key are collected by advancing the
+ * part files together, then passed to {@link DefaultMobiusReducer},
+ * so the projections are computed the same way as in the
+ * reducers.
+ * <p>
+ *
+ * The keys are verified to be sorted and hashed into the
+ * current bucket, an {@link IOException} is thrown if the
+ * datasets are not bucketed as specified.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+@SuppressWarnings("deprecation")
+public class SortMergeJoin
+{
+	private static final Log LOGGER = LogFactory.getLog(SortMergeJoin.class);
+
+	private static final Pattern PART_FILE = Pattern.compile("part-(\\d+)");
+
+	private final JobConf conf;
+
+	private final Byte currentDatasetID;
+
+	private final Byte[] allDatasetIDs;
+
+	private final int bucketNumber;
+
+	private final DefaultMobiusReducer reducer;
+
+	/**
+	 * the part files of the other datasets in the current
+	 * bucket, null before the first key is merged.
+	 */
+	private Map<Byte, SortedPartFile> others;
+
+	private int currentBucket = -1;
+
+	private Tuple currentKey;
+
+	private final List<DataJoinValue> currentValues = new ArrayList<DataJoinValue>();
+
+	private OutputCollector<NullWritable, WritableComparable<?>> output;
+
+	private Reporter reporter = Reporter.NULL;
+
+
+
+	public SortMergeJoin(JobConf conf, Byte currentDatasetID)
+	{
+		this.conf				= conf;
+		this.currentDatasetID	= currentDatasetID;
+		this.bucketNumber		= conf.getInt(ConfigureConstants.SORT_MERGE_BUCKET_NUMBER, 0);
+
+		String[] allDSIDs = conf.getStrings(ConfigureConstants.ALL_DATASET_IDS, Util.ZERO_SIZE_STRING_ARRAY);
+		this.allDatasetIDs = new Byte[allDSIDs.length];
+		for( int i=0;i<allDSIDs.length;i++ )
+		{
+			this.allDatasetIDs[i] = Byte.valueOf(allDSIDs[i]);
+		}
+
+		this.reducer = new DefaultMobiusReducer();
+		this.reducer.configure(conf);
+	}
+
+
+
+	public void setReporter(Reporter reporter)
+	{
+		this.reporter = reporter;
+	}
+
+
+
+	/**
+	 * Add the <code>key</code> and <code>value</code> emitted by
+	 * the current mapper, the values of the previous key are
+	 * merged with the other datasets and written into
+	 * <code>output</code> when the key changes.
+	 */
+	public void join(Tuple key, Tuple value, OutputCollector<WritableComparable<?>, WritableComparable<?>> output)
+		throws IOException
+	{
+		// the reducer only emits NullWritable as the key
+		@SuppressWarnings("unchecked")
+		OutputCollector<NullWritable, WritableComparable<?>> reducerOutput = (OutputCollector<NullWritable, WritableComparable<?>>)(OutputCollector<?, ?>)output;
+		this.output = reducerOutput;
+		if( this.currentKey!=null )
+		{
+			int diff = key.compareTo(this.currentKey);
+			if( diff<0 )
+			{
+				throw new IOException(this.conf.get("map.input.file")+" is not sorted by the join keys, "+
+						key+" is after "+this.currentKey+".");
+			}
+			else if( diff>0 )
+			{
+				this.merge();
+			}
+		}
+
+		if( this.currentKey==null )
+		{
+			if( this.others==null )
+			{
+				this.open();
+			}
+			this.checkBucket(key, this.conf.get("map.input.file"));
+			this.currentKey = key;
+		}
+		this.currentValues.add(new DataJoinValue(this.currentDatasetID, value));
+	}
+
+
+
+	/**
+	 * Merge the values of the last key, and close the part
+	 * files of the other datasets.
+	 */
+	public void close()
+		throws IOException
+	{
+		if( this.currentKey!=null )
+		{
+			this.merge();
+		}
+
+		if( this.others!=null )
+		{
+			for( SortedPartFile aPartFile:this.others.values() )
+			{
+				aPartFile.close();
+			}
+		}
+	}
+
+
+
+	private void merge()
+		throws IOException
+	{
+		List<DataJoinValue> values = new ArrayList<DataJoinValue>();
+		for( Byte aDatasetID:this.allDatasetIDs )
+		{
+			if( aDatasetID.equals(this.currentDatasetID) )
+			{
+				values.addAll(this.currentValues);
+			}
+			else
+			{
+				SortedPartFile aPartFile = this.others.get(aDatasetID);
+				if( aPartFile!=null )
+				{
+					aPartFile.advanceTo(this.currentKey, values);
+				}
+			}
+		}
+
+		this.reducer.joinreduce(this.currentKey, new DataJoinValueGroup<Tuple>(values.iterator()), this.output, this.reporter);
+
+		this.currentKey = null;
+		this.currentValues.clear();
+	}
+
+
+
+	/**
+	 * open the part files with the same name as the current
+	 * one from the other datasets.
+	 */
+	private void open()
+		throws IOException
+	{
+		Path currentFile = new Path(this.conf.get("map.input.file"));
+		Matcher m = PART_FILE.matcher(currentFile.getName());
+		if( !m.find() )
+		{
+			throw new IOException(currentFile+" is not a part file of a bucketed dataset.");
+		}
+		this.currentBucket	= Integer.parseInt(m.group(1));
+		this.others			= new HashMap<Byte, SortedPartFile>();
+
+		JobConf mergeConf = MobiusDelegatingInputFormat.getInputsAside(this.conf, ConfigureConstants.SORT_MERGE_INPUTS_PREFIX);
+		// the mappers of the other datasets emit the join keys
+		// and values, the same as in a join job with reducers.
+		mergeConf.setNumReduceTasks(1);
+		mergeConf.set(ConfigureConstants.SORT_MERGE_DATASET_IDS, "");
+
+		MobiusDelegatingInputFormat<Object, Object> inf = new MobiusDelegatingInputFormat<Object, Object>();
+		for( InputSplit aSplit:inf.getSplits(mergeConf, 1) )
+		{
+			Path aFile = new Path(inf.getInputURI(aSplit, mergeConf).toString());
+			if( !aFile.getName().equals(currentFile.getName()) )
+				continue;
+
+			RecordReader<Object, Object> reader = inf.getRecordReader(aSplit, mergeConf, this.reporter);
+			
+			// the mappers of the datasets accept any key and value
+			@SuppressWarnings("unchecked")
+			AbstractMobiusMapper<Object, Object> mapper = ReflectionUtils.newInstance(inf.getMapper(aSplit, mergeConf), mergeConf);
+
+			LOGGER.info("Merging "+aFile+" as dataset "+mapper.getDatasetID());
+			this.others.put(mapper.getDatasetID(), new SortedPartFile(aFile.toString(), reader, mapper));
+		}
+	}
+
+
+
+	private void checkBucket(Tuple key, String file)
+		throws IOException
+	{
+		int bucket = (key.hashCode() & Integer.MAX_VALUE) % this.bucketNumber;
+		if( bucket!=this.currentBucket )
+		{
+			throw new IOException(key+" in "+file+" belongs to bucket "+bucket+" instead of "+this.currentBucket+
+					", the datasets are not bucketed the same way or the join keys are of different types.");
+		}
+	}
+
+
+
+	/**
+	 * A part file of one of the other datasets, the keys
+	 * and values emitted by its mapper are read on demand.
+	 */
+	private class SortedPartFile implements OutputCollector<WritableComparable<?>, WritableComparable<?>>
+	{
+		private final String file;
+
+		private final RecordReader<Object, Object> reader;
+
+		private final AbstractMobiusMapper<Object, Object> mapper;
+
+		private final LinkedList<Tuple> keys = new LinkedList<Tuple>();
+
+		private final LinkedList<DataJoinValue> values = new LinkedList<DataJoinValue>();
+
+		private Tuple lastKey;
+
+		private boolean closed = false;
+
+
+		SortedPartFile(String file, RecordReader<Object, Object> reader, AbstractMobiusMapper<Object, Object> mapper)
+		{
+			this.file	= file;
+			this.reader	= reader;
+			this.mapper	= mapper;
+		}
+
+
+		/**
+		 * skip the keys smaller than <code>key</code>, and add the
+		 * values of <code>key</code> into <code>result</code>.
+		 */
+		void advanceTo(Tuple key, List<DataJoinValue> result)
+			throws IOException
+		{
+			while( this.fill() )
+			{
+				int diff = this.keys.getFirst().compareTo(key);
+				if( diff>0 )
+					break;
+
+				this.keys.removeFirst();
+				DataJoinValue aValue = this.values.removeFirst();
+				if( diff==0 )
+					result.add(aValue);
+			}
+		}
+
+
+		@Override
+		public void collect(WritableComparable<?> key, WritableComparable<?> value)
+			throws IOException
+		{
+			Tuple aKey = (Tuple)key;
+			if( this.lastKey!=null && aKey.compareTo(this.lastKey)<0 )
+			{
+				throw new IOException(this.file+" is not sorted by the join keys, "+aKey+" is after "+this.lastKey+".");
+			}
+
+			if( this.lastKey==null || aKey.compareTo(this.lastKey)!=0 )
+			{
+				checkBucket(aKey, this.file);
+			}
+
+			this.lastKey = aKey;
+			this.keys.add(aKey);
+			this.values.add(new DataJoinValue(this.mapper.getDatasetID(), value));
+		}
+
+
+		/**
+		 * read the records until there is a key emitted or
+		 * the end of the file, return false if no more key.
+		 */
+		private boolean fill()
+			throws IOException
+		{
+			while( this.keys.isEmpty() && !this.closed )
+			{
+				// the parsed tuples might refer to the key and value,
+				// create new ones for every record.
+				Object key		= this.reader.createKey();
+				Object value	= this.reader.createValue();
+				if( this.reader.next(key, value) )
+				{
+					this.mapper.joinmap(key, value, this, reporter);
+				}
+				else
+				{
+					this.close();
+				}
+			}
+			return !this.keys.isEmpty();
+		}
+
+
+		void close()
+			throws IOException
+		{
+			if( !this.closed )
+			{
+				this.closed = true;
+				this.reader.close();
+				this.mapper.close();
+			}
+		}
+	}
+}
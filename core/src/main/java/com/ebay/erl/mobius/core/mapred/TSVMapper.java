@@ -1,14 +1,23 @@
 package com.ebay.erl.mobius.core.mapred;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.JobConf;
 
 import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.criterion.DelimitedLineFilter;
+import com.ebay.erl.mobius.core.model.ColumnParser;
 import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.model.Tuple.TupleColumnName;
 import com.ebay.erl.mobius.util.SerializableUtil;
 
 /**
@@ -25,7 +34,7 @@ import com.ebay.erl.mobius.util.SerializableUtil;
  * 
  * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
  */
-@SuppressWarnings("deprecation")
+@SuppressWarnings({"deprecation", "unchecked"})
 public class TSVMapper extends AbstractMobiusMapper<LongWritable, Text> 
 {
 	/**
@@ -42,6 +51,27 @@ public class TSVMapper extends AbstractMobiusMapper<LongWritable, Text>
 	 */
 	protected String[] schema;
 	
+	/**
+	 * the parsers of the columns in {@link #schema}, set by
+	 * {@link TSVDatasetBuilder#setColumnType(String, byte)},
+	 * null if all the columns are strings.
+	 */
+	protected ColumnParser[] parsers;
+	
+	/**
+	 * the criteria evaluated on the raw lines, null if 
+	 * none of the criteria can be.
+	 */
+	private DelimitedLineFilter lineFilter;
+	
+	/**
+	 * the ordinals of the columns in {@link #schema} used
+	 * by this mapper, null if all of them are used.
+	 */
+	private int[] neededOrdinals;
+	
+	private byte[] delimiterBytes;
+	
 	/**
 	 * {@inheritDoc}
 	 * <p>
@@ -88,6 +118,143 @@ public class TSVMapper extends AbstractMobiusMapper<LongWritable, Text>
 			throw new IllegalArgumentException("Please define schema for dataset:"+this.getDatasetID ());
 				
 		this.schema = this.conf.get(this.getDatasetID()+".schema", "").split(",");
+		
+		
+		///////////////////////////
+		// setup column types
+		///////////////////////////
+		String[] untypedSchema = this.schema;
+		if( !this.conf.get(this.getDatasetID()+".column.parsers", "").isEmpty() )
+		{
+			try
+			{
+				Map<String, ColumnParser> columnParsers = (Map<String, ColumnParser>)SerializableUtil.deserializeFromBase64(this.conf.get(this.getDatasetID()+".column.parsers"), this.conf);
+				
+				this.parsers	= new ColumnParser[this.schema.length];
+				untypedSchema	= new String[this.schema.length];
+				for( int i=0;i<this.schema.length;i++ )
+				{
+					this.parsers[i] = columnParsers.get(this.schema[i].toLowerCase());
+					
+					// the typed columns are not evaluated on the raw lines, 
+					// as the values are compared after being parsed.
+					untypedSchema[i] = this.parsers[i]==null?this.schema[i]:"";
+				}
+			}
+			catch(IOException e)
+			{
+				throw new RuntimeException("Unable to decode the column types for dataset ["+this.getDatasetID()+"].", e);
+			}
+		}
+		
+		
+		///////////////////////////////////////
+		// setup line filter and needed columns
+		///////////////////////////////////////
+		try
+		{
+			// only when the lines are parsed by this class, a sub-class
+			// might parse them differently.
+			if( this.getClass().getMethod("parse", LongWritable.class, Text.class).getDeclaringClass()==TSVMapper.class )
+			{
+				this.lineFilter = DelimitedLineFilter.compile(this.parsed_criteria, untypedSchema, this.delimiter);
+				if( this.lineFilter!=null )
+				{
+					this.parsed_criteria = this.lineFilter.getResidual();
+				}
+				
+				this.neededOrdinals = this.getNeededOrdinals();
+				if( this.neededOrdinals!=null )
+				{
+					this.delimiterBytes = this.delimiter.getBytes("UTF-8");
+				}
+			}
+		}
+		catch(NoSuchMethodException e)
+		{
+			throw new RuntimeException(e);
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	
+	
+	/**
+	 * Get the ordinals of the columns in the {@link #schema} that
+	 * are used by this mapper (the key and value columns, and the
+	 * columns in the criteria), in ascending order.  Return null
+	 * if all the columns are needed.
+	 */
+	private int[] getNeededOrdinals()
+	{
+		// the computed columns can use any of the columns.
+		if( this.computedColumns!=null && this.computedColumns.size()>0 )
+			return null;
+		
+		Set<String> needed = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		for( String[] columns:new String[][]{this.key_columns, this.value_columns, this.projection_order} )
+		{
+			if( columns==null )
+				continue;
+			for( String aColumn:columns )
+			{
+				needed.add(TupleColumnName.valueOf(aColumn).getID());
+			}
+		}
+		
+		// the projections are unknown
+		if( needed.isEmpty() )
+			return null;
+		
+		if( this.tuple_criteria!=null )
+		{
+			for( String aColumn:this.tuple_criteria.getInvolvedColumns() )
+			{
+				needed.add(TupleColumnName.valueOf(aColumn).getID());
+			}
+		}
+		
+		List<Integer> ordinals	= new ArrayList<Integer>();
+		Set<String> found		= new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		for( int i=0;i<this.schema.length;i++ )
+		{
+			if( !found.add(this.schema[i]) )
+			{
+				// duplicated column names
+				return null;
+			}
+			
+			if( needed.contains(this.schema[i]) )
+				ordinals.add(i);
+		}
+		
+		// the columns not in the schema (ex: IDX_$i), or
+		// all the columns are needed.
+		if( !found.containsAll(needed) || ordinals.size()==this.schema.length )
+			return null;
+		
+		int[] result = new int[ordinals.size()];
+		for( int i=0;i<result.length;i++ )
+		{
+			result[i] = ordinals.get(i);
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * 
+	 * The simple criteria on the string columns are evaluated 
+	 * on the bytes of <code>invalue</code>, see {@link DelimitedLineFilter}.
+	 */
+	@Override
+	protected boolean acceptRaw(LongWritable inkey, Text invalue)
+	{
+		return this.lineFilter==null || this.lineFilter.accept(invalue);
 	}
 
 	/**
@@ -98,6 +265,9 @@ public class TSVMapper extends AbstractMobiusMapper<LongWritable, Text>
 	 * <code>invalue</code> is delimited by the {@link #delimiter},
 	 * and stored in a {@link Tuple} all in java.lang.String type, 
 	 * then the {@link #schema} will be assigned to the tuple.
+	 * The values of the typed columns are parsed by the {@link #parsers},
+	 * a {@link com.ebay.erl.mobius.core.model.InvalidColumnValueException}
+	 * is thrown if any of them is malformed.
 	 * <p>
 	 * 
 	 * If the length of the value array (the delimited result
@@ -115,7 +285,13 @@ public class TSVMapper extends AbstractMobiusMapper<LongWritable, Text>
 	public Tuple parse(LongWritable inkey, Text invalue)
 			throws IllegalFormatException, IOException 
 	{		
-		Tuple tuple		= Tuple.valueOf(invalue, this.schema, this.delimiter);		
+		if( this.neededOrdinals!=null )
+		{
+			// only the needed columns are decoded
+			return Tuple.valueOf(invalue, this.schema, this.delimiterBytes, this.neededOrdinals, this.parsers);
+		}
+		
+		Tuple tuple		= Tuple.valueOf(invalue, this.schema, this.delimiter, this.parsers);		
 		return tuple;
 	}
 }
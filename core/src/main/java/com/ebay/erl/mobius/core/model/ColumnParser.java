@@ -0,0 +1,183 @@
+package com.ebay.erl.mobius.core.model;
+
+import java.io.Serializable;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+
+/**
+ * Parses the string value of a column into a primitive
+ * {@link Tuple} type once, when the record is read, so the
+ * criteria, comparisons and aggregations on the column don't
+ * need to convert it again.
+ * <p>
+ *
+ * The supported types are {@link Tuple#STRING_TYPE}, {@link Tuple#INTEGER_TYPE},
+ * {@link Tuple#LONG_TYPE}, {@link Tuple#FLOAT_TYPE}, {@link Tuple#DOUBLE_TYPE},
+ * {@link Tuple#BOOLEAN_TYPE}, {@link Tuple#DATE_TYPE}, {@link Tuple#TIMESTAMP_TYPE}
+ * and {@link Tuple#TIME_TYPE}.  The date and time types are parsed
+ * with the given {@link SimpleDateFormat} pattern, or with the JDBC
+ * escape format (ex: <code>java.sql.Date.valueOf(String)</code>) if
+ * no pattern is given.
+ * <p>
+ *
+ * The values other than strings are trimmed, an empty value is
+ * parsed as null, and a value not in the format of the type
+ * is rejected with {@link InvalidColumnValueException}.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class ColumnParser implements Serializable
+{
+	private static final long serialVersionUID = -3019285718541683274L;
+
+	private final byte type;
+
+	private final String format;
+
+	private transient SimpleDateFormat dateFormat;
+
+
+
+	/**
+	 * Create a parser for the values of the given <code>type</code>.
+	 *
+	 * @param type one of the supported types, ex: {@link Tuple#LONG_TYPE}.
+	 * @param format the {@link SimpleDateFormat} pattern of the date
+	 * and time types, can be null.
+	 */
+	public ColumnParser(byte type, String format)
+	{
+		switch(type)
+		{
+			case Tuple.STRING_TYPE:
+			case Tuple.INTEGER_TYPE:
+			case Tuple.LONG_TYPE:
+			case Tuple.FLOAT_TYPE:
+			case Tuple.DOUBLE_TYPE:
+			case Tuple.BOOLEAN_TYPE:
+				if( format!=null )
+					throw new IllegalArgumentException("Format is only supported for date and time types.");
+				break;
+			case Tuple.DATE_TYPE:
+			case Tuple.TIMESTAMP_TYPE:
+			case Tuple.TIME_TYPE:
+				if( format!=null )
+				{
+					// validate the pattern
+					new SimpleDateFormat(format);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unsupported column type:"+type);
+		}
+
+		this.type	= type;
+		this.format	= format;
+	}
+
+
+
+	public byte getType()
+	{
+		return this.type;
+	}
+
+
+
+	/**
+	 * Parse the <code>value</code> and put it into the <code>tuple</code>
+	 * under the column <code>name</code>.
+	 *
+	 * @throws InvalidColumnValueException if the <code>value</code> is not
+	 * in the format of the type.
+	 */
+	public void put(Tuple tuple, String name, String value)
+	{
+		if( this.type==Tuple.STRING_TYPE )
+		{
+			tuple.put(name, value);
+			return;
+		}
+
+		String trimmed = value.trim();
+		if( trimmed.isEmpty() )
+		{
+			tuple.putNull(name);
+			return;
+		}
+
+		try
+		{
+			switch(this.type)
+			{
+				case Tuple.INTEGER_TYPE:
+					tuple.put(name, Integer.parseInt(trimmed));
+					break;
+				case Tuple.LONG_TYPE:
+					tuple.put(name, Long.parseLong(trimmed));
+					break;
+				case Tuple.FLOAT_TYPE:
+					tuple.put(name, Float.parseFloat(trimmed));
+					break;
+				case Tuple.DOUBLE_TYPE:
+					tuple.put(name, Double.parseDouble(trimmed));
+					break;
+				case Tuple.BOOLEAN_TYPE:
+					if( trimmed.equalsIgnoreCase("true") )
+						tuple.put(name, true);
+					else if( trimmed.equalsIgnoreCase("false") )
+						tuple.put(name, false);
+					else
+						throw new IllegalArgumentException();
+					break;
+				case Tuple.DATE_TYPE:
+					tuple.put(name, this.format==null?java.sql.Date.valueOf(trimmed):new java.sql.Date(this.parseDate(trimmed)));
+					break;
+				case Tuple.TIMESTAMP_TYPE:
+					tuple.put(name, this.format==null?Timestamp.valueOf(trimmed):new Timestamp(this.parseDate(trimmed)));
+					break;
+				case Tuple.TIME_TYPE:
+					tuple.put(name, this.format==null?Time.valueOf(trimmed):new Time(this.parseDate(trimmed)));
+					break;
+				default:
+					throw new IllegalStateException("Unsupported column type:"+this.type);
+			}
+		}
+		catch(IllegalArgumentException e)
+		{
+			// NumberFormatException is an IllegalArgumentException
+			throw new InvalidColumnValueException(name, value, e);
+		}
+	}
+
+
+
+	private long parseDate(String value)
+	{
+		if( this.dateFormat==null )
+		{
+			this.dateFormat = new SimpleDateFormat(this.format);
+			this.dateFormat.setLenient(false);
+		}
+
+		// the whole value must be in the format
+		ParsePosition pos	= new ParsePosition(0);
+		java.util.Date date	= this.dateFormat.parse(value, pos);
+		if( date==null || pos.getIndex()!=value.length() )
+			throw new IllegalArgumentException(value+" is not in the format of "+this.format);
+
+		return date.getTime();
+	}
+}
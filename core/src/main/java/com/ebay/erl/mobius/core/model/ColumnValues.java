@@ -0,0 +1,569 @@
+package com.ebay.erl.mobius.core.model;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.sql.Time;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.ebay.erl.mobius.core.collection.CaseInsensitiveTreeMap;
+
+/**
+ * The backing store of the values of a {@link Tuple}.
+ * <p>
+ *
+ * Numeric, boolean, {@link java.sql.Date} and {@link Time}
+ * values are kept in a primitive <code>long</code> array
+ * (floating point values as their raw bits, dates as their
+ * milliseconds), with the type of each slot taken from the
+ * <code>*_TYPE</code> constants in {@link Tuple}, so they
+ * are not boxed when being put into or read from a tuple
+ * through the primitive accessors.  Other values are kept
+ * as objects.
+ * <p>
+ *
+ * Through the {@link java.util.List} interface, the
+ * primitive values are boxed on demand.
+ * <p>
+ *
+ * String, string map and byte array values can also be
+ * kept in their serialized form, see {@link #addSerialized(int, int)},
+ * they are deserialized when being read for the first time,
+ * so the columns never accessed are never deserialized and
+ * can be written out again as is.
+ *
+ *
+ *
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+final class ColumnValues extends AbstractList<Object> implements RandomAccess
+{
+	/**
+	 * type of a slot which holds its value in {@link #objects}.
+	 */
+	private static final byte OBJECT_SLOT = -1;
+
+	/**
+	 * type of a slot which holds its value in {@link #serialized},
+	 * the offset and the length are in {@link #primitives}.
+	 */
+	private static final byte SERIALIZED_SLOT = -2;
+
+	private byte[] types;
+
+	private long[] primitives;
+
+	private Object[] objects;
+
+	/**
+	 * the type and the value, in the format of {@link WriteImpl},
+	 * of the columns not yet deserialized.
+	 */
+	private byte[] serialized;
+
+	private int size;
+
+
+	ColumnValues()
+	{
+		this(4);
+	}
+
+	ColumnValues(int capacity)
+	{
+		capacity		= Math.max(capacity, 1);
+		this.types		= new byte[capacity];
+		this.primitives	= new long[capacity];
+		this.objects	= new Object[capacity];
+	}
+
+
+	@Override
+	public Object get(int index)
+	{
+		this.rangeCheck(index);
+
+		byte type = this.types[index];
+		if( type==OBJECT_SLOT )
+			return this.objects[index];
+		else if( type==SERIALIZED_SLOT )
+			return this.deserialize(index);
+		else
+			return box(type, this.primitives[index]);
+	}
+
+
+	/**
+	 * Box a value in the layout of the primitive array
+	 * into its object form.
+	 */
+	static Object box(byte type, long p)
+	{
+		switch(type)
+		{
+			case Tuple.BYTE_TYPE:
+				return (byte)p;
+			case Tuple.SHORT_TYPE:
+				return (short)p;
+			case Tuple.INTEGER_TYPE:
+				return (int)p;
+			case Tuple.LONG_TYPE:
+				return p;
+			case Tuple.FLOAT_TYPE:
+				return Float.intBitsToFloat((int)p);
+			case Tuple.DOUBLE_TYPE:
+				return Double.longBitsToDouble(p);
+			case Tuple.BOOLEAN_TYPE:
+				return p!=0L;
+			case Tuple.DATE_TYPE:
+				return new java.sql.Date(p);
+			case Tuple.TIME_TYPE:
+				return new Time(p);
+			default:
+				throw new IllegalArgumentException(Tuple.getTypeString(type)+" is not stored as primitive.");
+		}
+	}
+
+
+	@Override
+	public Object set(int index, Object value)
+	{
+		Object previous = this.get(index);
+		this.store(index, value);
+		return previous;
+	}
+
+
+	@Override
+	public void add(int index, Object value)
+	{
+		if( index<0 || index>this.size )
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+this.size);
+
+		this.makeRoom(index);
+		this.store(index, value);
+	}
+
+
+	@Override
+	public Object remove(int index)
+	{
+		Object previous = this.get(index);
+
+		int moved = this.size - index - 1;
+		if( moved>0 )
+		{
+			System.arraycopy(this.types, index+1, this.types, index, moved);
+			System.arraycopy(this.primitives, index+1, this.primitives, index, moved);
+			System.arraycopy(this.objects, index+1, this.objects, index, moved);
+		}
+		this.objects[--this.size] = null;
+		this.modCount++;
+		return previous;
+	}
+
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(this.objects, 0, this.size, null);
+		this.serialized = null;
+		this.size = 0;
+		this.modCount++;
+	}
+
+
+	@Override
+	public int size()
+	{
+		return this.size;
+	}
+
+
+	/**
+	 * Get the type of the value at <code>index</code>,
+	 * same as {@link Tuple#getType(Object)} of the value
+	 * but without boxing it.
+	 */
+	byte getType(int index)
+	{
+		this.rangeCheck(index);
+		byte type = this.types[index];
+		if( type==OBJECT_SLOT )
+			return Tuple.getType(this.objects[index]);
+		else if( type==SERIALIZED_SLOT )
+			return this.serialized[(int)(this.primitives[index] >>> 32)];
+		else
+			return type;
+	}
+
+
+	/**
+	 * Return true if the value at <code>index</code> is stored
+	 * in the primitive array.
+	 */
+	boolean isPrimitive(int index)
+	{
+		this.rangeCheck(index);
+		return this.types[index]>=0;
+	}
+
+
+	/**
+	 * Return true if the value at <code>index</code> has not
+	 * been deserialized yet, see {@link #addSerialized(int, int)}.
+	 */
+	boolean isSerialized(int index)
+	{
+		this.rangeCheck(index);
+		return this.types[index]==SERIALIZED_SLOT;
+	}
+
+
+	/**
+	 * Return true if the value at <code>index</code> is a
+	 * numerical value stored in the primitive array, see
+	 * {@link Tuple#isNumericalType(byte)}.
+	 */
+	boolean isNumerical(int index)
+	{
+		this.rangeCheck(index);
+		return Tuple.isNumericalType(this.types[index]);
+	}
+
+
+	/**
+	 * Get the numerical value at <code>index</code> as long,
+	 * the slot must be numerical, see {@link #isNumerical(int)}.
+	 */
+	long getLong(int index)
+	{
+		long p = this.primitives[index];
+		switch(this.types[index])
+		{
+			case Tuple.FLOAT_TYPE:
+				return (long)Float.intBitsToFloat((int)p);
+			case Tuple.DOUBLE_TYPE:
+				return (long)Double.longBitsToDouble(p);
+			default:
+				return p;
+		}
+	}
+
+
+	/**
+	 * Get the numerical value at <code>index</code> as double,
+	 * the slot must be numerical, see {@link #isNumerical(int)}.
+	 */
+	double getDouble(int index)
+	{
+		long p = this.primitives[index];
+		switch(this.types[index])
+		{
+			case Tuple.FLOAT_TYPE:
+				return Float.intBitsToFloat((int)p);
+			case Tuple.DOUBLE_TYPE:
+				return Double.longBitsToDouble(p);
+			default:
+				return p;
+		}
+	}
+
+
+	/**
+	 * Store a primitive value at <code>index</code>, <code>index</code>
+	 * can be equal to {@link #size()} to append the value.
+	 * <p>
+	 *
+	 * <code>bits</code> is the integral value, 1 or 0 for
+	 * boolean, milliseconds for date and time, or the raw
+	 * bits of float (int bits) and double (long bits).
+	 */
+	void setPrimitive(int index, byte type, long bits)
+	{
+		if( index==this.size )
+		{
+			this.makeRoom(index);
+		}
+		else
+		{
+			this.rangeCheck(index);
+		}
+
+		this.types[index]		= type;
+		this.primitives[index]	= bits;
+		this.objects[index]		= null;
+	}
+
+
+	/**
+	 * Copy the value at <code>from</code> in <code>source</code>
+	 * to <code>index</code> of this list, without boxing.
+	 */
+	void copy(int index, ColumnValues source, int from)
+	{
+		source.rangeCheck(from);
+		if( source.types[from]<0 )
+		{
+			Object value = source.get(from);
+			if( index==this.size )
+				this.add(value);
+			else
+				this.set(index, value);
+		}
+		else
+		{
+			this.setPrimitive(index, source.types[from], source.primitives[from]);
+		}
+	}
+
+
+	/**
+	 * Write the primitive value at <code>index</code> in the
+	 * same format as {@link WriteImpl}, the slot must be
+	 * primitive, see {@link #isPrimitive(int)}.
+	 */
+	void write(int index, DataOutput out)
+		throws IOException
+	{
+		long p = this.primitives[index];
+		switch(this.types[index])
+		{
+			case Tuple.BYTE_TYPE:
+				out.writeByte((int)p);
+				break;
+			case Tuple.SHORT_TYPE:
+				out.writeShort((int)p);
+				break;
+			case Tuple.INTEGER_TYPE:
+				out.writeInt((int)p);
+				break;
+			case Tuple.FLOAT_TYPE:
+				out.writeInt((int)p);
+				break;
+			case Tuple.DOUBLE_TYPE:
+				out.writeLong(p);
+				break;
+			case Tuple.BOOLEAN_TYPE:
+				out.writeBoolean(p!=0L);
+				break;
+			default:
+				// long, date and time
+				out.writeLong(p);
+		}
+	}
+
+
+	/**
+	 * Append a value in its serialized form, the value is
+	 * the <code>length</code> bytes starting at <code>offset</code>
+	 * of the array set by {@link #setSerialized(byte[])}, which
+	 * are the type and the value in the format of {@link WriteImpl}.
+	 * <p>
+	 *
+	 * Only {@link Tuple#STRING_TYPE}, {@link Tuple#STRING_MAP_TYPE} 
+	 * and {@link Tuple#BYTE_ARRAY_TYPE} are supported.
+	 */
+	void addSerialized(int offset, int length)
+	{
+		int index = this.size;
+		this.makeRoom(index);
+		this.types[index]		= SERIALIZED_SLOT;
+		this.primitives[index]	= ((long)offset << 32) | (length & 0xFFFFFFFFL);
+	}
+
+
+	/**
+	 * Set the bytes the serialized values, added by
+	 * {@link #addSerialized(int, int)}, are stored in.
+	 */
+	void setSerialized(byte[] serialized)
+	{
+		this.serialized = serialized;
+	}
+
+
+	/**
+	 * Write the serialized value at <code>index</code>, including
+	 * its type, as is, the slot must be serialized, see
+	 * {@link #isSerialized(int)}.
+	 */
+	void writeSerialized(int index, DataOutput out)
+		throws IOException
+	{
+		long p = this.primitives[index];
+		out.write(this.serialized, (int)(p >>> 32), (int)p);
+	}
+
+
+	/**
+	 * deserialize the value at <code>index</code> and keep
+	 * it as an object.
+	 */
+	private Object deserialize(int index)
+	{
+		long p		= this.primitives[index];
+		int offset	= (int)(p >>> 32);
+		int length	= (int)p;
+		byte type	= this.serialized[offset];
+
+		// skip the type
+		offset++;
+		length--;
+
+		Object value;
+		try
+		{
+			switch(type)
+			{
+				case Tuple.STRING_TYPE:
+				{
+					int vintSize = WritableUtils.decodeVIntSize(this.serialized[offset]);
+					value = Text.decode(this.serialized, offset+vintSize, length-vintSize);
+					break;
+				}
+				case Tuple.BYTE_ARRAY_TYPE:
+				{
+					// skip the length (int)
+					value = Arrays.copyOfRange(this.serialized, offset+4, offset+length);
+					break;
+				}
+				case Tuple.STRING_MAP_TYPE:
+				{
+					DataInputBuffer in = new DataInputBuffer();
+					in.reset(this.serialized, offset, length);
+
+					int map_size = in.readInt();
+					CaseInsensitiveTreeMap map = new CaseInsensitiveTreeMap();
+					for( int j=0;j<map_size;j++ )
+					{
+						String k = Text.readString(in);
+						String v = Text.readString(in);
+						map.put(k, v);
+					}
+					value = map;
+					break;
+				}
+				default:
+					throw new IllegalStateException(Tuple.getTypeString(type)+" is not stored in serialized form.");
+			}
+		}
+		catch(IOException e)
+		{
+			throw new RuntimeException("Cannot deserialize the "+index+"th column.", e);
+		}
+
+		this.types[index]		= OBJECT_SLOT;
+		this.primitives[index]	= 0L;
+		this.objects[index]		= value;
+		return value;
+	}
+
+
+	private void store(int index, Object value)
+	{
+		byte type = OBJECT_SLOT;
+		long p = 0L;
+
+		if( value!=null )
+		{
+			Class<?> clazz = value.getClass();
+			if( clazz==Long.class )
+			{
+				type = Tuple.LONG_TYPE;
+				p = (Long)value;
+			}
+			else if( clazz==Integer.class )
+			{
+				type = Tuple.INTEGER_TYPE;
+				p = (Integer)value;
+			}
+			else if( clazz==Double.class )
+			{
+				type = Tuple.DOUBLE_TYPE;
+				p = Double.doubleToRawLongBits((Double)value);
+			}
+			else if( clazz==Float.class )
+			{
+				type = Tuple.FLOAT_TYPE;
+				p = Float.floatToRawIntBits((Float)value);
+			}
+			else if( clazz==Short.class )
+			{
+				type = Tuple.SHORT_TYPE;
+				p = (Short)value;
+			}
+			else if( clazz==Byte.class )
+			{
+				type = Tuple.BYTE_TYPE;
+				p = (Byte)value;
+			}
+			else if( clazz==Boolean.class )
+			{
+				type = Tuple.BOOLEAN_TYPE;
+				p = ((Boolean)value)?1L:0L;
+			}
+			else if( clazz==java.sql.Date.class )
+			{
+				type = Tuple.DATE_TYPE;
+				p = ((java.sql.Date)value).getTime();
+			}
+			else if( clazz==Time.class )
+			{
+				type = Tuple.TIME_TYPE;
+				p = ((Time)value).getTime();
+			}
+		}
+
+		this.types[index]		= type;
+		this.primitives[index]	= p;
+		this.objects[index]		= type==OBJECT_SLOT?value:null;
+	}
+
+
+	/**
+	 * make room for a new slot at <code>index</code>, shift
+	 * the slots after it to the right.
+	 */
+	private void makeRoom(int index)
+	{
+		if( this.size==this.types.length )
+		{
+			int capacity	= this.types.length*2;
+			this.types		= Arrays.copyOf(this.types, capacity);
+			this.primitives	= Arrays.copyOf(this.primitives, capacity);
+			this.objects	= Arrays.copyOf(this.objects, capacity);
+		}
+
+		int moved = this.size - index;
+		if( moved>0 )
+		{
+			System.arraycopy(this.types, index, this.types, index+1, moved);
+			System.arraycopy(this.primitives, index, this.primitives, index+1, moved);
+			System.arraycopy(this.objects, index, this.objects, index+1, moved);
+		}
+		this.types[index]	= OBJECT_SLOT;
+		this.objects[index]	= null;
+		this.size++;
+		this.modCount++;
+	}
+
+
+	private void rangeCheck(int index)
+	{
+		if( index<0 || index>=this.size )
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+this.size);
+	}
+}
@@ -0,0 +1,27 @@
+package com.ebay.erl.mobius.core.model;
+
+/**
+ * Thrown when the value of a column cannot be parsed into
+ * the type of the column, see {@link ColumnParser}.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class InvalidColumnValueException extends IllegalArgumentException
+{
+	private static final long serialVersionUID = 6254113067262189931L;
+
+	public InvalidColumnValueException(String column, String value, Throwable cause)
+	{
+		super("Invalid value ["+value+"] for column "+column+".", cause);
+	}
+}
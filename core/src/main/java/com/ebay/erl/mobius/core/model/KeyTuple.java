@@ -35,11 +35,18 @@ public class KeyTuple extends Tuple
 		{
 			this.namesToIdxMapping.put(lowerCase(aName), idx++);
 		}
+		this.schemaChanged();
 	}
 	
 	
+	/**
+	 * Key tuple is always serialized in the original
+	 * form and in the insertion order, the columns are
+	 * compared by position, so the <code>registry</code>
+	 * is ignored.
+	 */
 	@Override
-	public void write(DataOutput out) 
+	protected void write(DataOutput out, TupleSchemaRegistry registry) 
 		throws IOException 
 	{	
 		// write the size of the column of this tuple
@@ -0,0 +1,38 @@
+package com.ebay.erl.mobius.core.model;
+
+/**
+ * A {@link Tuple} that, when being deserialized, keeps its
+ * string, string map and byte array columns in their 
+ * serialized form, a column is deserialized only when it
+ * is accessed for the first time.
+ * <p>
+ * 
+ * Reducers usually only access a few (projected) columns 
+ * of a wide row, the other columns are never decoded, and
+ * are written as is if the tuple is serialized again, for
+ * example, when a {@link com.ebay.erl.mobius.core.collection.BigTupleList}
+ * spills to disk.
+ * <p>
+ * 
+ * Nested tuples of a lazy tuple are lazy as well.  Other
+ * than that, a lazy tuple is same as a {@link Tuple}.
+ * 
+ * 
+ * 
+ * This product is licensed under the Apache License,  Version 2.0, 
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ * 
+ * This product contains portions derived from Apache hadoop which is 
+ * licensed under the Apache License, Version 2.0, available at 
+ * http://hadoop.apache.org.
+ * 
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class LazyTuple extends Tuple
+{
+	@Override
+	protected boolean deserializeLazily()
+	{
+		return true;
+	}
+}
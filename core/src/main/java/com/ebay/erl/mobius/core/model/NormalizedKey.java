@@ -0,0 +1,371 @@
+package com.ebay.erl.mobius.core.model;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.io.BinaryComparable;
+
+import com.ebay.erl.mobius.core.sort.Sorter;
+import com.ebay.erl.mobius.core.sort.Sorter.Ordering;
+
+/**
+ * An order preserving binary form of a sorting key {@link Tuple},
+ * two normalized keys compare byte by byte (unsigned) the same
+ * way as {@link TupleColumnComparator#compareKey} compares their
+ * tuples, so they can be used where a {@link BinaryComparable}
+ * is required, ex: the trie of {@link com.ebay.erl.mobius.core.datajoin.EvenlyPartitioner}.
+ * <p>
+ *
+ * Each column is encoded as a tag followed by its value:
+ * <ul>
+ * <li>null: the tag only, which is smaller than all the other tags.</li>
+ * <li>boolean: 0 or 1.</li>
+ * <li>integral numbers (byte, short, int, long): the value in long
+ * with the sign bit flipped.</li>
+ * <li>floating numbers (float, double): the bits of the value in
+ * double with the sign bit flipped (all the bits for negative
+ * values).</li>
+ * <li>java.sql.Date and java.sql.Timestamp: the milliseconds with
+ * the sign bit flipped, followed by the nanoseconds.</li>
+ * <li>java.sql.Time: the milliseconds with the sign bit flipped.</li>
+ * <li>strings: the characters (UTF-16 code units) in 1 to 3 bytes,
+ * like UTF-8 but surrogates are encoded separately, so the byte
+ * ordering is the same as {@link String#compareTo(String)}.  Byte
+ * 0x00 is escaped as 0x00 0xFF, and the string is terminated by
+ * 0x00 0x01.</li>
+ * </ul>
+ * All the bytes of a column are inverted if its {@link Sorter}
+ * is in {@link Ordering#DESC}.
+ * <p>
+ *
+ * Columns of other types (maps, byte arrays, writables...) cannot
+ * be normalized, {@link #set(Tuple, Sorter[])} returns false
+ * for them.  Besides, strings and numbers are compared by parsing
+ * the string in {@link TupleColumnComparator}, and an integral
+ * number is compared with a floating one as double, which loses
+ * the precision of longs beyond 2<sup>53</sup>.  Neither can be
+ * expressed in bytes, so normalized keys are comparable only when
+ * the non-null values of the same column have the same tag, see
+ * {@link #getColumnTag(int)}, the others have to be compared by
+ * {@link TupleColumnComparator}.
+ * <p>
+ *
+ * This class is not thread safe, and the instance is reused
+ * by {@link #set(Tuple, Sorter[])}.
+ *
+ *
+ *
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class NormalizedKey extends BinaryComparable
+{
+	public static final byte NULL_TAG		= 0x01;
+
+	public static final byte BOOLEAN_TAG	= 0x02;
+
+	public static final byte INTEGRAL_TAG	= 0x03;
+
+	public static final byte DATE_TAG		= 0x04;
+
+	public static final byte TIME_TAG		= 0x05;
+
+	public static final byte STRING_TAG		= 0x06;
+
+	public static final byte FLOATING_TAG	= 0x07;
+
+	private byte[] bytes = new byte[64];
+
+	private int length;
+
+	/**
+	 * the tag of each column, before being inverted
+	 * for {@link Ordering#DESC}.
+	 */
+	private byte[] tags = new byte[4];
+
+	private int columns;
+
+
+
+	/**
+	 * Encode the <code>key</code>, the i<sub>th</sub> sorter
+	 * applies to the i<sub>th</sub> column.  If <code>sorters</code>
+	 * is empty, all the columns of <code>key</code> are encoded
+	 * in ascending order, the same as {@link Tuple#compareTo(Tuple)}.
+	 * <p>
+	 *
+	 * Return false if one of the columns cannot be normalized,
+	 * the content of this key is undefined then.
+	 */
+	public boolean set(Tuple key, Sorter[] sorters)
+	{
+		this.length		= 0;
+		this.columns	= 0;
+
+		int columnNbr = sorters.length==0?key.values.size():sorters.length;
+		if( this.tags.length<columnNbr )
+		{
+			this.tags = new byte[columnNbr];
+		}
+
+		boolean hasSchema = key.getSchema().length>0;
+		for( int i=0;i<columnNbr;i++ )
+		{
+			Object value;
+			boolean descending = false;
+			if( sorters.length==0 )
+			{
+				value = key.get(i);
+			}
+			else
+			{
+				// same as TupleColumnComparator#getValue, tuples
+				// deserialized without schema are in the order of
+				// the sorters.
+				Sorter aSorter	= sorters[i];
+				descending		= aSorter.getOrdering()==Ordering.DESC;
+				if( aSorter.forceSortNumerically() )
+				{
+					value = hasSchema?key.getDouble(aSorter.getColumn(), Double.NaN):key.getDouble(i, Double.NaN);
+				}
+				else
+				{
+					value = hasSchema?key.get(aSorter.getColumn()):key.get(i);
+				}
+			}
+
+			int start = this.length;
+			if( !this.encode(value) )
+			{
+				return false;
+			}
+
+			if( descending )
+			{
+				for( int j=start;j<this.length;j++ )
+				{
+					this.bytes[j] = (byte)~this.bytes[j];
+				}
+			}
+		}
+		return true;
+	}
+
+
+
+	/**
+	 * Get a copy of this key, which won't be changed
+	 * when this key is reused.
+	 */
+	public NormalizedKey copy()
+	{
+		NormalizedKey copy	= new NormalizedKey();
+		copy.bytes			= Arrays.copyOf(this.bytes, this.length);
+		copy.length			= this.length;
+		copy.tags			= Arrays.copyOf(this.tags, this.columns);
+		copy.columns		= this.columns;
+		return copy;
+	}
+
+
+
+	/**
+	 * Get the number of encoded columns.
+	 */
+	public int getColumnNumber()
+	{
+		return this.columns;
+	}
+
+
+
+	/**
+	 * Get the tag of the <code>idx</code> column, one of the
+	 * <code>*_TAG</code> constants in this class.
+	 */
+	public byte getColumnTag(int idx)
+	{
+		return this.tags[idx];
+	}
+
+
+
+	@Override
+	public byte[] getBytes()
+	{
+		return this.bytes;
+	}
+
+
+
+	@Override
+	public int getLength()
+	{
+		return this.length;
+	}
+
+
+
+	private boolean encode(Object value)
+	{
+		if( value instanceof ResultWrapper )
+		{
+			value = ((ResultWrapper<?>)value).getCombinedResult();
+		}
+
+		byte type = Tuple.getType(value);
+		switch(type)
+		{
+			case Tuple.NULL_TYPE:
+				this.writeTag(NULL_TAG);
+				return true;
+
+			case Tuple.BOOLEAN_TYPE:
+				this.writeTag(BOOLEAN_TAG);
+				this.ensureCapacity(1);
+				this.bytes[this.length++] = (byte)((Boolean)value?1:0);
+				return true;
+
+			case Tuple.BYTE_TYPE:
+			case Tuple.SHORT_TYPE:
+			case Tuple.INTEGER_TYPE:
+			case Tuple.LONG_TYPE:
+				this.writeTag(INTEGRAL_TAG);
+				this.writeLong(((Number)value).longValue());
+				return true;
+
+			case Tuple.FLOAT_TYPE:
+			case Tuple.DOUBLE_TYPE:
+				this.writeTag(FLOATING_TAG);
+				this.writeDouble(((Number)value).doubleValue());
+				return true;
+
+			case Tuple.DATE_TYPE:
+			case Tuple.TIMESTAMP_TYPE:
+				this.writeTag(DATE_TAG);
+				this.writeLong(((java.util.Date)value).getTime());
+				this.writeInt(type==Tuple.TIMESTAMP_TYPE?((java.sql.Timestamp)value).getNanos():0);
+				return true;
+
+			case Tuple.TIME_TYPE:
+				this.writeTag(TIME_TAG);
+				this.writeLong(((java.util.Date)value).getTime());
+				return true;
+
+			case Tuple.STRING_TYPE:
+				this.writeTag(STRING_TAG);
+				this.writeString((String)value);
+				return true;
+
+			default:
+				return false;
+		}
+	}
+
+
+
+	private void writeTag(byte tag)
+	{
+		if( this.columns==this.tags.length )
+		{
+			this.tags = Arrays.copyOf(this.tags, this.columns*2);
+		}
+		this.tags[this.columns++] = tag;
+
+		this.ensureCapacity(1);
+		this.bytes[this.length++] = tag;
+	}
+
+
+
+	/**
+	 * same ordering as {@link Double#compare(double, double)},
+	 * {@link Double#doubleToLongBits(double)} collapses all the
+	 * NaN into one.
+	 */
+	private void writeDouble(double v)
+	{
+		long bits = Double.doubleToLongBits(v);
+		bits ^= (bits>>63)|Long.MIN_VALUE;
+		this.writeBits(bits);
+	}
+
+
+
+	private void writeLong(long v)
+	{
+		this.writeBits(v^Long.MIN_VALUE);
+	}
+
+
+
+	private void writeBits(long bits)
+	{
+		this.ensureCapacity(8);
+		for( int shift=56;shift>=0;shift-=8 )
+		{
+			this.bytes[this.length++] = (byte)(bits>>>shift);
+		}
+	}
+
+
+
+	private void writeInt(int v)
+	{
+		this.ensureCapacity(4);
+		for( int shift=24;shift>=0;shift-=8 )
+		{
+			this.bytes[this.length++] = (byte)(v>>>shift);
+		}
+	}
+
+
+
+	private void writeString(String s)
+	{
+		int len = s.length();
+		this.ensureCapacity(len*3+2);
+		for( int i=0;i<len;i++ )
+		{
+			char c = s.charAt(i);
+			if( c==0 )
+			{
+				this.bytes[this.length++] = 0x00;
+				this.bytes[this.length++] = (byte)0xFF;
+			}
+			else if( c<0x80 )
+			{
+				this.bytes[this.length++] = (byte)c;
+			}
+			else if( c<0x800 )
+			{
+				this.bytes[this.length++] = (byte)(0xC0|(c>>6));
+				this.bytes[this.length++] = (byte)(0x80|(c&0x3F));
+			}
+			else
+			{
+				this.bytes[this.length++] = (byte)(0xE0|(c>>12));
+				this.bytes[this.length++] = (byte)(0x80|((c>>6)&0x3F));
+				this.bytes[this.length++] = (byte)(0x80|(c&0x3F));
+			}
+		}
+		this.bytes[this.length++] = 0x00;
+		this.bytes[this.length++] = 0x01;
+	}
+
+
+
+	private void ensureCapacity(int more)
+	{
+		if( this.length+more>this.bytes.length )
+		{
+			this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length*2, this.length+more));
+		}
+	}
+}
@@ -5,12 +5,15 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
 import org.apache.hadoop.util.ReflectionUtils;
 
 import com.ebay.erl.mobius.core.collection.CaseInsensitiveTreeMap;
@@ -38,18 +41,88 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	private DataInput in;
 	private Configuration conf;
 	
+	/**
+	 * same as {@link #values} if it stores primitive
+	 * values without boxing them, null otherwise.
+	 */
+	private ColumnValues columns;
+	
+	/**
+	 * true to keep the string, string map and byte array
+	 * values in their serialized form, see {@link LazyTuple}.
+	 */
+	private boolean lazy;
+	
+	/**
+	 * the serialized values, not null only if {@link #lazy}
+	 * is true and {@link #columns} is not null.
+	 */
+	private DataOutputBuffer serialized;
+	
 	public ReadFieldImpl(List<Object> values, DataInput in, Configuration conf) 
+	{	
+		this(values, in, conf, false);
+	}
+	
+	/**
+	 * Create a reader, if <code>lazy</code> is true, the 
+	 * string, string map and byte array values are not
+	 * deserialized until being accessed; {@link #finish()}
+	 * must be called after all the values have been read.
+	 */
+	public ReadFieldImpl(List<Object> values, DataInput in, Configuration conf, boolean lazy) 
 	{	
 		this.values = values;
 		this.in = in;
 		this.conf = conf;
+		this.columns = values instanceof ColumnValues?(ColumnValues)values:null;
+		this.lazy = lazy;
+		this.serialized = lazy && this.columns!=null?new DataOutputBuffer():null;
+	}
+	
+	/**
+	 * To be called after all the values have been read, 
+	 * hands the values kept in serialized form over to 
+	 * the tuple.
+	 */
+	public void finish()
+	{
+		if( this.serialized!=null && this.serialized.getLength()>0 )
+		{
+			this.columns.setSerialized(Arrays.copyOf(this.serialized.getData(), this.serialized.getLength()));
+		}
+	}
+	
+	/**
+	 * copy a value serialized by {@link Text#writeString(java.io.DataOutput, String)}
+	 * from the input to {@link #serialized} without decoding it.
+	 */
+	private void copyString()
+		throws IOException
+	{
+		int length = WritableUtils.readVInt(in);
+		WritableUtils.writeVInt(this.serialized, length);
+		this.serialized.write(in, length);
+	}
+	
+	/**
+	 * add a primitive value, <code>bits</code> is in the layout
+	 * described in {@link ColumnValues#setPrimitive(int, byte, long)}.
+	 */
+	private void addPrimitive(byte type, long bits)
+	{
+		this.columns.setPrimitive(this.columns.size(), type, bits);
 	}
 
 	@Override
 	protected Void on_boolean() 
 		throws IOException
 	{	
-		this.values.add(in.readBoolean());
+		boolean v = in.readBoolean();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.BOOLEAN_TYPE, v?1L:0L);
+		else
+			this.values.add(v);
 		return null;
 	}
 
@@ -57,7 +130,11 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	protected Void on_byte() 
 		throws IOException
 	{
-		this.values.add(in.readByte());	
+		byte v = in.readByte();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.BYTE_TYPE, v);
+		else
+			this.values.add(v);	
 		return null;
 	}
 
@@ -74,7 +151,11 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	protected Void on_date() 
 		throws IOException
 	{
-		this.values.add(new java.sql.Date(in.readLong()));
+		long v = in.readLong();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.DATE_TYPE, v);
+		else
+			this.values.add(new java.sql.Date(v));
 		return null;
 	}
 
@@ -89,7 +170,11 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	protected Void on_double() 
 		throws IOException
 	{
-		this.values.add(in.readDouble());
+		double v = in.readDouble();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.DOUBLE_TYPE, Double.doubleToRawLongBits(v));
+		else
+			this.values.add(v);
 		return null;
 	}
 
@@ -97,7 +182,11 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	protected Void on_float()
 		throws IOException
 	{
-		this.values.add(in.readFloat());
+		float v = in.readFloat();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.FLOAT_TYPE, Float.floatToRawIntBits(v));
+		else
+			this.values.add(v);
 		return null;
 	}
 
@@ -105,7 +194,11 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	protected Void on_integer()
 		throws IOException
 	{
-		this.values.add(in.readInt());
+		int v = in.readInt();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.INTEGER_TYPE, v);
+		else
+			this.values.add(v);
 		return null;
 	}
 	
@@ -113,7 +206,11 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	protected Void on_long()
 		throws IOException
 	{
-		this.values.add(in.readLong());
+		long v = in.readLong();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.LONG_TYPE, v);
+		else
+			this.values.add(v);
 		return null;
 	}
 
@@ -138,7 +235,11 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	protected Void on_short()
 		throws IOException
 	{
-		this.values.add(in.readShort());
+		short v = in.readShort();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.SHORT_TYPE, v);
+		else
+			this.values.add(v);
 		return null;
 	}
 
@@ -146,7 +247,15 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 	protected Void on_string()
 		throws IOException
 	{
-		this.values.add(Text.readString(in));
+		if( this.serialized!=null )
+		{
+			int start = this.serialized.getLength();
+			this.serialized.writeByte(Tuple.STRING_TYPE);
+			this.copyString();
+			this.columns.addSerialized(start, this.serialized.getLength()-start);
+		}
+		else
+			this.values.add(Text.readString(in));
 		return null;
 	}
 
@@ -155,6 +264,21 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 		throws IOException
 	{
 		int map_size = in.readInt();
+		if( this.serialized!=null )
+		{
+			int start = this.serialized.getLength();
+			this.serialized.writeByte(Tuple.STRING_MAP_TYPE);
+			this.serialized.writeInt(map_size);
+			for( int j=0;j<map_size;j++ )
+			{
+				// key and value
+				this.copyString();
+				this.copyString();
+			}
+			this.columns.addSerialized(start, this.serialized.getLength()-start);
+			return null;
+		}
+		
 		CaseInsensitiveTreeMap map = new CaseInsensitiveTreeMap();		
 		for( int j=0;j<map_size;j++ )
 		{
@@ -183,6 +307,16 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 		throws IOException
 	{
 		int length = in.readInt();
+		if( this.serialized!=null )
+		{
+			int start = this.serialized.getLength();
+			this.serialized.writeByte(Tuple.BYTE_ARRAY_TYPE);
+			this.serialized.writeInt(length);
+			this.serialized.write(in, length);
+			this.columns.addSerialized(start, this.serialized.getLength()-start);
+			return null;
+		}
+		
 		byte[] array = new byte[length];
 		in.readFully(array);
 		this.values.add(array);
@@ -197,7 +331,10 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 
 	@Override
 	protected Void on_tuple() throws IOException {
-		Tuple newTuple = new Tuple();
+		Tuple newTuple = this.lazy?new LazyTuple():new Tuple();
+		// the nested tuple might be in compact form, which
+		// requires the schemas from the configuration.
+		newTuple.conf = this.conf;
 		newTuple.readFields(in);
 		this.values.add(newTuple);
 		return null;
@@ -205,8 +342,11 @@ public class ReadFieldImpl extends TupleTypeHandler<Void>
 
 	@Override
 	protected Void on_time() throws IOException {
-		Time time = new Time(in.readLong());
-		this.values.add(time);
+		long v = in.readLong();
+		if( this.columns!=null )
+			this.addPrimitive(Tuple.TIME_TYPE, v);
+		else
+			this.values.add(new Time(v));
 		return null;
 	}
 
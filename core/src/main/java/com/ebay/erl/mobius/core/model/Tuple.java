@@ -7,27 +7,30 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.CharacterCodingException;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.io.DataInputBuffer;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
 
 import com.ebay.erl.mobius.core.ConfigureConstants;
 import com.ebay.erl.mobius.core.collection.CaseInsensitiveTreeMap;
@@ -160,13 +163,7 @@ public class Tuple
 	/**
 	 * to hold the actual values of columns within this mapper.
 	 */
-	protected List<Object> values			= new ArrayList<Object>(1);	
-	
-	/**
-	 * key used for synchronizing update activities to
-	 * this tuple.
-	 */
-	protected final String _INSERT_KEY	= "insert";
+	protected List<Object> values			= new ColumnValues(1);	
 	
 	/**
 	 * The default delimiter to separate the column
@@ -183,18 +180,71 @@ public class Tuple
 	protected boolean isMutable = true;
 	
 	
+	/**
+	 * The leading byte of a tuple serialized in the compact
+	 * form, see {@link #write(DataOutput, TupleSchemaRegistry)}.
+	 * <p>
+	 * 
+	 * A tuple in the original form starts with a non-negative
+	 * int (the number of columns), so its first byte never 
+	 * has the sign bit on.
+	 */
+	protected static final byte COMPACT_FORM		= (byte)0xFF;
+	
+	
+	/**
+	 * the indexes of {@link #values} in the order of their
+	 * column names, computed once per schema of this tuple
+	 * instead of on every {@link #write(DataOutput)}.
+	 */
+	private int[] serializationOrder;
+	
+	
+	/**
+	 * the registry {@link #compactSchemaID} and {@link #compactOrder}
+	 * are resolved from.
+	 */
+	private TupleSchemaRegistry compactRegistry;
+	
+	
+	private int compactSchemaID = -1;
+	
+	
+	/**
+	 * the indexes of {@link #values} in the order of the 
+	 * registered schema {@link #compactSchemaID}.
+	 */
+	private int[] compactOrder;
+	
+	
+	/**
+	 * the (sorted) array given to the last {@link #setSchema(String[])},
+	 * null if the columns have been changed since then.
+	 * <p>
+	 * 
+	 * Tuples of the same output share the same array, so their
+	 * compact schema is resolved once per array, see 
+	 * {@link TupleSchemaRegistry#resolve(String[])}.
+	 */
+	private String[] schemaArray;
+	
+	
 	
 	/**
 	 * For quick look up of lower cases form of a given string so
 	 * we don't to toLowerCase() everytime when retriving or setting
-	 * value to a tuple
+	 * value to a tuple.
+	 * <p>
+	 * 
+	 * Lookups are lock free, so tuples used by different threads
+	 * don't block each other.
 	 */
 	protected static Map<String/* any string*/, String/*lower case of the key*/> lowerCases =
-		Collections.synchronizedMap(new HashMap<String, String>());
+		new ConcurrentHashMap<String, String>();
 	
 	
 	protected static Map<Set<String>/*not sorted set*/, List<String>/*sorted keys*/> sortedKeys =
-		Collections.synchronizedMap(new HashMap<Set<String>, List<String>>());
+		new ConcurrentHashMap<Set<String>, List<String>>();
 	
 	/**
 	 * An immutable {@link Tuple} which contains only single Column
@@ -214,17 +264,19 @@ public class Tuple
 	
 	
 	
-	protected synchronized static String lowerCase(String key)
+	protected static String lowerCase(String key)
 	{
 		String result = lowerCases.get(key);
 		if( result==null ){
+			// racing threads compute the same value, no
+			// need to lock
 			result = key.toLowerCase();
 			lowerCases.put(key, result);
 		}
 		return result;
 	}
 	
-	protected synchronized static List<String> getSorted(Set<String> aKeySet)
+	protected static List<String> getSorted(Set<String> aKeySet)
 	{
 		List<String> sorted = sortedKeys.get(aKeySet);
 		if( sorted==null ){
@@ -233,7 +285,11 @@ public class Tuple
 				sorted.add(lowerCase(aKey));
 			}
 			Collections.sort(sorted);
-			sortedKeys.put(aKeySet, sorted);
+			sorted = Collections.unmodifiableList(sorted);
+			
+			// <code>aKeySet</code> is usually the live key set
+			// of a tuple, copy it so the cache key won't change
+			sortedKeys.put(new HashSet<String>(aKeySet), sorted);
 		}
 		return sorted;
 	}
@@ -277,6 +333,23 @@ public class Tuple
 		{
 			this.namesToIdxMapping.put(lowerCase(aName), idx++);
 		}
+		this.schemaChanged();
+		this.schemaArray = schema;
+	}
+	
+	
+	/**
+	 * To be called whenever the columns of this tuple
+	 * are changed, so the cached serialization orders
+	 * are re-computed.
+	 */
+	protected void schemaChanged()
+	{
+		this.serializationOrder	= null;
+		this.compactRegistry	= null;
+		this.compactSchemaID	= -1;
+		this.compactOrder		= null;
+		this.schemaArray		= null;
 	}
 	
 	/**
@@ -498,6 +571,11 @@ public class Tuple
 	 */
 	public Double getDouble(int idx, double default_value)
 	{
+		if( this.values instanceof ColumnValues && ((ColumnValues)this.values).isNumerical(idx) )
+		{
+			return ((ColumnValues)this.values).getDouble(idx);
+		}
+		
 		Object value = this.get(idx);
 		return (Double)this.get(Tuple.DOUBLE_TYPE, "@index:"+idx, value, default_value);
 	}	
@@ -733,20 +811,95 @@ public class Tuple
 	{	
 		if( this.values==null )
 		{
-			this.values = new ArrayList<Object>();
+			this.values = new ColumnValues();
 		}
 		else
 			this.values.clear();
 		
-		int columns_nbrs = in.readInt();
+		byte first = in.readByte();
+		if( first==COMPACT_FORM )
+		{
+			this.readCompactFields(in);
+			return;
+		}
+		
+		// the first byte is the highest byte of the number of columns
+		int columns_nbrs = ((first & 0xFF) << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
 		
-		ReadFieldImpl read_impl = new ReadFieldImpl(this.values, in, this.conf);
+		ReadFieldImpl read_impl = new ReadFieldImpl(this.values, in, this.conf, this.deserializeLazily());
 		
 		for( int i=0;i<columns_nbrs;i++ )
 		{
 			byte type = in.readByte();
 			read_impl.handle(type);
 		}
+		read_impl.finish();
+	}
+	
+	
+	/**
+	 * Return true if the string, string map and byte array
+	 * columns are to be kept in their serialized form when
+	 * this tuple is being deserialized, so they are deserialized
+	 * only when being accessed, see {@link LazyTuple}.
+	 * <p>
+	 * 
+	 * Default is false.
+	 */
+	protected boolean deserializeLazily()
+	{
+		return false;
+	}
+	
+	
+	/**
+	 * Deserialize a tuple written in the compact form, the
+	 * schema is set from the {@link TupleSchemaRegistry} in 
+	 * the configuration of this tuple, so there is no need
+	 * to call {@link #setSchema(String[])} afterward.
+	 */
+	private void readCompactFields(DataInput in)
+		throws IOException
+	{
+		TupleSchemaRegistry registry = TupleSchemaRegistry.getInstance(this.conf);
+		if( registry==null )
+		{
+			throw new IllegalStateException("The tuple is serialized in compact form, but there is no schema registered " +
+					"in the configuration ("+ConfigureConstants.TUPLE_SCHEMAS+") of "+this.getClass().getCanonicalName()+".");
+		}
+		
+		int schemaID		= WritableUtils.readVInt(in);
+		String[] columns	= registry.getColumns(schemaID);
+		
+		byte[] nulls = new byte[(columns.length+7) >>> 3];
+		in.readFully(nulls);
+		
+		ReadFieldImpl read_impl = new ReadFieldImpl(this.values, in, this.conf, this.deserializeLazily());
+		
+		for( int i=0;i<columns.length;i++ )
+		{
+			if( (nulls[i >>> 3] & (1 << (i & 7)))!=0 )
+			{
+				this.values.add(null);
+			}
+			else
+			{
+				read_impl.handle(in.readByte());
+			}
+		}
+		read_impl.finish();
+		
+		// the registered columns are sorted and in lower case already
+		this.namesToIdxMapping.clear();
+		for( int i=0;i<columns.length;i++ )
+		{
+			this.namesToIdxMapping.put(columns[i], i);
+		}
+		this.schemaChanged();
+		this.compactRegistry	= registry;
+		this.compactSchemaID	= schemaID;
+		this.compactOrder		= null;
+		this.schemaArray		= columns;
 	}
 
 	/**
@@ -761,9 +914,30 @@ public class Tuple
 	public void write(DataOutput out) 
 		throws IOException 
 	{	
-		// write the size of the column of this tuple
-		out.writeInt(this.values.size());
-		
+		this.write(out, null);
+	}
+	
+	
+	/**
+	 * Serialize this tuple to the output <code>out</code>,
+	 * in the compact form if the schema of this tuple is
+	 * registered in the <code>registry</code>.
+	 * <p>
+	 * 
+	 * The compact form is: {@link #COMPACT_FORM}, the schema
+	 * ID (VInt), a bitmap of null columns and then the type
+	 * and value of the non-null columns, in the order of the
+	 * registered schema.  The reader needs to have the same
+	 * schemas registered in its configuration.
+	 * <p>
+	 * 
+	 * When <code>registry</code> is null, or the schema of 
+	 * this tuple is not registered, it's serialized in the
+	 * original form, see {@link #write(DataOutput)}.
+	 */
+	protected void write(DataOutput out, TupleSchemaRegistry registry)
+		throws IOException
+	{
 		if( this.values.size()!=this.namesToIdxMapping.size() )
 		{
 			StringBuffer sb = new StringBuffer();
@@ -774,11 +948,67 @@ public class Tuple
 					" Values:["+sb.toString()+"] schema:"+this.namesToIdxMapping.keySet());
 		}
 		
-		WriteImpl writeImpl = new WriteImpl(out);
+		int[] order = registry==null?null:this.getCompactOrder(registry);
+		
+		WriteImpl writeImpl = new WriteImpl(out, registry);
 		
-		for ( String aColumnName : getSorted(this.namesToIdxMapping.keySet()) )
-		{				
-			Object value = this.values.get(this.namesToIdxMapping.get(aColumnName));
+		if( order==null )
+		{
+			order = this.getSerializationOrder();
+			
+			// write the size of the column of this tuple
+			out.writeInt(order.length);
+			
+			for( int idx:order )
+			{
+				this.writeColumn(idx, out, writeImpl);
+			}
+		}
+		else
+		{
+			out.writeByte(COMPACT_FORM);
+			WritableUtils.writeVInt(out, this.compactSchemaID);
+			
+			byte[] nulls = new byte[(order.length+7) >>> 3];
+			for( int i=0;i<order.length;i++ )
+			{
+				if( this.isNull(order[i]) )
+					nulls[i >>> 3] |= (1 << (i & 7));
+			}
+			out.write(nulls);
+			
+			for( int idx:order )
+			{
+				if( this.isNull(idx) )
+					continue;
+				
+				this.writeColumn(idx, out, writeImpl);
+			}
+		}
+	}
+	
+	
+	/**
+	 * write the type and the value of the <code>idx</code><sub>th</sub>
+	 * value, primitive values are written without being boxed and
+	 * values not yet deserialized are written as is.
+	 */
+	private void writeColumn(int idx, DataOutput out, WriteImpl writeImpl)
+		throws IOException
+	{
+		if( this.values instanceof ColumnValues && ((ColumnValues)this.values).isPrimitive(idx) )
+		{
+			ColumnValues columns = (ColumnValues)this.values;
+			out.write(columns.getType(idx));
+			columns.write(idx, out);
+		}
+		else if( this.values instanceof ColumnValues && ((ColumnValues)this.values).isSerialized(idx) )
+		{
+			((ColumnValues)this.values).writeSerialized(idx, out);
+		}
+		else
+		{
+			Object value = this.values.get(idx);
 			byte type = getType(value);
 			out.write(type);
 			
@@ -786,6 +1016,82 @@ public class Tuple
 			writeImpl.handle(type);
 		}
 	}
+	
+	
+	/**
+	 * check if the <code>idx</code><sub>th</sub> value is null
+	 * without boxing nor deserializing it.
+	 */
+	private boolean isNull(int idx)
+	{
+		if( this.values instanceof ColumnValues 
+				&& (((ColumnValues)this.values).isPrimitive(idx) || ((ColumnValues)this.values).isSerialized(idx)) )
+			return false;
+		return this.values.get(idx)==null;
+	}
+	
+	
+	/**
+	 * Get the indexes of {@link #values} in the order of
+	 * their column names.
+	 */
+	private int[] getSerializationOrder()
+	{
+		int[] order = this.serializationOrder;
+		if( order==null )
+		{
+			List<String> sorted = getSorted(this.namesToIdxMapping.keySet());
+			order = new int[sorted.size()];
+			for( int i=0;i<order.length;i++ )
+			{
+				order[i] = this.namesToIdxMapping.get(sorted.get(i));
+			}
+			this.serializationOrder = order;
+		}
+		return order;
+	}
+	
+	
+	/**
+	 * Get the indexes of {@link #values} in the order of
+	 * the registered schema of this tuple, null if the
+	 * schema is not registered in the <code>registry</code>.
+	 */
+	private int[] getCompactOrder(TupleSchemaRegistry registry)
+	{
+		if( this.compactRegistry!=registry )
+		{
+			this.compactRegistry = registry;
+			if( this.schemaArray!=null )
+			{
+				// resolved once for all the tuples sharing the array
+				TupleSchemaRegistry.ResolvedSchema resolved = registry.resolve(this.schemaArray);
+				this.compactSchemaID	= resolved.id;
+				this.compactOrder		= resolved.order;
+			}
+			else
+			{
+				this.compactSchemaID	= registry.getSchemaID(this.namesToIdxMapping.keySet());
+				this.compactOrder		= null;
+			}
+		}
+		
+		if( this.compactSchemaID<0 )
+			return null;
+		
+		int[] order = this.compactOrder;
+		if( order==null )
+		{
+			String[] columns = registry.getColumns(this.compactSchemaID);
+			order = new int[columns.length];
+			for( int i=0;i<order.length;i++ )
+			{
+				order[i] = this.namesToIdxMapping.get(columns[i]);
+			}
+			this.compactOrder = order;
+		}
+		return order;
+	}
 
 	/**
 	 * Compare this tuple with <code>other</code>.
@@ -803,6 +1109,10 @@ public class Tuple
 	/**
 	 * Add a new column in the given <code></code> with 
 	 * provided <code>value</code>.
+	 * <p>
+	 * 
+	 * A tuple is not thread safe, callers that share one
+	 * tuple between threads have to synchronize on it.
 	 * 
 	 *  @throws UnsupportedOperationException if this tuple is immutable.
 	 */
@@ -813,69 +1123,231 @@ public class Tuple
 			throw new UnsupportedOperationException("This tuple is immutable, cannot be modified.");
 		}
 		
-		TupleColumnName tcn = TupleColumnName.valueOf(lowerCase(name));
+		TupleColumnName tcn = TupleColumnName.valueOf(name);
 		
 		String id		= tcn.getID();
 		String mapKey	= tcn.getMapKey();
 		
-		synchronized(this._INSERT_KEY)
+		if( this.namesToIdxMapping.containsKey(id) )
+		{
+			// do nothing
+		}
+		else
+		{
+			this.namesToIdxMapping.put(id, this.namesToIdxMapping.size());
+			this.schemaChanged();
+		}
+		
+		int value_idx = this.namesToIdxMapping.get(id);
+		
+		if( value_idx<this.values.size() )
 		{			
-			if( this.namesToIdxMapping.containsKey(id) )
+			// replace mode, replace the old value
+			if( mapKey==null )
 			{
-				// do nothing
+				// the <code>name</code> is not map ID style
+				this.values.set(value_idx, value);
 			}
 			else
 			{
-				this.namesToIdxMapping.put(id, this.namesToIdxMapping.size());
-			}
-			
-			int value_idx = this.namesToIdxMapping.get(id);
-			
-			if( value_idx<this.values.size() )
-			{			
-				// replace mode, replace the old value
-				if( mapKey==null )
+				if (this.values.get(value_idx) instanceof CaseInsensitiveTreeMap)
 				{
-					// the <code>name</code> is not map ID style
-					this.values.set(value_idx, value);
+					((CaseInsensitiveTreeMap)this.values.get(value_idx)).put(mapKey, value.toString());
 				}
 				else
 				{
-					if (this.values.get(value_idx) instanceof CaseInsensitiveTreeMap)
-					{
-						((CaseInsensitiveTreeMap)this.values.get(value_idx)).put(mapKey, value.toString());
-					}
-					else
-					{
-						throw new IllegalArgumentException("Column ["+id+"] is not "+CaseInsensitiveTreeMap.class.getCanonicalName()+", " +
-								"cannot change the value using map style ID ["+name+"]");
-					}
+					throw new IllegalArgumentException("Column ["+id+"] is not "+CaseInsensitiveTreeMap.class.getCanonicalName()+", " +
+							"cannot change the value using map style ID ["+name+"]");
 				}
 			}
-			else if (value_idx == this.values.size())
+		}
+		else if (value_idx == this.values.size())
+		{
+			// insert mode
+			if( mapKey==null )
 			{
-				// insert mode
-				if( mapKey==null )
-				{
-					// the <code>name</code> is not map ID style
-					this.values.add(value_idx, value);
-				}
-				else
-				{
-					// user tries to use a Map style ID to add new value, disallow 
-					throw new IllegalArgumentException("Column ["+id+"] has not been initialized as Map, " +
-							"cannot use ["+name+"] to change the value of the key directly.");
-				}
+				// the <code>name</code> is not map ID style
+				this.values.add(value_idx, value);
 			}
 			else
 			{
-				throw new IllegalStateException();
+				// user tries to use a Map style ID to add new value, disallow 
+				throw new IllegalArgumentException("Column ["+id+"] has not been initialized as Map, " +
+						"cannot use ["+name+"] to change the value of the key directly.");
 			}
 		}
-		
+		else
+		{
+			throw new IllegalStateException("Column ["+id+"] is mapped to index "+value_idx+
+					", but the tuple has only "+this.values.size()+" values.");
+		}
+	
 		return this;
 	}
 
+	/**
+	 * Put a primitive value into the column <code>name</code> 
+	 * without boxing it, <code>bits</code> is in the layout
+	 * described in {@link ColumnValues#setPrimitive(int, byte, long)}.
+	 */
+	private void putPrimitive(String name, byte type, long bits)
+	{
+		if( !this.isMutable )
+		{
+			throw new UnsupportedOperationException("This tuple is immutable, cannot be modified.");
+		}
+		
+		TupleColumnName tcn = TupleColumnName.valueOf(name);
+		
+		if( tcn.getMapKey()!=null || !(this.values instanceof ColumnValues) )
+		{
+			this.insert(name, ColumnValues.box(type, bits));
+			return;
+		}
+		
+		String id = tcn.getID();
+		
+		Integer value_idx = this.namesToIdxMapping.get(id);
+		if( value_idx==null )
+		{
+			value_idx = this.namesToIdxMapping.size();
+			this.namesToIdxMapping.put(id, value_idx);
+			this.schemaChanged();
+		}
+		
+		if( value_idx>this.values.size() )
+		{
+			throw new IllegalStateException("Cannot put a value of type "+Tuple.getTypeString(type)+
+					" into column ["+id+"], it is mapped to index "+value_idx+
+					", but the tuple has only "+this.values.size()+" values.");
+		}
+		
+		((ColumnValues)this.values).setPrimitive(value_idx, type, bits);
+	}
+	
+	
+	/**
+	 * Get the index of the column <code>name</code> if its value 
+	 * is a numerical value stored as primitive, -1 otherwise.
+	 */
+	private int getNumericalSlot(String name)
+	{
+		if( !(this.values instanceof ColumnValues) )
+			return -1;
+		
+		TupleColumnName tcn = TupleColumnName.valueOf(name);
+		if( tcn.getMapKey()!=null )
+			return -1;
+		
+		Integer idx = this.namesToIdxMapping.get(tcn.getID());
+		if( idx==null || idx>=this.values.size() || !((ColumnValues)this.values).isNumerical(idx) )
+			return -1;
+		
+		return idx;
+	}
+	
+	
+	/**
+	 * Get the value of column named <code>name</code> as
+	 * a primitive long, the value is not boxed if it's stored
+	 * as a numerical primitive.
+	 * <p>
+	 * 
+	 * If the value is <code>null</code>, <code>default_value</code>
+	 * is returned, the conversion rules are the same as 
+	 * {@link #getLong(String, long)}.
+	 */
+	public long getLongValue(String name, long default_value)
+	{
+		int idx = this.getNumericalSlot(name);
+		if( idx>=0 )
+			return ((ColumnValues)this.values).getLong(idx);
+		return (Long)get(LONG_TYPE, name, default_value);
+	}
+	
+	
+	/**
+	 * Get the value of column named <code>name</code> as
+	 * a primitive double, the value is not boxed if it's stored
+	 * as a numerical primitive.
+	 * <p>
+	 * 
+	 * If the value is <code>null</code>, <code>default_value</code>
+	 * is returned, the conversion rules are the same as 
+	 * {@link #getDouble(String, double)}.
+	 */
+	public double getDoubleValue(String name, double default_value)
+	{
+		int idx = this.getNumericalSlot(name);
+		if( idx>=0 )
+			return ((ColumnValues)this.values).getDouble(idx);
+		return (Double)get(DOUBLE_TYPE, name, default_value);
+	}
+	
+	
+	/**
+	 * Return the index of the given <code>column</code> in this
+	 * tuple, or -1 if the column doesn't exist or it references
+	 * a key of a map column.
+	 * <p>
+	 * 
+	 * Callers accessing the same column of a tuple more than
+	 * once can resolve it into an index, and then use 
+	 * {@link #getColumnType(int)}, {@link #getLongValue(int)}, 
+	 * {@link #getDoubleValue(int)} or {@link #get(int)}.
+	 */
+	public int indexOf(TupleColumnName column)
+	{
+		if( column.getMapKey()!=null )
+			return -1;
+		
+		Integer idx = this.namesToIdxMapping.get(column.getID());
+		if( idx==null || idx>=this.values.size() )
+			return -1;
+		
+		return idx;
+	}
+	
+	
+	/**
+	 * Get the type of the value at <code>index</code>, same
+	 * as {@link #getType(Object)} of the value, but numerical
+	 * values stored as primitives are not boxed.
+	 */
+	public byte getColumnType(int index)
+	{
+		if( this.values instanceof ColumnValues )
+			return ((ColumnValues)this.values).getType(index);
+		return getType(this.values.get(index));
+	}
+	
+	
+	/**
+	 * Get the numerical value at <code>index</code> as a 
+	 * primitive long, the type of the value must be numerical,
+	 * see {@link #getColumnType(int)}.
+	 */
+	public long getLongValue(int index)
+	{
+		if( this.values instanceof ColumnValues && ((ColumnValues)this.values).isNumerical(index) )
+			return ((ColumnValues)this.values).getLong(index);
+		return ((Number)this.values.get(index)).longValue();
+	}
+	
+	
+	/**
+	 * Get the numerical value at <code>index</code> as a 
+	 * primitive double, the type of the value must be numerical,
+	 * see {@link #getColumnType(int)}.
+	 */
+	public double getDoubleValue(int index)
+	{
+		if( this.values instanceof ColumnValues && ((ColumnValues)this.values).isNumerical(index) )
+			return ((ColumnValues)this.values).getDouble(index);
+		return ((Number)this.values.get(index)).doubleValue();
+	}
+	
+	
 	/**
 	 * Get Hadoop configuration.
 	 */
@@ -912,59 +1384,23 @@ public class Tuple
 	private final TupleColumnComparator _COLUMN_COMPARATOR = new TupleColumnComparator();
 	
 	/**
-	 * compare two tuples in low level row format.
+	 * created on demand, only the instances used as comparator need it.
+	 */
+	private TupleRawComparator rawComparator;
+	
+	/**
+	 * compare two tuples in low level row format, without
+	 * deserializing them, see {@link TupleRawComparator}.
 	 */
 	@Override
 	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2)
 	{
-		DataInputBuffer d1 = new DataInputBuffer();
-		d1.reset(b1, s1, l1);
-		
-		DataInputBuffer d2 = new DataInputBuffer();
-		d2.reset(b2, s2, l2);
-		
-		int _compare_result = Integer.MAX_VALUE;
-		
-		try
-		{
-			// read number of columns from the two tuple
-			int columns_nbr1 = d1.readInt();
-			int columns_nbr2 = d2.readInt();
-			
-			int upper_bound = Math.min(columns_nbr1, columns_nbr2);
-			
-			// same column size, start to compare column by column
-			
-			for( int i=0;i<upper_bound;i++ )
-			{
-				byte type1 = d1.readByte();
-				byte type2 = d2.readByte();
-				
-				_COLUMN_COMPARATOR.setType(type1, type2);
-				_compare_result = _COLUMN_COMPARATOR.compare(d1, d2, this.conf);
-				
-				// comparing for a column has complete				
-				if ( _compare_result!=0 && _compare_result!=Integer.MAX_VALUE  )
-				{
-					// has different, return
-					return _compare_result;
-				}
-			}// end of iterating columns until the upper limit
-			
-			// finished all columns comparison(up to the upper-bound), still cannot find difference,
-			// use the column size as the comparing result.
-			
-			_compare_result = columns_nbr1 - columns_nbr2;
-		}
-		catch(IOException e)
-		{
-			throw new RuntimeException(e);
-		}
+		if( this.rawComparator==null )
+			this.rawComparator = new TupleRawComparator();
 		
-		if (_compare_result==Integer.MAX_VALUE )
-			throw new IllegalArgumentException();
-		
-		return _compare_result;
+		// compare the columns in place
+		this.rawComparator.setConf(this.conf);
+		return this.rawComparator.compare(b1, s1, l1, b2, s2, l2, null);
 	}
 
 	/**
@@ -997,8 +1433,33 @@ public class Tuple
 		
 		try
 		{
+			ColumnValues c1 = t1.values instanceof ColumnValues?(ColumnValues)t1.values:null;
+			ColumnValues c2 = t2.values instanceof ColumnValues?(ColumnValues)t2.values:null;
+			
 			for( int i=0;i<upper_bound;i++)
 			{
+				if( c1!=null && c2!=null && c1.isNumerical(i) && c2.isNumerical(i) )
+				{
+					byte type1 = c1.getType(i);
+					byte type2 = c2.getType(i);
+					if( type1==type2 && (type1==LONG_TYPE || type1==INTEGER_TYPE) )
+					{
+						// compare the primitives directly, same result as
+						// Long#compareTo and Integer#compareTo
+						_compare_result = Long.compare(c1.getLong(i), c2.getLong(i));
+						if( _compare_result!=0 )
+							return _compare_result;
+						continue;
+					}
+					else if( type1==type2 && (type1==DOUBLE_TYPE || type1==FLOAT_TYPE) )
+					{
+						_compare_result = Double.compare(c1.getDouble(i), c2.getDouble(i));
+						if( _compare_result!=0 )
+							return _compare_result;
+						continue;
+					}
+				}
+				
 				Object v1 = t1.values.get(i);
 				Object v2 = t2.values.get(i);
 				
@@ -1065,7 +1526,7 @@ public class Tuple
 	 */
 	public Tuple put(String name, byte value)
 	{
-		this.insert(name, value);
+		this.putPrimitive(name, BYTE_TYPE, value);
 		
 		// add 16 bytes, 16 bytes is derived from 
 		// java.lang.instrument.Instrumentation to test 
@@ -1103,7 +1564,7 @@ public class Tuple
 	 */
 	public Tuple put(String name, short value)
 	{
-		this.insert(name, value);
+		this.putPrimitive(name, SHORT_TYPE, value);
 		
 		// add 16 bytes, 16 bytes is derived from 
 		// java.lang.instrument.Instrumentation to test 
@@ -1123,7 +1584,7 @@ public class Tuple
 	 */
 	public Tuple put(String name, int value)	
 	{
-		this.insert(name, value);
+		this.putPrimitive(name, INTEGER_TYPE, value);
 		
 		// add 16 bytes, 16 bytes is derived from 
 		// java.lang.instrument.Instrumentation to test 
@@ -1143,7 +1604,7 @@ public class Tuple
 	 */
 	public Tuple put(String name, long value)	
 	{
-		this.insert(name, value);
+		this.putPrimitive(name, LONG_TYPE, value);
 		
 		// add 24 bytes, 24 bytes is derived from 
 		// java.lang.instrument.Instrumentation to test 
@@ -1163,7 +1624,7 @@ public class Tuple
 	 */
 	public Tuple put(String name, float value)	
 	{
-		this.insert(name, value);
+		this.putPrimitive(name, FLOAT_TYPE, Float.floatToRawIntBits(value));
 		
 		// add 16 bytes, 16 bytes is derived from 
 		// java.lang.instrument.Instrumentation to test 
@@ -1183,7 +1644,7 @@ public class Tuple
 	 */
 	public Tuple put(String name, double value)
 	{
-		this.insert(name, value);
+		this.putPrimitive(name, DOUBLE_TYPE, Double.doubleToRawLongBits(value));
 		
 		// add 24 bytes, 24 bytes is derived from 
 		// java.lang.instrument.Instrumentation to test 
@@ -1203,7 +1664,7 @@ public class Tuple
 	 */
 	public Tuple put(String name, boolean value)
 	{		
-		this.insert(name, value);
+		this.putPrimitive(name, BOOLEAN_TYPE, value?1L:0L);
 		
 		// add 16 bytes for inserting a boolean,
 		// it will be auto-box into Boolean, and
@@ -1481,7 +1942,7 @@ public class Tuple
 	 */
 	public Long getLong(String name, long default_value)
 	{
-		return (Long)get(LONG_TYPE, name, default_value);
+		return this.getLongValue(name, default_value);
 	}
 	
 	
@@ -1553,7 +2014,7 @@ public class Tuple
 	 */
 	public Double getDouble(String name, double default_value)
 	{
-		return (Double)get(DOUBLE_TYPE, name, default_value);
+		return this.getDoubleValue(name, default_value);
 	}
 	
 	/**
@@ -1807,8 +2268,31 @@ public class Tuple
 	 */
 	public Object get(String name)
 	{
-		TupleColumnName tcn = TupleColumnName.valueOf(lowerCase(name));
-		int idx = check_in_schema(tcn.getID());
+		return this.get(TupleColumnName.valueOf(name));
+	}
+	
+	
+	/**
+	 * Get the value of the given <code>column</code>.
+	 * <p>
+	 * 
+	 * Callers accessing the same column of many tuples
+	 * can resolve the {@link TupleColumnName} once, 
+	 * through {@link TupleColumnName#valueOf(String)}, and
+	 * then use this method to skip the name resolution.
+	 * 
+	 * @param column a resolved column name.
+	 * @return value of the column.
+	 */
+	public Object get(TupleColumnName column)
+	{
+		TupleColumnName tcn = column;
+		Integer idx = this.namesToIdxMapping.get(tcn.getID());
+		if( idx==null )
+		{
+			throw new IllegalArgumentException("["+tcn+"] doesn't exist in this tuple's schema:"+this.namesToIdxMapping.keySet()+", index:"+this.namesToIdxMapping.values());
+		}
+		
 		if( tcn.getMapKey()==null )
 		{
 			// not using map style name to access the value
@@ -1826,7 +2310,7 @@ public class Tuple
 			else
 			{
 				throw new IllegalArgumentException("The type of column ["+tcn.getID()+"] is not "+CaseInsensitiveTreeMap.class.getCanonicalName()+" but "+value.getClass().getCanonicalName()+
-						", the given ID ["+name+"] is a map style ID and cannot be applied to this column.");
+						", the given ID ["+tcn+"] is a map style ID and cannot be applied to this column.");
 			}
 		}
 	}
@@ -1841,7 +2325,7 @@ public class Tuple
 	{
 		Tuple clone = new Tuple();
 		clone.namesToIdxMapping = new HashMap<String, Integer>();
-		clone.values = new ArrayList<Object>(this.values.size());
+		clone.values = new ColumnValues(this.values.size());
 		
 		// fulfill the values with null
 		for( int i=0;i<this.values.size();i++ )
@@ -1854,8 +2338,17 @@ public class Tuple
 			Integer idx = this.namesToIdxMapping.get(columnName);
 			
 			clone.namesToIdxMapping.put(columnName, idx);
-			clone.values.set(idx, this.get(idx));
+			if( this.values instanceof ColumnValues )
+			{
+				// copy without boxing the primitives
+				((ColumnValues)clone.values).copy(idx, (ColumnValues)this.values, idx);
+			}
+			else
+			{
+				clone.values.set(idx, this.get(idx));
+			}
 		}
+		clone.schemaArray = this.schemaArray;
 		
 		return clone;
 	}
@@ -1891,6 +2384,16 @@ public class Tuple
 		return type>=Tuple.BYTE_TYPE && type<=Tuple.DOUBLE_TYPE;
 	}
 	
+	/**
+	 * Test if the given <code>type</code> is 
+	 * {@link #BYTE_TYPE}, {@link #SHORT_TYPE}, 
+	 * {@link #INTEGER_TYPE}, or {@link #LONG_TYPE}.
+	 */
+	public static boolean isIntegralType(byte type)
+	{
+		return type>=Tuple.BYTE_TYPE && type<=Tuple.LONG_TYPE;
+	}
+	
 	/**
 	 * Test if the given <code>type</code> is 
 	 * {@link #TIME_TYPE}, {@link #DATE_TYPE}, or
@@ -1948,7 +2451,7 @@ public class Tuple
 		{
 			for (String aColumn: t1.getSchema() )
 			{
-				result.insert(aColumn, t1.get(aColumn));
+				result.insertFrom(aColumn, t1);
 			}
 		}
 		
@@ -1956,13 +2459,41 @@ public class Tuple
 		{
 			for( String aColumn:t2.getSchema() )
 			{
-				result.insert(aColumn, t2.get(aColumn));
+				result.insertFrom(aColumn, t2);
 			}
 		}
 		
 		return result;
 	}
 	
+	
+	/**
+	 * insert the value of column <code>name</code> in the <code>source</code>
+	 * tuple into this tuple, primitive values are copied without being boxed.
+	 */
+	private void insertFrom(String name, Tuple source)
+	{
+		String id		= lowerCase(name);
+		Integer from	= source.namesToIdxMapping.get(id);
+		
+		if( from!=null && source.values instanceof ColumnValues && this.values instanceof ColumnValues 
+				&& ((ColumnValues)source.values).isPrimitive(from) )
+		{
+			Integer to = this.namesToIdxMapping.get(id);
+			if( to==null )
+			{
+				to = this.namesToIdxMapping.size();
+				this.namesToIdxMapping.put(id, to);
+				this.schemaChanged();
+			}
+			((ColumnValues)this.values).copy(to, (ColumnValues)source.values, from);
+		}
+		else
+		{
+			this.insert(name, source.get(name));
+		}
+	}
+	
 	/**
 	 * Convert this {@link Tuple} into text, the delimiter is specified by
 	 * "mobius.tuple.tostring.delimiter" (default is tab).
@@ -2091,6 +2622,21 @@ public class Tuple
 	 * length of <code>schema</code>.
 	 */
 	public static Tuple valueOf(Text source, String[] schema, String delimiter)
+	{
+		return valueOf(source, schema, delimiter, null);
+	}
+	
+	/**
+	 * Convert the <code>source</code> into a tuple the same way as
+	 * {@link #valueOf(Text, String[], String)}, the value of the 
+	 * column <code>schema[i]</code> is parsed by <code>parsers[i]</code>
+	 * if it's not null.
+	 * 
+	 * @param parsers the parsers of the columns in the <code>schema</code>,
+	 * can be null if all the columns are strings.
+	 * @throws InvalidColumnValueException if a value cannot be parsed.
+	 */
+	public static Tuple valueOf(Text source, String[] schema, String delimiter, ColumnParser[] parsers)
 	{
 		
 		Tuple tuple		= new Tuple();
@@ -2102,7 +2648,7 @@ public class Tuple
 		{
 			if( i<tokens.size() )
 			{
-				tuple.put (schema[i], tokens.get(i));
+				put (tuple, schema[i], tokens.get(i), parsers==null?null:parsers[i]);
 			}
 			else
 			{
@@ -2122,6 +2668,80 @@ public class Tuple
 		return tuple;
 	}
 	
+	/**
+	 * Convert the <code>source</code> into a tuple the same way as
+	 * {@link #valueOf(Text, String[], String)}, but only the columns
+	 * of the <code>schema</code> at the given <code>ordinals</code> 
+	 * (in ascending order) are put into the returned tuple.
+	 * <p>
+	 * 
+	 * The bytes of <code>source</code> are scanned once for the 
+	 * <code>delimiter</code> (in UTF-8) until the last required 
+	 * column, and only the required columns are decoded.
+	 * 
+	 * @param parsers the parsers of the columns in the <code>schema</code>,
+	 * can be null if all the columns are strings.
+	 * @throws InvalidColumnValueException if a value cannot be parsed.
+	 */
+	public static Tuple valueOf(Text source, String[] schema, byte[] delimiter, int[] ordinals, ColumnParser[] parsers)
+	{
+		Tuple tuple		= new Tuple();
+		
+		byte[] bytes	= source.getBytes();
+		int length		= source.getLength();
+		
+		int next	= 0;
+		int field	= 0;
+		int start	= 0;
+		
+		// an empty line has no column.
+		while( length>0 && next<ordinals.length )
+		{
+			int end = Util.indexOf(bytes, start, length, delimiter);
+			if( end<0 )
+				end = length;
+			
+			if( ordinals[next]==field )
+			{
+				try
+				{
+					put (tuple, schema[field], Text.decode(bytes, start, end-start), parsers==null?null:parsers[field]);
+				}
+				catch(CharacterCodingException e)
+				{
+					throw new RuntimeException(e);
+				}
+				next++;
+			}
+			
+			if( end==length )
+				break;
+			
+			start = end+delimiter.length;
+			field++;
+		}
+		
+		// the columns after the last value
+		for( ;next<ordinals.length;next++ )
+		{
+			tuple.putNull (schema[ordinals[next]]);
+		}
+		
+		return tuple;
+	}
+	
+	private static void put(Tuple tuple, String name, String value, ColumnParser parser)
+	{
+		if( parser==null )
+		{
+			tuple.put (name, value);
+		}
+		else
+		{
+			parser.put (tuple, name, value);
+		}
+	}
+	
 	/**
 	 * Return the estimated size in bytes of this
 	 * tuple in memory.
@@ -2178,12 +2798,26 @@ public class Tuple
 		 */
 		private String mapKey;
 		
-		private static Map<String, TupleColumnName> tupleColumnNames = new HashMap<String, TupleColumnName>();
+		/**
+		 * the column name as given by user.
+		 */
+		private String name;
+		
+		/**
+		 * resolved column names, keyed by the column name as
+		 * given by user (any case), lookups are lock free.
+		 */
+		private static Map<String, TupleColumnName> tupleColumnNames = new ConcurrentHashMap<String, TupleColumnName>();
 		
 		/**
-		 * convert the <code>columnName</code> into a {@link TupleColumnName}. 
+		 * convert the <code>columnName</code> into a {@link TupleColumnName}.
+		 * <p>
+		 * 
+		 * Column names are case insensitive, the {@link #getID()}
+		 * and {@link #getMapKey()} of the returned instance are
+		 * in lower case.
 		 */
-		public synchronized static TupleColumnName valueOf(String columnName)
+		public static TupleColumnName valueOf(String columnName)
 		{			
 			if( columnName==null || columnName.trim().isEmpty() )
 			{
@@ -2196,13 +2830,13 @@ public class Tuple
 				return tcn;
 			}
 			else{
-			
-				int dotIdx = columnName.indexOf(".");
+				String lowerCaseName = lowerCase(columnName);
+				int dotIdx = lowerCaseName.indexOf(".");
 				
 				if( dotIdx<0 )
 				{
 					tcn = new TupleColumnName();
-					tcn.id = columnName;
+					tcn.id = lowerCaseName;
 					tcn.mapKey = null; 
 				}
 				else if (dotIdx>0)
@@ -2212,19 +2846,29 @@ public class Tuple
 						throw new IllegalArgumentException("Invalid format of Tuple column name:["+columnName+"], please refer the correct format in {@link Tuple#COLUMN_NAME_PATTERN}");
 					}
 					tcn = new TupleColumnName();
-					tcn.id = columnName.substring(0, dotIdx);
-					tcn.mapKey = columnName.substring(dotIdx+1);
+					tcn.id = lowerCaseName.substring(0, dotIdx);
+					tcn.mapKey = lowerCaseName.substring(dotIdx+1);
 				}
 				else
 				{
 					// dotIdx==0
 					throw new IllegalArgumentException("Invalid format of Tuple column name:["+columnName+"], please refer the correct format in {@link Tuple#COLUMN_NAME_PATTERN}");
 				}
+				tcn.name = columnName;
+				
+				// racing threads create equivalent instances, no
+				// need to lock
 				tupleColumnNames.put(columnName, tcn);
 				return tcn;
 			}
 		}
 		
+		@Override
+		public String toString()
+		{
+			return this.name;
+		}
+		
 		/**
 		 * Get the column ID.
 		 */
@@ -3,7 +3,6 @@ package com.ebay.erl.mobius.core.model;
 import java.io.DataInput;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.TreeMap;
@@ -339,26 +338,20 @@ public class TupleColumnComparator
 	
 	private TreeMap<String, Integer> getIdxMapping(Sorter[] sorters)
 	{
-		// the ordering of the values of the columns in k1 and k2 
-		// are sorted by the column name's alphabetic ordering, 
-		// see {@link Tuple#write}.  We might not have the schema
-		// of the tuple here, so we need to build the index according
-		// to the selected columns from the sorters in alphabetic order,
-		// then we can get the value directly using index.	
+		// the sorting keys are emitted as {@link KeyTuple}, the
+		// values of the columns in k1 and k2 are in the same order
+		// as the sorters, see {@link KeyTuple#write}.  We might not
+		// have the schema of the tuple here, so we need to build the
+		// index according to the ordering of the sorters, then we can
+		// get the value directly using index.	
 		if( _IDX_MAPPING==null )
 		{
-			_IDX_MAPPING = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
-			
-			List<String> columnNames = new ArrayList<String>();
-			for( Sorter aSorter:sorters )
+			TreeMap<String, Integer> mapping = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+			for(int i=0;i<sorters.length;i++)
 			{
-				columnNames.add(aSorter.getColumn().toLowerCase());
+				mapping.put(sorters[i].getColumn(), i);
 			}
-			Collections.sort(columnNames);
-			for(int i=0;i<columnNames.size();i++)
-			{
-				_IDX_MAPPING.put(columnNames.get(i), i);
-			}			
+			_IDX_MAPPING = mapping;
 		}
 		return _IDX_MAPPING;
 	}
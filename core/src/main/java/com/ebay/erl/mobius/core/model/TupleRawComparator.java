@@ -0,0 +1,511 @@
+package com.ebay.erl.mobius.core.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.ebay.erl.mobius.core.sort.Sorter;
+import com.ebay.erl.mobius.core.sort.Sorter.Ordering;
+
+/**
+ * Compares two serialized {@link Tuple}s in place, column by
+ * column, without deserializing them.
+ * <p>
+ *
+ * Numerical, boolean, date and string columns are compared
+ * directly on the bytes, strings are compared on their UTF-8
+ * bytes, which gives the same ordering as {@link String#compareTo(String)}.
+ * Columns of other types, or of two different types that are
+ * not both numerical, are deserialized one at a time and
+ * compared with {@link TupleColumnComparator}, so the result
+ * is always the same as comparing the deserialized tuples.
+ * <p>
+ *
+ * When {@link Sorter}s are given, the i<sub>th</sub> sorter
+ * applies to the i<sub>th</sub> column, as the sorting keys
+ * are emitted as {@link KeyTuple} in the order of the sorters,
+ * see {@link TupleColumnComparator#compareKey}.
+ * <p>
+ *
+ * Tuples in the compact form (see {@link TupleSchemaRegistry})
+ * are deserialized and then compared.
+ * <p>
+ *
+ * This class is not thread safe.
+ *
+ *
+ *
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class TupleRawComparator
+{
+	private static final Sorter[] NO_SORTER = new Sorter[0];
+
+	private final TupleColumnComparator columnComparator = new TupleColumnComparator();
+
+	/**
+	 * to deserialize the columns not comparable in place.
+	 */
+	private final DataInputBuffer buffer = new DataInputBuffer();
+
+	private final List<Object> decoded = new ArrayList<Object>(1);
+
+	/**
+	 * used to convert a value to double for the sorters
+	 * which force to sort numerically.
+	 */
+	private final Tuple converter = new Tuple();
+
+	private Configuration conf;
+
+	private byte[] b1;
+	private int pos1;
+	private int end1;
+
+	private byte[] b2;
+	private int pos2;
+	private int end2;
+
+
+
+	public void setConf(Configuration conf)
+	{
+		this.conf = conf;
+	}
+
+
+
+	/**
+	 * Compare two serialized tuples, if <code>sorters</code>
+	 * is null or empty, the result is the same as {@link Tuple#compareTo(Tuple)},
+	 * otherwise, it's the same as {@link TupleColumnComparator#compareKey}.
+	 * <p>
+	 *
+	 * If the result is 0, {@link #getEnd1()} and {@link #getEnd2()}
+	 * return the positions right after the two tuples.
+	 */
+	public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2, Sorter[] sorters)
+	{
+		this.b1		= b1;
+		this.pos1	= s1;
+		this.end1	= s1+l1;
+
+		this.b2		= b2;
+		this.pos2	= s2;
+		this.end2	= s2+l2;
+
+		if( sorters==null )
+			sorters = NO_SORTER;
+
+		try
+		{
+			if( b1[s1]==Tuple.COMPACT_FORM || b2[s2]==Tuple.COMPACT_FORM )
+			{
+				return this.compareDeserialized(sorters);
+			}
+
+			int columns_nbr1 = WritableComparator.readInt(b1, this.pos1);
+			int columns_nbr2 = WritableComparator.readInt(b2, this.pos2);
+			this.pos1 += 4;
+			this.pos2 += 4;
+
+			int compared;
+			if( sorters.length==0 )
+			{
+				// same as Tuple#compare(Tuple, Tuple)
+				compared = Math.min(columns_nbr1, columns_nbr2);
+				for( int i=0;i<compared;i++ )
+				{
+					int result = this.compareColumn(this.b1[this.pos1++], this.b2[this.pos2++], false);
+					if( result!=0 )
+						return result;
+				}
+			}
+			else
+			{
+				// same as TupleColumnComparator#compareKey
+				compared = sorters.length;
+				if( compared>columns_nbr1 || compared>columns_nbr2 )
+				{
+					throw new IllegalArgumentException("There are "+sorters.length+" sorters, but the tuples to be compared " +
+							"have only "+columns_nbr1+" and "+columns_nbr2+" columns.");
+				}
+
+				for( int i=0;i<compared;i++ )
+				{
+					Sorter aSorter = sorters[i];
+					int result = this.compareColumn(this.b1[this.pos1++], this.b2[this.pos2++], aSorter.forceSortNumerically());
+					if( result!=0 )
+					{
+						return aSorter.getOrdering()==Ordering.DESC?-result:result;
+					}
+				}
+			}
+
+			// move to the end of the tuples
+			for( int i=compared;i<columns_nbr1;i++ )
+				this.skip(true, this.b1[this.pos1++]);
+			for( int i=compared;i<columns_nbr2;i++ )
+				this.skip(false, this.b2[this.pos2++]);
+
+			return sorters.length==0?columns_nbr1-columns_nbr2:0;
+		}
+		catch(IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+
+
+	/**
+	 * position right after the first tuple of the
+	 * last comparison.
+	 */
+	public int getEnd1()
+	{
+		return this.pos1;
+	}
+
+
+
+	/**
+	 * position right after the second tuple of the
+	 * last comparison.
+	 */
+	public int getEnd2()
+	{
+		return this.pos2;
+	}
+
+
+
+	private int compareDeserialized(Sorter[] sorters)
+		throws IOException
+	{
+		Tuple t1 = new Tuple();
+		t1.setConf(this.conf);
+		this.buffer.reset(this.b1, this.pos1, this.end1-this.pos1);
+		t1.readFields(this.buffer);
+		this.pos1 = this.buffer.getPosition();
+
+		Tuple t2 = new Tuple();
+		t2.setConf(this.conf);
+		this.buffer.reset(this.b2, this.pos2, this.end2-this.pos2);
+		t2.readFields(this.buffer);
+		this.pos2 = this.buffer.getPosition();
+
+		if( sorters.length==0 )
+			return t1.compareTo(t2);
+		else
+			return this.columnComparator.compareKey(t1, t2, sorters, this.conf);
+	}
+
+
+
+	/**
+	 * compare the values of the current columns, after the
+	 * types have been read.
+	 */
+	private int compareColumn(byte type1, byte type2, boolean forceNumeric)
+		throws IOException
+	{
+		if( forceNumeric )
+		{
+			return Double.compare(this.readAsDouble(true, type1), this.readAsDouble(false, type2));
+		}
+
+		if( type1==type2 )
+		{
+			switch(type1)
+			{
+				case Tuple.BYTE_TYPE:
+					return this.b1[this.pos1++] - this.b2[this.pos2++];
+				case Tuple.SHORT_TYPE:
+				{
+					short v1 = (short)WritableComparator.readUnsignedShort(this.b1, this.pos1);
+					short v2 = (short)WritableComparator.readUnsignedShort(this.b2, this.pos2);
+					this.pos1 += 2;
+					this.pos2 += 2;
+					return v1 - v2;
+				}
+				case Tuple.INTEGER_TYPE:
+				{
+					int v1 = WritableComparator.readInt(this.b1, this.pos1);
+					int v2 = WritableComparator.readInt(this.b2, this.pos2);
+					this.pos1 += 4;
+					this.pos2 += 4;
+					return v1<v2?-1:(v1==v2?0:1);
+				}
+				case Tuple.LONG_TYPE:
+				case Tuple.DATE_TYPE:
+				case Tuple.TIME_TYPE:
+				case Tuple.TIMESTAMP_TYPE:
+				{
+					long v1 = WritableComparator.readLong(this.b1, this.pos1);
+					long v2 = WritableComparator.readLong(this.b2, this.pos2);
+					this.pos1 += 8;
+					this.pos2 += 8;
+					return v1<v2?-1:(v1==v2?0:1);
+				}
+				case Tuple.FLOAT_TYPE:
+				{
+					float v1 = WritableComparator.readFloat(this.b1, this.pos1);
+					float v2 = WritableComparator.readFloat(this.b2, this.pos2);
+					this.pos1 += 4;
+					this.pos2 += 4;
+					return Float.compare(v1, v2);
+				}
+				case Tuple.DOUBLE_TYPE:
+				{
+					double v1 = WritableComparator.readDouble(this.b1, this.pos1);
+					double v2 = WritableComparator.readDouble(this.b2, this.pos2);
+					this.pos1 += 8;
+					this.pos2 += 8;
+					return Double.compare(v1, v2);
+				}
+				case Tuple.BOOLEAN_TYPE:
+				{
+					boolean v1 = this.b1[this.pos1++]!=0;
+					boolean v2 = this.b2[this.pos2++]!=0;
+					return v1==v2?0:(v1?1:-1);
+				}
+				case Tuple.NULL_TYPE:
+				case Tuple.NULL_WRITABLE_TYPE:
+					return 0;
+				case Tuple.STRING_TYPE:
+					return this.compareString();
+				default:
+					// compare below
+			}
+		}
+		else if( Tuple.isNumericalType(type1) && Tuple.isNumericalType(type2) )
+		{
+			return Double.compare(this.readNumber(true, type1), this.readNumber(false, type2));
+		}
+
+		// other types, or different types which are not both
+		// numerical, deserialize and then compare.
+		Object v1 = this.read(true, type1);
+		Object v2 = this.read(false, type2);
+
+		this.columnComparator.setType(type1, type2);
+		return this.columnComparator.compare(v1, v2, this.conf);
+	}
+
+
+
+	/**
+	 * compare two strings serialized by {@link Text#writeString(java.io.DataOutput, String)}.
+	 */
+	private int compareString()
+		throws IOException
+	{
+		int vintSize1	= WritableUtils.decodeVIntSize(this.b1[this.pos1]);
+		int length1		= WritableComparator.readVInt(this.b1, this.pos1);
+		int start1		= this.pos1+vintSize1;
+
+		int vintSize2	= WritableUtils.decodeVIntSize(this.b2[this.pos2]);
+		int length2		= WritableComparator.readVInt(this.b2, this.pos2);
+		int start2		= this.pos2+vintSize2;
+
+		this.pos1 = start1+length1;
+		this.pos2 = start2+length2;
+
+		int upper_bound = Math.min(length1, length2);
+		for( int i=0;i<upper_bound;i++ )
+		{
+			int c1 = this.b1[start1+i] & 0xFF;
+			int c2 = this.b2[start2+i] & 0xFF;
+			if( c1!=c2 )
+			{
+				if( c1>=0xEE && c2>=0xEE )
+				{
+					// a character in U+E000 - U+FFFF and a supplementary
+					// character, their UTF-8 order is different from the
+					// order of String#compareTo, which compares UTF-16
+					// code units.
+					String s1 = Text.decode(this.b1, start1, length1);
+					String s2 = Text.decode(this.b2, start2, length2);
+					return s1.compareTo(s2);
+				}
+				return c1-c2;
+			}
+		}
+		return length1-length2;
+	}
+
+
+
+	/**
+	 * read the numerical value of the given <code>type</code>
+	 * as double.
+	 */
+	private double readNumber(boolean first, byte type)
+	{
+		byte[] b	= first?this.b1:this.b2;
+		int pos		= first?this.pos1:this.pos2;
+
+		double value;
+		int size;
+		switch(type)
+		{
+			case Tuple.BYTE_TYPE:
+				value = b[pos];
+				size = 1;
+				break;
+			case Tuple.SHORT_TYPE:
+				value = (short)WritableComparator.readUnsignedShort(b, pos);
+				size = 2;
+				break;
+			case Tuple.INTEGER_TYPE:
+				value = WritableComparator.readInt(b, pos);
+				size = 4;
+				break;
+			case Tuple.LONG_TYPE:
+				value = WritableComparator.readLong(b, pos);
+				size = 8;
+				break;
+			case Tuple.FLOAT_TYPE:
+				value = WritableComparator.readFloat(b, pos);
+				size = 4;
+				break;
+			case Tuple.DOUBLE_TYPE:
+				value = WritableComparator.readDouble(b, pos);
+				size = 8;
+				break;
+			default:
+				throw new IllegalArgumentException(Tuple.getTypeString(type)+" is not numerical type.");
+		}
+
+		if( first )
+			this.pos1 += size;
+		else
+			this.pos2 += size;
+		return value;
+	}
+
+
+
+	/**
+	 * read the current column as double, same as {@link Tuple#getDouble(int, double)}
+	 * with {@link Double#NaN} as the default value.
+	 */
+	private double readAsDouble(boolean first, byte type)
+		throws IOException
+	{
+		if( Tuple.isNumericalType(type) )
+			return this.readNumber(first, type);
+
+		Object value = this.read(first, type);
+		return (Double)this.converter.get(Tuple.DOUBLE_TYPE, "@index", value, Double.NaN);
+	}
+
+
+
+	/**
+	 * deserialize the value of the current column.
+	 */
+	private Object read(boolean first, byte type)
+		throws IOException
+	{
+		if( first )
+			this.buffer.reset(this.b1, this.pos1, this.end1-this.pos1);
+		else
+			this.buffer.reset(this.b2, this.pos2, this.end2-this.pos2);
+
+		this.decoded.clear();
+		new ReadFieldImpl(this.decoded, this.buffer, this.conf).handle(type);
+
+		if( first )
+			this.pos1 = this.buffer.getPosition();
+		else
+			this.pos2 = this.buffer.getPosition();
+
+		return this.decoded.get(0);
+	}
+
+
+
+	/**
+	 * skip the value of the current column.
+	 */
+	private void skip(boolean first, byte type)
+		throws IOException
+	{
+		byte[] b	= first?this.b1:this.b2;
+		int pos		= first?this.pos1:this.pos2;
+
+		switch(type)
+		{
+			case Tuple.BYTE_TYPE:
+			case Tuple.BOOLEAN_TYPE:
+				pos += 1;
+				break;
+			case Tuple.SHORT_TYPE:
+				pos += 2;
+				break;
+			case Tuple.INTEGER_TYPE:
+			case Tuple.FLOAT_TYPE:
+				pos += 4;
+				break;
+			case Tuple.LONG_TYPE:
+			case Tuple.DOUBLE_TYPE:
+			case Tuple.DATE_TYPE:
+			case Tuple.TIME_TYPE:
+			case Tuple.TIMESTAMP_TYPE:
+				pos += 8;
+				break;
+			case Tuple.NULL_TYPE:
+			case Tuple.NULL_WRITABLE_TYPE:
+				break;
+			case Tuple.STRING_TYPE:
+				pos = skipString(b, pos);
+				break;
+			case Tuple.STRING_MAP_TYPE:
+			{
+				int map_size = WritableComparator.readInt(b, pos);
+				pos += 4;
+				for( int i=0;i<map_size*2;i++ )
+					pos = skipString(b, pos);
+				break;
+			}
+			case Tuple.BYTE_ARRAY_TYPE:
+				pos += 4+WritableComparator.readInt(b, pos);
+				break;
+			case Tuple.SERIALIZABLE_TYPE:
+				pos += 2+WritableComparator.readUnsignedShort(b, pos);
+				break;
+			default:
+				// the length is known only after deserializing it
+				this.read(first, type);
+				return;
+		}
+
+		if( first )
+			this.pos1 = pos;
+		else
+			this.pos2 = pos;
+	}
+
+
+
+	private static int skipString(byte[] b, int pos)
+		throws IOException
+	{
+		return pos+WritableUtils.decodeVIntSize(b[pos])+WritableComparator.readVInt(b, pos);
+	}
+}
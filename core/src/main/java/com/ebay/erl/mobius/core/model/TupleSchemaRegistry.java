@@ -0,0 +1,357 @@
+package com.ebay.erl.mobius.core.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.util.SerializableUtil;
+
+/**
+ * Holds the schemas (set of column names) that can be
+ * serialized in the compact form of a {@link Tuple}.
+ * <p>
+ *
+ * Each distinct schema is assigned a small integer ID
+ * when it is registered into a job configuration via
+ * {@link #register(Configuration, String...)}, so a
+ * tuple in the compact form only needs to write the
+ * schema ID, a null bitmap and then the values in the
+ * order of the registered (sorted) column names, instead
+ * of the column count and sorting its column names for
+ * every record.
+ * <p>
+ *
+ * The registry is stored in the Hadoop configuration
+ * under {@link ConfigureConstants#TUPLE_SCHEMAS}, so
+ * the writers (mappers, combiners) and the readers
+ * (reducers) of the same job share the same IDs.
+ *
+ *
+ *
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class TupleSchemaRegistry
+{
+	/**
+	 * registries that have been decoded, keyed by the
+	 * Base64 value of {@link ConfigureConstants#TUPLE_SCHEMAS},
+	 * so different {@link Configuration} instances with the
+	 * same schemas share the same registry.
+	 */
+	private static final Map<String, TupleSchemaRegistry> _REGISTRIES = new ConcurrentHashMap<String, TupleSchemaRegistry>();
+
+	/**
+	 * the last configuration asked in {@link #getInstance(Configuration)},
+	 * the Base64 value of its schemas and its registry. The schemas of
+	 * a configuration can be changed by {@link #register(Configuration, String...)},
+	 * so the registry is reused only if the Base64 value is still the same.
+	 */
+	private static volatile LastResolved _LAST;
+
+	/**
+	 * the registered schemas, the index is the schema ID and
+	 * the column names are in lower case and sorted.
+	 */
+	private final String[][] schemas;
+
+	/**
+	 * from a set of column names to its schema ID.
+	 */
+	private final Map<Set<String>, Integer> schemaIDs;
+
+	/**
+	 * the schema arrays resolved in {@link #resolve(String[])},
+	 * compared by identity. There are only a few of them (one
+	 * per output schema of a mapper or a combiner), so it's an
+	 * array replaced on every addition.
+	 */
+	private volatile ResolvedSchema[] resolved = new ResolvedSchema[0];
+
+	/**
+	 * at most this many arrays are remembered in {@link #resolved},
+	 * the arrays created per record are resolved by their column
+	 * names in {@link #resolvedByNames}.
+	 */
+	private static final int _MAX_RESOLVED = 64;
+
+	/**
+	 * the schemas resolved in {@link #resolve(String[])} once
+	 * {@link #resolved} is full, keyed by the column names, the
+	 * least recently used one is removed when there are more
+	 * than {@link #_MAX_RESOLVED_BY_NAMES}.
+	 */
+	private final Map<List<String>, ResolvedSchema> resolvedByNames = new LinkedHashMap<List<String>, ResolvedSchema>(16, 0.75F, true){
+		private static final long serialVersionUID = -4402581961938329187L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<String>, ResolvedSchema> eldest)
+		{
+			return this.size()>_MAX_RESOLVED_BY_NAMES;
+		}
+	};
+
+	private static final int _MAX_RESOLVED_BY_NAMES = 1024;
+
+
+
+	private TupleSchemaRegistry(List<String[]> schemas)
+	{
+		this.schemas	= schemas.toArray(new String[schemas.size()][]);
+		this.schemaIDs	= new ConcurrentHashMap<Set<String>, Integer>();
+
+		for( int i=0;i<this.schemas.length;i++ )
+		{
+			this.schemaIDs.put(new HashSet<String>(Arrays.asList(this.schemas[i])), i);
+		}
+	}
+
+
+
+	/**
+	 * Register the <code>columns</code> as a schema in the
+	 * <code>conf</code>, return the ID of the schema.
+	 * <p>
+	 *
+	 * If the same set of columns (case insensitive) has
+	 * been registered, the existing ID is returned.
+	 */
+	@SuppressWarnings("unchecked")
+	public static int register(Configuration conf, String... columns)
+		throws IOException
+	{
+		if( columns==null || columns.length==0 )
+		{
+			throw new IllegalArgumentException("Please specify at least one column to be registered as a schema.");
+		}
+
+		String[] normalized = new String[columns.length];
+		for( int i=0;i<columns.length;i++ )
+		{
+			normalized[i] = columns[i].toLowerCase();
+		}
+		Arrays.sort(normalized);
+
+		ArrayList<String[]> schemas = new ArrayList<String[]>();
+		String base64 = conf.get(ConfigureConstants.TUPLE_SCHEMAS, "");
+		if( !base64.isEmpty() )
+		{
+			schemas = (ArrayList<String[]>)SerializableUtil.deserializeFromBase64(base64, conf);
+		}
+
+		for( int i=0;i<schemas.size();i++ )
+		{
+			if( Arrays.equals(schemas.get(i), normalized) )
+				return i;
+		}
+
+		schemas.add(normalized);
+		conf.set(ConfigureConstants.TUPLE_SCHEMAS, SerializableUtil.serializeToBase64(schemas));
+		return schemas.size()-1;
+	}
+
+
+
+	/**
+	 * Get the registry stored in the <code>conf</code>, null
+	 * if <code>conf</code> is null or there is no schema
+	 * registered in it.
+	 */
+	@SuppressWarnings("unchecked")
+	public static TupleSchemaRegistry getInstance(Configuration conf)
+	{
+		if( conf==null )
+			return null;
+
+		String base64 = conf.get(ConfigureConstants.TUPLE_SCHEMAS, "");
+
+		LastResolved last = _LAST;
+		if( last!=null && last.conf==conf && last.base64.equals(base64) )
+			return last.registry;
+
+		TupleSchemaRegistry registry = null;
+		if( !base64.isEmpty() )
+		{
+			registry = _REGISTRIES.get(base64);
+			if( registry==null )
+			{
+				try
+				{
+					registry = new TupleSchemaRegistry((List<String[]>)SerializableUtil.deserializeFromBase64(base64, conf));
+				}
+				catch (IOException e)
+				{
+					throw new RuntimeException("Cannot deserialize tuple schemas from :["+base64+"] using Base64 decoder.", e);
+				}
+				_REGISTRIES.put(base64, registry);
+			}
+		}
+
+		_LAST = new LastResolved(conf, base64, registry);
+		return registry;
+	}
+
+
+
+	/**
+	 * Get the ID of the schema which contains exactly the
+	 * given (lower case) <code>columns</code>, return -1
+	 * if there is no such schema.
+	 */
+	public int getSchemaID(Set<String> columns)
+	{
+		Integer id = this.schemaIDs.get(columns);
+		return id==null?-1:id;
+	}
+
+
+
+	/**
+	 * Resolve the schema of the tuples which columns are set
+	 * by {@link Tuple#setSchema(String[])} with the given
+	 * (sorted) <code>columns</code> array.
+	 * <p>
+	 *
+	 * The array is looked up by its identity, so the tuples
+	 * sharing the same array are resolved by their column
+	 * names only once. Once {@link #_MAX_RESOLVED} arrays
+	 * are remembered, the arrays are looked up by their
+	 * column names.
+	 */
+	ResolvedSchema resolve(String[] columns)
+	{
+		ResolvedSchema[] current = this.resolved;
+		for( ResolvedSchema aSchema:current )
+		{
+			if( aSchema.columns==columns )
+				return aSchema;
+		}
+
+		List<String> names = null;
+		if( current.length>=_MAX_RESOLVED )
+		{
+			names = Arrays.asList(columns);
+			synchronized(this.resolvedByNames)
+			{
+				ResolvedSchema result = this.resolvedByNames.get(names);
+				if( result!=null )
+					return result;
+			}
+		}
+
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		for( int i=0;i<columns.length;i++ )
+		{
+			indexes.put(columns[i].toLowerCase(), i);
+		}
+
+		int id		= this.getSchemaID(indexes.keySet());
+		int[] order	= null;
+		if( id>=0 )
+		{
+			String[] registered = this.schemas[id];
+			order = new int[registered.length];
+			for( int i=0;i<order.length;i++ )
+			{
+				order[i] = indexes.get(registered[i]);
+			}
+		}
+
+		ResolvedSchema result = new ResolvedSchema(columns, id, order);
+		if( current.length<_MAX_RESOLVED )
+		{
+			// a concurrent addition might be lost, it's resolved again next time.
+			ResolvedSchema[] updated = Arrays.copyOf(current, current.length+1);
+			updated[current.length] = result;
+			this.resolved = updated;
+		}
+		else
+		{
+			// copied, the key must not change with the array.
+			synchronized(this.resolvedByNames)
+			{
+				this.resolvedByNames.put(Arrays.asList(columns.clone()), result);
+			}
+		}
+		return result;
+	}
+
+
+
+	/**
+	 * Get the sorted, lower case column names of the
+	 * schema <code>id</code>.
+	 * <p>
+	 *
+	 * The returned array is shared, do not modify it.
+	 */
+	public String[] getColumns(int id)
+	{
+		if( id<0 || id>=this.schemas.length )
+		{
+			throw new IllegalArgumentException("Schema ID ["+id+"] is not registered, only "+this.schemas.length+" schemas are registered.");
+		}
+		return this.schemas[id];
+	}
+
+
+
+	/**
+	 * A schema array resolved by {@link TupleSchemaRegistry#resolve(String[])}.
+	 */
+	static final class ResolvedSchema
+	{
+		private final String[] columns;
+
+		/**
+		 * the schema ID, -1 if the columns are not registered.
+		 */
+		final int id;
+
+		/**
+		 * the indexes in the resolved array in the order of the
+		 * registered schema, null if the columns are not registered.
+		 * It's shared, do not modify it.
+		 */
+		final int[] order;
+
+		ResolvedSchema(String[] columns, int id, int[] order)
+		{
+			this.columns	= columns;
+			this.id			= id;
+			this.order		= order;
+		}
+	}
+
+
+
+	private static final class LastResolved
+	{
+		private final Configuration conf;
+		private final String base64;
+		private final TupleSchemaRegistry registry;
+
+		LastResolved(Configuration conf, String base64, TupleSchemaRegistry registry)
+		{
+			this.conf		= conf;
+			this.base64		= base64;
+			this.registry	= registry;
+		}
+	}
+}
@@ -35,11 +35,28 @@ public class WriteImpl extends TupleTypeHandler<Void>
 	
 	private Object value;
 	
+	/**
+	 * schemas for writing nested {@link Tuple} in
+	 * compact form, can be null.
+	 */
+	private TupleSchemaRegistry registry;
+	
 	public WriteImpl(DataOutput out)
 	{
 		this.out = out;
 	}
 	
+	/**
+	 * Nested {@link Tuple}s are serialized in the compact
+	 * form if their schemas are registered in the 
+	 * <code>registry</code>.
+	 */
+	public WriteImpl(DataOutput out, TupleSchemaRegistry registry)
+	{
+		this.out		= out;
+		this.registry	= registry;
+	}
+	
 	public void setValue(Object value)
 	{
 		this.value = value;
@@ -166,7 +183,7 @@ public class WriteImpl extends TupleTypeHandler<Void>
 	@Override
 	protected Void on_tuple() throws IOException {
 		Tuple w = (Tuple)value;
-		w.write(out);
+		w.write(out, this.registry);
 		return null;
 	}
 
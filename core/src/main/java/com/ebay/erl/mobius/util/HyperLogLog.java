@@ -0,0 +1,255 @@
+package com.ebay.erl.mobius.util;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch estimating the number of distinct 64 bits
+ * hashes added into it, in a constant memory of <code>2^precision</code>
+ * bytes.
+ * <p>
+ *
+ * The standard error of the estimation is about <code>1.04/sqrt(2^precision)</code>,
+ * ex: 0.81% for precision 14.  Two sketches of the same precision
+ * can be merged, the result is the same as adding all the hashes
+ * into one sketch, so the sketches can be computed in parts and
+ * shipped in the serialized form, see {@link #toBytes()} and
+ * {@link #merge(byte[])}.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class HyperLogLog
+{
+	public static final int MIN_PRECISION = 4;
+
+	public static final int MAX_PRECISION = 16;
+
+	private static final byte DENSE = 0;
+
+	private static final byte SPARSE = 1;
+
+	private final int precision;
+
+	private final byte[] registers;
+
+	/**
+	 * number of registers not zero.
+	 */
+	private int nonZero = 0;
+
+
+
+	public HyperLogLog(int precision)
+	{
+		if( precision<MIN_PRECISION || precision>MAX_PRECISION )
+			throw new IllegalArgumentException("Precision must be between "+MIN_PRECISION+" and "+MAX_PRECISION+", but was "+precision+".");
+
+		this.precision	= precision;
+		this.registers	= new byte[1<<precision];
+	}
+
+
+
+	public int getPrecision()
+	{
+		return this.precision;
+	}
+
+
+
+	/**
+	 * Add a 64 bits <code>hash</code>, the bits of the hash need to
+	 * be uniformly distributed, see {@link #hash(long)} and
+	 * {@link #hash(CharSequence)}.
+	 */
+	public void add(long hash)
+	{
+		int idx		= (int)(hash>>>(64-this.precision));
+		// position of the first 1 bit in the rest of the bits
+		int rank	= Math.min(Long.numberOfLeadingZeros(hash<<this.precision), 64-this.precision)+1;
+		this.update(idx, rank);
+	}
+
+
+
+	private void update(int idx, int rank)
+	{
+		if( rank>this.registers[idx] )
+		{
+			if( this.registers[idx]==0 )
+				this.nonZero++;
+			this.registers[idx] = (byte)rank;
+		}
+	}
+
+
+
+	/**
+	 * Return the estimated number of distinct hashes added.
+	 */
+	public long cardinality()
+	{
+		int m		= this.registers.length;
+		double sum	= 0D;
+		for( byte aRegister:this.registers )
+		{
+			sum += 1D/(1L<<aRegister);
+		}
+
+		double alpha;
+		switch(m)
+		{
+			case 16:
+				alpha = 0.673D;
+				break;
+			case 32:
+				alpha = 0.697D;
+				break;
+			case 64:
+				alpha = 0.709D;
+				break;
+			default:
+				alpha = 0.7213D/(1D+1.079D/m);
+		}
+
+		double estimate	= alpha*m*m/sum;
+		int zeros		= m-this.nonZero;
+		if( estimate<=2.5D*m && zeros>0 )
+		{
+			// small range correction, linear counting
+			estimate = m*Math.log((double)m/zeros);
+		}
+		return Math.round(estimate);
+	}
+
+
+
+	/**
+	 * Reset this sketch to empty.
+	 */
+	public void clear()
+	{
+		Arrays.fill(this.registers, (byte)0);
+		this.nonZero = 0;
+	}
+
+
+
+	/**
+	 * Merge the sketch serialized by {@link #toBytes()} into this
+	 * sketch.
+	 *
+	 * @throws IllegalArgumentException if the precision of the
+	 * serialized sketch is different.
+	 */
+	public void merge(byte[] serialized)
+	{
+		if( serialized[0]!=this.precision )
+			throw new IllegalArgumentException("Cannot merge a sketch of precision "+serialized[0]+
+					" into a sketch of precision "+this.precision+".");
+
+		if( serialized[1]==DENSE )
+		{
+			for( int i=0;i<this.registers.length;i++ )
+			{
+				this.update(i, serialized[i+2]);
+			}
+		}
+		else
+		{
+			for( int i=2;i<serialized.length;i+=3 )
+			{
+				int idx = ((serialized[i]&0xFF)<<8)|(serialized[i+1]&0xFF);
+				this.update(idx, serialized[i+2]);
+			}
+		}
+	}
+
+
+
+	/**
+	 * Serialize this sketch, the registers not zero are written
+	 * as (index, value) pairs if there are only a few of them.
+	 */
+	public byte[] toBytes()
+	{
+		byte[] result;
+		if( this.nonZero*3<this.registers.length )
+		{
+			result		= new byte[2+this.nonZero*3];
+			result[1]	= SPARSE;
+			int offset	= 2;
+			for( int i=0;i<this.registers.length;i++ )
+			{
+				if( this.registers[i]!=0 )
+				{
+					result[offset++] = (byte)(i>>>8);
+					result[offset++] = (byte)i;
+					result[offset++] = this.registers[i];
+				}
+			}
+		}
+		else
+		{
+			result		= new byte[2+this.registers.length];
+			result[1]	= DENSE;
+			System.arraycopy(this.registers, 0, result, 2, this.registers.length);
+		}
+		result[0] = (byte)this.precision;
+		return result;
+	}
+
+
+
+	/**
+	 * Return the size of the registers in bytes.
+	 */
+	public int getSizeInBytes()
+	{
+		return this.registers.length;
+	}
+
+
+
+	/**
+	 * The finalizer of MurmurHash3, spreads the bits of
+	 * <code>value</code> over the 64 bits hash.  The value is
+	 * offset first, so the common value 0 is not hashed to 0.
+	 */
+	public static long hash(long value)
+	{
+		long h = value+0x9e3779b97f4a7c15L;
+		h ^= h>>>33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h>>>33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h>>>33;
+		return h;
+	}
+
+
+
+	/**
+	 * 64 bits FNV-1a hash of the characters of <code>value</code>,
+	 * spread by {@link #hash(long)}.
+	 */
+	public static long hash(CharSequence value)
+	{
+		long h = 0xcbf29ce484222325L;
+		for( int i=0;i<value.length();i++ )
+		{
+			h ^= value.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return hash(h);
+	}
+}
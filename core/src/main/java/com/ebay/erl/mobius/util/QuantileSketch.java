@@ -0,0 +1,383 @@
+package com.ebay.erl.mobius.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A KLL sketch estimating the quantiles of the numbers added
+ * into it in a bounded memory.
+ * <p>
+ *
+ * The numbers are kept in levels of compactors, a number in the
+ * level <code>h</code> stands for <code>2^h</code> numbers added.
+ * When the sketch is full, the lowest level over its capacity is
+ * sorted and every other number of it is promoted to the next
+ * level.  The capacities of the levels decrease geometrically from
+ * the top level, which has the capacity <code>k</code>, so the
+ * sketch keeps about <code>3k</code> numbers, and the rank error
+ * of the estimated quantiles is about <code>1.7/k</code>, ex: 0.85%
+ * for k=200.
+ * <p>
+ *
+ * Two sketches of the same <code>k</code> can be merged, so the
+ * sketches can be computed in parts and shipped in the serialized
+ * form, see {@link #toBytes()} and {@link #merge(byte[])}.
+ *
+ *
+ *
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ */
+public class QuantileSketch
+{
+	private static final int MIN_CAPACITY = 2;
+
+	private final int k;
+
+	private double[][] levels = new double[1][];
+
+	private int[] sizes = new int[1];
+
+	private int[] capacities = new int[1];
+
+	/**
+	 * the number of the retained numbers, and the sum
+	 * of the capacities of the levels.
+	 */
+	private int retained = 0;
+
+	private int capacity = 0;
+
+	/**
+	 * the number of numbers added, including the merged
+	 * sketches.
+	 */
+	private long count = 0L;
+
+	/**
+	 * the offset of the next compaction, alternated
+	 * between 0 and 1 so the errors are not biased.
+	 */
+	private int offset = 0;
+
+
+
+	public QuantileSketch(int k)
+	{
+		if( k<8 || k>65535 )
+			throw new IllegalArgumentException("k must be between 8 and 65535, but was "+k+".");
+
+		this.k = k;
+		this.updateCapacities();
+		this.levels[0] = new double[this.capacities[0]];
+	}
+
+
+
+	public int getK()
+	{
+		return this.k;
+	}
+
+
+
+	/**
+	 * Return the number of numbers added.
+	 */
+	public long getCount()
+	{
+		return this.count;
+	}
+
+
+
+	public void add(double value)
+	{
+		if( Double.isNaN(value) )
+			return;
+
+		this.append(0, value);
+		this.count++;
+		this.compress();
+	}
+
+
+
+	/**
+	 * Return the estimated <code>quantile</code> (between 0 and 1)
+	 * of the added numbers, ex: 0.5 for median, or NaN if no number
+	 * has been added.
+	 */
+	public double getQuantile(double quantile)
+	{
+		return this.getQuantiles(new double[]{quantile})[0];
+	}
+
+
+
+	/**
+	 * Return the estimated <code>quantiles</code>, each is between
+	 * 0 and 1.
+	 */
+	public double[] getQuantiles(double[] quantiles)
+	{
+		double[] result = new double[quantiles.length];
+		if( this.count==0L )
+		{
+			Arrays.fill(result, Double.NaN);
+			return result;
+		}
+
+		// the retained numbers and their weights, sorted by the numbers
+		int total = 0;
+		for( int aSize:this.sizes )
+		{
+			total += aSize;
+		}
+		final double[] values	= new double[total];
+		final long[] weights	= new long[total];
+		int idx = 0;
+		for( int h=0;h<this.levels.length;h++ )
+		{
+			for( int i=0;i<this.sizes[h];i++ )
+			{
+				values[idx]		= this.levels[h][i];
+				weights[idx]	= 1L<<h;
+				idx++;
+			}
+		}
+		sort(values, weights);
+
+		for( int q=0;q<quantiles.length;q++ )
+		{
+			if( quantiles[q]<0D || quantiles[q]>1D )
+				throw new IllegalArgumentException("Quantile must be between 0 and 1, but was "+quantiles[q]+".");
+
+			// the smallest number whose rank reaches the quantile
+			double rank		= Math.max(1D, Math.ceil(quantiles[q]*this.count));
+			long cumulative	= 0L;
+			result[q]		= values[total-1];
+			for( int i=0;i<total;i++ )
+			{
+				cumulative += weights[i];
+				if( cumulative>=rank )
+				{
+					result[q] = values[i];
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+
+
+	/**
+	 * Reset this sketch to empty.
+	 */
+	public void clear()
+	{
+		this.levels		= new double[][]{this.levels[0]};
+		this.sizes		= new int[1];
+		this.capacities	= new int[1];
+		this.updateCapacities();
+		this.retained	= 0;
+		this.count		= 0L;
+		this.offset		= 0;
+	}
+
+
+
+	/**
+	 * Merge the sketch serialized by {@link #toBytes()} into this
+	 * sketch.
+	 *
+	 * @throws IllegalArgumentException if the <code>k</code> of the
+	 * serialized sketch is different.
+	 */
+	public void merge(byte[] serialized)
+	{
+		ByteBuffer in = ByteBuffer.wrap(serialized);
+
+		int k = in.getInt();
+		if( k!=this.k )
+			throw new IllegalArgumentException("Cannot merge a sketch of k="+k+" into a sketch of k="+this.k+".");
+
+		this.count += in.getLong();
+		int levels = in.getInt();
+		for( int h=0;h<levels;h++ )
+		{
+			int size = in.getInt();
+			for( int i=0;i<size;i++ )
+			{
+				this.append(h, in.getDouble());
+			}
+		}
+		this.compress();
+	}
+
+
+
+	/**
+	 * Serialize this sketch.
+	 */
+	public byte[] toBytes()
+	{
+		int bytes = 4+8+4;
+		for( int aSize:this.sizes )
+		{
+			bytes += 4+aSize*8;
+		}
+
+		ByteBuffer out = ByteBuffer.allocate(bytes);
+		out.putInt(this.k);
+		out.putLong(this.count);
+		out.putInt(this.levels.length);
+		for( int h=0;h<this.levels.length;h++ )
+		{
+			out.putInt(this.sizes[h]);
+			for( int i=0;i<this.sizes[h];i++ )
+			{
+				out.putDouble(this.levels[h][i]);
+			}
+		}
+		return out.array();
+	}
+
+
+
+	/**
+	 * compute the capacities of the levels, the top level has
+	 * the capacity <code>k</code>, and each level below it has
+	 * 2/3 of the capacity of the level above.
+	 */
+	private void updateCapacities()
+	{
+		this.capacity = 0;
+		for( int h=0;h<this.levels.length;h++ )
+		{
+			int depth			= this.levels.length-1-h;
+			this.capacities[h]	= Math.max(MIN_CAPACITY, (int)Math.ceil(this.k*Math.pow(2D/3D, depth)));
+			this.capacity		+= this.capacities[h];
+		}
+	}
+
+
+
+	private void append(int h, double value)
+	{
+		while( h>=this.levels.length )
+		{
+			this.levels		= Arrays.copyOf(this.levels, this.levels.length+1);
+			this.sizes		= Arrays.copyOf(this.sizes, this.sizes.length+1);
+			this.capacities	= Arrays.copyOf(this.capacities, this.capacities.length+1);
+			this.levels[this.levels.length-1] = new double[MIN_CAPACITY];
+			this.updateCapacities();
+		}
+
+		if( this.sizes[h]==this.levels[h].length )
+			this.levels[h] = Arrays.copyOf(this.levels[h], this.levels[h].length*2);
+
+		this.levels[h][this.sizes[h]++] = value;
+		this.retained++;
+	}
+
+
+
+	/**
+	 * compact the lowest level over its capacity, until the
+	 * number of the retained numbers is within the capacity
+	 * of the sketch.
+	 */
+	private void compress()
+	{
+		while( this.retained>this.capacity )
+		{
+			for( int h=0;h<this.levels.length;h++ )
+			{
+				if( this.sizes[h]>=this.capacities[h] )
+				{
+					this.compact(h);
+					break;
+				}
+			}
+		}
+	}
+
+
+
+	/**
+	 * promote every other number of the level <code>h</code>
+	 * to the level above, the weight of the level is kept, a
+	 * number is left in the level if the size is odd.
+	 */
+	private void compact(int h)
+	{
+		double[] level	= this.levels[h];
+		int size		= this.sizes[h];
+		Arrays.sort(level, 0, size);
+
+		if( size%2==1 )
+		{
+			// keep the largest one
+			size--;
+		}
+
+		for( int i=this.offset;i<size;i+=2 )
+		{
+			this.append(h+1, level[i]);
+		}
+		this.offset = 1-this.offset;
+
+		this.retained -= this.sizes[h];
+		if( this.sizes[h]%2==1 )
+		{
+			level[0]		= level[this.sizes[h]-1];
+			this.sizes[h]	= 1;
+			this.retained++;
+		}
+		else
+		{
+			this.sizes[h] = 0;
+		}
+	}
+
+
+
+	/**
+	 * sort the <code>values</code> and the <code>weights</code>
+	 * by the values.
+	 */
+	private static void sort(double[] values, long[] weights)
+	{
+		Integer[] order = new Integer[values.length];
+		for( int i=0;i<order.length;i++ )
+		{
+			order[i] = i;
+		}
+
+		final double[] keys = values.clone();
+		Arrays.sort(order, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer i1, Integer i2)
+			{
+				return Double.compare(keys[i1], keys[i2]);
+			}
+		});
+
+		long[] sortedWeights = weights.clone();
+		for( int i=0;i<order.length;i++ )
+		{
+			values[i]	= keys[order[i]];
+			weights[i]	= sortedWeights[order[i]];
+		}
+	}
+}
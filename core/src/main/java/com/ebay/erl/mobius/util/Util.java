@@ -20,6 +20,7 @@ import org.apache.hadoop.mapred.Reporter;
 
 import com.ebay.erl.mobius.core.ConfigureConstants;
 import com.ebay.erl.mobius.core.collection.BigTupleList;
+import com.ebay.erl.mobius.core.collection.CrossProductIterable;
 import com.ebay.erl.mobius.core.model.Tuple;
 
 /**
@@ -97,7 +98,9 @@ public class Util
 	
 	
 	/**
-	 * Perform cross product for the given <code>datasets</code>
+	 * Perform cross product for the given <code>datasets</code>,
+	 * the merged tuples are computed while the returned iterable
+	 * is being iterated, see {@link CrossProductIterable}.
 	 */
 	public static Iterable<Tuple> crossProduct(Configuration conf, Reporter reporter, Iterable<Tuple>... datasets)
 		throws IOException
@@ -106,37 +109,7 @@ public class Util
 		if( datasets.length==1 )
 			return datasets[0];
 		
-		BigTupleList result = new BigTupleList(reporter);
-		result.addAll(datasets[0]);
-		
-		for( int i=1;i<datasets.length;i++ )
-		{
-			Iterable<Tuple> dataset1 = result;
-			Iterable<Tuple> dataset2 = datasets[i];
-			
-			if( dataset2!=null )
-			{			
-				BigTupleList temp = new BigTupleList(reporter);
-				Iterator<Tuple> it1 = dataset1.iterator();
-				while( it1.hasNext() )
-				{
-					Tuple rowFromDS1 = it1.next();
-					
-					Iterator<Tuple> it2 = dataset2.iterator();
-					while( it2.hasNext() )
-					{
-						Tuple merged = Tuple.merge(rowFromDS1, it2.next());
-						temp.add(merged);
-					}
-					close(it2);
-				}
-				close(it1);
-				result.clear();
-				result = null;
-				result = temp;
-			}
-		}
-		return result;
+		return new CrossProductIterable(reporter, datasets);
 	}
 	
 	public static Iterable<Tuple> inMemoryCrossProduct(Iterable<Tuple>... datasets)
@@ -388,6 +361,31 @@ public class Util
 	}
 	
 	
+	/**
+	 * Return the index of the first occurrence of <code>pattern</code>
+	 * in <code>bytes</code> between <code>start</code> (inclusive) and
+	 * <code>end</code> (exclusive), or -1 if not found.
+	 */
+	public static int indexOf(byte[] bytes, int start, int end, byte[] pattern)
+	{
+		byte first	= pattern[0];
+		int last	= end-pattern.length;
+		for( int i=start;i<=last;i++ )
+		{
+			if( bytes[i]!=first )
+				continue;
+			
+			int j = 1;
+			while( j<pattern.length && bytes[i+j]==pattern[j] )
+				j++;
+			
+			if( j==pattern.length )
+				return i;
+		}
+		return -1;
+	}
+	
+	
 	public static List<String> nonRegexSplit(String source, String delimiter)
 	{
 		if( source==null )
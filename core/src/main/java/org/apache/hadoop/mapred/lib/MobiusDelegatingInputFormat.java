@@ -37,6 +37,17 @@ import com.ebay.erl.mobius.core.mapred.MultiInputsHelpersRepository;
 @SuppressWarnings({ "deprecation" })
 public class MobiusDelegatingInputFormat <K, V> extends DelegatingInputFormat<K, V>
 {	
+	/**
+	 * the properties storing the inputs of a job, used to
+	 * move the inputs of some datasets aside when they are
+	 * read by the mappers of another dataset.
+	 */
+	public static final String[] INPUT_PROPERTIES = new String[]{
+		"mapred.input.dir.formats",
+		"mapred.input.dir.mappers",
+		ConfigureConstants.INPUT_TO_DATASET_MAPPING
+	};
+	
 	private Map<URI, String> _URI_TO_DATASETID_MAPPING;
 	
 	private List<URI> _INPUT_URIS;
@@ -82,6 +93,45 @@ public class MobiusDelegatingInputFormat <K, V> extends DelegatingInputFormat<K,
 	}
 	
 
+	/**
+	 * Get a copy of <code>conf</code> whose inputs are replaced by the
+	 * ones stored under the properties with the given <code>prefix</code>.
+	 */
+	public static JobConf getInputsAside(JobConf conf, String prefix)
+	{
+		JobConf result = new JobConf(conf);
+		for( String aProperty:INPUT_PROPERTIES )
+		{
+			result.set(aProperty, conf.get(prefix+aProperty));
+		}
+		return result;
+	}
+	
+	
+	/**
+	 * Store the inputs of <code>inputs</code> into <code>conf</code>
+	 * under the properties with the given <code>prefix</code>.
+	 */
+	public static void setInputsAside(JobConf conf, JobConf inputs, String prefix)
+	{
+		for( String aProperty:INPUT_PROPERTIES )
+		{
+			conf.set(prefix+aProperty, inputs.get(aProperty));
+		}
+	}
+	
+	
+	/**
+	 * Get the URI of the file of the given <code>split</code>.
+	 */
+	public URI getInputURI(InputSplit split, JobConf conf)
+		throws IOException
+	{
+		TaggedInputSplit taggedSplit	= (TaggedInputSplit)split;
+		return MultiInputsHelpersRepository.getInstance(conf).getURIBySplit(taggedSplit.getInputSplit(), conf);
+	}
+	
+	
 	@Override
 	public RecordReader<K, V> getRecordReader(InputSplit split, JobConf conf, Reporter reporter) throws IOException
 	{	
@@ -90,6 +140,7 @@ public class MobiusDelegatingInputFormat <K, V> extends DelegatingInputFormat<K,
 		String datasetID = getDatasetIDBySplit(split, conf);
 		
 		conf.set (ConfigureConstants.CURRENT_DATASET_ID, datasetID);
+		conf.set ("map.input.file", this.getInputURI(split, conf).toString());
 		RecordReader<K, V> reader = super.getRecordReader (split, conf, reporter);
 		return reader;		
 	}
@@ -3,12 +3,27 @@ package com.ebay.erl.mobius.core;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.Counters.Counter;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.MobiusDelegatingInputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
 
 import com.ebay.erl.mobius.core.builder.Dataset;
 import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.mapred.AbstractMobiusMapper;
+import com.ebay.erl.mobius.core.model.Tuple;
 
+@SuppressWarnings({"deprecation", "unchecked"})
 public class MobiusTestJob extends MobiusJob
 {
 	private static final long serialVersionUID = 5691278392429754294L;
@@ -32,7 +47,105 @@ public class MobiusTestJob extends MobiusJob
 		
 		return dummy;
 	}
-	
+
+
+	/**
+	 * Get the configuration of the job added into the execution
+	 * queue which writes into the <code>output</code>.
+	 */
+	protected JobConf getJobConf(Path output)
+		throws IOException
+	{
+		return this.jobTopology.get(this.getFS().makeQualified(output).toUri()).getJobConf();
+	}
+
+
+	/**
+	 * Run the mappers of the job <code>conf</code> over all its
+	 * input splits in this JVM, return the values they emitted,
+	 * the counters are updated into <code>counters</code>.
+	 */
+	protected List<Tuple> runMappers(JobConf conf, Counters counters)
+		throws IOException
+	{
+		final List<Tuple> result	= new ArrayList<Tuple>();
+		OutputCollector collector	= new OutputCollector<WritableComparable<?>, WritableComparable<?>>(){
+			@Override
+			public void collect(WritableComparable<?> key, WritableComparable<?> value)
+			{
+				result.add((Tuple)value);
+			}
+		};
+
+		Reporter reporter				= reporter(counters);
+		MobiusDelegatingInputFormat inf	= new MobiusDelegatingInputFormat();
+		for( InputSplit aSplit:inf.getSplits(conf, 1) )
+		{
+			JobConf taskConf			= new JobConf(conf);
+			RecordReader reader			= inf.getRecordReader(aSplit, taskConf, reporter);
+			AbstractMobiusMapper mapper	= (AbstractMobiusMapper)ReflectionUtils.newInstance(inf.getMapper(aSplit, taskConf), taskConf);
+			try
+			{
+				Object key		= reader.createKey();
+				Object value	= reader.createValue();
+				while( reader.next(key, value) )
+				{
+					mapper.joinmap(key, value, collector, reporter);
+					key		= reader.createKey();
+					value	= reader.createValue();
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+			mapper.close();
+		}
+		return result;
+	}
+
+
+	private static Reporter reporter(final Counters counters)
+	{
+		return new Reporter(){
+			@Override
+			public void progress(){}
+
+			@Override
+			public void setStatus(String status){}
+
+			@Override
+			public Counter getCounter(Enum<?> name)
+			{
+				return counters.findCounter(name);
+			}
+
+			@Override
+			public Counter getCounter(String group, String name)
+			{
+				return counters.findCounter(group, name);
+			}
+
+			@Override
+			public void incrCounter(Enum<?> key, long amount)
+			{
+				counters.incrCounter(key, amount);
+			}
+
+			@Override
+			public void incrCounter(String group, String counter, long amount)
+			{
+				counters.incrCounter(group, counter, amount);
+			}
+
+			@Override
+			public InputSplit getInputSplit()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
 	@Override
 	public int run(String[] args) throws Exception {
 		// do nothing
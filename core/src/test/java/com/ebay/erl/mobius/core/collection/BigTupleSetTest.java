@@ -0,0 +1,135 @@
+package com.ebay.erl.mobius.core.collection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+public class BigTupleSetTest
+{
+	@Test
+	public void test_in_memory()
+	{
+		BigTupleSet set = new BigTupleSet(new String[]{"id", "name"}, 64L*1024L*1024L, null);
+		assertTrue(set.isEmpty());
+
+		for( int i=0;i<10000;i++ )
+		{
+			set.add(tuple(i%1000, "name_"+(i%1000)));
+		}
+		assertEquals(1000L, set.size());
+		assertEquals(1000, values(set).size());
+
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertEquals(0L, set.size());
+	}
+
+
+	@Test
+	public void test_spill()
+	{
+		// small enough to spill, and to partition
+		// the partitions again.
+		BigTupleSet set = new BigTupleSet(new String[]{"id", "name"}, 4096L, null);
+
+		for( int round=0;round<3;round++ )
+		{
+			for( int i=0;i<20000;i++ )
+			{
+				set.add(tuple(i, "name_"+i));
+			}
+		}
+		set.add(tuple(-1, null));
+
+		assertEquals(20001L, set.size());
+
+		Set<String> values = values(set);
+		assertEquals(20001, values.size());
+		assertTrue(values.contains("-1:null"));
+		assertTrue(values.contains("19999:name_19999"));
+
+		// iterated again, with the tuples added after
+		set.add(tuple(20000, "name_20000"));
+		set.add(tuple(0, "name_0"));
+		assertEquals(20002L, set.size());
+
+		set.clear();
+		assertTrue(set.isEmpty());
+	}
+
+
+	@Test
+	public void test_spill_files()
+		throws IOException
+	{
+		File folder		= new File(System.getProperty("java.io.tmpdir"), "mobius_big_tuple_set_test_"+System.nanoTime());
+		String tmpdir	= System.getProperty("java.io.tmpdir");
+		System.setProperty("java.io.tmpdir", folder.getAbsolutePath());
+		try
+		{
+			BigTupleSet set = new BigTupleSet(new String[]{"id", "name"}, 4096L, null);
+			for( int i=0;i<1000;i++ )
+			{
+				set.add(tuple(i, "name_"+i));
+			}
+
+			// the partitions are in the temp directory
+			assertTrue(folder.list().length>0);
+
+			set.clear();
+			assertEquals(0, folder.list().length);
+		}
+		finally
+		{
+			System.setProperty("java.io.tmpdir", tmpdir);
+			FileUtil.fullyDelete(folder);
+		}
+	}
+
+
+	private static Set<String> values(BigTupleSet set)
+	{
+		Set<String> result = new HashSet<String>();
+		CloseableIterator<Tuple> it = set.iterator();
+		while( it.hasNext() )
+		{
+			Tuple t = it.next();
+			result.add(t.get("id")+":"+t.get("name"));
+		}
+		it.close();
+		return result;
+	}
+
+
+	private static Tuple tuple(int id, String name)
+	{
+		Tuple t = new Tuple();
+		t.put("id", id);
+		if( name==null )
+			t.putNull("name");
+		else
+			t.put("name", name);
+		return t;
+	}
+}
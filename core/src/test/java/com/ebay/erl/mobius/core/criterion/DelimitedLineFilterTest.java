@@ -0,0 +1,91 @@
+package com.ebay.erl.mobius.core.criterion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0, 
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ * 
+ * This product contains portions derived from Apache hadoop which is 
+ * licensed under the Apache License, Version 2.0, available at 
+ * http://hadoop.apache.org.
+ * 
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+public class DelimitedLineFilterTest 
+{
+	private static final String[] SCHEMA = new String[]{"id", "name", "country"};
+	
+	private static final String[] LINES = new String[]{
+		"", "1", "1\t", "1\tjohn", "1\tjohn\tUS", "1\tjohn\t", "2\t\tUS", "\t\t", 
+		"3\tjöhn\tDE", "4\t \tUS\textra", "5\tjohnny\tUSA", "6\tjohn\tUS\t", "\t"
+	};
+	
+	@Test
+	public void test_same_as_tuple()
+	{
+		ArrayList<String> countries = new ArrayList<String>(Arrays.asList("US", "DE", ""));
+		
+		TupleCriterion[] criteria = new TupleCriterion[]{
+			TupleRestrictions.eq("name", "john"),
+			TupleRestrictions.eq("NAME", "jöhn"),
+			TupleRestrictions.ne("name", "john"),
+			TupleRestrictions.withinString("country", countries),
+			TupleRestrictions.notNull("name"),
+			TupleRestrictions.notNull("country").and(TupleRestrictions.ne("id", "1")),
+			TupleRestrictions.eq("name", "john").and(TupleRestrictions.eq("country", "US"))
+		};
+		
+		for( TupleCriterion aCriterion:criteria )
+		{
+			DelimitedLineFilter filter = DelimitedLineFilter.compile(aCriterion, SCHEMA, "\t");
+			assertNotNull(filter);
+			assertNull(filter.getResidual());
+			
+			for( String aLine:LINES )
+			{
+				Tuple tuple = Tuple.valueOf(new Text(aLine), SCHEMA, "\t");
+				assertEquals(aCriterion+" on ["+aLine+"]", aCriterion.accept(tuple, null), filter.accept(new Text(aLine)));
+			}
+		}
+	}
+	
+	
+	@Test
+	public void test_multi_bytes_delimiter()
+	{
+		TupleCriterion criterion = TupleRestrictions.eq("country", "US");
+		DelimitedLineFilter filter = DelimitedLineFilter.compile(criterion, SCHEMA, "||");
+		
+		for( String aLine:new String[]{"1||john||US", "1|||john||US", "1||john|||US", "1||john||US||", "1||john"} )
+		{
+			Tuple tuple = Tuple.valueOf(new Text(aLine), SCHEMA, "||");
+			assertEquals(aLine, criterion.accept(tuple, null), filter.accept(new Text(aLine)));
+		}
+	}
+	
+	
+	@Test
+	public void test_residual()
+	{
+		TupleCriterion number	= TupleRestrictions.gt("id", 1);
+		TupleCriterion unknown	= TupleRestrictions.eq("age", "1");
+		
+		assertNull(DelimitedLineFilter.compile(number.and(unknown), SCHEMA, "\t"));
+		
+		DelimitedLineFilter filter = DelimitedLineFilter.compile(number.and(TupleRestrictions.eq("name", "john")).and(unknown), SCHEMA, "\t");
+		assertEquals(2, filter.getResidual().getConjuncts().size());
+	}
+}
@@ -1,5 +1,6 @@
 package com.ebay.erl.mobius.core.criterion;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -7,6 +8,7 @@ import java.sql.Date;
 import java.sql.Time;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.TreeMap;
 
 import org.junit.Test;
@@ -98,6 +100,26 @@ public class TupleCriterionTest
 		
 	}
 	
+	@Test
+	public void testConjuncts()
+	{
+		TupleCriterion a = TupleRestrictions.eq("a", 1);
+		TupleCriterion b = TupleRestrictions.eq("b", 2);
+		TupleCriterion c = TupleRestrictions.eq("c", 3);
+		TupleCriterion d = TupleRestrictions.eq("d", 4);
+		
+		// (a AND (b OR c)) AND d
+		List<TupleCriterion> conjuncts = a.and(b.or(c)).and(d).getConjuncts();
+		assertEquals(3, conjuncts.size());
+		assertTrue(conjuncts.get(0)==a);
+		assertEquals(2, conjuncts.get(1).getInvolvedColumns().length);
+		assertTrue(conjuncts.get(2)==d);
+		
+		// an OR expression cannot be split
+		assertEquals(1, a.or(b).getConjuncts().size());
+		assertEquals(1, a.and(b).not().getConjuncts().size());
+	}
+	
 	private void testNumber(String columnName, Number original, Tuple t)
 	{
 		assertTrue(TupleRestrictions.eq(columnName, original).accept(t, null));
@@ -0,0 +1,137 @@
+package com.ebay.erl.mobius.core.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+public class ApproxQuantileTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = -4301845839175616394L;
+
+	@Test
+	public void testSmallGroup()
+		throws IOException
+	{
+		ApproxMedian func = new ApproxMedian(this.createColumn());
+		func.reset();
+		for( Object aValue:new Object[]{3, 1L, null, "5", 4.0D, 2} )
+		{
+			func.consume(value(aValue));
+		}
+		assertEquals(3D, func.getResult().getFirst().get(0));
+
+		// no value in the next group
+		func.reset();
+		func.consume(value(null));
+		assertNull(func.getResult().getFirst().get(0));
+	}
+
+
+	@Test
+	public void testCombine()
+		throws IOException
+	{
+		Column column = this.createColumn();
+
+		List<Integer> values = new ArrayList<Integer>();
+		for( int i=1;i<=100000;i++ )
+		{
+			values.add(i);
+		}
+		Collections.shuffle(values, new Random(0L));
+
+		// three combiners
+		ApproxQuantile func = new ApproxQuantile(column, 0.5D, 0.95D, 0.999D);
+		assertEquals(Arrays.asList("ApproxQuantile_COLUMN_p50", "ApproxQuantile_COLUMN_p95", "ApproxQuantile_COLUMN_p99_9"),
+				Arrays.asList(func.getOutputSchema()));
+		func.reset();
+		func.consume(this.combine(func, values.subList(0, 30000)));
+		func.consume(this.combine(func, values.subList(30000, 70000)));
+		func.consume(this.combine(func, values.subList(70000, 100000)));
+
+		Tuple result = func.getResult().getFirst();
+		double[] expected = new double[]{50000D, 95000D, 99900D};
+		for( int i=0;i<expected.length;i++ )
+		{
+			assertEquals(expected[i], (Double)result.get(i), 100000D*0.02D);
+		}
+	}
+
+
+	private Tuple combine(ApproxQuantile reducer, List<Integer> values)
+		throws IOException
+	{
+		ApproxQuantile func = new ApproxQuantile(reducer.getInputColumns()[0], 0.5D, 0.95D, 0.999D);
+		func.setCalledByCombiner(true);
+		func.reset();
+		for( Integer aValue:values )
+		{
+			func.consume(value(aValue));
+		}
+
+		Tuple partial = new Tuple();
+		partial.insert("column", func.getResult().getFirst().get(0));
+
+		// the partial results are shuffled to the reducer
+		DataOutputBuffer out = new DataOutputBuffer();
+		partial.write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		Tuple result = new Tuple();
+		result.readFields(in);
+		result.setSchema(new String[]{"column"});
+		return result;
+	}
+
+
+	private static Tuple value(Object value)
+	{
+		Tuple t = new Tuple();
+		if( value==null )
+			t.putNull("column");
+		else
+			t.insert("column", value);
+		return t;
+	}
+
+
+	private Column createColumn()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		return new Column(TSVDatasetBuilder.newInstance(this, "ds", new String[]{"COLUMN"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build(), "COLUMN");
+	}
+}
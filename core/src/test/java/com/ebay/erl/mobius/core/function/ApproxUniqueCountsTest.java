@@ -0,0 +1,123 @@
+package com.ebay.erl.mobius.core.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+public class ApproxUniqueCountsTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = 5527381650384461925L;
+
+	@Test
+	public void testSmallGroup()
+		throws IOException
+	{
+		ApproxUniqueCounts func = new ApproxUniqueCounts(this.createColumn());
+		func.reset();
+		for( Object aValue:new Object[]{"a", "b", "a", 5, 5L, 5.0D, null, "5"} )
+		{
+			func.consume(value(aValue));
+		}
+		// "a", "b", 5 and "5"
+		assertEquals(4L, func.getResult().getFirst().get(0));
+	}
+
+
+	@Test
+	public void testCombine()
+		throws IOException
+	{
+		Column column = this.createColumn();
+
+		// two combiners with overlapped values
+		Tuple partial1 = this.combine(column, 0, 60000);
+		Tuple partial2 = this.combine(column, 40000, 100000);
+
+		ApproxUniqueCounts func = new ApproxUniqueCounts(column);
+		func.reset();
+		func.consume(partial1);
+		func.consume(partial2);
+		func.consume(value("user-100000"));
+
+		long actual = (Long)func.getResult().getFirst().get(0);
+		assertTrue("estimated "+actual, Math.abs(actual-100001L)<100001L*0.03D);
+
+		// reused for the next group
+		func.reset();
+		func.consume(value("user-0"));
+		assertEquals(1L, func.getResult().getFirst().get(0));
+	}
+
+
+	private Tuple combine(Column column, int from, int to)
+		throws IOException
+	{
+		ApproxUniqueCounts func = new ApproxUniqueCounts(column);
+		func.setCalledByCombiner(true);
+		func.reset();
+		for( int i=from;i<to;i++ )
+		{
+			func.consume(value("user-"+i));
+		}
+
+		Tuple partial = new Tuple();
+		partial.insert("column", func.getResult().getFirst().get(0));
+
+		// the partial results are shuffled to the reducer
+		DataOutputBuffer out = new DataOutputBuffer();
+		partial.write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		Tuple result = new Tuple();
+		result.readFields(in);
+		result.setSchema(new String[]{"column"});
+		return result;
+	}
+
+
+	private static Tuple value(Object value)
+	{
+		Tuple t = new Tuple();
+		if( value==null )
+			t.putNull("column");
+		else
+			t.insert("column", value);
+		return t;
+	}
+
+
+	private Column createColumn()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		return new Column(TSVDatasetBuilder.newInstance(this, "ds", new String[]{"COLUMN"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build(), "COLUMN");
+	}
+}
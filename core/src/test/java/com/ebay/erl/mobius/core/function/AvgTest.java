@@ -0,0 +1,107 @@
+package com.ebay.erl.mobius.core.function;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+public class AvgTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = -2217658296145016842L;
+
+	@Test
+	public void testCombine()
+		throws IOException
+	{
+		Column column = new Column(this.createDataset(), "COLUMN");
+
+		// partial results from two combiners
+		Tuple partial1 = this.combine(column, 1L, Long.MAX_VALUE, Long.MAX_VALUE);
+		Tuple partial2 = this.combine(column, 2.5D, null);
+
+		Avg func = new Avg(column);
+		func.reset();
+		func.consume(partial1);
+		func.consume(partial2);
+		func.consume(value(0.5D));
+
+		BigDecimal expected = BigDecimal.valueOf(Long.MAX_VALUE).multiply(BigDecimal.valueOf(2L))
+			.add(BigDecimal.valueOf(4L)).divide(BigDecimal.valueOf(5L));
+
+		BigDecimal actual = (BigDecimal)func.getResult().getFirst().get(0);
+		assertEquals(0, actual.compareTo(expected));
+	}
+
+
+	private Tuple combine(Column column, Object... values)
+		throws IOException
+	{
+		Avg func = new Avg(column);
+		func.setCalledByCombiner(true);
+		func.reset();
+		for( Object aValue:values )
+		{
+			func.consume(value(aValue));
+		}
+
+		Tuple partial = new Tuple();
+		partial.insert("column", func.getResult().getFirst().get(0));
+
+		// the partial results are shuffled to the reducer
+		DataOutputBuffer out = new DataOutputBuffer();
+		partial.write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		Tuple result = new Tuple();
+		result.readFields(in);
+		result.setSchema(new String[]{"column"});
+		return result;
+	}
+
+
+	private static Tuple value(Object value)
+	{
+		Tuple t = new Tuple();
+		if( value==null )
+			t.putNull("column");
+		else
+			t.insert("column", value);
+		return t;
+	}
+
+
+	private Dataset createDataset()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		return TSVDatasetBuilder.newInstance(this, "ds", new String[]{"COLUMN"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+	}
+}
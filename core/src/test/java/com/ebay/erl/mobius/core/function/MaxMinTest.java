@@ -0,0 +1,101 @@
+package com.ebay.erl.mobius.core.function;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+public class MaxMinTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = -2637493470624468806L;
+
+	@Test
+	public void test_numbers()
+		throws IOException
+	{
+		Column column = new Column(this.createDataset(), "COLUMN");
+
+		Max max = new Max(column);
+		Min min = new Min(column);
+		Object[] values = new Object[]{3, null, 7L, -2.5D, 7, 1.5F, (short)-3};
+		for( Object aValue:values )
+		{
+			max.consume(value(aValue));
+			min.consume(value(aValue));
+		}
+
+		// the first of the equal values, in its own type
+		assertEquals(Long.valueOf(7L), max.getResult().getFirst().get(0));
+		assertEquals(Short.valueOf((short)-3), min.getResult().getFirst().get(0));
+
+		// integral values are compared as long
+		max.reset();
+		max.consume(value(Long.MAX_VALUE-1));
+		max.consume(value(Long.MAX_VALUE));
+		assertEquals(Long.valueOf(Long.MAX_VALUE), max.getResult().getFirst().get(0));
+	}
+
+
+	@Test
+	public void test_mixed()
+		throws IOException
+	{
+		Column column = new Column(this.createDataset(), "COLUMN");
+
+		// the numbers are compared with the strings
+		Max max = new Max(column);
+		max.consume(value(5));
+		max.consume(value("12"));
+		max.consume(value(9D));
+		assertEquals("12", max.getResult().getFirst().get(0));
+
+		Min min = new Min(column);
+		min.consume(value(5));
+		min.consume(value("12"));
+		min.consume(value(-1));
+		assertEquals(Integer.valueOf(-1), min.getResult().getFirst().get(0));
+	}
+
+
+	private static Tuple value(Object value)
+	{
+		Tuple t = new Tuple();
+		if( value==null )
+			t.putNull("column");
+		else
+			t.insert("column", value);
+		return t;
+	}
+
+
+	private Dataset createDataset()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		return TSVDatasetBuilder.newInstance(this, "ds", new String[]{"COLUMN"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+	}
+}
@@ -0,0 +1,179 @@
+package com.ebay.erl.mobius.core.function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings("deprecation")
+public class MediumTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = 1371526094734283507L;
+
+	@Test
+	public void testSelect()
+		throws IOException
+	{
+		Medium func = new Medium(this.createColumn());
+
+		Random random		= new Random(0L);
+		List<Object> values	= new ArrayList<Object>();
+		for( int i=0;i<5001;i++ )
+		{
+			values.add(random.nextInt(1000));
+		}
+		List<Object> sorted = new ArrayList<Object>(values);
+		Collections.sort(sorted, null);
+		assertEquals(sorted.get(2500), this.medium(func, values));
+
+		// the same func for the next groups
+		values.clear();
+		for( int i=0;i<1000;i++ )
+		{
+			values.add(random.nextDouble());
+		}
+		sorted = new ArrayList<Object>(values);
+		Collections.sort(sorted, null);
+		assertEquals(sorted.get(500), this.medium(func, values));
+
+		// nulls are the smallest
+		values.add(0, null);
+		values.add(0, null);
+		assertEquals(sorted.get(499), this.medium(func, values));
+		assertNull(this.medium(func, new Object[]{null, null, 3L}));
+		assertEquals(3L, this.medium(func, new Object[]{null, 3L}));
+
+		// ordered as Double#compare, NaN is the largest
+		assertEquals(Double.NaN, this.medium(func, new Object[]{Double.NaN, 1D, Double.NaN}));
+		assertEquals(-0.0D, this.medium(func, new Object[]{0.0D, -0.0D, -1D}));
+		assertEquals(0.0D, this.medium(func, new Object[]{0.0D, -0.0D, 1D}));
+	}
+
+
+	@Test
+	public void testSpill()
+		throws IOException
+	{
+		Medium func = new Medium(this.createColumn());
+		JobConf conf = new JobConf();
+		conf.setInt(ConfigureConstants.MEDIUM_MAX_BUFFERED_VALUES, 100);
+		func.setConf(conf);
+
+		Random random		= new Random(0L);
+		List<Object> values	= new ArrayList<Object>();
+		for( int i=0;i<2001;i++ )
+		{
+			values.add(random.nextLong()>>random.nextInt(64));
+		}
+		values.add(Long.MIN_VALUE);
+		values.add(Long.MAX_VALUE);
+		for( int i=0;i<500;i++ )
+		{
+			// duplicates more than the buffer
+			values.add(7L);
+		}
+		List<Object> sorted = new ArrayList<Object>(values);
+		Collections.sort(sorted, null);
+		assertEquals(sorted.get(sorted.size()/2), this.medium(func, values));
+
+		values.clear();
+		for( int i=0;i<3000;i++ )
+		{
+			values.add(i%100==0?Double.NaN:random.nextGaussian()*Math.pow(10, random.nextInt(20)));
+		}
+		values.add(-0.0D);
+		sorted = new ArrayList<Object>(values);
+		Collections.sort(sorted, null);
+		values.add(0, null);
+		assertEquals(sorted.get((sorted.size()+1)/2-1), this.medium(func, values));
+
+		// a value of another type after spilling
+		values.clear();
+		for( int i=0;i<301;i++ )
+		{
+			values.add(i);
+		}
+		values.add(1000L);
+		assertEquals(151, this.medium(func, values));
+	}
+
+
+	@Test
+	public void testSort()
+		throws IOException
+	{
+		Medium func = new Medium(this.createColumn());
+
+		// different types
+		assertEquals(3, this.medium(func, new Object[]{1, 2L, 3, 4.0D, 5}));
+
+		// more values than the buffer
+		JobConf conf = new JobConf();
+		conf.setInt(ConfigureConstants.MEDIUM_MAX_BUFFERED_VALUES, 2);
+		func.setConf(conf);
+		assertEquals(3L, this.medium(func, new Object[]{5L, 1L, 3L, 4L, 2L}));
+		assertEquals(2L, this.medium(func, new Object[]{2L, 1L}));
+	}
+
+
+	private Object medium(Medium func, List<Object> values)
+	{
+		func.reset();
+		for( Object aValue:values )
+		{
+			Tuple t = new Tuple();
+			if( aValue==null )
+				t.putNull("column");
+			else
+				t.insert("column", aValue);
+			func.consume(t);
+		}
+		return func.getResult().getFirst().get(0);
+	}
+
+
+	private Object medium(Medium func, Object[] values)
+	{
+		List<Object> list = new ArrayList<Object>();
+		Collections.addAll(list, values);
+		return this.medium(func, list);
+	}
+
+
+	private Column createColumn()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		return new Column(TSVDatasetBuilder.newInstance(this, "ds", new String[]{"COLUMN"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build(), "COLUMN");
+	}
+}
@@ -2,13 +2,16 @@ package com.ebay.erl.mobius.core.function;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 
+import org.apache.hadoop.fs.Path;
 import org.junit.Test;
 
 import com.ebay.erl.mobius.core.MobiusTestJob;
 import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
 import com.ebay.erl.mobius.core.model.Column;
 import com.ebay.erl.mobius.core.model.Tuple;
 
@@ -68,4 +71,44 @@ public class SumTest extends MobiusTestJob{
 		
 		assertEquals(0, actual.compareTo(expected));
 	}
+	
+	@Test
+	public void testPrimitives()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		Dataset ds = TSVDatasetBuilder.newInstance(this, "ds", new String[]{"COLUMN"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+		
+		Sum func = new Sum(new Column(ds, "COLUMN"));
+		func.reset();
+		
+		// numerical strings are validated but not summed up
+		func.consume(value(1));
+		func.consume(value(2.5F));
+		func.consume(value("0.5"));
+		
+		// the partial sum from the combiner
+		func.consume(value(new BigDecimal("10")));
+		
+		assertEquals("13.5", func.getComputedResult().get(0).toString());
+		
+		// the sum is accumulated in double
+		func.reset();
+		func.consume(value(3));
+		func.consume(value(4L));
+		assertEquals("7.0", func.getComputedResult().get(0).toString());
+		
+		func.reset();
+		assertEquals("0.0", func.getComputedResult().get(0).toString());
+	}
+	
+	private static Tuple value(Object value)
+	{
+		Tuple t = new Tuple();
+		t.insert("column", value);
+		return t;
+	}
 }
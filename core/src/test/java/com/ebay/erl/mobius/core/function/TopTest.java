@@ -8,6 +8,8 @@ import java.net.URISyntaxException;
 import java.util.Arrays;
 
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.junit.Test;
 
 import com.ebay.erl.mobius.core.MobiusJob;
@@ -99,6 +101,82 @@ public class TopTest extends MobiusJob
 		}
 	}
 
+	@Test
+	public void testCombine()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		Dataset ds = TSVDatasetBuilder.newInstance(this, "ds", new String[]{"COUNTS", "ID"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+		
+		// natural ordering
+		Top natural = new Top(ds, new String[]{"COUNTS", "ID"}, 3);
+		natural.consume(combine(new Top(ds, new String[]{"COUNTS", "ID"}, 3), 9, 4, 7, 1));
+		natural.consume(combine(new Top(ds, new String[]{"COUNTS", "ID"}, 3), 8, 2));
+		natural.consume(value(3));
+		
+		int k = 0;
+		for( Tuple t:natural.getResult() )
+		{
+			assertEquals(new int[]{1, 2, 3}[k], t.get(0));
+			assertEquals("ID_"+new int[]{1, 2, 3}[k], t.get(1));
+			k++;
+		}
+		assertEquals(3, k);
+		
+		// sorters
+		Sorter[] sorters = new Sorter[]{new Sorter("COUNTS", Ordering.DESC, true)};
+		Top sorted = new Top(ds, new String[]{"COUNTS", "ID"}, sorters, 2);
+		sorted.consume(combine(new Top(ds, new String[]{"COUNTS", "ID"}, sorters, 2), 9, 4, 7, 1));
+		sorted.consume(combine(new Top(ds, new String[]{"COUNTS", "ID"}, sorters, 2), 10, 2));
+		
+		k = 0;
+		for( Tuple t:sorted.getResult() )
+		{
+			assertEquals(new int[]{10, 9}[k++], t.get(0));
+		}
+		assertEquals(2, k);
+	}
+	
+	
+	private static Tuple combine(Top func, int... counts)
+		throws IOException
+	{
+		func.setCalledByCombiner(true);
+		func.reset();
+		for( int aCount:counts )
+		{
+			func.consume(value(aCount));
+		}
+		assertEquals(1L, func.getResult().size());
+		
+		Tuple partial = new Tuple();
+		partial.insert("counts", func.getResult().getFirst().get(0));
+		partial.putNull("id");
+		
+		// the partial results are shuffled to the reducer
+		DataOutputBuffer out = new DataOutputBuffer();
+		partial.write(out);
+		
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		Tuple result = new Tuple();
+		result.readFields(in);
+		result.setSchema(new String[]{"counts", "id"});
+		return result;
+	}
+	
+	
+	private static Tuple value(int count)
+	{
+		Tuple t = new Tuple();
+		t.put("COUNTS", count);
+		t.put("ID", "ID_"+count);
+		return t;
+	}
+
 	@Override
 	public int run(String[] args) throws Exception {
 		// do nothing
@@ -0,0 +1,268 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.JoinOnConfigure.EQ;
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.criterion.TupleCriterion;
+import com.ebay.erl.mobius.core.criterion.TupleRestrictions;
+import com.ebay.erl.mobius.core.function.Counts;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.ComputedColumns;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.util.SerializableUtil;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings("deprecation")
+public class AbstractMobiusMapperTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = -1371622372532381436L;
+
+	private File folder;
+
+	@Before
+	public void setUp()
+	{
+		this.folder = new File(System.getProperty("java.io.tmpdir"), "mobius_mapper_test_"+System.nanoTime());
+		this.folder.mkdirs();
+	}
+
+
+	@After
+	public void tearDown()
+		throws IOException
+	{
+		FileUtil.fullyDelete(this.folder);
+	}
+
+
+	@Test
+	public void test_push_down_criteria()
+		throws IOException
+	{
+		Dataset items	= this.dataset("items", new String[]{"ID", "PRICE"}, "1\t5", "2\t12", "3\t20", "4\t8", "5\t30");
+		Dataset members	= this.dataset("members", new String[]{"ID", "NAME"}, "1\tm1", "2\tm2", "3\tm1");
+
+		// the last conjunct evaluates the columns of both datasets
+		TupleCriterion criteria = TupleRestrictions.gt("PRICE", 10)
+			.and(TupleRestrictions.eq("NAME", "m1"))
+			.and(TupleRestrictions.neColumns("PRICE", "NAME"));
+
+		Path output = this.output();
+		this.innerJoin(items, members)
+			.on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+			.save(this, output, criteria, new Column(items, "ID"), new Column(items, "PRICE"), new Column(members, "NAME"));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals("[price]", involvedColumns(conf, "0.pushed.criteria"));
+		Assert.assertEquals("[name]", involvedColumns(conf, "1.pushed.criteria"));
+		Assert.assertEquals("[name, price]", involvedColumns(conf, ConfigureConstants.PERSISTANT_CRITERIA));
+
+		// only NAME is selected from members
+		Counters counters = new Counters();
+		Assert.assertEquals("[2,12, 3,20, 5,30, m1, m1]", toString(this.runMappers(conf, counters)));
+
+		Assert.assertEquals(5L, counters.getGroup("items").getCounter("INPUT_RECORDS"));
+		Assert.assertEquals(2L, counters.getGroup("items").getCounter("FILTERED_RECORDS"));
+		Assert.assertEquals(3L, counters.getGroup("items").getCounter("OUTPUT_RECORDS"));
+		Assert.assertEquals(3L, counters.getGroup("members").getCounter("INPUT_RECORDS"));
+		Assert.assertEquals(1L, counters.getGroup("members").getCounter("FILTERED_RECORDS"));
+		Assert.assertEquals(2L, counters.getGroup("members").getCounter("OUTPUT_RECORDS"));
+	}
+
+
+	@Test
+	public void test_criteria_not_pushed_down()
+		throws IOException
+	{
+		Dataset items	= this.dataset("items", new String[]{"ID", "PRICE"}, "1\t5");
+		Dataset members	= this.dataset("members", new String[]{"ID", "NAME"}, "1\tm1");
+
+		// the rows of the optional dataset are joined with null
+		Path output = this.output();
+		this.leftOuterJoin(items, members)
+			.on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+			.save(this, output, TupleRestrictions.gt("PRICE", 10).and(TupleRestrictions.eq("NAME", "m1")),
+					new Column(items, "ID"), new Column(items, "PRICE"), new Column(members, "NAME"));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals("[price]", involvedColumns(conf, "0.pushed.criteria"));
+		Assert.assertNull(conf.get("1.pushed.criteria"));
+		Assert.assertEquals("[name]", involvedColumns(conf, ConfigureConstants.PERSISTANT_CRITERIA));
+
+		// renamed columns
+		output = this.output();
+		this.innerJoin(items, members)
+			.on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+			.save(this, output, TupleRestrictions.eq("USER", "m1"),
+					new Column(items, "ID"), new Column(items, "PRICE"), new Column(members, "NAME").setNewName("USER"));
+
+		conf = this.getJobConf(output);
+		Assert.assertNull(conf.get("1.pushed.criteria"));
+		Assert.assertEquals("[user]", involvedColumns(conf, ConfigureConstants.PERSISTANT_CRITERIA));
+
+		// only the group keys can be filtered before a group
+		// function, so the whole group is filtered
+		output = this.output();
+		this.group(items).by("ID")
+			.save(this, output, TupleRestrictions.gt("ID", 0).and(TupleRestrictions.gt("COUNTS_PRICE", 1)),
+					new Column(items, "ID"), new Counts(new Column(items, "PRICE")));
+
+		conf = this.getJobConf(output);
+		Assert.assertEquals("[id]", involvedColumns(conf, "0.pushed.criteria"));
+		Assert.assertEquals("[counts_price]", involvedColumns(conf, ConfigureConstants.PERSISTANT_CRITERIA));
+	}
+
+
+	@Test
+	public void test_parsed_and_computed_criteria()
+		throws IOException
+	{
+		File input = new File(this.folder, "items");
+		input.mkdirs();
+		FileWriter writer = new FileWriter(new File(input, "part-00000"));
+		writer.write("1\t5\n2\t12\n3\t20\n4\t8\n5\t30\n");
+		writer.close();
+
+		Dataset items = TSVDatasetBuilder.newInstance(this, "items", new String[]{"ID", "PRICE"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.addComuptedColumn(new Total())
+			.build();
+		Dataset members = this.dataset("members", new String[]{"ID", "NAME"}, "1\tm1");
+
+		Path output = this.output();
+		this.innerJoin(items, members)
+			.on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+			.save(this, output, TupleRestrictions.gt("PRICE", 10).and(TupleRestrictions.gt("TOTAL", 30)),
+					new Column(items, "ID"), new Column(items, "PRICE"), new Column(items, "TOTAL"), new Column(members, "NAME"));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals("[price, total]", involvedColumns(conf, "0.pushed.criteria"));
+
+		// the columns are only computed for the rows meeting
+		// the criteria on the parsed columns
+		Total.consumed = 0;
+		Counters counters = new Counters();
+		Assert.assertEquals("[3,20,40, 5,30,60, m1]", toString(this.runMappers(conf, counters)));
+		Assert.assertEquals(3, Total.consumed);
+
+		Assert.assertEquals(5L, counters.getGroup("items").getCounter("INPUT_RECORDS"));
+		Assert.assertEquals(3L, counters.getGroup("items").getCounter("FILTERED_RECORDS"));
+		Assert.assertEquals(2L, counters.getGroup("items").getCounter("OUTPUT_RECORDS"));
+	}
+
+
+	/**
+	 * doubles the price, counts the rows it computes.
+	 */
+	public static class Total extends ComputedColumns
+	{
+		private static final long serialVersionUID = 8390574722474001893L;
+
+		static int consumed = 0;
+
+		public Total()
+		{
+			super("TOTAL");
+		}
+
+		@Override
+		public void consume(Tuple newRow)
+		{
+			consumed++;
+
+			Tuple result = new Tuple();
+			result.put("TOTAL", Long.parseLong(newRow.getString("PRICE"))*2L);
+			this.output(result);
+		}
+	}
+
+
+	private static String involvedColumns(JobConf conf, String property)
+		throws IOException
+	{
+		TupleCriterion criteria = (TupleCriterion)SerializableUtil.deserializeFromBase64(conf.get(property), conf);
+		List<String> result = new ArrayList<String>();
+		for( String aColumn:criteria.getInvolvedColumns() )
+		{
+			result.add(aColumn.toLowerCase());
+		}
+		Collections.sort(result);
+		return result.toString();
+	}
+
+
+	private Dataset dataset(String name, String[] schema, String... lines)
+		throws IOException
+	{
+		File input = new File(this.folder, name);
+		input.mkdirs();
+		FileWriter writer = new FileWriter(new File(input, "part-00000"));
+		for( String aLine:lines )
+		{
+			writer.write(aLine+"\n");
+		}
+		writer.close();
+
+		return TSVDatasetBuilder.newInstance(this, name, schema)
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+	}
+
+
+	private Path output()
+	{
+		return new Path(new File(this.folder, "output_"+System.nanoTime()).getAbsolutePath());
+	}
+
+
+	private static String toString(List<Tuple> rows)
+	{
+		List<String> result = new ArrayList<String>();
+		for( Tuple aRow:rows )
+		{
+			// the columns are named in alphabetical order
+			String[] columns = aRow.getSchema();
+			Arrays.sort(columns, String.CASE_INSENSITIVE_ORDER);
+
+			StringBuffer aResult = new StringBuffer();
+			for( String aColumn:columns )
+			{
+				aResult.append(aResult.length()>0?",":"").append(aRow.get(aColumn));
+			}
+			result.add(aResult.toString());
+		}
+		Collections.sort(result);
+		return result.toString();
+	}
+}
@@ -0,0 +1,124 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.model.KeyTuple;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings("deprecation")
+public class BloomFilterJoinTest
+{
+	@Test
+	public void test_build_and_probe()
+		throws IOException
+	{
+		JobConf conf = new JobConf();
+		conf.setLong(ConfigureConstants.BLOOM_FILTER_EXPECTED_KEYS, 1000L);
+		
+		// two mappers build their own bloom filters
+		conf.setBoolean(ConfigureConstants.BLOOM_FILTER_BUILD, true);
+		List<Tuple> filters = new ArrayList<Tuple>();
+		
+		BloomFilterJoin mapper1 = new BloomFilterJoin(conf);
+		Assert.assertTrue(mapper1.isBuilding());
+		mapper1.add(key("5", "a"));
+		mapper1.close(collector(filters));
+		
+		BloomFilterJoin mapper2 = new BloomFilterJoin(conf);
+		mapper2.add(key(-0.0D, null));
+		mapper2.close(collector(filters));
+		
+		Assert.assertEquals(2, filters.size());
+		
+		// merged in the reducer
+		BloomFilter merged = BloomFilterJoin.newFilter(conf);
+		for( Tuple aFilter:filters )
+		{
+			BloomFilterJoin.merge(merged, aFilter);
+		}
+		
+		File folder = new File(System.getProperty("java.io.tmpdir"), "mobius_bloom_filter_test_"+System.nanoTime());
+		folder.deleteOnExit();
+		Path output = new Path(folder.getAbsolutePath());
+		FileSystem fs = FileSystem.getLocal(conf);
+		try
+		{
+			SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf, new Path(output, "part-00000"), NullWritable.class, BloomFilter.class);
+			writer.append(NullWritable.get(), merged);
+			writer.close();
+			
+			// the mappers of the other datasets in the join job
+			conf.setBoolean(ConfigureConstants.BLOOM_FILTER_BUILD, false);
+			conf.set(ConfigureConstants.BLOOM_FILTER_PATH, output.toString());
+			conf.set(ConfigureConstants.BLOOM_FILTER_DATASET_ID, "0");
+			Assert.assertFalse(BloomFilterJoin.isEnabled(conf, (byte)0));
+			Assert.assertTrue(BloomFilterJoin.isEnabled(conf, (byte)1));
+			
+			BloomFilterJoin probe = new BloomFilterJoin(conf);
+			Assert.assertFalse(probe.isBuilding());
+			
+			// the keys equal in a join are in the bloom filter
+			// no matter what the types are
+			Assert.assertTrue(probe.mightJoin(key(5L, "a")));
+			Assert.assertTrue(probe.mightJoin(key(5.0F, "a")));
+			Assert.assertTrue(probe.mightJoin(key("0", null)));
+			Assert.assertTrue(probe.mightJoin(key(0, null)));
+			
+			Assert.assertFalse(probe.mightJoin(key(5L, "b")));
+			Assert.assertFalse(probe.mightJoin(key("a", "5")));
+		}
+		finally
+		{
+			fs.delete(output, true);
+		}
+	}
+	
+	
+	private static Tuple key(Object id, Object name)
+	{
+		Tuple key = new KeyTuple();
+		key.insert("id", id);
+		key.insert("name", name);
+		return key;
+	}
+	
+	
+	private static OutputCollector<WritableComparable<?>, WritableComparable<?>> collector(final List<Tuple> values)
+	{
+		return new OutputCollector<WritableComparable<?>, WritableComparable<?>>(){
+			@Override
+			public void collect(WritableComparable<?> key, WritableComparable<?> value)
+			{
+				values.add((Tuple)value);
+			}
+		};
+	}
+}
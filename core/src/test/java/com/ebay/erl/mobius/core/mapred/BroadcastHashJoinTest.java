@@ -0,0 +1,201 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.JoinOnConfigure.EQ;
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.Persistable;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.function.Counts;
+import com.ebay.erl.mobius.core.function.base.Projectable;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings("deprecation")
+public class BroadcastHashJoinTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = 3072262440391208841L;
+
+	private File folder;
+
+	@Before
+	public void setUp()
+	{
+		this.folder = new File(System.getProperty("java.io.tmpdir"), "mobius_broadcast_hash_join_test_"+System.nanoTime());
+		this.folder.mkdirs();
+	}
+
+
+	@After
+	public void tearDown()
+		throws IOException
+	{
+		FileUtil.fullyDelete(this.folder);
+	}
+
+
+	@Test
+	public void test_inner_join()
+		throws IOException
+	{
+		Dataset items	= this.dataset("items", new String[]{"ID", "ITEM"}, false, "1\ti1", "2\ti2", "2\ti3", "3\ti4", "5\ti5", "6\ti6", "7\ti7");
+		Dataset members	= this.dataset("members", new String[]{"ID", "NAME"}, false, "2\tm2", "1\tm1", "4\tm4", "2\tm3");
+
+		// members is small enough to be broadcast
+		Path output = this.output();
+		this.innerJoin(items, members)
+			.on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+			.setConf(ConfigureConstants.BROADCAST_JOIN_THRESHOLD, "100")
+			.save(this, output, new Column(items, "ID"), new Column(items, "ITEM"), new Column(members, "NAME"));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals("1", conf.get(ConfigureConstants.BROADCAST_DATASET_IDS));
+		Assert.assertEquals(0, conf.getNumReduceTasks());
+
+		// all the values of the same key are in the table
+		Assert.assertEquals("[1,i1,m1, 2,i2,m2, 2,i2,m3, 2,i3,m2, 2,i3,m3]", toString(this.runMappers(conf, new Counters())));
+	}
+
+
+	@Test
+	public void test_outer_join()
+		throws IOException
+	{
+		// the keys are probed by their normalized forms
+		Dataset items	= this.dataset("items", new String[]{"ID", "ITEM"}, true, "1\ti1", "2\ti2", "2\ti3", "3\ti4");
+		Dataset members	= this.dataset("members", new String[]{"ID", "NAME"}, true, "2\tm2", "1\tm1", "4\tm4", "2\tm3");
+
+		Path output = this.output();
+		this.leftOuterJoin(items, members, "-").broadcast(members)
+			.on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+			.save(this, output, new Column(items, "ID"), new Column(items, "ITEM"), new Column(members, "NAME"));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals("1", conf.get(ConfigureConstants.BROADCAST_DATASET_IDS));
+		Assert.assertEquals("[1,i1,m1, 2,i2,m2, 2,i2,m3, 2,i3,m2, 2,i3,m3, 3,i4,-]", toString(this.runMappers(conf, new Counters())));
+	}
+
+
+	@Test
+	public void test_join_in_reducers()
+		throws IOException
+	{
+		Dataset items	= this.dataset("items", new String[]{"ID", "ITEM"}, false, "1\ti1", "2\ti2", "2\ti3", "3\ti4", "5\ti5", "6\ti6", "7\ti7");
+		Dataset members	= this.dataset("members", new String[]{"ID", "NAME"}, false, "2\tm2", "1\tm1", "4\tm4", "2\tm3");
+
+		// bigger than the threshold
+		Assert.assertEquals("", this.broadcastDatasetIDs(this.innerJoin(items, members).on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+				.setConf(ConfigureConstants.BROADCAST_JOIN_THRESHOLD, "10"), new Column(items, "ITEM"), new Column(members, "NAME")));
+
+		// group functions are computed in the reducers
+		Assert.assertEquals("", this.broadcastDatasetIDs(this.innerJoin(items, members).on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+				.setConf(ConfigureConstants.BROADCAST_JOIN_THRESHOLD, "100"), new Column(members, "NAME"), new Counts(new Column(items, "ITEM"))));
+
+		// the optional dataset of an outer join is the biggest
+		Assert.assertEquals("", this.broadcastDatasetIDs(this.leftOuterJoin(members, items).on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+				.setConf(ConfigureConstants.BROADCAST_JOIN_THRESHOLD, "100"), new Column(items, "ITEM"), new Column(members, "NAME")));
+
+		// specified explicitly but cannot be broadcast
+		try
+		{
+			this.innerJoin(items, members).broadcast(members).on(new EQ(new Column(items, "ID"), new Column(members, "ID")))
+				.save(this, this.output(), new Column(members, "NAME"), new Counts(new Column(items, "ITEM")));
+			Assert.fail("Counts cannot be computed in the mappers.");
+		}
+		catch(IllegalArgumentException e)
+		{
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Cannot broadcast datasets [1]"));
+		}
+	}
+
+
+	private String broadcastDatasetIDs(Persistable job, Projectable... projections)
+		throws IOException
+	{
+		Path output = this.output();
+		job.save(this, output, projections);
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertTrue(conf.getNumReduceTasks()>0);
+		return conf.get(ConfigureConstants.BROADCAST_DATASET_IDS);
+	}
+
+
+	private Dataset dataset(String name, String[] schema, boolean typed, String... lines)
+		throws IOException
+	{
+		File input = new File(this.folder, name);
+		input.mkdirs();
+		FileWriter writer = new FileWriter(new File(input, "part-00000"));
+		for( String aLine:lines )
+		{
+			writer.write(aLine+"\n");
+		}
+		writer.close();
+
+		TSVDatasetBuilder builder = TSVDatasetBuilder.newInstance(this, name, schema)
+			.addInputPath(new Path(input.getAbsolutePath()));
+		if( typed )
+		{
+			builder.setColumnType(schema[0], Tuple.LONG_TYPE);
+		}
+		return builder.build();
+	}
+
+
+	private Path output()
+	{
+		return new Path(new File(this.folder, "output_"+System.nanoTime()).getAbsolutePath());
+	}
+
+
+	private static String toString(List<Tuple> rows)
+	{
+		List<String> result = new ArrayList<String>();
+		for( Tuple aRow:rows )
+		{
+			// the columns are named in alphabetical order
+			String[] columns = aRow.getSchema();
+			Arrays.sort(columns, String.CASE_INSENSITIVE_ORDER);
+
+			StringBuffer aResult = new StringBuffer();
+			for( String aColumn:columns )
+			{
+				aResult.append(aResult.length()>0?",":"").append(aRow.get(aColumn));
+			}
+			result.add(aResult.toString());
+		}
+		Collections.sort(result);
+		return result.toString();
+	}
+}
@@ -0,0 +1,281 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.Counters.Counter;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.datajoin.DataJoinKey;
+import com.ebay.erl.mobius.core.datajoin.DataJoinValue;
+import com.ebay.erl.mobius.core.datajoin.DataJoinValueGroup;
+import com.ebay.erl.mobius.core.function.Counts;
+import com.ebay.erl.mobius.core.function.Unique;
+import com.ebay.erl.mobius.core.function.base.ExtendFunction;
+import com.ebay.erl.mobius.core.function.base.Projectable;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.KeyTuple;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.util.SerializableUtil;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings("deprecation")
+public class DefaultMobiusCombinerTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = 4411358019224736605L;
+
+	@Test
+	public void test_partial_combine()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		Dataset ds = TSVDatasetBuilder.newInstance(this, "ds", new String[]{"ID", "NAME"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+
+		// Counts is combinable but Unique is not
+		JobConf conf = ds.createJobConf((byte)0);
+		conf.set(ConfigureConstants.ALL_DATASET_IDS, "0");
+		conf.set("0.value.columns", "id,name");
+		conf.set(ConfigureConstants.PROJECTION_COLUMNS, SerializableUtil.serializeToBase64(new Projectable[]{
+				new Counts(new Column(ds, "ID")), new Unique(new Column(ds, "NAME"))}));
+
+		Tuple key = new KeyTuple();
+		key.insert("id", "a");
+
+		List<DataJoinValue> values = new ArrayList<DataJoinValue>();
+		for( String aName:new String[]{"x", "x", "y"} )
+		{
+			values.add(new DataJoinValue((byte)0, value("a", aName)));
+		}
+
+		final List<DataJoinValue> combined = new ArrayList<DataJoinValue>();
+		DefaultMobiusCombiner combiner = new DefaultMobiusCombiner();
+		combiner.configure(conf);
+		combiner.joinreduce(key, new DataJoinValueGroup<Tuple>(values.iterator()), new OutputCollector<DataJoinKey, DataJoinValue>(){
+			@Override
+			public void collect(DataJoinKey k, DataJoinValue v)
+			{
+				combined.add(v);
+			}
+		}, reporter());
+
+		// the rows are passed through for Unique
+		Assert.assertEquals(4, combined.size());
+		for( int i=0;i<3;i++ )
+		{
+			Assert.assertEquals(DataJoinValue.PASS_THROUGH_ROW, combined.get(i).getRowType());
+		}
+		Assert.assertEquals(DataJoinValue.PARTIAL_ROW, combined.get(3).getRowType());
+
+
+		// the reducers merge the partial and passed through rows,
+		// and the rows not combined.
+		combined.add(new DataJoinValue((byte)0, value("a", "z")));
+
+		final List<Tuple> results = new ArrayList<Tuple>();
+		DefaultMobiusReducer reducer = new DefaultMobiusReducer();
+		reducer.configure(conf);
+		reducer.joinreduce(key, new DataJoinValueGroup<Tuple>(combined.iterator()), new OutputCollector<NullWritable, WritableComparable<?>>(){
+			@Override
+			public void collect(NullWritable k, WritableComparable<?> v)
+			{
+				results.add((Tuple)v);
+			}
+		}, reporter());
+
+		Set<String> names = new TreeSet<String>();
+		for( Tuple aResult:results )
+		{
+			Assert.assertEquals(4L, aResult.get(0));
+			names.add((String)aResult.get(1));
+		}
+		Assert.assertEquals(3, results.size());
+		Assert.assertEquals("[x, y, z]", names.toString());
+	}
+
+
+	@Test
+	public void test_partial_combine_with_extend_function()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		Dataset ds0 = TSVDatasetBuilder.newInstance(this, "ds0", new String[]{"ID", "NAME"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+		Dataset ds1 = TSVDatasetBuilder.newInstance(this, "ds1", new String[]{"ID", "V"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+		ds1.createJobConf((byte)1);
+
+		// Unique makes it partially combined, the combinable
+		// extend function doesn't use the group keys only.
+		JobConf conf = ds0.createJobConf((byte)0);
+		conf.set(ConfigureConstants.ALL_DATASET_IDS, "0,1");
+		conf.set("0.value.columns", "id,name");
+		conf.set("1.value.columns", "id,v");
+		conf.set(ConfigureConstants.PROJECTION_COLUMNS, SerializableUtil.serializeToBase64(new Projectable[]{
+				new Counts(new Column(ds0, "ID")), new UpperCase(new Column(ds0, "NAME")), new Unique(new Column(ds1, "V"))}));
+
+		Tuple key = new KeyTuple();
+		key.insert("id", "a");
+
+		List<DataJoinValue> values = new ArrayList<DataJoinValue>();
+		for( String aName:new String[]{"x", "x", "y"} )
+		{
+			values.add(new DataJoinValue((byte)0, value("a", aName)));
+		}
+
+		final List<DataJoinValue> combined = new ArrayList<DataJoinValue>();
+		DefaultMobiusCombiner combiner = new DefaultMobiusCombiner();
+		combiner.configure(conf);
+		combiner.joinreduce(key, new DataJoinValueGroup<Tuple>(values.iterator()), new OutputCollector<DataJoinKey, DataJoinValue>(){
+			@Override
+			public void collect(DataJoinKey k, DataJoinValue v)
+			{
+				combined.add(v);
+			}
+		}, reporter());
+
+		// the rows are passed through for the extend function
+		Assert.assertEquals(4, combined.size());
+		for( int i=0;i<3;i++ )
+		{
+			Assert.assertEquals(DataJoinValue.PASS_THROUGH_ROW, combined.get(i).getRowType());
+		}
+		Assert.assertEquals(DataJoinValue.PARTIAL_ROW, combined.get(3).getRowType());
+
+		Tuple other = new Tuple();
+		other.put("id", "a");
+		other.put("v", "v1");
+		combined.add(new DataJoinValue((byte)1, other));
+
+		final List<Tuple> results = new ArrayList<Tuple>();
+		DefaultMobiusReducer reducer = new DefaultMobiusReducer();
+		reducer.configure(conf);
+		reducer.joinreduce(key, new DataJoinValueGroup<Tuple>(combined.iterator()), new OutputCollector<NullWritable, WritableComparable<?>>(){
+			@Override
+			public void collect(NullWritable k, WritableComparable<?> v)
+			{
+				results.add((Tuple)v);
+			}
+		}, reporter());
+
+		List<String> names = new ArrayList<String>();
+		for( Tuple aResult:results )
+		{
+			Assert.assertEquals(3L, aResult.get("counts_id"));
+			names.add(aResult.getString("upper_name"));
+			Assert.assertEquals("v1", aResult.get("unique_v"));
+		}
+		Collections.sort(names);
+		Assert.assertEquals("[X, X, Y]", names.toString());
+	}
+
+
+	/**
+	 * a combinable extend function which doesn't use the group keys only.
+	 */
+	public static class UpperCase extends ExtendFunction
+	{
+		private static final long serialVersionUID = -6153462331939466384L;
+
+		public UpperCase(Column input)
+		{
+			super(new Column[]{input});
+			this.setOutputSchema("upper_name");
+		}
+
+		@Override
+		public boolean isCombinable()
+		{
+			return true;
+		}
+
+		@Override
+		public Tuple getResult(Tuple inputRow)
+		{
+			Tuple result = new Tuple();
+			result.put("upper_name", inputRow.getString(this.getInputColumns()[0].getInputColumnName()).toUpperCase());
+			return result;
+		}
+	}
+
+
+	private static Tuple value(String id, String name)
+	{
+		Tuple value = new Tuple();
+		value.put("id", id);
+		value.put("name", name);
+		return value;
+	}
+
+
+	private static Reporter reporter()
+	{
+		final Counters counters = new Counters();
+		return new Reporter(){
+			@Override
+			public void progress(){}
+
+			@Override
+			public void setStatus(String status){}
+
+			@Override
+			public Counter getCounter(Enum<?> name)
+			{
+				return counters.findCounter(name);
+			}
+
+			@Override
+			public Counter getCounter(String group, String name)
+			{
+				return counters.findCounter(group, name);
+			}
+
+			@Override
+			public void incrCounter(Enum<?> key, long amount){}
+
+			@Override
+			public void incrCounter(String group, String counter, long amount){}
+
+			@Override
+			public InputSplit getInputSplit()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -0,0 +1,121 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.function.Counts;
+import com.ebay.erl.mobius.core.function.Sum;
+import com.ebay.erl.mobius.core.function.base.Projectable;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.KeyTuple;
+import com.ebay.erl.mobius.core.model.ResultWrapper;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.util.SerializableUtil;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings({"deprecation", "unchecked"})
+public class InMapperCombinerTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = -2741085391925312904L;
+
+	@Test
+	public void test_combine()
+		throws IOException
+	{
+		File input = File.createTempFile("mobius", ".tsv");
+		input.deleteOnExit();
+		Dataset ds = TSVDatasetBuilder.newInstance(this, "ds", new String[]{"ID", "PRICE"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+
+		// assigns the dataset ID
+		JobConf conf = ds.createJobConf((byte)0);
+		conf.setCombinerClass(DefaultMobiusCombiner.class);
+		conf.setInt(ConfigureConstants.IN_MAPPER_COMBINE_MAX_KEYS, 2);
+		conf.set(ConfigureConstants.PROJECTION_COLUMNS, SerializableUtil.serializeToBase64(new Projectable[]{
+				new Counts(new Column(ds, "ID")), new Sum(new Column(ds, "PRICE"))}));
+
+		InMapperCombiner combiner = InMapperCombiner.newInstance(conf, ds.getID());
+		Assert.assertNotNull(combiner);
+
+		final List<Tuple> keys		= new ArrayList<Tuple>();
+		final List<Tuple> values	= new ArrayList<Tuple>();
+		OutputCollector<WritableComparable<?>, WritableComparable<?>> output = new OutputCollector<WritableComparable<?>, WritableComparable<?>>(){
+			@Override
+			public void collect(WritableComparable<?> key, WritableComparable<?> value)
+			{
+				keys.add((Tuple)key);
+				values.add((Tuple)value);
+			}
+		};
+
+		combiner.add(key("a"), value("a", 1D), output);
+		combiner.add(key("b"), value("b", 2D), output);
+		combiner.add(key("a"), value("a", 3D), output);
+		Assert.assertEquals(0, keys.size());
+
+		// the third key flushes the first two
+		combiner.add(key("c"), value("c", 4D), output);
+		Assert.assertEquals(2, keys.size());
+
+		combiner.flush(output);
+		Assert.assertEquals(3, keys.size());
+
+		for( int i=0;i<keys.size();i++ )
+		{
+			String id = keys.get(i).getString("id");
+			long expectedCounts			= id.equals("a")?2L:1L;
+			double expectedSum			= id.equals("a")?4D:(id.equals("b")?2D:4D);
+
+			Assert.assertEquals(expectedCounts, ((ResultWrapper<Long>)values.get(i).get("id")).getCombinedResult().longValue());
+			Assert.assertEquals(0, BigDecimal.valueOf(expectedSum).compareTo((BigDecimal)values.get(i).get("price")));
+		}
+
+
+		// not combined if the job has no combiner
+		Assert.assertNull(InMapperCombiner.newInstance(new JobConf(false), ds.getID()));
+	}
+
+
+	private static Tuple key(String id)
+	{
+		Tuple key = new KeyTuple();
+		key.insert("id", id);
+		return key;
+	}
+
+
+	private static Tuple value(String id, double price)
+	{
+		Tuple value = new Tuple();
+		value.put("id", id);
+		value.put("price", price);
+		return value;
+	}
+}
@@ -0,0 +1,93 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.datajoin.DataJoinKey;
+import com.ebay.erl.mobius.core.function.Counts;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings("deprecation")
+public class MobiusInputSamplerTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = 6205513187301467210L;
+
+	private File folder;
+
+	@Before
+	public void setUp()
+	{
+		this.folder = new File(System.getProperty("java.io.tmpdir"), "mobius_input_sampler_test_"+System.nanoTime());
+		this.folder.mkdirs();
+	}
+
+
+	@After
+	public void tearDown()
+		throws IOException
+	{
+		FileUtil.fullyDelete(this.folder);
+	}
+
+
+	@Test
+	public void test_sample_combinable_job()
+		throws IOException
+	{
+		File input = new File(this.folder, "ds");
+		input.mkdirs();
+		FileWriter writer = new FileWriter(new File(input, "part-00000"));
+		writer.write("a\tx\nb\ty\na\tz\nc\tx\n");
+		writer.close();
+
+		Dataset ds = TSVDatasetBuilder.newInstance(this, "ds", new String[]{"ID", "NAME"})
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+
+		Path output = new Path(new File(this.folder, "output").getAbsolutePath());
+		this.group(ds).by("ID").save(this, output, new Column(ds, "ID"), new Counts(new Column(ds, "NAME")));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals(DefaultMobiusCombiner.class, conf.getCombinerClass());
+
+		// all the keys are sampled, none is buffered for combining
+		Object[] samples = new MobiusInputSampler(1.0D, 100, 5).getSample(conf.getInputFormat(), conf);
+
+		List<String> keys = new ArrayList<String>();
+		for( Object aSample:samples )
+		{
+			keys.add(((Tuple)((DataJoinKey)aSample).getKey()).getString("id"));
+		}
+		Collections.sort(keys);
+		Assert.assertEquals("[a, a, b, c]", keys.toString());
+	}
+}
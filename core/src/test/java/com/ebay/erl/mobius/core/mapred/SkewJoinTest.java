@@ -0,0 +1,119 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.datajoin.DataJoinKey;
+import com.ebay.erl.mobius.core.datajoin.DataJoinKeyPartitioner;
+import com.ebay.erl.mobius.core.model.KeyTuple;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings("deprecation")
+public class SkewJoinTest
+{
+	@Test
+	public void test_hot_keys()
+		throws IOException
+	{
+		JobConf conf = new JobConf(false);
+		conf.setNumReduceTasks(4);
+		conf.set(ConfigureConstants.ALL_DATASET_IDS, "0,1");
+
+		// 10 out of 12 samples of the streamed dataset
+		// are the same key.
+		List<Object> samples = new ArrayList<Object>();
+		for( int i=0;i<10;i++ )
+		{
+			samples.add(new DataJoinKey((byte)1, key("hot")));
+			samples.add(new DataJoinKey((byte)0, key("hot")));
+		}
+		samples.add(new DataJoinKey((byte)1, key("a")));
+		samples.add(new DataJoinKey((byte)1, key("b")));
+
+		SkewJoin.writeHotKeys(conf, samples.toArray());
+		Assert.assertTrue(SkewJoin.hasHotKeys(conf));
+
+
+		// the rows of the streamed dataset are spread
+		List<Tuple> keys = new ArrayList<Tuple>();
+		SkewJoin streamed = new SkewJoin(conf, (byte)1);
+		for( int i=0;i<8;i++ )
+		{
+			streamed.output(key("hot"), new Tuple(), collector(keys));
+		}
+		streamed.output(key("a"), new Tuple(), collector(keys));
+
+		Assert.assertEquals(9, keys.size());
+		int[] counts = new int[4];
+		for( int i=0;i<8;i++ )
+		{
+			Assert.assertEquals("hot", keys.get(i).get(0));
+			counts[(Integer)keys.get(i).get(1)]++;
+		}
+		for( int aCount:counts )
+		{
+			Assert.assertEquals(2, aCount);
+		}
+		Assert.assertEquals(key("a"), keys.get(8));
+
+
+		// the rows of the other dataset are replicated to
+		// all the salts, which go to different reducers.
+		keys.clear();
+		SkewJoin replicated = new SkewJoin(conf, (byte)0);
+		replicated.output(key("hot"), new Tuple(), collector(keys));
+
+		Assert.assertEquals(4, keys.size());
+		DataJoinKeyPartitioner partitioner	= new DataJoinKeyPartitioner();
+		Set<Integer> partitions				= new HashSet<Integer>();
+		for( int i=0;i<4;i++ )
+		{
+			Assert.assertEquals(i, ((Integer)keys.get(i).get(1)).intValue());
+			partitions.add(partitioner.getPartition(new DataJoinKey((byte)0, keys.get(i)), null, 4));
+		}
+		Assert.assertEquals(4, partitions.size());
+	}
+
+
+	private static Tuple key(String value)
+	{
+		Tuple key = new KeyTuple();
+		key.insert("id", value);
+		return key;
+	}
+
+
+	private static OutputCollector<WritableComparable<?>, WritableComparable<?>> collector(final List<Tuple> keys)
+	{
+		return new OutputCollector<WritableComparable<?>, WritableComparable<?>>(){
+			@Override
+			public void collect(WritableComparable<?> key, WritableComparable<?> value)
+			{
+				keys.add((Tuple)key);
+			}
+		};
+	}
+}
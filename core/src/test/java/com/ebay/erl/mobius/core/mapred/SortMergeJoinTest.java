@@ -0,0 +1,316 @@
+package com.ebay.erl.mobius.core.mapred;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.mapred.TextOutputFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.ConfigureConstants;
+import com.ebay.erl.mobius.core.JoinOnConfigure.EQ;
+import com.ebay.erl.mobius.core.MobiusTestJob;
+import com.ebay.erl.mobius.core.builder.Dataset;
+import com.ebay.erl.mobius.core.builder.TSVDatasetBuilder;
+import com.ebay.erl.mobius.core.model.Column;
+import com.ebay.erl.mobius.core.model.Tuple;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+@SuppressWarnings("deprecation")
+public class SortMergeJoinTest extends MobiusTestJob
+{
+	private static final long serialVersionUID = -2917750334522604127L;
+
+	private File folder;
+
+	@Before
+	public void setUp()
+	{
+		this.folder = new File(System.getProperty("java.io.tmpdir"), "mobius_sort_merge_join_test_"+System.nanoTime());
+		this.folder.mkdirs();
+	}
+
+
+	@After
+	public void tearDown()
+		throws IOException
+	{
+		FileUtil.fullyDelete(this.folder);
+	}
+
+
+	@Test
+	public void test_inner_join()
+		throws IOException
+	{
+		// the keys of 2 buckets: b, d, f, h in part-00000
+		// and a, c, e in part-00001.
+		Dataset left	= this.bucketed("left", new String[]{"ID", "NAME"},
+				new String[]{"b\tx1", "d\tx2", "d\tx3", "h\tx4"},
+				new String[]{"a\tx5", "c\tx6"});
+		Dataset right	= this.bucketed("right", new String[]{"ID", "V"},
+				new String[]{"b\tv1", "b\tv2", "f\tv3"},
+				new String[]{"c\tv4", "e\tv5"});
+
+		Path output = this.output();
+		this.innerJoin(left, right)
+			.on(new EQ(new Column(left, "ID"), new Column(right, "ID")))
+			.save(this, output, SequenceFileOutputFormat.class, new Column(left, "ID"), new Column(left, "NAME"), new Column(right, "V"));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals("1", conf.get(ConfigureConstants.SORT_MERGE_DATASET_IDS));
+		Assert.assertEquals(2, conf.getInt(ConfigureConstants.SORT_MERGE_BUCKET_NUMBER, 0));
+		Assert.assertEquals(0, conf.getNumReduceTasks());
+
+		// b has runs of the same length, d and f are only in one
+		// dataset, right runs out before h and left before e.
+		Assert.assertEquals("[b,x1,v1, b,x1,v2, c,x6,v4]", toString(this.runMappers(conf, new Counters())));
+	}
+
+
+	@Test
+	public void test_outer_join()
+		throws IOException
+	{
+		Dataset left	= this.bucketed("left", new String[]{"ID", "NAME"},
+				new String[]{"b\tx1", "d\tx2", "d\tx3", "h\tx4"},
+				new String[]{"a\tx5", "c\tx6"});
+		Dataset right	= this.bucketed("right", new String[]{"ID", "V"},
+				new String[]{"b\tv1", "b\tv2", "f\tv3"},
+				new String[]{"c\tv4", "e\tv5"});
+
+		Path output = this.output();
+		this.leftOuterJoin(left, right, "-")
+			.on(new EQ(new Column(left, "ID"), new Column(right, "ID")))
+			.save(this, output, SequenceFileOutputFormat.class, new Column(left, "ID"), new Column(left, "NAME"), new Column(right, "V"));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals("1", conf.get(ConfigureConstants.SORT_MERGE_DATASET_IDS));
+		Assert.assertEquals("[a,x5,-, b,x1,v1, b,x1,v2, c,x6,v4, d,x2,-, d,x3,-, h,x4,-]", toString(this.runMappers(conf, new Counters())));
+	}
+
+
+	@Test
+	public void test_key_in_wrong_bucket()
+		throws IOException
+	{
+		// a belongs to part-00001
+		Dataset left	= this.bucketed("left", new String[]{"ID", "NAME"},
+				new String[]{"b\tx1"},
+				new String[]{"c\tx2"});
+		Dataset right	= this.bucketed("right", new String[]{"ID", "V"},
+				new String[]{"a\tv1", "b\tv2"},
+				new String[]{"c\tv3"});
+
+		Path output = this.output();
+		this.innerJoin(left, right)
+			.on(new EQ(new Column(left, "ID"), new Column(right, "ID")))
+			.save(this, output, SequenceFileOutputFormat.class, new Column(left, "ID"), new Column(right, "V"));
+
+		try
+		{
+			this.runMappers(this.getJobConf(output), new Counters());
+			Assert.fail("a is not in its bucket.");
+		}
+		catch(IOException e)
+		{
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("belongs to bucket 1 instead of 0"));
+		}
+	}
+
+
+	@Test
+	public void test_setup_bucketing()
+		throws IOException
+	{
+		Dataset ds = this.dataset("ds", new String[]{"ID", "NAME"});
+
+		// the keys selected and renamed
+		Dataset result = this.group(ds).by("ID").setReducersNumber(3)
+			.build(this, SequenceFileOutputFormat.class, new Column(ds, "ID").setNewName("KEY"), new Column(ds, "NAME"));
+		Assert.assertEquals(3, result.getBucketNumber());
+		Assert.assertEquals("[KEY]", Arrays.toString(result.getSortedColumns()));
+
+		// the keys not selected
+		result = this.group(ds).by("ID").setReducersNumber(3)
+			.build(this, SequenceFileOutputFormat.class, new Column(ds, "NAME"));
+		Assert.assertEquals(0, result.getBucketNumber());
+		Assert.assertNull(result.getSortedColumns());
+
+		// the types of the keys are not preserved
+		result = this.group(ds).by("ID").setReducersNumber(3)
+			.build(this, TextOutputFormat.class, new Column(ds, "ID"), new Column(ds, "NAME"));
+		Assert.assertEquals(0, result.getBucketNumber());
+
+		// the keys are not hashed into the part files
+		result = this.group(ds).by("ID").setReducersNumber(3).setConf("mobius.partitioner", "even")
+			.build(this, SequenceFileOutputFormat.class, new Column(ds, "ID"), new Column(ds, "NAME"));
+		Assert.assertEquals(0, result.getBucketNumber());
+
+		// the keys of the optional dataset of an outer join can be null
+		Dataset other = this.dataset("other", new String[]{"ID", "V"});
+		result = this.leftOuterJoin(ds, other)
+			.on(new EQ(new Column(ds, "ID"), new Column(other, "ID"))).setReducersNumber(3)
+			.build(this, SequenceFileOutputFormat.class, new Column(other, "ID"), new Column(ds, "NAME"));
+		Assert.assertEquals(0, result.getBucketNumber());
+
+		result = this.leftOuterJoin(ds, other)
+			.on(new EQ(new Column(ds, "ID"), new Column(other, "ID"))).setReducersNumber(3)
+			.build(this, SequenceFileOutputFormat.class, new Column(ds, "ID"), new Column(other, "V"));
+		Assert.assertEquals(3, result.getBucketNumber());
+		Assert.assertEquals("[ID]", Arrays.toString(result.getSortedColumns()));
+	}
+
+
+	@Test
+	public void test_sort_merge_dataset_ids()
+		throws IOException
+	{
+		Dataset left	= this.dataset("left", new String[]{"ID", "NAME"}).setBucketing(2, "ID");
+		Dataset right	= this.dataset("right", new String[]{"ID", "V"}).setBucketing(2, "ID");
+		Dataset three	= this.dataset("three", new String[]{"ID", "V"}).setBucketing(3, "ID");
+		Dataset byName	= this.dataset("by_name", new String[]{"ID", "NAME"}).setBucketing(2, "NAME");
+		Dataset none	= this.dataset("none", new String[]{"ID", "V"});
+
+		Assert.assertEquals("1", this.sortMergeDatasetIDs(left, right, "V", "true"));
+
+		// disabled
+		Assert.assertEquals("", this.sortMergeDatasetIDs(left, right, "V", "false"));
+
+		// different numbers of buckets
+		Assert.assertEquals("", this.sortMergeDatasetIDs(left, three, "V", "true"));
+
+		// not sorted by the join keys
+		Assert.assertEquals("", this.sortMergeDatasetIDs(left, byName, "NAME", "true"));
+
+		// not bucketed
+		Assert.assertEquals("", this.sortMergeDatasetIDs(left, none, "V", "true"));
+		Assert.assertEquals("", this.sortMergeDatasetIDs(none, left, "NAME", "true"));
+	}
+
+
+	@Test
+	public void test_skew_join_output()
+		throws IOException
+	{
+		Dataset left	= this.dataset("left", new String[]{"ID", "NAME"});
+		Dataset right	= this.dataset("right", new String[]{"ID", "V"});
+		Dataset other	= this.dataset("other", new String[]{"ID", "W"}).setBucketing(2, "ID");
+
+		Dataset hashed = this.innerJoin(left, right)
+			.on(new EQ(new Column(left, "ID"), new Column(right, "ID"))).setReducersNumber(2)
+			.build(this, SequenceFileOutputFormat.class, new Column(left, "ID"), new Column(right, "V"));
+		Assert.assertEquals(2, hashed.getBucketNumber());
+		Assert.assertEquals("1", this.sortMergeDatasetIDs(hashed, other, "W", "true"));
+
+		// the hot keys are spread over the reducers
+		Dataset skewed = this.innerJoin(left, right)
+			.on(new EQ(new Column(left, "ID"), new Column(right, "ID"))).setReducersNumber(2)
+			.setConf(ConfigureConstants.SKEW_JOIN, "true")
+			.build(this, SequenceFileOutputFormat.class, new Column(left, "ID"), new Column(right, "V"));
+		Assert.assertEquals(0, skewed.getBucketNumber());
+		Assert.assertEquals("", this.sortMergeDatasetIDs(skewed, other, "W", "true"));
+
+		// skew join is disabled for the outer joins
+		Dataset outer = this.leftOuterJoin(left, right)
+			.on(new EQ(new Column(left, "ID"), new Column(right, "ID"))).setReducersNumber(2)
+			.setConf(ConfigureConstants.SKEW_JOIN, "true")
+			.build(this, SequenceFileOutputFormat.class, new Column(left, "ID"), new Column(right, "V"));
+		Assert.assertEquals(2, outer.getBucketNumber());
+	}
+
+
+	private String sortMergeDatasetIDs(Dataset left, Dataset right, String value, String enabled)
+		throws IOException
+	{
+		Path output = this.output();
+		this.innerJoin(left, right)
+			.on(new EQ(new Column(left, "ID"), new Column(right, "ID")))
+			.setConf(ConfigureConstants.SORT_MERGE_JOIN, enabled)
+			.save(this, output, SequenceFileOutputFormat.class, new Column(left, "ID"), new Column(right, value));
+
+		JobConf conf = this.getJobConf(output);
+		Assert.assertEquals(conf.get(ConfigureConstants.SORT_MERGE_DATASET_IDS).isEmpty()?1:0, conf.getNumReduceTasks());
+		return conf.get(ConfigureConstants.SORT_MERGE_DATASET_IDS);
+	}
+
+
+	private Dataset bucketed(String name, String[] schema, String[]... buckets)
+		throws IOException
+	{
+		File input = new File(this.folder, name);
+		input.mkdirs();
+		for( int i=0;i<buckets.length;i++ )
+		{
+			FileWriter writer = new FileWriter(new File(input, "part-0000"+i));
+			for( String aLine:buckets[i] )
+			{
+				writer.write(aLine+"\n");
+			}
+			writer.close();
+		}
+		return this.dataset(name, schema).setBucketing(buckets.length, schema[0]);
+	}
+
+
+	private Dataset dataset(String name, String[] schema)
+		throws IOException
+	{
+		File input = new File(this.folder, name);
+		input.mkdirs();
+		return TSVDatasetBuilder.newInstance(this, name, schema)
+			.addInputPath(new Path(input.getAbsolutePath()))
+			.build();
+	}
+
+
+	private Path output()
+	{
+		return new Path(new File(this.folder, "output_"+System.nanoTime()).getAbsolutePath());
+	}
+
+
+	private static String toString(List<Tuple> rows)
+	{
+		List<String> result = new ArrayList<String>();
+		for( Tuple aRow:rows )
+		{
+			// the columns are named in alphabetical order
+			String[] columns = aRow.getSchema();
+			Arrays.sort(columns, String.CASE_INSENSITIVE_ORDER);
+
+			StringBuffer aResult = new StringBuffer();
+			for( String aColumn:columns )
+			{
+				aResult.append(aResult.length()>0?",":"").append(aRow.get(aColumn));
+			}
+			result.add(aResult.toString());
+		}
+		Collections.sort(result);
+		return result.toString();
+	}
+}
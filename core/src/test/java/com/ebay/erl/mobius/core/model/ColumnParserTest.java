@@ -0,0 +1,74 @@
+package com.ebay.erl.mobius.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+public class ColumnParserTest
+{
+	@Test
+	public void test_typed_columns()
+		throws Exception
+	{
+		String[] schema			= new String[]{"id", "price", "dt", "name"};
+		ColumnParser[] parsers	= new ColumnParser[]{
+				new ColumnParser(Tuple.LONG_TYPE, null),
+				new ColumnParser(Tuple.DOUBLE_TYPE, null),
+				new ColumnParser(Tuple.DATE_TYPE, "yyyyMMdd"),
+				null};
+
+		Tuple t = Tuple.valueOf(new Text("12\t 3.5 \t20120131\tfoo"), schema, "\t", parsers);
+		assertEquals(12L, t.get("id"));
+		assertEquals(3.5D, t.get("price"));
+		assertEquals(java.sql.Date.valueOf("2012-01-31"), t.get("dt"));
+		assertEquals("foo", t.get("name"));
+
+		// empty values are null
+		t = Tuple.valueOf(new Text("1\t\t"), schema, "\t", parsers);
+		assertNull(t.get("price"));
+		assertNull(t.get("dt"));
+
+		// only the needed columns
+		t = Tuple.valueOf(new Text("12\t3.5\t20120131\tfoo"), schema, "\t".getBytes("UTF-8"), new int[]{0, 2}, parsers);
+		assertEquals(12L, t.get("id"));
+		assertEquals(java.sql.Date.valueOf("2012-01-31"), t.get("dt"));
+	}
+
+
+	@Test
+	public void test_malformed_values()
+	{
+		String[] schema			= new String[]{"id", "dt"};
+		ColumnParser[] parsers	= new ColumnParser[]{
+				new ColumnParser(Tuple.INTEGER_TYPE, null),
+				new ColumnParser(Tuple.DATE_TYPE, "yyyyMMdd")};
+
+		for( String aLine:new String[]{"1x\t20120131", "1\t20121331", "1\t2012013100"} )
+		{
+			try
+			{
+				Tuple.valueOf(new Text(aLine), schema, "\t", parsers);
+				fail(aLine+" shall be rejected.");
+			}
+			catch(InvalidColumnValueException e)
+			{
+				// expected
+			}
+		}
+	}
+}
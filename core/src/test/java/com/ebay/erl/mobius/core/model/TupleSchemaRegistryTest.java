@@ -0,0 +1,65 @@
+package com.ebay.erl.mobius.core.model;
+
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import com.ebay.erl.mobius.core.model.TupleSchemaRegistry.ResolvedSchema;
+
+/**
+ * <p>
+ * This product is licensed under the Apache License,  Version 2.0,
+ * available at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * This product contains portions derived from Apache hadoop which is
+ * licensed under the Apache License, Version 2.0, available at
+ * http://hadoop.apache.org.
+ *
+ * © 2007 – 2012 eBay Inc., Evan Chiu, Woody Zhou, Jack Shen, Gyanit Singh, Neel Sundaresan
+ *
+ */
+public class TupleSchemaRegistryTest
+{
+	@Test
+	public void test_register_after_get_instance()
+		throws IOException
+	{
+		Configuration conf = new Configuration();
+		Assert.assertNull(TupleSchemaRegistry.getInstance(conf));
+
+		Assert.assertEquals(0, TupleSchemaRegistry.register(conf, "B", "a"));
+		TupleSchemaRegistry registry = TupleSchemaRegistry.getInstance(conf);
+		Assert.assertNotNull(registry);
+		Assert.assertEquals("a", registry.getColumns(0)[0]);
+		Assert.assertSame(registry, TupleSchemaRegistry.getInstance(conf));
+
+		// the same configuration with one more schema
+		Assert.assertEquals(1, TupleSchemaRegistry.register(conf, "c"));
+		registry = TupleSchemaRegistry.getInstance(conf);
+		Assert.assertEquals("c", registry.getColumns(1)[0]);
+	}
+
+
+	@Test
+	public void test_resolve()
+		throws IOException
+	{
+		Configuration conf = new Configuration();
+		TupleSchemaRegistry.register(conf, "a", "b");
+		TupleSchemaRegistry registry = TupleSchemaRegistry.getInstance(conf);
+
+		// more arrays than remembered by identity
+		for( int i=0;i<100;i++ )
+		{
+			ResolvedSchema resolved = registry.resolve(new String[]{"B", "A"});
+			Assert.assertEquals(0, resolved.id);
+			Assert.assertEquals(1, resolved.order[0]);
+			Assert.assertEquals(0, resolved.order[1]);
+
+			Assert.assertEquals(-1, registry.resolve(new String[]{"a", "c"}).id);
+		}
+	}
+}
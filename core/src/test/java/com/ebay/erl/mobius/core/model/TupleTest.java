@@ -3,6 +3,7 @@ package com.ebay.erl.mobius.core.model;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -15,6 +16,7 @@ import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
@@ -23,6 +25,8 @@ import org.apache.hadoop.io.Text;
 import org.junit.Test;
 
 import com.ebay.erl.mobius.core.collection.CaseInsensitiveTreeMap;
+import com.ebay.erl.mobius.core.sort.Sorter;
+import com.ebay.erl.mobius.core.sort.Sorter.Ordering;
 
 /**
  * <p>
@@ -207,6 +211,258 @@ public class TupleTest
 		this._assertp_tuple(nt);
 	}
 	
+	/**
+	 * test the values stored as primitive are
+	 * read, copied and serialized correctly.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void test_primitive_columns()
+		throws IOException
+	{
+		Tuple t = new Tuple();
+		t.put("C1", 3000000000L);
+		t.put("C2", 1.5D);
+		t.put("C3", 7);
+		t.put("C4", true);
+		t.put("C5", java.sql.Date.valueOf("2000-12-12"));
+		t.put("C6", "10");
+		
+		assertEquals(3000000000L, t.getLongValue("C1", -1L));
+		assertEquals(1.5D, t.getDoubleValue("C2", -1D), 0D);
+		assertEquals(1L, t.getLongValue("C2", -1L));
+		assertEquals(7D, t.getDoubleValue("C3", -1D), 0D);
+		assertEquals(10L, t.getLongValue("C6", -1L));
+		assertEquals(Long.valueOf(3000000000L), t.get("C1"));
+		assertEquals(Boolean.TRUE, t.getBoolean("C4"));
+		assertEquals(java.sql.Date.valueOf("2000-12-12"), t.getDate("C5"));
+		
+		// replace a primitive with an object and back
+		t.put("C3", "x");
+		assertEquals("x", t.getString("C3"));
+		t.put("C3", 8);
+		assertEquals(Integer.valueOf(8), t.getInt("C3"));
+		
+		Tuple merged = Tuple.merge(t, null);
+		assertEquals(0, merged.compareTo(t));
+		assertEquals(t, t.clone());
+		
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		t.write(out);
+		out.flush();
+		
+		Tuple nt = new Tuple();
+		nt.readFields(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+		nt.setSchema(new String[]{"C1", "C2", "C3", "C4", "C5", "C6"});
+		
+		assertEquals(3000000000L, nt.getLongValue("C1", -1L));
+		assertEquals(1.5D, nt.getDoubleValue("C2", -1D), 0D);
+		assertEquals(Boolean.TRUE, nt.getBoolean("C4"));
+		assertEquals(java.sql.Date.valueOf("2000-12-12"), nt.getDate("C5"));
+		assertEquals(0, nt.compareTo(t));
+	}
+	
+	@Test
+	public void test_lazy_deserialization()
+		throws IOException
+	{
+		CaseInsensitiveTreeMap map = new CaseInsensitiveTreeMap();
+		map.put("k", "v");
+		
+		Tuple inner = new Tuple();
+		inner.put("S", "inner");
+		
+		Tuple t = new Tuple();
+		t.put("C1", "hello");
+		t.put("C2", 10L);
+		t.put("C3", map);
+		t.put("C4", new byte[]{1, 2, 3});
+		t.put("C5", inner);
+		t.put("C6", "\u4e2d\u6587");
+		
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		t.write(out);
+		out.flush();
+		byte[] serialized = bos.toByteArray();
+		
+		Tuple lazy = new LazyTuple();
+		lazy.readFields(new DataInputStream(new ByteArrayInputStream(serialized)));
+		lazy.setSchema(new String[]{"C1", "C2", "C3", "C4", "C5", "C6"});
+		assertTrue(lazy.get("C5") instanceof LazyTuple);
+		((Tuple)lazy.get("C5")).setSchema(new String[]{"S"});
+		
+		// not accessed columns are written as is
+		bos = new ByteArrayOutputStream();
+		out = new DataOutputStream(bos);
+		lazy.write(out);
+		out.flush();
+		assertTrue(Arrays.equals(serialized, bos.toByteArray()));
+		
+		assertEquals("hello", lazy.getString("C1"));
+		assertEquals(10L, lazy.getLongValue("C2", -1L));
+		assertEquals("v", lazy.get("C3.k"));
+		assertTrue(Arrays.equals(new byte[]{1, 2, 3}, (byte[])lazy.get("C4")));
+		assertEquals("inner", ((Tuple)lazy.get("C5")).getString("S"));
+		assertEquals("\u4e2d\u6587", lazy.getString("C6"));
+		
+		// and once deserialized, they are written the same way
+		bos = new ByteArrayOutputStream();
+		out = new DataOutputStream(bos);
+		lazy.write(out);
+		out.flush();
+		assertTrue(Arrays.equals(serialized, bos.toByteArray()));
+	}
+	
+	@Test
+	public void test_raw_comparator()
+		throws IOException
+	{
+		Object[][] values = new Object[][]{
+			{"abc", 1L, 1.5D},
+			{"abd", 1L, 1.5D},
+			{"ab", 2L, 1.5D},
+			{"abc", 2, 1.5D},
+			{"abc", 1L, 2.5F},
+			{"\u4e2d\u6587", 1L, 1.5D},
+			{"\uffff", 1L, 1.5D},
+			{"abc", 1L, null},
+		};
+		
+		Tuple comparator = new Tuple();
+		for( Object[] v1:values )
+		{
+			for( Object[] v2:values )
+			{
+				Tuple t1 = new Tuple();
+				Tuple t2 = new Tuple();
+				for( int i=0;i<v1.length;i++ )
+				{
+					t1.insert("C"+i, v1[i]);
+					t2.insert("C"+i, v2[i]);
+				}
+				
+				byte[] b1 = this.serialize(t1);
+				byte[] b2 = this.serialize(t2);
+				
+				int expected	= Integer.signum(t1.compareTo(t2));
+				int actual		= Integer.signum(comparator.compare(b1, 0, b1.length, b2, 0, b2.length));
+				assertEquals(Arrays.toString(v1)+" vs "+Arrays.toString(v2), expected, actual);
+			}
+		}
+	}
+	
+	@Test
+	public void test_normalized_key()
+	{
+		Object[][] values = new Object[][]{
+			{"abc", 1L},
+			{"ab", 1L},
+			{"ab\u0000", 1L},
+			{"\ud800\udc00", 1L},
+			{"\uffff", 1L},
+			{null, 1L},
+			{"abc", -2.5D},
+			{"abc", Long.MAX_VALUE},
+			{"abc", Long.MAX_VALUE-1},
+			{"abc", 3},
+			{"abc", -0.0D},
+			{"abc", 0.5F},
+			{"abc", null},
+			{"abc", (1L<<53)+1},
+			{"abc", (double)(1L<<53)},
+		};
+		
+		Sorter[] sorters = new Sorter[]{new Sorter("S", Ordering.ASC), new Sorter("N", Ordering.DESC)};
+		TupleColumnComparator comparator = new TupleColumnComparator();
+		NormalizedKey n1 = new NormalizedKey();
+		NormalizedKey n2 = new NormalizedKey();
+		for( Object[] v1:values )
+		{
+			for( Object[] v2:values )
+			{
+				Tuple t1 = new KeyTuple();
+				t1.insert("S", v1[0]);
+				t1.insert("N", v1[1]);
+				Tuple t2 = new KeyTuple();
+				t2.insert("S", v2[0]);
+				t2.insert("N", v2[1]);
+				
+				assertTrue(n1.set(t1, sorters));
+				assertTrue(n2.set(t2, sorters));
+				
+				if( !sameTags(n1, n2) )
+				{
+					// integral and floating numbers are compared
+					// as double, only by the comparator.
+					continue;
+				}
+				
+				int expected	= Integer.signum(comparator.compareKey(t1, t2, sorters, null));
+				int actual		= Integer.signum(n1.compareTo(n2));
+				assertEquals(Arrays.toString(v1)+" vs "+Arrays.toString(v2), expected, actual);
+			}
+		}
+		
+		Tuple unsupported = new Tuple();
+		unsupported.put("S", new byte[]{1});
+		assertFalse(n1.set(unsupported, new Sorter[0]));
+		
+		// equal as double, but not as long
+		Tuple big = new KeyTuple();
+		big.insert("N", (1L<<53)+1);
+		Tuple rounded = new KeyTuple();
+		rounded.insert("N", (double)(1L<<53));
+		assertEquals(0, comparator.compareKey(big, rounded, new Sorter[0], null));
+		assertTrue(n1.set(big, new Sorter[0]));
+		assertTrue(n2.set(rounded, new Sorter[0]));
+		assertFalse(sameTags(n1, n2));
+	}
+	
+	private static boolean sameTags(NormalizedKey n1, NormalizedKey n2)
+	{
+		for( int i=0;i<n1.getColumnNumber();i++ )
+		{
+			byte tag1 = n1.getColumnTag(i);
+			byte tag2 = n2.getColumnTag(i);
+			if( tag1!=tag2 && tag1!=NormalizedKey.NULL_TAG && tag2!=NormalizedKey.NULL_TAG )
+				return false;
+		}
+		return true;
+	}
+	
+	private byte[] serialize(Tuple t)
+		throws IOException
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		t.write(out);
+		out.flush();
+		return bos.toByteArray();
+	}
+	
+	@Test
+	public void test_column_name_resolution()
+	{
+		Tuple t = new Tuple();
+		t.put("Col1", 1);
+		t.put("MAP", new CaseInsensitiveTreeMap());
+		((CaseInsensitiveTreeMap)t.get("map")).put("Key", "v");
+		
+		Tuple.TupleColumnName column = Tuple.TupleColumnName.valueOf("COL1");
+		assertEquals("col1", column.getID());
+		assertSame(column, Tuple.TupleColumnName.valueOf("COL1"));
+		assertEquals(Integer.valueOf(1), t.get(column));
+		assertEquals(Integer.valueOf(1), t.get("cOl1"));
+		
+		Tuple.TupleColumnName mapColumn = Tuple.TupleColumnName.valueOf("Map.KEY");
+		assertEquals("map", mapColumn.getID());
+		assertEquals("key", mapColumn.getMapKey());
+		assertEquals("v", t.get(mapColumn));
+	}
+	
 	@Test(expected=IllegalArgumentException.class)
 	public void test_non_exist_column()
 	{
@@ -379,4 +635,24 @@ public class TupleTest
 	{
 		return null;
 	}
+	
+	
+	@Test
+	public void test_value_of_needed_columns()
+		throws Exception
+	{
+		String[] schema		= new String[]{"a", "b", "c", "d"};
+		byte[] delimiter	= "::".getBytes("UTF-8");
+		
+		for( String aLine:new String[]{"1::\u4e2d::3::4", "1::2", "::::", ""} )
+		{
+			Text line	= new Text(aLine);
+			Tuple all	= Tuple.valueOf(line, schema, "::");
+			Tuple some	= Tuple.valueOf(line, schema, delimiter, new int[]{1, 3}, null);
+			
+			assertEquals(2, some.getSchema().length);
+			assertEquals(all.get("b"), some.get("b"));
+			assertEquals(all.get("d"), some.get("d"));
+		}
+	}
 }
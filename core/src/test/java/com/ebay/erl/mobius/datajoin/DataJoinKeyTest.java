@@ -8,11 +8,14 @@ import java.io.IOException;
 
 import junit.framework.Assert;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
 import org.junit.Test;
 
 import com.ebay.erl.mobius.core.datajoin.DataJoinKey;
+import com.ebay.erl.mobius.core.model.KeyTuple;
 import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.model.TupleSchemaRegistry;
 
 /**
  * <p>
@@ -148,4 +151,52 @@ public class DataJoinKeyTest {
 		
 	}
 	
+	@Test
+	public void testCompactSerDe()
+		throws IOException
+	{
+		Configuration conf = new Configuration();
+		TupleSchemaRegistry.register(conf, DataJoinKey.ACUTAL_KEY, DataJoinKey.DATASET_ID);
+		
+		KeyTuple t1 = new KeyTuple();
+		t1.put("k1", "v1");
+		
+		KeyTuple t2 = new KeyTuple();
+		t2.put("k1", "v2");
+		
+		DataJoinKey k1 = new DataJoinKey(Byte.valueOf("1"), t1);
+		k1.setConf(conf);
+		DataJoinKey k2 = new DataJoinKey(Byte.valueOf("1"), t2);
+		k2.setConf(conf);
+		
+		ByteArrayOutputStream b1 = new ByteArrayOutputStream();
+		ByteArrayOutputStream b2 = new ByteArrayOutputStream();
+		
+		DataOutputStream out1 = new DataOutputStream(b1);
+		DataOutputStream out2 = new DataOutputStream(b2);
+		
+		k1.write(out1);
+		k2.write(out2);
+		
+		out1.flush();
+		out2.flush();
+		
+		byte[] ba1 = b1.toByteArray();
+		byte[] ba2 = b2.toByteArray();
+		
+		DataJoinKey k_1 = new DataJoinKey();
+		k_1.setConf(conf);
+		k_1.readFields(new DataInputStream(new ByteArrayInputStream(ba1)));
+		
+		Assert.assertEquals(Byte.valueOf("1"), k_1.getDatasetID());
+		Assert.assertEquals("v1", ((Tuple)k_1.getKey()).get(0));
+		
+		Assert.assertEquals(-1, k_1.compare(ba1, 0, ba1.length, ba2, 0, ba2.length));
+		Assert.assertEquals(0, k_1.compare(ba1, 0, ba1.length, ba1, 0, ba1.length));
+		
+		DataJoinKey.Comparator grouping = new DataJoinKey.Comparator();
+		grouping.setConf(conf);
+		Assert.assertTrue(grouping.compare(ba2, 0, ba2.length, ba1, 0, ba1.length)>0);
+	}
+	
 }
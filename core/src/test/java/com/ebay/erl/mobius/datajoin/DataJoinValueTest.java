@@ -1,11 +1,20 @@
 package com.ebay.erl.mobius.datajoin;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import junit.framework.Assert;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
 import org.junit.Test;
 
 import com.ebay.erl.mobius.core.datajoin.DataJoinValue;
+import com.ebay.erl.mobius.core.model.Tuple;
+import com.ebay.erl.mobius.core.model.TupleSchemaRegistry;
 
 /**
  * <p>
@@ -41,4 +50,102 @@ public class DataJoinValueTest {
 		Assert.assertEquals(0, djvalue1.compareTo(djvalue1_1));
 		Assert.assertEquals(0, djvalue1_1.compareTo(djvalue1));
 	}
+	
+	@Test
+	public void testCompactSerDe()
+		throws IOException
+	{
+		Configuration conf = new Configuration();
+		TupleSchemaRegistry.register(conf, DataJoinValue.DATASET_ID, DataJoinValue.ACTUAL_VALUE);
+		TupleSchemaRegistry.register(conf, "C1", "c2", "c3");
+		
+		Tuple value = new Tuple();
+		value.put("c3", 3L);
+		value.putNull("c2");
+		value.put("c1", "v1");
+		
+		DataJoinValue compact = new DataJoinValue(Byte.valueOf("2"), value);
+		compact.setConf(conf);
+		
+		ByteArrayOutputStream compactBytes = new ByteArrayOutputStream();
+		compact.write(new DataOutputStream(compactBytes));
+		
+		ByteArrayOutputStream originalBytes = new ByteArrayOutputStream();
+		new DataJoinValue(Byte.valueOf("2"), value).write(new DataOutputStream(originalBytes));
+		
+		Assert.assertTrue(compactBytes.size()<originalBytes.size());
+		
+		DataJoinValue read = new DataJoinValue();
+		read.setConf(conf);
+		read.readFields(new DataInputStream(new ByteArrayInputStream(compactBytes.toByteArray())));
+		
+		Tuple readValue = (Tuple)read.getValue();
+		Assert.assertEquals(Byte.valueOf("2"), read.getDatasetID());
+		Assert.assertEquals("v1", readValue.getString("c1"));
+		Assert.assertNull(readValue.get("c2"));
+		Assert.assertEquals(Long.valueOf(3L), readValue.getLong("c3"));
+		
+		// the original form can still be read
+		read.readFields(new DataInputStream(new ByteArrayInputStream(originalBytes.toByteArray())));
+		readValue = (Tuple)read.getValue();
+		readValue.setSchema(new String[]{"c1", "c2", "c3"});
+		Assert.assertEquals(Long.valueOf(3L), readValue.getLong("c3"));
+	}
+	
+	@Test
+	public void testCompactSerDeSharedSchema()
+		throws IOException
+	{
+		Configuration conf = new Configuration();
+		TupleSchemaRegistry.register(conf, DataJoinValue.DATASET_ID, DataJoinValue.ACTUAL_VALUE);
+		TupleSchemaRegistry.register(conf, DataJoinValue.DATASET_ID, DataJoinValue.ACTUAL_VALUE, DataJoinValue.ROW_TYPE);
+		TupleSchemaRegistry.register(conf, "c1", "c2", "c3");
+		
+		// upper case names sort differently from the registered ones
+		String[] schema = new String[]{"c3", "B_c2", "A_c1"};
+		TupleSchemaRegistry.register(conf, schema);
+		
+		for( int i=0;i<3;i++ )
+		{
+			Tuple value = new Tuple();
+			value.setSchema(schema);
+			value.put("A_c1", "v"+i);
+			value.putNull("B_c2");
+			value.put("c3", (long)i);
+			
+			DataJoinValue read = roundTrip(new DataJoinValue(Byte.valueOf("1"), value, DataJoinValue.PARTIAL_ROW), conf);
+			Tuple readValue = (Tuple)read.getValue();
+			Assert.assertEquals(DataJoinValue.PARTIAL_ROW, read.getRowType());
+			Assert.assertEquals("v"+i, readValue.getString("a_c1"));
+			Assert.assertNull(readValue.get("b_c2"));
+			Assert.assertEquals(Long.valueOf(i), readValue.getLong("c3"));
+		}
+		
+		// a column added after the schema is set, not registered
+		Tuple value = new Tuple();
+		value.setSchema(schema);
+		value.put("A_c1", "v");
+		value.putNull("B_c2");
+		value.put("c3", 1L);
+		value.put("c4", 4L);
+		
+		DataJoinValue read = roundTrip(new DataJoinValue(Byte.valueOf("1"), value), conf);
+		Tuple readValue = (Tuple)read.getValue();
+		readValue.setSchema(new String[]{"a_c1", "b_c2", "c3", "c4"});
+		Assert.assertEquals("v", readValue.getString("a_c1"));
+		Assert.assertEquals(Long.valueOf(4L), readValue.getLong("c4"));
+	}
+	
+	private static DataJoinValue roundTrip(DataJoinValue value, Configuration conf)
+		throws IOException
+	{
+		value.setConf(conf);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		value.write(new DataOutputStream(bytes));
+		
+		DataJoinValue read = new DataJoinValue();
+		read.setConf(conf);
+		read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		return read;
+	}
 }
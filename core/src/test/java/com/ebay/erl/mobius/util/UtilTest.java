@@ -8,7 +8,6 @@ import junit.framework.Assert;
 
 import org.junit.Test;
 
-import com.ebay.erl.mobius.core.collection.BigTupleList;
 import com.ebay.erl.mobius.core.model.Tuple;
 
 /**
@@ -38,9 +37,7 @@ public class UtilTest
 		
 		// the cross product should be 30 rows
 		
-		BigTupleList result = (BigTupleList)Util.crossProduct(null, null, ds1, ds2, ds3);
-		
-		Assert.assertEquals(30, result.size());
+		Iterable<Tuple> result = Util.crossProduct(null, null, ds1, ds2, ds3);
 		
 		Tuple first = new Tuple();
 		first
@@ -68,7 +65,18 @@ public class UtilTest
 			if( idx==29 )// last one
 				Assert.assertEquals(last, t);
 			idx++;
-		}		
+		}
+		Assert.assertEquals(30, idx);
+		
+		// the cross product is computed lazily and can be iterated again
+		idx = 0;
+		for( Tuple t:result )
+		{
+			if( idx==29 )
+				Assert.assertEquals(last, t);
+			idx++;
+		}
+		Assert.assertEquals(30, idx);
 	}
 	
 	